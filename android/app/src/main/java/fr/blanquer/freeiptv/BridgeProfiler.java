@@ -0,0 +1,81 @@
+package fr.blanquer.freeiptv;
+
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the native-to-JS evaluateJavascript traffic per target (the script
+ * up to its first call or property access, e.g. "__avplay_listener.
+ * oncurrentplaytime") while the bridge profiler of js/core/diagnostic.js is
+ * running; that side times the JS-to-Java calls itself. Disabled, recording
+ * is one volatile read.
+ */
+public class BridgeProfiler {
+    private static final int MAX_TARGET_LENGTH = 64;
+
+    private static class Target {
+        long count;
+        long chars;
+        long maxChars;
+    }
+
+    private volatile boolean mEnabled;
+    private final Map<String, Target> mTargets = new HashMap<>();
+    private long mStartedAt;
+
+    public synchronized void setEnabled(boolean enabled) {
+        if (enabled && !mEnabled) {
+            mTargets.clear();
+            mStartedAt = System.currentTimeMillis();
+        }
+        mEnabled = enabled;
+    }
+
+    public void recordScript(String js) {
+        if (!mEnabled || js == null) return;
+        String key = target(js);
+        synchronized (this) {
+            Target target = mTargets.get(key);
+            if (target == null) {
+                target = new Target();
+                mTargets.put(key, target);
+            }
+            target.count++;
+            target.chars += js.length();
+            target.maxChars = Math.max(target.maxChars, js.length());
+        }
+    }
+
+    /** {since, scripts: {target: {count, chars, maxChars}}} */
+    public synchronized String getJson() {
+        StringBuilder out = new StringBuilder("{\"since\":").append(mStartedAt).append(",\"scripts\":{");
+        boolean first = true;
+        for (Map.Entry<String, Target> entry : mTargets.entrySet()) {
+            if (!first) out.append(',');
+            first = false;
+            Target target = entry.getValue();
+            out.append(JSONObject.quote(entry.getKey())).append(":{\"count\":").append(target.count)
+                    .append(",\"chars\":").append(target.chars).append(",\"maxChars\":").append(target.maxChars).append('}');
+        }
+        return out.append("}}").toString();
+    }
+
+    // Callbacks are "window.__x&&window.__x['id']&&window.__x['id'](...)",
+    // "obj.method(...)" or "if(window.app&&...)": the name before the first
+    // call or lookup.
+    static String target(String js) {
+        String script = js.startsWith("if(") ? js.substring(3) : js;
+        if (script.startsWith("window.")) script = script.substring(7);
+        int end = script.length();
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (c == '(' || c == '[' || c == '&' || c == '=' || c == ';' || c == ' ') {
+                end = i;
+                break;
+            }
+        }
+        return script.substring(0, Math.min(end, MAX_TARGET_LENGTH));
+    }
+}
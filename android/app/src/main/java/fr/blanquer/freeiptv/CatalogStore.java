@@ -0,0 +1,604 @@
+package fr.blanquer.freeiptv;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Provider catalog (categories and streams per section) keyed by playlist,
+ * replacing the IndexedDB provider cache on Android. A write is staged in the
+ * background and only becomes visible at commit. The first write of a
+ * playlist publishes a new version; later writes are diffed against it by
+ * stream key and content hash, only added, removed and changed rows are
+ * applied in place and the delta is reported to JS. An in-place refresh
+ * bumps the snapshot's revision, which loadMerged uses to skip unchanged
+ * playlists. Since rows change in place, a multi-statement read runs in a
+ * transaction so it never mixes two commits.
+ */
+public class CatalogStore extends SQLiteOpenHelper {
+    private static final String TAG = "CatalogStore";
+    private static final String DB_NAME = "catalog.db";
+    private static final int DB_VERSION = 4;
+    private static final String KIND_STREAMS = "streams";
+    private static final int MAX_DELTA_IDS = 200;
+
+    private static class PendingWrite {
+        String playlist;
+        long version;
+        long timestamp;
+        String filters;
+        String extra;
+        final Map<String, Integer> positions = new HashMap<>();
+        final Map<String, Integer> keyCounts = new HashMap<>();
+        final List<String> sections = new ArrayList<>();
+        boolean failed;
+        int items;
+        long startMs;
+    }
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger mNextWriteId = new AtomicInteger(1);
+    private final Map<Integer, PendingWrite> mWrites = new HashMap<>();
+    private Consumer<String> mJsCallback;
+
+    public CatalogStore(Context context) {
+        super(context.getApplicationContext(), DB_NAME, null, DB_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE snapshot (playlist TEXT PRIMARY KEY, version INTEGER NOT NULL, "
+                + "revision INTEGER NOT NULL DEFAULT 0, timestamp INTEGER NOT NULL, filters TEXT, extra TEXT)");
+        db.execSQL("CREATE TABLE category (playlist TEXT NOT NULL, version INTEGER NOT NULL, "
+                + "section TEXT NOT NULL, position INTEGER NOT NULL, json TEXT NOT NULL)");
+        db.execSQL("CREATE TABLE item (playlist TEXT NOT NULL, version INTEGER NOT NULL, section TEXT NOT NULL, "
+                + "position INTEGER NOT NULL, stream_key TEXT NOT NULL, hash INTEGER NOT NULL, json TEXT NOT NULL)");
+        db.execSQL("CREATE TABLE staging (write_id INTEGER NOT NULL, kind TEXT NOT NULL, section TEXT NOT NULL, "
+                + "position INTEGER NOT NULL, stream_key TEXT, hash INTEGER, json TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX category_position ON category (playlist, version, section, position)");
+        db.execSQL("CREATE INDEX item_position ON item (playlist, version, section, position)");
+        db.execSQL("CREATE INDEX item_key ON item (playlist, version, section, stream_key)");
+        db.execSQL("CREATE INDEX staging_key ON staging (write_id, kind, section, stream_key)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS snapshot");
+        db.execSQL("DROP TABLE IF EXISTS category");
+        db.execSQL("DROP TABLE IF EXISTS item");
+        db.execSQL("DROP TABLE IF EXISTS staging");
+        onCreate(db);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        // Write ids restart with the process: anything still staged belongs to a dead write.
+        if (!db.isReadOnly()) db.execSQL("DELETE FROM staging");
+    }
+
+    public void setJsCallback(Consumer<String> callback) {
+        mJsCallback = callback;
+    }
+
+    /**
+     * Starts writing a playlist's catalog. Sections are then streamed with
+     * append() and published with commit(); JS is told through
+     * window.__catalogNative[writeId](ok, delta).
+     */
+    public int begin(String playlist, long timestamp, String filtersJson, String extraJson) {
+        int writeId = mNextWriteId.getAndIncrement();
+        mExecutor.execute(() -> {
+            PendingWrite write = new PendingWrite();
+            write.playlist = playlist;
+            write.version = System.currentTimeMillis();
+            write.timestamp = timestamp;
+            write.filters = filtersJson;
+            write.extra = extraJson;
+            write.startMs = SystemClock.elapsedRealtime();
+            mWrites.put(writeId, write);
+        });
+        return writeId;
+    }
+
+    public void append(int writeId, String section, String kind, String json) {
+        mExecutor.execute(() -> {
+            PendingWrite write = mWrites.get(writeId);
+            if (write == null || write.failed) return;
+            SQLiteDatabase db = getWritableDatabase();
+            boolean streams = KIND_STREAMS.equals(kind);
+            String positionKey = section + "/" + kind;
+            Integer next = write.positions.get(positionKey);
+            int position = next != null ? next : 0;
+            SQLiteStatement insert = db.compileStatement("INSERT INTO staging (write_id, kind, section, position, "
+                    + "stream_key, hash, json) VALUES (?, ?, ?, ?, ?, ?, ?)");
+            db.beginTransaction();
+            try {
+                JSONArray rows = new JSONArray(json);
+                for (int i = 0; i < rows.length(); i++) {
+                    JSONObject row = rows.optJSONObject(i);
+                    if (row == null) continue;
+                    insert.clearBindings();
+                    insert.bindLong(1, writeId);
+                    insert.bindString(2, streams ? "s" : "c");
+                    insert.bindString(3, section);
+                    insert.bindLong(4, position);
+                    if (streams) {
+                        insert.bindString(5, uniqueKey(write, section, streamKey(row)));
+                        insert.bindLong(6, contentHash(row));
+                        write.items++;
+                    }
+                    insert.bindString(7, row.toString());
+                    insert.executeInsert();
+                    position++;
+                }
+                db.setTransactionSuccessful();
+            } catch (JSONException | RuntimeException e) {
+                Log.e(TAG, "append " + section + "/" + kind + ": " + e.getMessage());
+                write.failed = true;
+            } finally {
+                db.endTransaction();
+                insert.close();
+            }
+            write.positions.put(positionKey, position);
+            if (!write.sections.contains(section)) write.sections.add(section);
+        });
+    }
+
+    public void commit(int writeId) {
+        mExecutor.execute(() -> {
+            PendingWrite write = mWrites.remove(writeId);
+            boolean ok = write != null && !write.failed;
+            String delta = null;
+            if (ok) {
+                SQLiteDatabase db = getWritableDatabase();
+                try {
+                    String[] snapshot = readSnapshot(db, write.playlist);
+                    if (snapshot == null) {
+                        publishVersion(db, writeId, write);
+                    } else {
+                        delta = applyDelta(db, writeId, write, snapshot[0]);
+                    }
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "commit: " + e.getMessage());
+                    ok = false;
+                }
+                Log.d(TAG, "Committed " + write.items + " items for " + write.playlist + " in "
+                        + (SystemClock.elapsedRealtime() - write.startMs) + " ms"
+                        + (delta != null ? ", delta " + delta : ""));
+            }
+            getWritableDatabase().execSQL("DELETE FROM staging WHERE write_id = ?", new Object[] { writeId });
+            if (mJsCallback != null) {
+                String target = "window.__catalogNative&&window.__catalogNative[" + writeId + "]";
+                mJsCallback.accept(target + "&&" + target + "(" + ok + "," + delta + ")");
+            }
+        });
+    }
+
+    // First write of a playlist: the staged rows become a new version.
+    private void publishVersion(SQLiteDatabase db, int writeId, PendingWrite write) {
+        Object[] args = { write.playlist, write.version, writeId };
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT INTO category (playlist, version, section, position, json) "
+                    + "SELECT ?, ?, section, position, json FROM staging WHERE write_id = ? AND kind = 'c'", args);
+            db.execSQL("INSERT INTO item (playlist, version, section, position, stream_key, hash, json) "
+                    + "SELECT ?, ?, section, position, stream_key, hash, json FROM staging WHERE write_id = ? "
+                    + "AND kind = 's'", args);
+            db.execSQL("INSERT OR REPLACE INTO snapshot (playlist, version, timestamp, filters, extra) "
+                    + "VALUES (?, ?, ?, ?, ?)", new Object[] {
+                    write.playlist, write.version, write.timestamp, write.filters, write.extra });
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Refresh of a stored playlist: diffs the staged streams against the
+     * current version by (section, stream key) and content hash, and applies
+     * only what differs in one transaction. Stream keys are unique within a
+     * write (see uniqueKey), so every staged row matches at most one live
+     * row. Returns the delta as JSON: {added:{section:n}, removed, changed,
+     * categories:{section:true}, addedIds:{section:[stream ids]}, removedIds}.
+     */
+    private String applyDelta(SQLiteDatabase db, int writeId, PendingWrite write, String version) {
+        String id = String.valueOf(writeId);
+        String[] liveArgs = { write.playlist, version, id };
+        JSONObject added = new JSONObject();
+        JSONObject removed = new JSONObject();
+        JSONObject changed = new JSONObject();
+        JSONObject addedIds = new JSONObject();
+        JSONObject removedIds = new JSONObject();
+        JSONObject categories = new JSONObject();
+        try {
+            collectKeys(db, "SELECT s.section, s.stream_key FROM staging s WHERE s.write_id = ? AND s.kind = 's' "
+                    + "AND NOT EXISTS (SELECT 1 FROM item i WHERE i.playlist = ? AND i.version = ? "
+                    + "AND i.section = s.section AND i.stream_key = s.stream_key)",
+                    new String[] { id, write.playlist, version }, added, addedIds);
+            collectKeys(db, "SELECT i.section, i.stream_key FROM item i WHERE i.playlist = ? AND i.version = ? "
+                    + "AND NOT EXISTS (SELECT 1 FROM staging s WHERE s.write_id = ? AND s.kind = 's' "
+                    + "AND s.section = i.section AND s.stream_key = i.stream_key)",
+                    liveArgs, removed, removedIds);
+            collectKeys(db, "SELECT i.section, i.stream_key FROM item i WHERE i.playlist = ? AND i.version = ? "
+                    + "AND EXISTS (SELECT 1 FROM staging s WHERE s.write_id = ? AND s.kind = 's' "
+                    + "AND s.section = i.section AND s.stream_key = i.stream_key AND s.hash != i.hash)",
+                    liveArgs, changed, null);
+            // A section the write no longer has loses its categories too, like its items.
+            List<String> sections = new ArrayList<>(write.sections);
+            try (Cursor c = db.rawQuery("SELECT DISTINCT section FROM category WHERE playlist = ? AND version = ?",
+                    new String[] { write.playlist, version })) {
+                while (c.moveToNext()) {
+                    if (!sections.contains(c.getString(0))) sections.add(c.getString(0));
+                }
+            }
+            for (String section : sections) {
+                StringBuilder before = new StringBuilder();
+                StringBuilder after = new StringBuilder();
+                appendRows(db, before, "SELECT json FROM category WHERE playlist = ? AND version = ? AND section = ? "
+                        + "ORDER BY position", new String[] { write.playlist, version, section });
+                appendRows(db, after, "SELECT json FROM staging WHERE write_id = ? AND kind = 'c' AND section = ? "
+                        + "ORDER BY position", new String[] { id, section });
+                if (!before.toString().equals(after.toString())) categories.put(section, true);
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+
+        Object[] args = { write.playlist, version, writeId };
+        db.beginTransaction();
+        try {
+            // Removed and changed rows leave the live version...
+            db.execSQL("DELETE FROM item WHERE playlist = ? AND version = ? AND NOT EXISTS (SELECT 1 FROM staging s "
+                    + "WHERE s.write_id = ? AND s.kind = 's' AND s.section = item.section "
+                    + "AND s.stream_key = item.stream_key)", args);
+            db.execSQL("DELETE FROM item WHERE playlist = ? AND version = ? AND EXISTS (SELECT 1 FROM staging s "
+                    + "WHERE s.write_id = ? AND s.kind = 's' AND s.section = item.section "
+                    + "AND s.stream_key = item.stream_key AND s.hash != item.hash)", args);
+            // ...the unchanged ones follow the provider's new order and pick up
+            // the current JS annotations, which the hash leaves out...
+            db.execSQL("UPDATE item SET position = (SELECT s.position FROM staging s WHERE s.write_id = ? "
+                    + "AND s.kind = 's' AND s.section = item.section AND s.stream_key = item.stream_key), "
+                    + "json = (SELECT s.json FROM staging s WHERE s.write_id = ? "
+                    + "AND s.kind = 's' AND s.section = item.section AND s.stream_key = item.stream_key) "
+                    + "WHERE playlist = ? AND version = ? AND EXISTS (SELECT 1 FROM staging s WHERE s.write_id = ? "
+                    + "AND s.kind = 's' AND s.section = item.section AND s.stream_key = item.stream_key "
+                    + "AND (s.position != item.position OR s.json != item.json))",
+                    new Object[] { writeId, writeId, write.playlist, version, writeId });
+            // ...and new or changed rows come in.
+            db.execSQL("INSERT INTO item (playlist, version, section, position, stream_key, hash, json) "
+                    + "SELECT ?, ?, s.section, s.position, s.stream_key, s.hash, s.json FROM staging s "
+                    + "WHERE s.write_id = ? AND s.kind = 's' AND NOT EXISTS (SELECT 1 FROM item i WHERE i.playlist = ? "
+                    + "AND i.version = ? AND i.section = s.section AND i.stream_key = s.stream_key)",
+                    new Object[] { write.playlist, version, writeId, write.playlist, version });
+            // Categories are small, they are simply replaced, over every section
+            // like the item removals above.
+            db.execSQL("DELETE FROM category WHERE playlist = ? AND version = ?",
+                    new Object[] { write.playlist, version });
+            db.execSQL("INSERT INTO category (playlist, version, section, position, json) "
+                    + "SELECT ?, ?, section, position, json FROM staging WHERE write_id = ? AND kind = 'c'", args);
+            db.execSQL("UPDATE snapshot SET revision = revision + 1, timestamp = ?, filters = ?, "
+                    + "extra = ? WHERE playlist = ?",
+                    new Object[] { write.timestamp, write.filters, write.extra, write.playlist });
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return "{\"added\":" + added + ",\"removed\":" + removed + ",\"changed\":" + changed
+                + ",\"categories\":" + categories + ",\"addedIds\":" + addedIds + ",\"removedIds\":" + removedIds + "}";
+    }
+
+    /**
+     * Returns the current version of a playlist in the IndexedDB record shape
+     * ({timestamp, filters, data}), or "" when there is none. Rows are
+     * concatenated as stored, nothing is re-parsed.
+     */
+    public String load(String playlist) {
+        long startNs = System.nanoTime();
+        SQLiteDatabase db = getReadableDatabase();
+        // A delta committed between two of the SELECTs would mix two states:
+        // the transaction holds writes off until the read is done.
+        db.beginTransactionNonExclusive();
+        try {
+            return load(db, playlist, startNs);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private String load(SQLiteDatabase db, String playlist, long startNs) {
+        String[] snapshot = readSnapshot(db, playlist);
+        if (snapshot == null) return "";
+        String version = snapshot[0];
+        List<String> sections = new ArrayList<>();
+        try (Cursor c = db.rawQuery("SELECT DISTINCT section FROM category WHERE playlist = ? AND version = ? "
+                + "UNION SELECT DISTINCT section FROM item WHERE playlist = ? AND version = ?",
+                new String[] { playlist, version, playlist, version })) {
+            while (c.moveToNext()) sections.add(c.getString(0));
+        }
+        StringBuilder out = new StringBuilder(1024 * 1024);
+        out.append("{\"timestamp\":").append(snapshot[1])
+                .append(",\"filters\":").append(snapshot[2] != null ? snapshot[2] : "null")
+                .append(",\"data\":{");
+        boolean first = true;
+        int items = 0;
+        for (String section : sections) {
+            if (!first) out.append(',');
+            first = false;
+            out.append(JSONObject.quote(section)).append(":{\"categories\":");
+            appendRows(db, out, "SELECT json FROM category WHERE playlist = ? AND version = ? AND section = ? "
+                    + "ORDER BY position", new String[] { playlist, version, section });
+            out.append(",\"streams\":");
+            items += appendRows(db, out, "SELECT json FROM item WHERE playlist = ? AND version = ? AND section = ? "
+                    + "ORDER BY position", new String[] { playlist, version, section });
+            out.append('}');
+        }
+        String extra = snapshot[3] != null ? snapshot[3].trim() : "";
+        if (extra.length() > 2) {
+            if (!first) out.append(',');
+            out.append(extra, 1, extra.length() - 1);
+        }
+        out.append("}}");
+        Log.d(TAG, "Loaded " + items + " items for " + playlist + " (" + out.length() / 1024 + " KB) in "
+                + (System.nanoTime() - startNs) / 1000000 + " ms");
+        return out.toString();
+    }
+
+    /**
+     * Reads several catalogs for the merged view in one call. entriesJson is
+     * [{key, id, token}] in source priority order; the answer keeps that
+     * order as [{key, token, timestamp, filters, data}], with
+     * {key, missing: true} for a playlist without catalog. Every row gets
+     * "_playlistId": id appended, so a stored value never wins. data is left
+     * out when the caller's token (version.revision) is still current, only
+     * a refreshed playlist is read again.
+     */
+    public String loadMerged(String entriesJson) {
+        long startNs = System.nanoTime();
+        JSONArray entries;
+        try {
+            entries = new JSONArray(entriesJson);
+        } catch (JSONException e) {
+            Log.e(TAG, "loadMerged: " + e.getMessage());
+            return "[]";
+        }
+        SQLiteDatabase db = getReadableDatabase();
+        StringBuilder out = new StringBuilder(1024 * 1024);
+        out.append('[');
+        int items = 0;
+        int reused = 0;
+        // One transaction for all the playlists: the answer is one state of the store.
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < entries.length(); i++) {
+                JSONObject entry = entries.optJSONObject(i);
+                if (entry == null) continue;
+                String playlist = entry.optString("key");
+                if (out.length() > 1) out.append(',');
+                out.append("{\"key\":").append(JSONObject.quote(playlist));
+                String[] snapshot = readSnapshot(db, playlist);
+                if (snapshot == null) {
+                    out.append(",\"missing\":true}");
+                    continue;
+                }
+                String version = snapshot[0];
+                String token = version + "." + snapshot[4];
+                out.append(",\"token\":").append(JSONObject.quote(token))
+                        .append(",\"timestamp\":").append(snapshot[1])
+                        .append(",\"filters\":").append(snapshot[2] != null ? snapshot[2] : "null");
+                if (token.equals(entry.optString("token"))) {
+                    reused++;
+                    out.append('}');
+                    continue;
+                }
+                String stamp = "\"_playlistId\":" + jsonValue(entry.opt("id"));
+                out.append(",\"data\":{");
+                boolean first = true;
+                List<String> sections = new ArrayList<>();
+                try (Cursor c = db.rawQuery("SELECT DISTINCT section FROM category WHERE playlist = ? AND version = ? "
+                        + "UNION SELECT DISTINCT section FROM item WHERE playlist = ? AND version = ?",
+                        new String[] { playlist, version, playlist, version })) {
+                    while (c.moveToNext()) sections.add(c.getString(0));
+                }
+                for (String section : sections) {
+                    if (!first) out.append(',');
+                    first = false;
+                    out.append(JSONObject.quote(section)).append(":{\"categories\":");
+                    appendStampedRows(db, out, stamp, "SELECT json FROM category WHERE playlist = ? AND version = ? "
+                            + "AND section = ? ORDER BY position", new String[] { playlist, version, section });
+                    out.append(",\"streams\":");
+                    items += appendStampedRows(db, out, stamp, "SELECT json FROM item WHERE playlist = ? AND version = ? "
+                            + "AND section = ? ORDER BY position", new String[] { playlist, version, section });
+                    out.append('}');
+                }
+                out.append("}}");
+            }
+        } finally {
+            db.endTransaction();
+        }
+        out.append(']');
+        Log.d(TAG, "Merged " + entries.length() + " catalogs (" + reused + " unchanged, " + items + " items read, "
+                + out.length() / 1024 + " KB) in " + (System.nanoTime() - startNs) / 1000000 + " ms");
+        return out.toString();
+    }
+
+    public void touch(String playlist, long timestamp) {
+        mExecutor.execute(() -> getWritableDatabase().execSQL(
+                "UPDATE snapshot SET timestamp = ? WHERE playlist = ?", new Object[] { timestamp, playlist }));
+    }
+
+    /** Deletes a playlist's catalog, or every catalog when playlist is empty. */
+    public void clear(String playlist) {
+        mExecutor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                if (playlist == null || playlist.isEmpty()) {
+                    db.execSQL("DELETE FROM snapshot");
+                    db.execSQL("DELETE FROM category");
+                    db.execSQL("DELETE FROM item");
+                } else {
+                    Object[] args = { playlist };
+                    db.execSQL("DELETE FROM snapshot WHERE playlist = ?", args);
+                    db.execSQL("DELETE FROM category WHERE playlist = ?", args);
+                    db.execSQL("DELETE FROM item WHERE playlist = ?", args);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    /** Returns [version, timestamp, filters, extra, revision] or null. */
+    private static String[] readSnapshot(SQLiteDatabase db, String playlist) {
+        try (Cursor c = db.rawQuery("SELECT version, timestamp, filters, extra, revision FROM snapshot "
+                + "WHERE playlist = ?", new String[] { playlist })) {
+            if (!c.moveToFirst()) return null;
+            return new String[] { c.getString(0), c.getString(1), c.getString(2), c.getString(3), c.getString(4) };
+        }
+    }
+
+    private static void collectKeys(SQLiteDatabase db, String sql, String[] args,
+                                    JSONObject counts, JSONObject ids) throws JSONException {
+        try (Cursor c = db.rawQuery(sql, args)) {
+            while (c.moveToNext()) {
+                String section = c.getString(0);
+                counts.put(section, counts.optInt(section, 0) + 1);
+                if (ids == null) continue;
+                JSONArray list = ids.optJSONArray(section);
+                if (list == null) {
+                    list = new JSONArray();
+                    ids.put(section, list);
+                }
+                if (list.length() < MAX_DELTA_IDS) list.put(streamId(c.getString(1)));
+            }
+        }
+    }
+
+    private static int appendRows(SQLiteDatabase db, StringBuilder out, String sql, String[] args) {
+        int count = 0;
+        out.append('[');
+        try (Cursor c = db.rawQuery(sql, args)) {
+            while (c.moveToNext()) {
+                if (count++ > 0) out.append(',');
+                out.append(c.getString(0));
+            }
+        }
+        out.append(']');
+        return count;
+    }
+
+    // Rows are stored as JSON objects: the stamp goes before the closing brace.
+    private static int appendStampedRows(SQLiteDatabase db, StringBuilder out, String stamp, String sql,
+                                         String[] args) {
+        int count = 0;
+        out.append('[');
+        try (Cursor c = db.rawQuery(sql, args)) {
+            while (c.moveToNext()) {
+                if (count++ > 0) out.append(',');
+                String row = c.getString(0).trim();
+                int end = row.lastIndexOf('}');
+                if (end < 0) {
+                    out.append(row);
+                    continue;
+                }
+                int last = end - 1;
+                while (last > 0 && Character.isWhitespace(row.charAt(last))) last--;
+                out.append(row, 0, last + 1);
+                if (last > 0) out.append(',');
+                out.append(stamp).append('}');
+            }
+        }
+        out.append(']');
+        return count;
+    }
+
+    private static String jsonValue(Object value) {
+        if (value == null || value == JSONObject.NULL) return "null";
+        if (value instanceof Number || value instanceof Boolean) return value.toString();
+        return JSONObject.quote(value.toString());
+    }
+
+    // A provider stream is identified by its id within its category, since
+    // providers list the same stream under several categories. M3U rows are
+    // numbered by position when parsed, so they are keyed by content instead
+    // (hashed: the URL carries the credentials).
+    static String streamKey(JSONObject row) {
+        if (row.optBoolean("_m3u", false)) {
+            return "#" + Long.toHexString(fnv(fnv(0xcbf29ce484222325L, row.optString("url", "")),
+                    row.optString("name", "")));
+        }
+        String id = row.optString("stream_id", "");
+        if (id.isEmpty()) id = row.optString("series_id", "");
+        if (id.isEmpty()) return "#" + Long.toHexString(contentHash(row));
+        return id + "\t" + row.optString("category_id", "");
+    }
+
+    // The n-th repeat of a key within a section gets a "\tn" suffix, so keys
+    // stay unique and repeats pair up in order across refreshes.
+    private static String uniqueKey(PendingWrite write, String section, String key) {
+        String counted = section + "/" + key;
+        Integer seen = write.keyCounts.get(counted);
+        write.keyCounts.put(counted, seen != null ? seen + 1 : 1);
+        return seen != null ? key + "\t" + seen : key;
+    }
+
+    // Stream id of a key, as JS knows it.
+    private static String streamId(String key) {
+        int tab = key.indexOf('\t');
+        return tab < 0 ? key : key.substring(0, tab);
+    }
+
+    // FNV-1a over the provider fields in key order; JS-side annotations
+    // (_dedupKey, _playlistId...) are skipped so they never count as a change,
+    // and so are the positional ids of M3U rows. applyDelta still refreshes
+    // the stored JSON of rows whose skipped fields moved.
+    static long contentHash(JSONObject row) {
+        boolean m3u = row.optBoolean("_m3u", false);
+        List<String> keys = new ArrayList<>();
+        Iterator<String> it = row.keys();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (key.startsWith("_")) continue;
+            if (m3u && (key.equals("stream_id") || key.equals("category_id"))) continue;
+            keys.add(key);
+        }
+        Collections.sort(keys);
+        long hash = 0xcbf29ce484222325L;
+        for (String key : keys) {
+            hash = fnv(hash, key);
+            hash = fnv(hash, String.valueOf(row.opt(key)));
+        }
+        return hash;
+    }
+
+    private static long fnv(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Field separator, so ("ab","c") and ("a","bc") differ.
+        hash ^= 0xff;
+        return hash * 0x100000001b3L;
+    }
+}
@@ -0,0 +1,421 @@
+package fr.blanquer.freeiptv;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies category names against the keyword rules of the derived
+ * sections (sport, manga, entertainment kinds, custom categories). Keywords
+ * keep the Regex.keywordPattern semantics: case-insensitive substring, with
+ * whitespace inside a keyword matching any run of whitespace. Single-word
+ * keywords of every rule share one Aho-Corasick automaton; multi-word ones
+ * become one compiled pattern per rule. Results are cached per name, so a
+ * catalog refresh only classifies names it has not seen, and editing a rule
+ * only runs that rule again over the cached names.
+ */
+public class CategoryRules {
+    private static final String TAG = "CategoryRules";
+    private static final char ROW_SEP = '\u001e';
+    // JS \s, which Regex.keywordPattern turns keyword whitespace into.
+    private static final String WHITESPACE = "[\\t\\n\\u000b\\f\\r \\u00a0\\u1680\\u2000-\\u200a"
+            + "\\u2028\\u2029\\u202f\\u205f\\u3000\\ufeff]*";
+    // Below this many names one thread is faster than splitting the work.
+    private static final int PARALLEL_MIN = 2000;
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** Compiled rules; rule numbers are bit positions in the per-name results. */
+    private static final class Matcher {
+        final char[][] labels;
+        final int[][] targets;
+        final int[] fail;
+        final int[][] emits;
+        final int[] patternRules;
+        final Pattern[] patterns;
+        final int[] anyRules;
+
+        Matcher(char[][] labels, int[][] targets, int[] fail, int[][] emits,
+                int[] patternRules, Pattern[] patterns, int[] anyRules) {
+            this.labels = labels;
+            this.targets = targets;
+            this.fail = fail;
+            this.emits = emits;
+            this.patternRules = patternRules;
+            this.patterns = patterns;
+            this.anyRules = anyRules;
+        }
+
+        BitSet match(String name) {
+            BitSet matched = new BitSet();
+            for (int rule : anyRules) matched.set(rule);
+            String text = fold(name);
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                int next;
+                while ((next = child(state, c)) < 0 && state != 0) state = fail[state];
+                state = Math.max(next, 0);
+                int[] rules = emits[state];
+                if (rules != null) {
+                    for (int rule : rules) matched.set(rule);
+                }
+            }
+            for (int p = 0; p < patterns.length; p++) {
+                if (!matched.get(patternRules[p]) && patterns[p].matcher(text).find()) matched.set(patternRules[p]);
+            }
+            return matched;
+        }
+
+        private int child(int state, char c) {
+            int at = Arrays.binarySearch(labels[state], c);
+            return at >= 0 ? targets[state][at] : -1;
+        }
+    }
+
+    private final ExecutorService mPool = Executors.newFixedThreadPool(THREADS);
+    private final Map<String, Integer> mRuleNumbers = new HashMap<>();
+    private final List<String> mRuleIds = new ArrayList<>();
+    private Map<String, List<String>> mRules = new HashMap<>();
+    private Matcher mMatcher = compile(new HashMap<>());
+    private final Map<String, BitSet> mNames = new HashMap<>();
+
+    /**
+     * Replaces the rules ({ruleId: [keywords]}). Cached names are only run
+     * through the rules whose keywords changed; removed rules are cleared.
+     */
+    public synchronized void configure(String rulesJson) {
+        Map<String, List<String>> rules;
+        try {
+            rules = parseRules(rulesJson);
+        } catch (JSONException e) {
+            Log.e(TAG, "configure: " + e.getMessage());
+            return;
+        }
+        long startNs = System.nanoTime();
+        BitSet cleared = new BitSet();
+        Map<String, List<String>> changed = new HashMap<>();
+        for (String id : mRules.keySet()) {
+            if (!rules.containsKey(id)) cleared.set(number(id));
+        }
+        for (Map.Entry<String, List<String>> rule : rules.entrySet()) {
+            if (!rule.getValue().equals(mRules.get(rule.getKey()))) {
+                changed.put(rule.getKey(), rule.getValue());
+                cleared.set(number(rule.getKey()));
+            }
+        }
+        mRules = rules;
+        mMatcher = compile(rules);
+        if (cleared.isEmpty() || mNames.isEmpty()) return;
+        List<String> names = new ArrayList<>(mNames.keySet());
+        BitSet[] results = matchAll(compile(changed), names);
+        for (int i = 0; i < names.size(); i++) {
+            BitSet bits = mNames.get(names.get(i));
+            bits.andNot(cleared);
+            bits.or(results[i]);
+        }
+        Log.d(TAG, "Re-classified " + names.size() + " names for " + changed.size() + " changed rule(s) in "
+                + (System.nanoTime() - startNs) / 1000000 + " ms");
+    }
+
+    /**
+     * Classifies count names separated by ROW_SEP. Returns {ruleId: [row,
+     * ...]} listing, for every rule with a match, the rows it matches.
+     */
+    public synchronized String classify(int count, String rows) {
+        long startNs = System.nanoTime();
+        String[] names = split(rows, count);
+        if (names == null) {
+            Log.e(TAG, "classify: expected " + count + " rows");
+            return "null";
+        }
+        List<String> fresh = new ArrayList<>();
+        for (String name : names) {
+            if (!mNames.containsKey(name)) {
+                mNames.put(name, null);
+                fresh.add(name);
+            }
+        }
+        BitSet[] results = matchAll(mMatcher, fresh);
+        for (int i = 0; i < fresh.size(); i++) mNames.put(fresh.get(i), results[i]);
+        Map<Integer, StringBuilder> byRule = new TreeMap<>();
+        for (int row = 0; row < names.length; row++) {
+            BitSet bits = mNames.get(names[row]);
+            for (int rule = bits.nextSetBit(0); rule >= 0; rule = bits.nextSetBit(rule + 1)) {
+                StringBuilder list = byRule.get(rule);
+                if (list == null) {
+                    byRule.put(rule, list = new StringBuilder());
+                } else {
+                    list.append(',');
+                }
+                list.append(row);
+            }
+        }
+        StringBuilder out = new StringBuilder("{");
+        for (Map.Entry<Integer, StringBuilder> entry : byRule.entrySet()) {
+            if (out.length() > 1) out.append(',');
+            out.append(JSONObject.quote(mRuleIds.get(entry.getKey()))).append(":[").append(entry.getValue()).append(']');
+        }
+        out.append('}');
+        Log.d(TAG, "Classified " + count + " names (" + fresh.size() + " new) in "
+                + (System.nanoTime() - startNs) / 1000000 + " ms");
+        return out.toString();
+    }
+
+    /** Forgets the classified names; rules stay configured. Returns how many. */
+    public synchronized int releaseAll() {
+        int dropped = mNames.size();
+        mNames.clear();
+        return dropped;
+    }
+
+    private int number(String id) {
+        Integer number = mRuleNumbers.get(id);
+        if (number == null) {
+            number = mRuleIds.size();
+            mRuleIds.add(id);
+            mRuleNumbers.put(id, number);
+        }
+        return number;
+    }
+
+    // One pass over the names, split across the pool when there are enough of them.
+    private BitSet[] matchAll(Matcher matcher, List<String> names) {
+        BitSet[] results = new BitSet[names.size()];
+        if (names.size() < PARALLEL_MIN || THREADS == 1) {
+            for (int i = 0; i < results.length; i++) results[i] = matcher.match(names.get(i));
+            return results;
+        }
+        int chunk = (names.size() + THREADS - 1) / THREADS;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < names.size(); from += chunk) {
+            final int start = from;
+            final int end = Math.min(names.size(), from + chunk);
+            tasks.add(() -> {
+                for (int i = start; i < end; i++) results[i] = matcher.match(names.get(i));
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> done : mPool.invokeAll(tasks)) done.get();
+        } catch (Exception e) {
+            Log.w(TAG, "parallel pass failed, finishing on one thread: " + e.getMessage());
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) results[i] = matcher.match(names.get(i));
+            }
+        }
+        return results;
+    }
+
+    private Matcher compile(Map<String, List<String>> rules) {
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<BitSet> outputs = new ArrayList<>();
+        trie.add(new HashMap<>());
+        outputs.add(new BitSet());
+        List<Integer> patternRules = new ArrayList<>();
+        List<Pattern> patterns = new ArrayList<>();
+        List<Integer> anyRules = new ArrayList<>();
+        for (Map.Entry<String, List<String>> rule : rules.entrySet()) {
+            int number = number(rule.getKey());
+            StringBuilder alternatives = new StringBuilder();
+            for (String keyword : rule.getValue()) {
+                List<String> words = words(fold(keyword));
+                if (words.isEmpty()) {
+                    // An empty keyword compiles to a regex that matches everything
+                    anyRules.add(number);
+                } else if (words.size() == 1) {
+                    int state = 0;
+                    for (char c : words.get(0).toCharArray()) {
+                        Integer next = trie.get(state).get(c);
+                        if (next == null) {
+                            next = trie.size();
+                            trie.get(state).put(c, next);
+                            trie.add(new HashMap<>());
+                            outputs.add(new BitSet());
+                        }
+                        state = next;
+                    }
+                    outputs.get(state).set(number);
+                } else {
+                    if (alternatives.length() > 0) alternatives.append('|');
+                    for (int w = 0; w < words.size(); w++) {
+                        if (w > 0) alternatives.append(WHITESPACE);
+                        alternatives.append(Pattern.quote(words.get(w)));
+                    }
+                }
+            }
+            if (alternatives.length() > 0) {
+                patternRules.add(number);
+                patterns.add(Pattern.compile(alternatives.toString()));
+            }
+        }
+        int states = trie.size();
+        char[][] labels = new char[states][];
+        int[][] targets = new int[states][];
+        for (int s = 0; s < states; s++) {
+            Map<Character, Integer> edges = new TreeMap<>(trie.get(s));
+            labels[s] = new char[edges.size()];
+            targets[s] = new int[edges.size()];
+            int e = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                labels[s][e] = edge.getKey();
+                targets[s][e++] = edge.getValue();
+            }
+        }
+        // Failure links breadth first; a state also emits what its failure state emits.
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int target : targets[0]) queue.add(target);
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int e = 0; e < labels[s].length; e++) {
+                int t = targets[s][e];
+                int f = fail[s];
+                int next;
+                while ((next = edge(labels, targets, f, labels[s][e])) < 0 && f != 0) f = fail[f];
+                fail[t] = next >= 0 && next != t ? next : 0;
+                outputs.get(t).or(outputs.get(fail[t]));
+                queue.add(t);
+            }
+        }
+        int[][] emits = new int[states][];
+        for (int s = 0; s < states; s++) {
+            BitSet out = outputs.get(s);
+            if (out.isEmpty()) continue;
+            emits[s] = new int[out.cardinality()];
+            int e = 0;
+            for (int rule = out.nextSetBit(0); rule >= 0; rule = out.nextSetBit(rule + 1)) emits[s][e++] = rule;
+        }
+        int[] patternRuleArray = new int[patternRules.size()];
+        for (int i = 0; i < patternRuleArray.length; i++) patternRuleArray[i] = patternRules.get(i);
+        int[] anyRuleArray = new int[anyRules.size()];
+        for (int i = 0; i < anyRuleArray.length; i++) anyRuleArray[i] = anyRules.get(i);
+        return new Matcher(labels, targets, fail, emits, patternRuleArray,
+                patterns.toArray(new Pattern[0]), anyRuleArray);
+    }
+
+    private static int edge(char[][] labels, int[][] targets, int state, char c) {
+        int at = Arrays.binarySearch(labels[state], c);
+        return at >= 0 ? targets[state][at] : -1;
+    }
+
+    // Case folding of a non-unicode JS /i regex: upper case, except that a
+    // non-ASCII character never folds onto an ASCII one.
+    static String fold(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            char upper = Character.toUpperCase(c);
+            chars[i] = c >= 0x80 && upper < 0x80 ? c : upper;
+        }
+        return new String(chars);
+    }
+
+    private static List<String> words(String keyword) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= keyword.length(); i++) {
+            boolean space = i == keyword.length() || isWhitespace(keyword.charAt(i));
+            if (!space && start < 0) start = i;
+            if (space && start >= 0) {
+                words.add(keyword.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == '\t' || c == '\n' || c == '\u000b' || c == '\f' || c == '\r' || c == ' ' || c == '\u00a0'
+                || c == '\u1680' || c >= '\u2000' && c <= '\u200a' || c == '\u2028' || c == '\u2029'
+                || c == '\u202f' || c == '\u205f' || c == '\u3000' || c == '\ufeff';
+    }
+
+    private static Map<String, List<String>> parseRules(String rulesJson) throws JSONException {
+        JSONObject json = new JSONObject(rulesJson);
+        Map<String, List<String>> rules = new LinkedHashMap<>();
+        Iterator<String> ids = json.keys();
+        while (ids.hasNext()) {
+            String id = ids.next();
+            JSONArray keywords = json.optJSONArray(id);
+            List<String> list = new ArrayList<>();
+            for (int i = 0; keywords != null && i < keywords.length(); i++) list.add(keywords.optString(i, ""));
+            rules.put(id, list);
+        }
+        return rules;
+    }
+
+    private static String[] split(String rows, int count) {
+        if (count == 0) return rows.isEmpty() ? new String[0] : null;
+        String[] names = new String[count];
+        int at = 0;
+        for (int i = 0; i < count; i++) {
+            if (at > rows.length()) return null;
+            int end = rows.indexOf(ROW_SEP, at);
+            if (end < 0) end = rows.length();
+            names[i] = rows.substring(at, end);
+            at = end + 1;
+        }
+        return at > rows.length() ? names : null;
+    }
+
+    /**
+     * Classifies generated category names with the default French rules on a
+     * throwaway instance: a cold pass, a warm pass and one edited rule.
+     */
+    public static String benchmark(int names) {
+        String[] prefixes = { "FR| ", "EN| ", "DE| ", "AR| ", "|ES| ", "4K| ", "VOD - ", "" };
+        String[] topics = { "FILMS ACTION", "SERIES NETFLIX", "FOOTBALL LIGUE 1", "MOTO GP 2024", "ANIME VOSTFR",
+                "MANGA", "CONCERTS LIVE", "THÉÂTRE", "KARAOKÉ", "BLIND  TEST", "UFC FIGHT PASS", "DOCUMENTAIRES",
+                "JEUNESSE", "TV SHOW", "COMÉDIE", "HORREUR", "FORMULE 1", "NBA PASS", "CINÉMA 2023", "TENNIS" };
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < names; i++) {
+            if (i > 0) rows.append(ROW_SEP);
+            rows.append(prefixes[i % prefixes.length]).append(topics[(i / prefixes.length) % topics.length])
+                    .append(' ').append(i);
+        }
+        String rules = "{\"sport\":[\"sport\",\"nba\",\"nfl\",\"nhl\",\"mlb\",\"moto gp\",\"motocross\",\"mxgp\","
+                + "\"formule 1\",\"formula 1\",\"f1\",\"combat\",\"wwe\",\"ufc\",\"football\",\"tennis\",\"rugby\","
+                + "\"hockey\",\"baseball\",\"golf\",\"racing\"],\"manga\":[\"manga\",\"anime\"],"
+                + "\"entertainment.concerts\":[\"concert\"],\"entertainment.theatre\":[\"theatre\",\"théâtre\"],"
+                + "\"entertainment.spectacles\":[\"spectacle\",\"tv show\"],"
+                + "\"entertainment.blindtest\":[\"blind test\"],"
+                + "\"entertainment.karaoke\":[\"karaoke\",\"karaoké\"]}";
+        CategoryRules classifier = new CategoryRules();
+        try {
+            classifier.configure(rules);
+            long startNs = System.nanoTime();
+            classifier.classify(names, rows.toString());
+            long coldMs = (System.nanoTime() - startNs) / 1000000;
+            startNs = System.nanoTime();
+            classifier.classify(names, rows.toString());
+            long warmMs = (System.nanoTime() - startNs) / 1000000;
+            startNs = System.nanoTime();
+            classifier.configure(rules.replace("\"golf\"", "\"golf\",\"cyclisme\""));
+            long editMs = (System.nanoTime() - startNs) / 1000000;
+            String result = "{\"names\":" + names + ",\"threads\":" + THREADS + ",\"coldMs\":" + coldMs
+                    + ",\"warmMs\":" + warmMs + ",\"editMs\":" + editMs + "}";
+            Log.d(TAG, "benchmark " + result);
+            return result;
+        } finally {
+            classifier.mPool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,656 @@
+package fr.blanquer.freeiptv;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Duplicate detection for VOD and series. Titles are normalised here with the
+ * same rules as browse.js cleanTitle/_normalizeDedupTitle, once per distinct
+ * title: an index() of a refreshed catalog only normalises the titles it has
+ * not seen before. Keys and clean titles are interned to ints and groups are
+ * built with int arrays, so a regroup is a linear pass whatever cache shape
+ * the streams came from. JS keeps the stream objects and maps the returned
+ * row indices back onto them (see browse.js _preprocessStreams).
+ */
+public class DedupIndex {
+    private static final String TAG = "DedupIndex";
+    private static final int YEAR_DELTA_MAX = 2;
+    private static final char FIELD_SEP = '\u001f';
+    private static final char ROW_SEP = '\u001e';
+    private static final String CACHE_FILE = "dedup-titles.bin";
+    private static final int CACHE_FORMAT = 1;
+    private static final int MAX_CACHED_TITLE = 4096;
+    // The fixed tokens are ASCII, and JS /i without the u flag never folds a
+    // non-ASCII character onto one, so ASCII folding is both exact and cheaper.
+    private static final int CASE = Pattern.CASE_INSENSITIVE;
+    private static final int WORDS_CASE = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+    private static final Pattern LEADING_INVISIBLE = Pattern.compile("^[\\u200E\\u200F\\u200B\\u200C\\u200D\\uFEFF\\s]+");
+    private static final Pattern BRACKET_PREFIX = Pattern.compile("^\\s*\\[\\s*(?:MULTI-?LANG|PT-?BR|EX-?YU|EXYU|"
+            + "ALB|FIL|VOSTFR|VOST|VFF|MULTI|FR|EN|DE|ES|IT|PT|NL|PL|RU|TR|AR|ZH|JA|KO|HI|TH|VI|ID|MS|SV|NO|DA|FI|"
+            + "CS|SK|HU|RO|BG|HR|SR|SL|SI|UK|EL|GR|HE|FA|UR|BN|TA|TE|MR|GU|KN|ML|PA|NE|MY|KM|LO|MN|KA|AM|SW|SC|ZU|"
+            + "XH|AF|EU|CA|GL|CY|GA|GD|MT|IS|LB|MK|SQ|BS|ET|LV|LT|AZ|KK|UZ|TG|KY|TK|PS|SD|KU|EO|LA|US|GB|IE|AU|NZ|"
+            + "BR|MX|CL|CO|PE|VE|IN|PK|BD|LK|NP|IR|IL|JP|CN|TW|HK|SG|PH|KR|GE|SE|DK|ZA|NG|KE|GH|EG|MA|DZ|TN|SA|AE|"
+            + "QA|KW|IQ|SY|JO|YE|RS|BA|ME|CZ|BY|KZ|CH|VF|VO)\\s*\\]\\s*", CASE);
+    private static final Pattern REGION_PIPE_PREFIX = Pattern.compile("^(?:24/7|EXYU|EX-?YU)\\s*-?\\s*\\|\\s*", CASE);
+    private static final Pattern QUALITY_PREFIX = Pattern.compile("^(4K|3D|SD|HD|FHD|UHD|DVB|DBV)[-|\\s]+", CASE);
+    private static final Pattern COMPOUND_PREFIX = Pattern.compile("^(?:EU|AF|AS|NA|SA|OC|24/7|VIP|EST|INT|EX-YU|"
+            + "EXYU|HK|LA|MA|AR|SE|DK|NO|FI|LU)[-\\s|]+(?:FR|EN|DE|ES|IT|PT|NL|PL|RU|TR|AR|UK|US|CA|BE|CH|GR|JP|KR|"
+            + "CN|HU|RO|CZ|SK|HR|SR|BG|FI|SE|DK|NO|IE|AUS|NZ|IN|HK|TW|SG|IL|IR|MX|BR|AT)[-\\s|]+", CASE);
+    private static final Pattern CATEGORY_PREFIX = Pattern.compile(
+            "^(?:(?:EU|AF|24/7)[-\\s]*\\|?\\s*)?([A-Za-z]{2,3})[-\\s]*\\|\\s*", CASE);
+    private static final Pattern STREAM_PREFIX = Pattern.compile("^(?:24/7\\|\\s*)?(?:(?:FR|EN|DE|ES|IT|PT|NL|PL|"
+            + "RU|TR|AR|ZH|JA|KO|HI|TH|VI|ID|MS|FIL|SV|NO|DA|FI|CS|SK|HU|RO|BG|HR|SR|SL|UK|EL|HE|FA|UR|BN|TA|TE|MR|"
+            + "GU|KN|ML|PA|NE|SI|MY|KM|LO|MN|KA|AM|SW|ZU|XH|AF|EU|CA|GL|CY|GA|GD|MT|IS|LB|MK|SQ|BS|ET|LV|LT|AZ|KK|"
+            + "UZ|TG|KY|TK|PS|SD|KU|EO|VFF|VF|VO|VOST|VOSTFR|MULTI)[-:\\s]+)", CASE);
+    private static final Pattern QUALITY_PARENS = Pattern.compile(
+            "\\s*\\([^)]*(?:4K|8K|2160P?|1080P?|720P?|UHD|HEVC|FHD)[^)]*\\)\\s*", CASE);
+    private static final Pattern[] PREFIXES = {
+            BRACKET_PREFIX, REGION_PIPE_PREFIX, QUALITY_PREFIX, COMPOUND_PREFIX, CATEGORY_PREFIX, STREAM_PREFIX };
+
+    private static final Pattern YEAR_PARENS = Pattern.compile("\\s*\\((?:19|20)\\d{2}\\)");
+    private static final Pattern RELEASE_PARENS = Pattern.compile("\\s*\\((?:720p|1080p|2160p|4K|UHD|HDR|HDR10|"
+            + "HDTV|WEB-?DL|BluRay|BDRip|DVDRip|VOSTFR|VO|VF|MULTI)\\)", CASE);
+    private static final Pattern YEAR_END = Pattern.compile("[-\\s]+(?:19|20)\\d{2}\\s*$");
+    private static final Pattern QUALITY_TAGS = Pattern.compile(
+            "\\s*(720p|1080p|2160p|4K|UHD|HDR|HDR10|HDTV|WEB-?DL|BluRay|BDRip|DVDRip)\\s*", CASE);
+    private static final Pattern SUBTITLE_MARKER = Pattern.compile("\\s*\\b(?:SUBT?|SUB|VOSTFR?|VOST)\\s+(?:AR|FR|"
+            + "EN|ES|IT|PT|DE|NL|TR|RU|GR|EL|FA|HE|HI|ZH|JA|KO|PL|RO|MULTI)\\b\\s*", CASE);
+    private static final Pattern QUALITY_TOKENS = Pattern.compile("\\s*\\b(?:FULL[\\s-]?HD|FHD|UHD|HD|SD|4K|8K|2K|"
+            + "HEVC|H[\\s.]?26[45]|X26[45]|VOSTFR|VOST|VOF|VFF|VFQ|VF|VO|MULTI|TRUEFRENCH|SUBT)\\b\\s*", CASE);
+    private static final Pattern VOSTFR = Pattern.compile("VOSTFR|VO-?STFR|VOST\\b", CASE);
+    private static final Pattern SEASON_EPISODE = Pattern.compile("\\s*S\\d+\\s*E\\d+\\s*", CASE);
+    private static final Pattern EMPTY_PARENS = Pattern.compile("\\s*\\(\\s*\\)\\s*");
+    private static final Pattern MULTI_SPACE = Pattern.compile("\\s{2,}");
+    private static final Pattern TRAILING_DASH = Pattern.compile("[-\\s]+$");
+    private static final Pattern YEAR_IN_PARENS = Pattern.compile("\\((\\d{4})\\)");
+    private static final Pattern YEAR_AT_END = Pattern.compile("[-\\s]((?:19|20)\\d{2})\\s*$");
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("[\\u0300-\\u036f]");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9\\s]");
+    private static final Pattern KEY_SUBTITLE = Pattern.compile("\\b(?:subt?|sub|vostfr?|vost)\\s+[a-z]{2,3}\\b");
+    private static final Pattern KEY_QUALITY = Pattern.compile(
+            "\\b(fhd|fullhd|uhd|hd|sd|hq|hevc|h26[45]|x26[45]|vof|vff|vfq|vf|vostfr|vost|vo|subt|multi|truefrench)\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /** Normalised form of one raw title. */
+    static final class Title {
+        final String cleanTitle;
+        final String year;
+        final String key;
+
+        Title(String cleanTitle, String year) {
+            this.cleanTitle = cleanTitle;
+            this.year = year;
+            this.key = "title:" + cleanTitle + "|" + year;
+        }
+    }
+
+    /** Last index() of a section plus the groups of the last group() call. */
+    private static final class Scope {
+        final List<String> keys = new ArrayList<>();
+        final Map<String, Integer> keyIndex = new HashMap<>();
+        final List<String> cleanTitles = new ArrayList<>();
+        final Map<String, Integer> cleanTitleIndex = new HashMap<>();
+        String[] ids = new String[0];
+        String[] titles = new String[0];
+        long[] numericIds = new long[0];
+        int[] keyOf = new int[0];
+        int[] cleanTitleOf = new int[0];
+        boolean[] byTitle = new boolean[0];
+        int[] groupOf = new int[0];
+        int[][] members = new int[0][];
+    }
+
+    private final File mCacheFile;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, Scope> mScopes = new HashMap<>();
+    private Map<String, Title> mTitles;
+    private String mWords = "";
+    private Pattern mLangTags;
+    private Pattern mSeason;
+    private Pattern mPart;
+
+    public DedupIndex(Context context) {
+        this(new File(context.getFilesDir(), CACHE_FILE));
+    }
+
+    private DedupIndex(File cacheFile) {
+        mCacheFile = cacheFile;
+    }
+
+    /**
+     * Sets the locale word lists cleanTitle strips (Regex.init in regex.js):
+     * {"langTags":[...], "season":[...], "part":[...]}. Cached normalisations
+     * made with other lists are dropped.
+     */
+    public synchronized void configure(String wordsJson) {
+        if (wordsJson.equals(mWords)) return;
+        try {
+            JSONObject words = new JSONObject(wordsJson);
+            String langTags = alternation(words.optJSONArray("langTags"));
+            String season = alternation(words.optJSONArray("season"));
+            String part = alternation(words.optJSONArray("part"));
+            mLangTags = langTags == null ? null : Pattern.compile("\\s*\\b(" + langTags + ")\\b\\s*", WORDS_CASE);
+            mSeason = season == null ? null : Pattern.compile("\\s*(" + season + ")\\s*\\d+\\s*", WORDS_CASE);
+            mPart = part == null ? null : Pattern.compile("\\s*-?\\s*(" + part + ")\\s*\\d+\\s*", WORDS_CASE);
+        } catch (JSONException e) {
+            Log.e(TAG, "configure: " + e.getMessage());
+            return;
+        }
+        mWords = wordsJson;
+        mTitles = null;
+    }
+
+    private static String alternation(JSONArray words) {
+        if (words == null || words.length() == 0) return null;
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < words.length(); i++) {
+            if (out.length() > 0) out.append('|');
+            out.append(Pattern.quote(words.optString(i)));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Computes the dedup fields of a section's streams. rows holds count
+     * records separated by ROW_SEP, each "id FIELD_SEP title FIELD_SEP tmdb":
+     * splitting that is far cheaper than parsing 20k JSON arrays. Returns
+     * {keys, cleanTitles, years, rows, normalized} where rows holds one
+     * [keyIndex, cleanTitleIndex, yearIndex] triple per record (flattened)
+     * into the three string tables, or null if the records do not add up.
+     */
+    public synchronized String index(String section, int count, String rows) {
+        long startNs = System.nanoTime();
+        if (mTitles == null) mTitles = readCache();
+        Scope scope = new Scope();
+        scope.ids = new String[count];
+        scope.titles = new String[count];
+        scope.numericIds = new long[count];
+        scope.keyOf = new int[count];
+        scope.cleanTitleOf = new int[count];
+        scope.byTitle = new boolean[count];
+        int[] yearOf = new int[count];
+        List<String> years = new ArrayList<>();
+        Map<String, Integer> yearIndex = new HashMap<>();
+        int normalized = 0;
+        int at = 0;
+        for (int i = 0; i < count; i++) {
+            int end = rows.indexOf(ROW_SEP, at);
+            if (end < 0) end = rows.length();
+            int idEnd = rows.indexOf(FIELD_SEP, at);
+            int titleEnd = idEnd < 0 ? -1 : rows.indexOf(FIELD_SEP, idEnd + 1);
+            if (at > rows.length() || titleEnd < 0 || titleEnd > end) {
+                Log.e(TAG, "index: malformed record " + i + " of " + count);
+                return "null";
+            }
+            String id = rows.substring(at, idEnd);
+            String title = rows.substring(idEnd + 1, titleEnd);
+            String tmdb = rows.substring(titleEnd + 1, end).trim();
+            at = end + 1;
+            Title normal = mTitles.get(title);
+            if (normal == null) {
+                normal = normalize(title);
+                mTitles.put(title, normal);
+                normalized++;
+            }
+            boolean byTitle = tmdb.isEmpty() || tmdb.equals("0");
+            String key = byTitle ? normal.key : "tmdb:" + tmdb;
+            scope.ids[i] = id;
+            scope.titles[i] = title;
+            scope.numericIds[i] = leadingNumber(id);
+            scope.keyOf[i] = intern(key, scope.keys, scope.keyIndex);
+            scope.cleanTitleOf[i] = intern(normal.cleanTitle, scope.cleanTitles, scope.cleanTitleIndex);
+            scope.byTitle[i] = byTitle;
+            yearOf[i] = intern(normal.year, years, yearIndex);
+        }
+        if (at < rows.length()) {
+            Log.e(TAG, "index: more records than " + count);
+            return "null";
+        }
+        mScopes.put(section, scope);
+        if (normalized > 0) writeCache();
+        StringBuilder out = new StringBuilder(count * 12);
+        out.append("{\"keys\":").append(new JSONArray(scope.keys))
+                .append(",\"cleanTitles\":").append(new JSONArray(scope.cleanTitles))
+                .append(",\"years\":").append(new JSONArray(years))
+                .append(",\"normalized\":").append(normalized)
+                .append(",\"rows\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) out.append(',');
+            out.append(scope.keyOf[i]).append(',').append(scope.cleanTitleOf[i]).append(',').append(yearOf[i]);
+        }
+        out.append("]}");
+        Log.d(TAG, "Indexed " + count + " " + section + " streams (" + normalized + " titles normalised, "
+                + scope.keys.size() + " keys) in " + (System.nanoTime() - startNs) / 1000000 + " ms");
+        return out.toString();
+    }
+
+    /**
+     * Groups the given rows of the last index() (the streams left after
+     * category and quality filtering). Same-title keys whose years are at most
+     * YEAR_DELTA_MAX apart are merged into the biggest one, and members are
+     * ordered by numeric stream id. Returns a flat int array: for each group,
+     * its key index, its size, then the members as positions in rowList (a
+     * comma-separated list of record numbers).
+     */
+    public synchronized String group(String section, String rowList) {
+        long startNs = System.nanoTime();
+        Scope scope = mScopes.get(section);
+        if (scope == null) return "null";
+        int[] rows = parseRows(rowList, scope.ids.length);
+        if (rows == null) {
+            Log.e(TAG, "group: bad row list for " + section);
+            return "null";
+        }
+        int[][] groups = buildGroups(scope, rows);
+        scope.groupOf = new int[scope.ids.length];
+        Arrays.fill(scope.groupOf, -1);
+        scope.members = new int[groups.length][];
+        StringBuilder out = new StringBuilder(rows.length * 8);
+        out.append('[');
+        int groupCount = 0;
+        for (int g = 0; g < groups.length; g++) {
+            int[] group = groups[g];
+            if (group == null) continue;
+            int[] members = new int[group.length - 1];
+            if (groupCount++ > 0) out.append(',');
+            out.append(group[0]).append(',').append(members.length);
+            for (int m = 1; m < group.length; m++) {
+                int row = rows[group[m]];
+                members[m - 1] = row;
+                scope.groupOf[row] = g;
+                out.append(',').append(group[m]);
+            }
+            scope.members[g] = members;
+        }
+        out.append(']');
+        Log.d(TAG, "Grouped " + rows.length + " " + section + " streams into " + groupCount + " groups in "
+                + (System.nanoTime() - startNs) / 1000000 + " ms");
+        return out.toString();
+    }
+
+    /** Ids of the streams grouped with the given one (itself included), as a JSON array. */
+    public synchronized String versions(String section, String id) {
+        Scope scope = mScopes.get(section);
+        if (scope == null) return "[]";
+        JSONArray out = new JSONArray();
+        for (int row = 0; row < scope.ids.length; row++) {
+            if (scope.groupOf[row] < 0 || !scope.ids[row].equals(id)) continue;
+            for (int member : scope.members[scope.groupOf[row]]) out.put(scope.ids[member]);
+            break;
+        }
+        return out.toString();
+    }
+
+    public synchronized void release(String section) {
+        mScopes.remove(section);
+    }
+
+    /** Drops every index; the title cache is reloaded from disk on the next index(). */
+    public synchronized void releaseAll() {
+        mScopes.clear();
+        mTitles = null;
+    }
+
+    private static int[] parseRows(String rowList, int limit) {
+        if (rowList.isEmpty()) return new int[0];
+        int count = 1;
+        for (int i = 0; i < rowList.length(); i++) {
+            if (rowList.charAt(i) == ',') count++;
+        }
+        int[] rows = new int[count];
+        int n = 0;
+        int value = -1;
+        for (int i = 0; i <= rowList.length(); i++) {
+            char c = i < rowList.length() ? rowList.charAt(i) : ',';
+            if (c == ',') {
+                if (value < 0 || value >= limit) return null;
+                rows[n++] = value;
+                value = -1;
+            } else if (c >= '0' && c <= '9' && value < limit) {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+            } else {
+                return null;
+            }
+        }
+        return rows;
+    }
+
+    // Normalised titles of every indexed catalog, so a cold start does not
+    // redo the regex work for titles seen in a previous session.
+    private Map<String, Title> readCache() {
+        Map<String, Title> titles = new HashMap<>();
+        if (mCacheFile == null || !mCacheFile.exists()) return titles;
+        long startNs = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mCacheFile)))) {
+            if (in.readInt() != CACHE_FORMAT || !in.readUTF().equals(mWords)) return titles;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String title = in.readUTF();
+                titles.put(title, new Title(in.readUTF(), in.readUTF()));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "readCache: " + e.getMessage());
+            titles.clear();
+        }
+        Log.d(TAG, "Loaded " + titles.size() + " cached titles in " + (System.nanoTime() - startNs) / 1000000 + " ms");
+        return titles;
+    }
+
+    // Keeps only the titles of the current indexes, written off the bridge thread.
+    private void writeCache() {
+        if (mCacheFile == null) return;
+        Map<String, Title> live = new HashMap<>();
+        for (Scope scope : mScopes.values()) {
+            for (String title : scope.titles) {
+                if (title.length() <= MAX_CACHED_TITLE) live.put(title, mTitles.get(title));
+            }
+        }
+        if (live.size() * 2 < mTitles.size()) mTitles = new HashMap<>(live);
+        String words = mWords;
+        mExecutor.execute(() -> {
+            File temp = new File(mCacheFile.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(CACHE_FORMAT);
+                out.writeUTF(words);
+                out.writeInt(live.size());
+                for (Map.Entry<String, Title> entry : live.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue().cleanTitle);
+                    out.writeUTF(entry.getValue().year);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "writeCache: " + e.getMessage());
+                temp.delete();
+                return;
+            }
+            if (!temp.renameTo(mCacheFile)) temp.delete();
+        });
+    }
+
+    /**
+     * Returns one entry per key, in order of first appearance: the key index
+     * followed by positions into rows, or null for keys merged into another.
+     */
+    private static int[][] buildGroups(Scope scope, int[] rows) {
+        int keyCount = scope.keys.size();
+        // Keys in order of first appearance, then member counts per key.
+        int[] slotOfKey = new int[keyCount];
+        Arrays.fill(slotOfKey, -1);
+        int[] keyOfSlot = new int[keyCount];
+        int[] sizes = new int[keyCount];
+        int slots = 0;
+        for (int row : rows) {
+            int key = scope.keyOf[row];
+            if (slotOfKey[key] < 0) {
+                slotOfKey[key] = slots;
+                keyOfSlot[slots++] = key;
+            }
+            sizes[slotOfKey[key]]++;
+        }
+        int[][] groups = new int[slots][];
+        int[] fill = new int[slots];
+        for (int s = 0; s < slots; s++) {
+            groups[s] = new int[sizes[s] + 1];
+            groups[s][0] = keyOfSlot[s];
+            fill[s] = 1;
+        }
+        int[] firstRowOfSlot = new int[slots];
+        for (int p = 0; p < rows.length; p++) {
+            int slot = slotOfKey[scope.keyOf[rows[p]]];
+            if (fill[slot] == 1) firstRowOfSlot[slot] = rows[p];
+            groups[slot][fill[slot]++] = p;
+        }
+
+        // Title keys bucketed by clean title, slots kept in appearance order.
+        int titleCount = scope.cleanTitles.size();
+        int[] bucketHead = new int[titleCount];
+        int[] bucketSize = new int[titleCount];
+        Arrays.fill(bucketHead, -1);
+        int[] nextInBucket = new int[slots];
+        int[] bucketTail = new int[titleCount];
+        for (int s = 0; s < slots; s++) {
+            int row = firstRowOfSlot[s];
+            if (!scope.byTitle[row]) continue;
+            int title = scope.cleanTitleOf[row];
+            nextInBucket[s] = -1;
+            if (bucketHead[title] < 0) bucketHead[title] = s;
+            else nextInBucket[bucketTail[title]] = s;
+            bucketTail[title] = s;
+            bucketSize[title]++;
+        }
+        for (int s = 0; s < slots; s++) {
+            int row = firstRowOfSlot[s];
+            if (!scope.byTitle[row]) continue;
+            int title = scope.cleanTitleOf[row];
+            if (bucketHead[title] != s || bucketSize[title] < 2) continue;
+            mergeBucket(scope, groups, firstRowOfSlot, nextInBucket, s);
+        }
+
+        for (int[] group : groups) {
+            if (group != null) sortById(scope, rows, group);
+        }
+        return groups;
+    }
+
+    private static void mergeBucket(Scope scope, int[][] groups, int[] firstRowOfSlot, int[] nextInBucket, int head) {
+        int minYear = Integer.MAX_VALUE;
+        int maxYear = Integer.MIN_VALUE;
+        int withYear = 0;
+        int anchorWithYear = -1;
+        int anchorAny = -1;
+        for (int s = head; s >= 0; s = nextInBucket[s]) {
+            int year = yearValue(scope, firstRowOfSlot[s]);
+            if (year > 0) {
+                withYear++;
+                minYear = Math.min(minYear, year);
+                maxYear = Math.max(maxYear, year);
+                if (anchorWithYear < 0 || groups[s].length > groups[anchorWithYear].length) anchorWithYear = s;
+            }
+            if (anchorAny < 0 || groups[s].length > groups[anchorAny].length) anchorAny = s;
+        }
+        if (withYear >= 2 && maxYear - minYear > YEAR_DELTA_MAX) return;
+        int anchor = anchorWithYear >= 0 ? anchorWithYear : anchorAny;
+        int total = 0;
+        for (int s = head; s >= 0; s = nextInBucket[s]) total += groups[s].length - 1;
+        int[] merged = Arrays.copyOf(groups[anchor], total + 1);
+        int fill = groups[anchor].length;
+        for (int s = head; s >= 0; s = nextInBucket[s]) {
+            if (s == anchor) continue;
+            System.arraycopy(groups[s], 1, merged, fill, groups[s].length - 1);
+            fill += groups[s].length - 1;
+            groups[s] = null;
+        }
+        groups[anchor] = merged;
+    }
+
+    // Stable insertion sort on numeric id: groups are small and mostly sorted already.
+    private static void sortById(Scope scope, int[] rows, int[] group) {
+        for (int i = 2; i < group.length; i++) {
+            int position = group[i];
+            long id = scope.numericIds[rows[position]];
+            int j = i - 1;
+            while (j >= 1 && scope.numericIds[rows[group[j]]] > id) {
+                group[j + 1] = group[j];
+                j--;
+            }
+            group[j + 1] = position;
+        }
+    }
+
+    private static int yearValue(Scope scope, int row) {
+        String key = scope.keys.get(scope.keyOf[row]);
+        int sep = key.lastIndexOf('|');
+        return sep < 0 ? 0 : (int) leadingNumber(key.substring(sep + 1));
+    }
+
+    private static int intern(String value, List<String> table, Map<String, Integer> index) {
+        Integer at = index.get(value);
+        if (at == null) {
+            at = table.size();
+            table.add(value);
+            index.put(value, at);
+        }
+        return at;
+    }
+
+    private static long leadingNumber(String value) {
+        long number = 0;
+        for (int i = 0; i < value.length() && i < 18; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') break;
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    // Each pass is skipped when the text lacks a character every match needs;
+    // most titles have no digits, parentheses or accents.
+    Title normalize(String title) {
+        String year = extractYear(title);
+        String s = title;
+        int lastPipe = s.lastIndexOf('|');
+        if (lastPipe != -1) s = s.substring(lastPipe + 1);
+        s = cleanTitle(s).toLowerCase(Locale.ROOT);
+        if (!isAscii(s)) {
+            s = COMBINING_MARKS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("");
+        }
+        s = NON_ALNUM.matcher(s).replaceAll(" ");
+        if (s.contains("sub") || s.contains("vost")) s = KEY_SUBTITLE.matcher(s).replaceAll(" ");
+        s = KEY_QUALITY.matcher(s).replaceAll(" ");
+        s = WHITESPACE.matcher(s).replaceAll(" ").trim();
+        return new Title(s, year);
+    }
+
+    String cleanTitle(String title) {
+        String stripped = stripCategoryPrefix(title);
+        String s = stripped;
+        boolean digits = hasDigit(s);
+        if (s.indexOf('(') >= 0) {
+            if (digits) s = YEAR_PARENS.matcher(s).replaceAll("");
+            s = RELEASE_PARENS.matcher(s).replaceAll("");
+        }
+        if (digits) s = YEAR_END.matcher(s).replaceFirst("");
+        s = QUALITY_TAGS.matcher(s).replaceAll(" ");
+        if (containsIgnoreCase(s, "sub") || containsIgnoreCase(s, "vost")) {
+            s = SUBTITLE_MARKER.matcher(s).replaceAll(" ");
+        }
+        s = QUALITY_TOKENS.matcher(s).replaceAll(" ");
+        if (mLangTags != null) s = mLangTags.matcher(s).replaceAll("");
+        if (containsIgnoreCase(s, "vo")) s = VOSTFR.matcher(s).replaceFirst("");
+        if (digits) {
+            s = SEASON_EPISODE.matcher(s).replaceAll("");
+            if (mSeason != null) s = mSeason.matcher(s).replaceAll("");
+            if (mPart != null) s = mPart.matcher(s).replaceAll("");
+        }
+        if (s.indexOf('(') >= 0) s = EMPTY_PARENS.matcher(s).replaceAll(" ");
+        s = MULTI_SPACE.matcher(s).replaceAll(" ");
+        s = TRAILING_DASH.matcher(s).replaceFirst("").trim();
+        return s.isEmpty() ? stripped.trim() : s;
+    }
+
+    private static boolean hasDigit(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') return true;
+        }
+        return false;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    private static boolean containsIgnoreCase(String s, String ascii) {
+        for (int i = 0; i + ascii.length() <= s.length(); i++) {
+            if (s.regionMatches(true, i, ascii, 0, ascii.length())) return true;
+        }
+        return false;
+    }
+
+    static String stripCategoryPrefix(String title) {
+        if (title == null || title.isEmpty()) return "";
+        String clean = LEADING_INVISIBLE.matcher(title).replaceFirst("");
+        String result = clean;
+        for (Pattern prefix : PREFIXES) {
+            Matcher m = prefix.matcher(clean);
+            if (m.lookingAt() && m.end() > 0) {
+                result = clean.substring(m.end());
+                break;
+            }
+        }
+        return result.indexOf('(') < 0 ? result : QUALITY_PARENS.matcher(result).replaceAll("");
+    }
+
+    static String extractYear(String title) {
+        if (!hasDigit(title)) return "";
+        Matcher m = YEAR_IN_PARENS.matcher(title);
+        if (m.find()) return m.group(1);
+        m = YEAR_AT_END.matcher(title);
+        return m.find() ? m.group(1) : "";
+    }
+
+    /** Indexes and groups generated provider-like titles, nothing kept; returns timing JSON. */
+    public static String benchmark(int streams) {
+        String[] names = { "Inception", "Maman, j'ai rat\u00e9 l'avion !", "Le D\u00eener de cons", "The Matrix",
+                "Am\u00e9lie" };
+        String[] variants = { "FR| %s (%d)", "4K-UHD| %s (%d)", "FR| %s (%d) FHD MULTI", "EN| %s %d", "%s (%d) VOSTFR" };
+        StringBuilder rows = new StringBuilder();
+        StringBuilder all = new StringBuilder();
+        for (int i = 0; i < streams; i++) {
+            int title = i / variants.length;
+            String name = names[title % names.length] + " " + (title / names.length);
+            if (i > 0) {
+                rows.append(ROW_SEP);
+                all.append(',');
+            }
+            rows.append(streams - i).append(FIELD_SEP)
+                    .append(String.format(Locale.ROOT, variants[i % variants.length], name, 1980 + title % 40))
+                    .append(FIELD_SEP).append(i % 3 == 0 ? String.valueOf(title) : "");
+            all.append(i);
+        }
+        DedupIndex index = new DedupIndex((File) null);
+        index.configure("{}");
+        long startNs = System.nanoTime();
+        index.index("benchmark", streams, rows.toString());
+        long coldMs = (System.nanoTime() - startNs) / 1000000;
+        startNs = System.nanoTime();
+        index.index("benchmark", streams, rows.toString());
+        long warmMs = (System.nanoTime() - startNs) / 1000000;
+        startNs = System.nanoTime();
+        index.group("benchmark", all.toString());
+        long groupMs = (System.nanoTime() - startNs) / 1000000;
+        String result = "{\"streams\":" + streams + ",\"indexColdMs\":" + coldMs + ",\"indexWarmMs\":" + warmMs
+                + ",\"groupMs\":" + groupMs + "}";
+        Log.d(TAG, "benchmark " + result);
+        return result;
+    }
+}
@@ -0,0 +1,413 @@
+package fr.blanquer.freeiptv;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Log;
+import android.util.Xml;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * On-device XMLTV guide. The feed (plain or gzipped) is stream-parsed with a
+ * pull parser straight into SQLite, so memory stays flat whatever the file
+ * size, and the guide only asks for the window it displays (channels x time
+ * range). A new ingest is built in staging tables and swapped in at the end;
+ * the previous guide stays queryable meanwhile.
+ */
+public class EpgStore extends SQLiteOpenHelper {
+    private static final String TAG = "EpgStore";
+    private static final String DB_NAME = "epg.db";
+    private static final int DB_VERSION = 1;
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 60000;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int BATCH_SIZE = 5000;
+    // Programmes that ended before this are not worth storing.
+    private static final long KEEP_PAST_SECONDS = 2 * 24 * 3600;
+    // Upper bound of a programme's length, lets window queries use the
+    // (channel, start) index for the lower bound as well.
+    private static final long MAX_PROGRAMME_SECONDS = 12 * 3600;
+
+    // Redacted by sourceKey(): the XMLTV URL carries the Xtream credentials.
+    private static final String KEY_SOURCE = "source";
+    private static final String KEY_INGESTED_AT = "ingested_at";
+    private static final String KEY_PROGRAMMES = "programmes";
+    private static final String KEY_CHANNELS = "channels";
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean mIngesting = new AtomicBoolean(false);
+    private Consumer<String> mJsCallback;
+
+    public EpgStore(Context context) {
+        super(context.getApplicationContext(), DB_NAME, null, DB_VERSION);
+        // Lets the guide query the current data while an ingest is writing.
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE meta (key TEXT PRIMARY KEY, value TEXT)");
+        db.execSQL("CREATE TABLE channel (id TEXT PRIMARY KEY, name TEXT, icon TEXT)");
+        db.execSQL("CREATE TABLE programme (channel TEXT NOT NULL, start INTEGER NOT NULL, "
+                + "stop INTEGER NOT NULL, title TEXT, description TEXT)");
+        db.execSQL("CREATE INDEX programme_idx_0 ON programme (channel, start)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS meta");
+        db.execSQL("DROP TABLE IF EXISTS channel");
+        db.execSQL("DROP TABLE IF EXISTS programme");
+        onCreate(db);
+    }
+
+    public void setJsCallback(Consumer<String> callback) {
+        mJsCallback = callback;
+    }
+
+    /** Downloads and ingests an XMLTV feed in the background; no-op if one is already running. */
+    public void ingest(String url) {
+        if (!mIngesting.compareAndSet(false, true)) {
+            Log.d(TAG, "Ingest already running");
+            return;
+        }
+        mExecutor.execute(() -> {
+            long startMs = SystemClock.elapsedRealtime();
+            HostStats.Transfer transfer = HostStats.begin(url, HostStats.KIND_EPG);
+            try {
+                URLConnection conn = new URL(url).openConnection();
+                conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                conn.setReadTimeout(READ_TIMEOUT_MS);
+                conn.connect();
+                transfer.connected();
+                int count;
+                try (InputStream in = transfer.wrap(conn.getInputStream())) {
+                    transfer.firstByte();
+                    count = ingest(in, url);
+                }
+                transfer.done();
+                Log.d(TAG, "Ingested " + count + " programmes in " + (SystemClock.elapsedRealtime() - startMs) + " ms");
+                notifyJs("done(true," + count + ")");
+            } catch (Exception e) {
+                Log.e(TAG, "ingest: " + e.getMessage());
+                notifyJs("done(false,0)");
+            } finally {
+                transfer.failed();
+                mIngesting.set(false);
+            }
+        });
+    }
+
+    /** Parses an XMLTV stream into staging tables, then swaps them in. Returns the programme count. */
+    int ingest(InputStream raw, String source) throws IOException, XmlPullParserException {
+        SQLiteDatabase db = getWritableDatabase();
+        db.execSQL("DROP TABLE IF EXISTS channel_new");
+        db.execSQL("DROP TABLE IF EXISTS programme_new");
+        db.execSQL("CREATE TABLE channel_new (id TEXT PRIMARY KEY, name TEXT, icon TEXT)");
+        db.execSQL("CREATE TABLE programme_new (channel TEXT NOT NULL, start INTEGER NOT NULL, "
+                + "stop INTEGER NOT NULL, title TEXT, description TEXT)");
+        SQLiteStatement insertChannel = db.compileStatement(
+                "INSERT OR REPLACE INTO channel_new (id, name, icon) VALUES (?, ?, ?)");
+        SQLiteStatement insertProgramme = db.compileStatement(
+                "INSERT INTO programme_new (channel, start, stop, title, description) VALUES (?, ?, ?, ?, ?)");
+
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setInput(decompressIfNeeded(raw), "UTF-8");
+        long oldest = System.currentTimeMillis() / 1000 - KEEP_PAST_SECONDS;
+        int programmes = 0;
+        int channels = 0;
+        int skipped = 0;
+        int pending = 0;
+        String channel = null;
+        String name = null;
+        String icon = null;
+        String progChannel = null;
+        long start = 0;
+        long stop = 0;
+        String title = null;
+        String desc = null;
+        boolean inProgramme = false;
+        boolean inChannel = false;
+
+        db.beginTransaction();
+        try {
+            int event = parser.getEventType();
+            while (event != XmlPullParser.END_DOCUMENT) {
+                if (event == XmlPullParser.START_TAG) {
+                    String tag = parser.getName();
+                    if ("programme".equals(tag)) {
+                        inProgramme = true;
+                        progChannel = parser.getAttributeValue(null, "channel");
+                        start = parseTime(parser.getAttributeValue(null, "start"));
+                        stop = parseTime(parser.getAttributeValue(null, "stop"));
+                        title = null;
+                        desc = null;
+                    } else if (inProgramme && title == null && "title".equals(tag)) {
+                        title = parser.nextText();
+                    } else if (inProgramme && desc == null && "desc".equals(tag)) {
+                        desc = parser.nextText();
+                    } else if ("channel".equals(tag)) {
+                        inChannel = true;
+                        channel = parser.getAttributeValue(null, "id");
+                        name = null;
+                        icon = null;
+                    } else if (inChannel && name == null && "display-name".equals(tag)) {
+                        name = parser.nextText();
+                    } else if (inChannel && icon == null && "icon".equals(tag)) {
+                        icon = parser.getAttributeValue(null, "src");
+                    }
+                } else if (event == XmlPullParser.END_TAG) {
+                    String tag = parser.getName();
+                    if ("programme".equals(tag)) {
+                        inProgramme = false;
+                        if (progChannel == null || start <= 0 || stop <= start || stop < oldest) {
+                            skipped++;
+                        } else {
+                            insertProgramme.bindString(1, progChannel);
+                            insertProgramme.bindLong(2, start);
+                            insertProgramme.bindLong(3, stop);
+                            bindOrNull(insertProgramme, 4, title);
+                            bindOrNull(insertProgramme, 5, desc);
+                            insertProgramme.executeInsert();
+                            programmes++;
+                            pending++;
+                        }
+                    } else if ("channel".equals(tag)) {
+                        inChannel = false;
+                        if (channel != null) {
+                            insertChannel.bindString(1, channel);
+                            bindOrNull(insertChannel, 2, name);
+                            bindOrNull(insertChannel, 3, icon);
+                            insertChannel.executeInsert();
+                            channels++;
+                            pending++;
+                        }
+                    }
+                    if (pending >= BATCH_SIZE) {
+                        db.setTransactionSuccessful();
+                        db.endTransaction();
+                        db.beginTransaction();
+                        pending = 0;
+                    }
+                }
+                event = parser.next();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insertChannel.close();
+            insertProgramme.close();
+        }
+
+        long generation = System.currentTimeMillis();
+        db.execSQL("CREATE INDEX programme_idx_" + generation + " ON programme_new (channel, start)");
+        db.beginTransaction();
+        try {
+            db.execSQL("DROP TABLE channel");
+            db.execSQL("DROP TABLE programme");
+            db.execSQL("ALTER TABLE channel_new RENAME TO channel");
+            db.execSQL("ALTER TABLE programme_new RENAME TO programme");
+            putMeta(db, KEY_SOURCE, sourceKey(source));
+            putMeta(db, KEY_INGESTED_AT, String.valueOf(generation / 1000));
+            putMeta(db, KEY_PROGRAMMES, String.valueOf(programmes));
+            putMeta(db, KEY_CHANNELS, String.valueOf(channels));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (skipped > 0) Log.d(TAG, "Skipped " + skipped + " past or invalid programmes");
+        return programmes;
+    }
+
+    /**
+     * Returns the programmes of the given XMLTV channel ids overlapping
+     * [from, to) (unix seconds), in get_short_epg form: an object keyed by
+     * channel id, each an array of {start_timestamp, stop_timestamp, title,
+     * description} with base64 title and description.
+     */
+    public String query(String channelIdsJson, long from, long to) {
+        long startNs = System.nanoTime();
+        JSONObject result = new JSONObject();
+        try {
+            JSONArray ids = new JSONArray(channelIdsJson);
+            SQLiteDatabase db = getReadableDatabase();
+            String[] args = new String[4];
+            args[1] = String.valueOf(from - MAX_PROGRAMME_SECONDS);
+            args[2] = String.valueOf(to);
+            args[3] = String.valueOf(from);
+            for (int i = 0; i < ids.length(); i++) {
+                String id = ids.optString(i, null);
+                if (id == null || id.isEmpty() || result.has(id)) continue;
+                args[0] = id;
+                JSONArray listings = new JSONArray();
+                try (Cursor c = db.rawQuery("SELECT start, stop, title, description FROM programme "
+                        + "WHERE channel = ? AND start >= ? AND start < ? AND stop > ? ORDER BY start", args)) {
+                    while (c.moveToNext()) {
+                        JSONObject prog = new JSONObject();
+                        prog.put("start_timestamp", c.getLong(0));
+                        prog.put("stop_timestamp", c.getLong(1));
+                        prog.put("title", encode(c.getString(2)));
+                        prog.put("description", encode(c.getString(3)));
+                        listings.put(prog);
+                    }
+                }
+                result.put(id, listings);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "query: " + e.getMessage());
+        }
+        Log.d(TAG, "Window query " + result.length() + " channels in " + (System.nanoTime() - startNs) / 1000 + " us");
+        return result.toString();
+    }
+
+    /** Drops the stored guide and its source (factory reset), after any running ingest. */
+    public void clear() {
+        mExecutor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.execSQL("DELETE FROM meta");
+                db.execSQL("DELETE FROM channel");
+                db.execSQL("DELETE FROM programme");
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            Log.d(TAG, "Guide cleared");
+        });
+    }
+
+    public String getStatusJson() {
+        SQLiteDatabase db = getReadableDatabase();
+        JSONObject status = new JSONObject();
+        try {
+            String source = getMeta(db, KEY_SOURCE, "");
+            // Guides ingested before redaction still hold the raw URL.
+            status.put("source", source.contains("://") ? sourceKey(source) : source);
+            status.put("ingestedAt", Long.parseLong(getMeta(db, KEY_INGESTED_AT, "0")));
+            status.put("programmes", Long.parseLong(getMeta(db, KEY_PROGRAMMES, "0")));
+            status.put("channels", Long.parseLong(getMeta(db, KEY_CHANNELS, "0")));
+            status.put("ingesting", mIngesting.get());
+        } catch (JSONException e) {
+            Log.e(TAG, "status: " + e.getMessage());
+        }
+        return status.toString();
+    }
+
+    /**
+     * Identifies a feed without its credentials: the host plus a truncated
+     * SHA-256 of the full URL, so another account or feed on the same host
+     * still compares different.
+     */
+    public static String sourceKey(String url) {
+        if (url == null || url.isEmpty()) return "";
+        String host;
+        try {
+            host = new URL(url).getHost();
+        } catch (IOException e) {
+            host = "";
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(host).append('#');
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", digest[i] & 0xff));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return host + "#" + Integer.toHexString(url.hashCode());
+        }
+    }
+
+    private void notifyJs(String call) {
+        if (mJsCallback == null) return;
+        mJsCallback.accept("window.__epgNative&&window.__epgNative." + call);
+    }
+
+    private static InputStream decompressIfNeeded(InputStream raw) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(raw, READ_BUFFER_SIZE);
+        in.mark(2);
+        int b0 = in.read();
+        int b1 = in.read();
+        in.reset();
+        if (b0 == 0x1f && b1 == 0x8b) {
+            return new BufferedInputStream(new GZIPInputStream(in, READ_BUFFER_SIZE), READ_BUFFER_SIZE);
+        }
+        return in;
+    }
+
+    /** Parses XMLTV "YYYYMMDDhhmmss +hhmm" (offset optional, UTC by default) to unix seconds. */
+    static long parseTime(String value) {
+        if (value == null || value.length() < 14) return 0;
+        try {
+            int year = Integer.parseInt(value.substring(0, 4));
+            int month = Integer.parseInt(value.substring(4, 6));
+            int day = Integer.parseInt(value.substring(6, 8));
+            int hour = Integer.parseInt(value.substring(8, 10));
+            int minute = Integer.parseInt(value.substring(10, 12));
+            int second = Integer.parseInt(value.substring(12, 14));
+            long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+            String zone = value.substring(14).trim();
+            if (zone.length() >= 5 && (zone.charAt(0) == '+' || zone.charAt(0) == '-')) {
+                int offset = Integer.parseInt(zone.substring(1, 3)) * 3600 + Integer.parseInt(zone.substring(3, 5)) * 60;
+                seconds -= zone.charAt(0) == '+' ? offset : -offset;
+            }
+            return seconds;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Days since 1970-01-01 of a proleptic Gregorian date (H. Hinnant's algorithm).
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yoe = year - era * 400;
+        long doy = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static String encode(String value) {
+        if (value == null) return "";
+        return Base64.encodeToString(value.getBytes(StandardCharsets.UTF_8), Base64.NO_WRAP);
+    }
+
+    private static void bindOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) statement.bindNull(index);
+        else statement.bindString(index, value);
+    }
+
+    private static void putMeta(SQLiteDatabase db, String key, String value) {
+        db.execSQL("INSERT OR REPLACE INTO meta (key, value) VALUES (?, ?)", new Object[] { key, value });
+    }
+
+    private static String getMeta(SQLiteDatabase db, String key, String fallback) {
+        try (Cursor c = db.rawQuery("SELECT value FROM meta WHERE key = ?", new String[] { key })) {
+            return c.moveToFirst() ? c.getString(0) : fallback;
+        }
+    }
+}
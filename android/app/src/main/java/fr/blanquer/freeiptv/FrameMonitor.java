@@ -0,0 +1,261 @@
+package fr.blanquer.freeiptv;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-frame timing of the activity window, which is where the WebView draws.
+ * FrameMetrics (API 24+) gives each frame's duration and phases, on a
+ * thread of its own; older devices fall back to Choreographer frame
+ * intervals. Frames slower than the display interval are jank, three
+ * intervals severe, 700 ms frozen. Each frame carries what happened since
+ * the previous one: player events and other scripts delivered to JS,
+ * channel calls, garbage collections. Stats cover the last WINDOW frames:
+ * percentiles, counts and the worst frames. Off, nothing is registered.
+ */
+public class FrameMonitor {
+    private static final String TAG = "FrameMonitor";
+    private static final int WINDOW = 1200;
+    private static final int WORST_KEPT = 10;
+    private static final int SEVERE_INTERVALS = 3;
+    private static final long FROZEN_NS = 700000000L;
+    private static final String[] PHASES = {"input", "animation", "layout", "draw", "sync", "command", "swap"};
+
+    private static class Frame {
+        long at;
+        long durationNs;
+        long[] phasesNs;
+        int playerEvents;
+        int scripts;
+        int channelCalls;
+        int gcs;
+    }
+
+    private final Activity mActivity;
+    private final AtomicInteger mPlayerEvents = new AtomicInteger();
+    private final AtomicInteger mScripts = new AtomicInteger();
+    private final AtomicInteger mChannelCalls = new AtomicInteger();
+    private volatile boolean mEnabled;
+    private HandlerThread mMetricsThread;
+    private Window.OnFrameMetricsAvailableListener mMetricsListener;
+    private Choreographer.FrameCallback mFrameCallback;
+    private long mLastFrameNs;
+    private long mIntervalNs = 16666667L;
+    private int mLastGcCount = -1;
+
+    private final long[] mDurations = new long[WINDOW];
+    private int mNext;
+    private int mStored;
+    private long mFrames;
+    private long mJank;
+    private long mSevere;
+    private long mFrozen;
+    private long mStartedAt;
+    private final List<Frame> mWorst = new ArrayList<>();
+
+    public FrameMonitor(Activity activity) {
+        mActivity = activity;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /** Must run on the main thread. */
+    public void setEnabled(boolean enabled) {
+        if (enabled == mEnabled) return;
+        if (enabled) start();
+        else stop();
+    }
+
+    /** A script handed to the WebView (postJs). */
+    public void onScript(String js) {
+        if (!mEnabled) return;
+        if (js.startsWith("__avplay")) mPlayerEvents.incrementAndGet();
+        else mScripts.incrementAndGet();
+    }
+
+    /** A NativeChannel request. */
+    public void onChannelCall() {
+        if (mEnabled) mChannelCalls.incrementAndGet();
+    }
+
+    private void start() {
+        synchronized (this) {
+            Arrays.fill(mDurations, 0);
+            mNext = 0;
+            mStored = 0;
+            mFrames = 0;
+            mJank = 0;
+            mSevere = 0;
+            mFrozen = 0;
+            mWorst.clear();
+            mStartedAt = System.currentTimeMillis();
+        }
+        float refreshHz = mActivity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        if (refreshHz >= 10) mIntervalNs = (long) (1000000000L / refreshHz);
+        mPlayerEvents.set(0);
+        mScripts.set(0);
+        mChannelCalls.set(0);
+        mLastGcCount = gcCount();
+        mEnabled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            mMetricsThread = new HandlerThread("FrameMonitor");
+            mMetricsThread.start();
+            mMetricsListener = (window, metrics, dropped) -> {
+                long[] phases = {
+                        metrics.getMetric(FrameMetrics.INPUT_HANDLING_DURATION),
+                        metrics.getMetric(FrameMetrics.ANIMATION_DURATION),
+                        metrics.getMetric(FrameMetrics.LAYOUT_MEASURE_DURATION),
+                        metrics.getMetric(FrameMetrics.DRAW_DURATION),
+                        metrics.getMetric(FrameMetrics.SYNC_DURATION),
+                        metrics.getMetric(FrameMetrics.COMMAND_ISSUE_DURATION),
+                        metrics.getMetric(FrameMetrics.SWAP_BUFFERS_DURATION)
+                };
+                record(metrics.getMetric(FrameMetrics.TOTAL_DURATION), phases);
+            };
+            mActivity.getWindow().addOnFrameMetricsAvailableListener(mMetricsListener,
+                    new Handler(mMetricsThread.getLooper()));
+        } else {
+            mLastFrameNs = 0;
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    if (!mEnabled) return;
+                    if (mLastFrameNs != 0) record(frameTimeNanos - mLastFrameNs, null);
+                    mLastFrameNs = frameTimeNanos;
+                    Choreographer.getInstance().postFrameCallback(this);
+                }
+            };
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+        Log.d(TAG, "Started (" + source() + ", " + Math.round(refreshHz) + " Hz)");
+    }
+
+    private void stop() {
+        mEnabled = false;
+        if (mMetricsListener != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            try {
+                mActivity.getWindow().removeOnFrameMetricsAvailableListener(mMetricsListener);
+            } catch (IllegalArgumentException e) {
+                // Already removed with the window.
+            }
+            mMetricsListener = null;
+        }
+        if (mMetricsThread != null) {
+            mMetricsThread.quitSafely();
+            mMetricsThread = null;
+        }
+        if (mFrameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mFrameCallback = null;
+        }
+        Log.d(TAG, "Stopped");
+    }
+
+    private String source() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? "frameMetrics" : "choreographer";
+    }
+
+    // Cumulative GC count of the runtime, -1 where it is not exposed.
+    private static int gcCount() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return -1;
+        try {
+            return Integer.parseInt(Debug.getRuntimeStat("art.gc.gc-count"));
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private void record(long durationNs, long[] phasesNs) {
+        if (!mEnabled || durationNs <= 0) return;
+        Frame frame = new Frame();
+        frame.durationNs = durationNs;
+        frame.phasesNs = phasesNs;
+        frame.playerEvents = mPlayerEvents.getAndSet(0);
+        frame.scripts = mScripts.getAndSet(0);
+        frame.channelCalls = mChannelCalls.getAndSet(0);
+        int gcs = gcCount();
+        frame.gcs = gcs >= 0 && mLastGcCount >= 0 ? gcs - mLastGcCount : 0;
+        mLastGcCount = gcs;
+        synchronized (this) {
+            mDurations[mNext] = durationNs;
+            mNext = (mNext + 1) % WINDOW;
+            if (mStored < WINDOW) mStored++;
+            mFrames++;
+            if (durationNs > mIntervalNs) mJank++;
+            if (durationNs > mIntervalNs * SEVERE_INTERVALS) mSevere++;
+            if (durationNs >= FROZEN_NS) mFrozen++;
+            if (mWorst.size() < WORST_KEPT || durationNs > mWorst.get(mWorst.size() - 1).durationNs) {
+                frame.at = System.currentTimeMillis();
+                int index = 0;
+                while (index < mWorst.size() && mWorst.get(index).durationNs >= durationNs) index++;
+                mWorst.add(index, frame);
+                if (mWorst.size() > WORST_KEPT) mWorst.remove(WORST_KEPT);
+            }
+        }
+    }
+
+    private static double ms(long ns) {
+        return Math.round(ns / 10000.0) / 100.0;
+    }
+
+    /**
+     * {enabled, source, intervalMs, since, frames, jank, severe, frozen,
+     * window, p50Ms, p90Ms, p95Ms, p99Ms, maxMs, worst: [{at, ms,
+     * playerEvents, scripts, channelCalls, gcs, phases}]}
+     */
+    public synchronized String getJson() {
+        long[] sorted = Arrays.copyOf(mDurations, mStored);
+        Arrays.sort(sorted);
+        StringBuilder out = new StringBuilder(2048);
+        out.append("{\"enabled\":").append(mEnabled)
+                .append(",\"source\":\"").append(source())
+                .append("\",\"intervalMs\":").append(ms(mIntervalNs))
+                .append(",\"since\":").append(mStartedAt)
+                .append(",\"frames\":").append(mFrames)
+                .append(",\"jank\":").append(mJank)
+                .append(",\"severe\":").append(mSevere)
+                .append(",\"frozen\":").append(mFrozen)
+                .append(",\"window\":").append(mStored);
+        int[] percentiles = {50, 90, 95, 99};
+        for (int p : percentiles) {
+            long value = sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, sorted.length * p / 100)];
+            out.append(",\"p").append(p).append("Ms\":").append(ms(value));
+        }
+        out.append(",\"maxMs\":").append(ms(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+        out.append(",\"worst\":[");
+        for (int i = 0; i < mWorst.size(); i++) {
+            Frame frame = mWorst.get(i);
+            if (i > 0) out.append(',');
+            out.append("{\"at\":").append(frame.at)
+                    .append(",\"ms\":").append(ms(frame.durationNs))
+                    .append(",\"playerEvents\":").append(frame.playerEvents)
+                    .append(",\"scripts\":").append(frame.scripts)
+                    .append(",\"channelCalls\":").append(frame.channelCalls)
+                    .append(",\"gcs\":").append(frame.gcs);
+            if (frame.phasesNs != null) {
+                out.append(",\"phases\":{");
+                for (int p = 0; p < PHASES.length; p++) {
+                    if (p > 0) out.append(',');
+                    out.append('"').append(PHASES[p]).append("\":").append(ms(frame.phasesNs[p]));
+                }
+                out.append('}');
+            }
+            out.append('}');
+        }
+        return out.append("]}").toString();
+    }
+}
@@ -0,0 +1,330 @@
+package fr.blanquer.freeiptv;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Per-host transfer accounting for everything the app downloads: player
+ * segments, provider API calls, web updates, images, TMDB, EPG and
+ * playlists. Each host keeps one bucket per minute for the last hour
+ * (transfers, errors, bytes, time to first byte, connection setup, body
+ * throughput), summed over the requested window on read. The store is
+ * static so WebUpdateJobService and every component share it; at most
+ * MAX_HOSTS hosts are kept, the least recently used going first.
+ */
+public final class HostStats {
+    public static final String KIND_PLAYER = "player";
+    public static final String KIND_API = "api";
+    public static final String KIND_UPDATE = "update";
+    public static final String KIND_IMAGE = "image";
+    public static final String KIND_TMDB = "tmdb";
+    public static final String KIND_EPG = "epg";
+    public static final String KIND_PLAYLIST = "playlist";
+    public static final String KIND_WEB = "web";
+
+    private static final int MAX_HOSTS = 64;
+    private static final int MINUTES = 60;
+    // Bodies below this are mostly latency; they would skew the throughput.
+    private static final long MIN_THROUGHPUT_BYTES = 32 * 1024;
+
+    private static final class Bucket {
+        long minute = -1;
+        long transfers;
+        long errors;
+        long bytes;
+        long ttfbSumMs;
+        long ttfbCount;
+        long connectSumMs;
+        long connectCount;
+        long throughputBytes;
+        long throughputMs;
+    }
+
+    private static final class Host {
+        final Bucket[] buckets = new Bucket[MINUTES];
+        final TreeSet<String> kinds = new TreeSet<>();
+        long lastSeen;
+    }
+
+    private static final Map<String, Host> sHosts = new LinkedHashMap<String, Host>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Host> eldest) {
+            return size() > MAX_HOSTS;
+        }
+    };
+
+    private HostStats() {
+    }
+
+    /**
+     * Times one HTTP exchange: connecting() before each connect (the last
+     * hop of a redirect chain wins), connected(), firstByte() once the
+     * status line is in, then done() or failed(); a failed() after done()
+     * is ignored, so it can sit in a finally. Bodies read through wrap()
+     * are counted for done(). For bodies parsed as they stream in (EPG,
+     * playlists) the throughput is a floor.
+     */
+    public static final class Transfer {
+        private final String mKind;
+        private String mUrl;
+        private long mStartMs;
+        private long mConnectMs = -1;
+        private long mTtfbMs = -1;
+        private long mBytes;
+        private boolean mFinished;
+
+        Transfer(String url, String kind) {
+            mUrl = url;
+            mKind = kind;
+            mStartMs = SystemClock.elapsedRealtime();
+        }
+
+        public void connecting(String url) {
+            mUrl = url;
+            mStartMs = SystemClock.elapsedRealtime();
+            mConnectMs = -1;
+            mTtfbMs = -1;
+        }
+
+        public void connected() {
+            mConnectMs = SystemClock.elapsedRealtime() - mStartMs;
+        }
+
+        public void firstByte() {
+            mTtfbMs = SystemClock.elapsedRealtime() - mStartMs;
+        }
+
+        public InputStream wrap(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) mBytes++;
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int off, int len) throws IOException {
+                    int n = super.read(buffer, off, len);
+                    if (n > 0) mBytes += n;
+                    return n;
+                }
+            };
+        }
+
+        public void done() {
+            finish(mBytes, false);
+        }
+
+        public void done(long bytes) {
+            finish(bytes, false);
+        }
+
+        public void failed() {
+            finish(0, true);
+        }
+
+        /** Drops the transfer: stopped on purpose, not the host's fault. */
+        public void cancelled() {
+            mFinished = true;
+        }
+
+        private void finish(long bytes, boolean error) {
+            if (mFinished) return;
+            mFinished = true;
+            long totalMs = SystemClock.elapsedRealtime() - mStartMs;
+            long bodyMs = mTtfbMs >= 0 ? totalMs - mTtfbMs : -1;
+            record(mUrl, mKind, bytes, mConnectMs, mTtfbMs, bodyMs, error);
+        }
+    }
+
+    public static Transfer begin(String url, String kind) {
+        return new Transfer(url, kind);
+    }
+
+    static String hostOf(String url) {
+        if (url == null) return null;
+        Uri uri = Uri.parse(url);
+        String host = uri.getHost();
+        if (host == null) return null;
+        int port = uri.getPort();
+        return port > 0 ? host + ":" + port : host;
+    }
+
+    /**
+     * One finished transfer; times below 0 are unknown. bodyMs is the time
+     * spent reading the body after the first byte.
+     */
+    public static void record(String url, String kind, long bytes, long connectMs, long ttfbMs, long bodyMs,
+                              boolean error) {
+        String host = hostOf(url);
+        if (host == null) return;
+        long minute = SystemClock.elapsedRealtime() / 60000;
+        synchronized (sHosts) {
+            Host entry = sHosts.get(host);
+            if (entry == null) {
+                entry = new Host();
+                sHosts.put(host, entry);
+            }
+            entry.kinds.add(kind);
+            entry.lastSeen = System.currentTimeMillis();
+            int slot = (int) (minute % MINUTES);
+            Bucket bucket = entry.buckets[slot];
+            if (bucket == null || bucket.minute != minute) {
+                bucket = new Bucket();
+                bucket.minute = minute;
+                entry.buckets[slot] = bucket;
+            }
+            bucket.transfers++;
+            if (error) bucket.errors++;
+            bucket.bytes += Math.max(bytes, 0);
+            if (ttfbMs >= 0) {
+                bucket.ttfbSumMs += ttfbMs;
+                bucket.ttfbCount++;
+            }
+            if (connectMs >= 0) {
+                bucket.connectSumMs += connectMs;
+                bucket.connectCount++;
+            }
+            if (!error && bytes >= MIN_THROUGHPUT_BYTES && bodyMs > 0) {
+                bucket.throughputBytes += bytes;
+                bucket.throughputMs += bodyMs;
+            }
+        }
+    }
+
+    private static final class Summary {
+        String host;
+        String kinds;
+        long lastSeen;
+        long transfers;
+        long errors;
+        long bytes;
+        long ttfbMs = -1;
+        long connectMs = -1;
+        long bps = -1;
+
+        double errorRate() {
+            return transfers > 0 ? (double) errors / transfers : 0;
+        }
+    }
+
+    // Sums the buckets of the last windowMinutes; null when the host has none.
+    private static Summary summarize(String host, Host entry, int windowMinutes, long minute) {
+        Summary summary = new Summary();
+        long ttfbSum = 0, ttfbCount = 0, connectSum = 0, connectCount = 0, throughputBytes = 0, throughputMs = 0;
+        for (Bucket bucket : entry.buckets) {
+            if (bucket == null || bucket.minute <= minute - windowMinutes) continue;
+            summary.transfers += bucket.transfers;
+            summary.errors += bucket.errors;
+            summary.bytes += bucket.bytes;
+            ttfbSum += bucket.ttfbSumMs;
+            ttfbCount += bucket.ttfbCount;
+            connectSum += bucket.connectSumMs;
+            connectCount += bucket.connectCount;
+            throughputBytes += bucket.throughputBytes;
+            throughputMs += bucket.throughputMs;
+        }
+        if (summary.transfers == 0) return null;
+        summary.host = host;
+        summary.kinds = String.join(",", entry.kinds);
+        summary.lastSeen = entry.lastSeen;
+        if (ttfbCount > 0) summary.ttfbMs = ttfbSum / ttfbCount;
+        if (connectCount > 0) summary.connectMs = connectSum / connectCount;
+        if (throughputMs > 0) summary.bps = throughputBytes * 8000 / throughputMs;
+        return summary;
+    }
+
+    private static List<Summary> summaries(int windowMinutes) {
+        int window = Math.max(1, Math.min(windowMinutes, MINUTES));
+        long minute = SystemClock.elapsedRealtime() / 60000;
+        List<Summary> out = new ArrayList<>();
+        synchronized (sHosts) {
+            for (Map.Entry<String, Host> entry : sHosts.entrySet()) {
+                Summary summary = summarize(entry.getKey(), entry.getValue(), window, minute);
+                if (summary != null) out.add(summary);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * {windowMinutes, hosts: [{host, kinds, transfers, errors, bytes, bps,
+     * ttfbMs, connectMs, lastSeen}]}, busiest host first; -1 is unknown.
+     */
+    public static String getJson(int windowMinutes) {
+        List<Summary> hosts = summaries(windowMinutes);
+        Collections.sort(hosts, (a, b) -> Long.compare(b.transfers, a.transfers));
+        StringBuilder out = new StringBuilder(256 + hosts.size() * 160);
+        out.append("{\"windowMinutes\":").append(Math.max(1, Math.min(windowMinutes, MINUTES))).append(",\"hosts\":[");
+        for (int i = 0; i < hosts.size(); i++) {
+            Summary host = hosts.get(i);
+            if (i > 0) out.append(',');
+            out.append("{\"host\":").append(JSONObject.quote(host.host))
+                    .append(",\"kinds\":").append(JSONObject.quote(host.kinds))
+                    .append(",\"transfers\":").append(host.transfers)
+                    .append(",\"errors\":").append(host.errors)
+                    .append(",\"bytes\":").append(host.bytes)
+                    .append(",\"bps\":").append(host.bps)
+                    .append(",\"ttfbMs\":").append(host.ttfbMs)
+                    .append(",\"connectMs\":").append(host.connectMs)
+                    .append(",\"lastSeen\":").append(host.lastSeen).append('}');
+        }
+        return out.append("]}").toString();
+    }
+
+    /**
+     * Orders candidate URLs (mirrors of one stream or provider) best first:
+     * hosts that work, by time to first byte plus the time to move 1 MB,
+     * then hosts without data in the window, in their given order, then
+     * hosts failing more often than not. Returns a JSON array of the URLs.
+     */
+    public static String rank(String urlsJson, int windowMinutes) {
+        List<String> urls = new ArrayList<>();
+        try {
+            JSONArray list = new JSONArray(urlsJson);
+            for (int i = 0; i < list.length(); i++) urls.add(list.optString(i));
+        } catch (Exception e) {
+            return "[]";
+        }
+        Map<String, Summary> byHost = new LinkedHashMap<>();
+        for (Summary summary : summaries(windowMinutes)) byHost.put(summary.host, summary);
+        List<String> good = new ArrayList<>();
+        List<String> unknown = new ArrayList<>();
+        List<String> failing = new ArrayList<>();
+        Map<String, Double> cost = new LinkedHashMap<>();
+        for (String url : urls) {
+            Summary summary = byHost.get(hostOf(url));
+            if (summary == null) {
+                unknown.add(url);
+            } else if (summary.errorRate() > 0.5) {
+                failing.add(url);
+            } else {
+                double ttfb = summary.ttfbMs >= 0 ? summary.ttfbMs : 1000;
+                double transfer = summary.bps > 0 ? 8e9 / summary.bps : 2000;
+                double reliability = 1 - summary.errorRate();
+                cost.put(url, (ttfb + transfer) / (reliability * reliability));
+                good.add(url);
+            }
+        }
+        Collections.sort(good, (a, b) -> Double.compare(cost.get(a), cost.get(b)));
+        JSONArray out = new JSONArray();
+        for (String url : good) out.put(url);
+        for (String url : unknown) out.put(url);
+        for (String url : failing) out.put(url);
+        return out.toString();
+    }
+}
@@ -0,0 +1,446 @@
+package fr.blanquer.freeiptv;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk LRU for grid posters and channel logos. The grid asks for
+ * https://images.freeiptv.invalid/tile?w=&h=&url= (see browse.js
+ * gridImageUrl); the request is intercepted here and answered with the image
+ * downscaled to cover the tile and re-encoded to WebP. Concurrent requests
+ * for one image share a single fetch, recent failures are answered without
+ * going back to the network, and the rows below the viewport are prefetched
+ * in the background.
+ */
+public class ImageCache {
+    private static final String TAG = "ImageCache";
+    private static final String CACHE_DIR = "images";
+    private static final String HOST = "images.freeiptv.invalid";
+    private static final long MAX_DISK_BYTES = 96 * 1024 * 1024L;
+    private static final long TRIM_TARGET_BYTES = MAX_DISK_BYTES * 3 / 4;
+    private static final int MAX_IMAGE_BYTES = 8 * 1024 * 1024;
+    private static final int MAX_FAILURES = 1000;
+    private static final long FAILURE_TTL_MS = 10 * 60 * 1000L;
+    private static final int CONNECT_TIMEOUT_MS = 8000;
+    private static final int READ_TIMEOUT_MS = 15000;
+    private static final int MAX_REDIRECTS = 5;
+    private static final int PREFETCH_THREADS = 3;
+    private static final int MIN_TILE = 64;
+    private static final int WEBP_QUALITY = 80;
+
+    private static final Map<String, String> IMAGE_HEADERS = new HashMap<>();
+    private static final Map<String, String> ERROR_HEADERS = new HashMap<>();
+
+    static {
+        IMAGE_HEADERS.put("Cache-Control", "public, max-age=86400");
+        IMAGE_HEADERS.put("Access-Control-Allow-Origin", "*");
+        ERROR_HEADERS.put("Cache-Control", "no-store");
+        ERROR_HEADERS.put("Access-Control-Allow-Origin", "*");
+    }
+
+    private static class Entry {
+        final int status;
+        final String mime;
+        final byte[] data;
+
+        Entry(int status, String mime, byte[] data) {
+            this.status = status;
+            this.mime = mime;
+            this.data = data;
+        }
+    }
+
+    private final File mDir;
+    private final ExecutorService mPrefetch = Executors.newFixedThreadPool(PREFETCH_THREADS);
+    private final ExecutorService mMaintenance = Executors.newSingleThreadExecutor();
+    private final ConcurrentHashMap<String, FutureTask<Entry>> mInFlight = new ConcurrentHashMap<>();
+    private final Map<String, Long> mFailures = Collections.synchronizedMap(
+            new LinkedHashMap<String, Long>(64, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_FAILURES;
+                }
+            });
+    private final AtomicLong mDiskBytes = new AtomicLong(-1);
+    private final AtomicInteger mPrefetchGeneration = new AtomicInteger();
+    private final AtomicInteger mQueuedPrefetches = new AtomicInteger();
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mFetches = new AtomicLong();
+    private final AtomicLong mSharedFetches = new AtomicLong();
+    private final AtomicLong mFailed = new AtomicLong();
+    private final AtomicLong mBytesIn = new AtomicLong();
+    private final AtomicLong mBytesStored = new AtomicLong();
+    private volatile String mUserAgent;
+
+    public ImageCache(Context context) {
+        mDir = new File(context.getCacheDir(), CACHE_DIR);
+        mMaintenance.execute(() -> {
+            if (!mDir.isDirectory() && !mDir.mkdirs()) Log.e(TAG, "Cannot create " + mDir);
+            mDiskBytes.set(diskUsage());
+            trimIfNeeded();
+        });
+    }
+
+    /**
+     * Answers a tile request from the cache, fetching the image on a miss.
+     * Returns null for any other request, so the WebView loads it itself.
+     */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        Uri uri = request.getUrl();
+        if (!HOST.equals(uri.getHost()) || !"GET".equalsIgnoreCase(request.getMethod())) return null;
+        Map<String, String> headers = request.getRequestHeaders();
+        String userAgent = headers != null ? headers.get("User-Agent") : null;
+        if (userAgent != null) mUserAgent = userAgent;
+        String url = uri.getQueryParameter("url");
+        Entry entry = isHttp(url)
+                ? get(url, tile(parseInt(uri.getQueryParameter("w")), parseInt(uri.getQueryParameter("h"))))
+                : new Entry(400, "text/plain", new byte[0]);
+        boolean ok = entry.status == 200;
+        return new WebResourceResponse(entry.mime, null, entry.status, ok ? "OK" : "Error",
+                ok ? IMAGE_HEADERS : ERROR_HEADERS, new ByteArrayInputStream(entry.data));
+    }
+
+    /**
+     * Fetches ahead the images of the rows below the viewport, for a tile of
+     * the given size (device pixels). A new call supersedes the prefetches of
+     * the previous one that have not started.
+     */
+    public void prefetch(int tileWidth, int tileHeight, String urls) {
+        int[] tile = tile(tileWidth, tileHeight);
+        int generation = mPrefetchGeneration.incrementAndGet();
+        for (String url : split(urls)) {
+            if (!isHttp(url) || mInFlight.containsKey(key(url, tile)) || fileFor(url, tile).exists()) continue;
+            mQueuedPrefetches.incrementAndGet();
+            mPrefetch.execute(() -> {
+                mQueuedPrefetches.decrementAndGet();
+                if (mPrefetchGeneration.get() != generation) return;
+                get(url, tile);
+            });
+        }
+    }
+
+    public String getStatsJson() {
+        return "{\"diskBytes\":" + mDiskBytes.get()
+                + ",\"hits\":" + mHits.get()
+                + ",\"fetches\":" + mFetches.get()
+                + ",\"sharedFetches\":" + mSharedFetches.get()
+                + ",\"failed\":" + mFailed.get()
+                + ",\"bytesIn\":" + mBytesIn.get()
+                + ",\"bytesStored\":" + mBytesStored.get() + "}";
+    }
+
+    /**
+     * Forgets the recent failures and queued prefetches; the disk cache is
+     * kept. Returns how many entries were dropped.
+     */
+    public int releaseAll() {
+        mPrefetchGeneration.incrementAndGet();
+        int dropped = mQueuedPrefetches.get() + mFailures.size();
+        mFailures.clear();
+        return dropped;
+    }
+
+    private Entry get(String url, int[] tile) {
+        String key = key(url, tile);
+        File file = new File(mDir, key);
+        Entry cached = readEntry(file);
+        if (cached != null) {
+            mHits.incrementAndGet();
+            file.setLastModified(System.currentTimeMillis());
+            return cached;
+        }
+        Long failedAt = mFailures.get(key);
+        if (failedAt != null && System.currentTimeMillis() - failedAt < FAILURE_TTL_MS) {
+            return new Entry(404, "text/plain", new byte[0]);
+        }
+        FutureTask<Entry> task = new FutureTask<>(() -> fetchAndStore(url, tile, key, file));
+        FutureTask<Entry> running = mInFlight.putIfAbsent(key, task);
+        if (running != null) {
+            mSharedFetches.incrementAndGet();
+            task = running;
+        } else {
+            try {
+                task.run();
+            } finally {
+                mInFlight.remove(key);
+            }
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Entry(504, "text/plain", new byte[0]);
+        } catch (ExecutionException e) {
+            return new Entry(502, "text/plain", new byte[0]);
+        }
+    }
+
+    private Entry fetchAndStore(String url, int[] tile, String key, File file) {
+        mFetches.incrementAndGet();
+        HostStats.Transfer transfer = HostStats.begin(url, HostStats.KIND_IMAGE);
+        HttpURLConnection conn = null;
+        try {
+            conn = openFollowingRedirects(url, transfer);
+            int status = conn.getResponseCode();
+            if (status != 200) {
+                markFailed(key);
+                return new Entry(status >= 400 && status < 600 ? status : 502, "text/plain", new byte[0]);
+            }
+            String mime = mimeOf(conn.getContentType());
+            byte[] body;
+            try (InputStream in = conn.getInputStream()) {
+                body = readAll(in);
+            }
+            transfer.done(body.length);
+            mBytesIn.addAndGet(body.length);
+            if (mime == null || !mime.startsWith("image/")) {
+                // Providers answer a missing logo with an HTML page
+                markFailed(key);
+                return new Entry(404, "text/plain", new byte[0]);
+            }
+            Entry entry = tile != null ? downscale(mime, body, tile) : new Entry(200, mime, body);
+            store(file, entry);
+            return entry;
+        } catch (SocketTimeoutException e) {
+            markFailed(key);
+            return new Entry(504, "text/plain", new byte[0]);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "fetch " + url + ": " + e.getMessage());
+            markFailed(key);
+            return new Entry(502, "text/plain", new byte[0]);
+        } finally {
+            transfer.failed();
+            if (conn != null) conn.disconnect();
+        }
+    }
+
+    /**
+     * Scales the image down so it still covers the tile, then re-encodes it
+     * to WebP. Images already within the tile (including the 1x1 placeholders
+     * the grid detects by size) and formats Android cannot decode are kept
+     * as received.
+     */
+    private static Entry downscale(String mime, byte[] body, int[] tile) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(body, 0, body.length, bounds);
+        int width = bounds.outWidth;
+        int height = bounds.outHeight;
+        if (width <= 0 || height <= 0 || "image/gif".equals(mime) || "image/svg+xml".equals(mime)) {
+            return new Entry(200, mime, body);
+        }
+        float scale = Math.max((float) tile[0] / width, (float) tile[1] / height);
+        if (scale >= 1f) return new Entry(200, mime, body);
+        int targetWidth = Math.max(1, Math.round(width * scale));
+        int targetHeight = Math.max(1, Math.round(height * scale));
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        while (width / (options.inSampleSize * 2) >= targetWidth && height / (options.inSampleSize * 2) >= targetHeight) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap decoded = BitmapFactory.decodeByteArray(body, 0, body.length, options);
+        if (decoded == null) return new Entry(200, mime, body);
+        Bitmap scaled = decoded.getWidth() == targetWidth && decoded.getHeight() == targetHeight
+                ? decoded : Bitmap.createScaledBitmap(decoded, targetWidth, targetHeight, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        scaled.compress(webpFormat(), WEBP_QUALITY, out);
+        if (scaled != decoded) scaled.recycle();
+        decoded.recycle();
+        byte[] webp = out.toByteArray();
+        return webp.length > 0 && webp.length < body.length ? new Entry(200, "image/webp", webp) : new Entry(200, mime, body);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpFormat() {
+        return Build.VERSION.SDK_INT >= 30 ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+    }
+
+    private void markFailed(String key) {
+        mFailed.incrementAndGet();
+        mFailures.put(key, System.currentTimeMillis());
+    }
+
+    private HttpURLConnection openFollowingRedirects(String url, HostStats.Transfer transfer) throws IOException {
+        String current = url;
+        for (int i = 0; i <= MAX_REDIRECTS; i++) {
+            HttpURLConnection conn = (HttpURLConnection) new URL(current).openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setInstanceFollowRedirects(false);
+            if (mUserAgent != null) conn.setRequestProperty("User-Agent", mUserAgent);
+            transfer.connecting(current);
+            conn.connect();
+            transfer.connected();
+            int code = conn.getResponseCode();
+            transfer.firstByte();
+            if (code >= 300 && code < 400) {
+                String location = conn.getHeaderField("Location");
+                conn.disconnect();
+                if (location == null) throw new IOException("HTTP " + code + " without Location");
+                current = new URL(new URL(current), location).toString();
+                continue;
+            }
+            return conn;
+        }
+        throw new IOException("Too many redirects");
+    }
+
+    // Entries are "<mime>\n<bytes>", written to a temp file and renamed in place.
+    private void store(File file, Entry entry) {
+        File tmp = new File(mDir, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write((entry.mime + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(entry.data);
+        } catch (IOException e) {
+            Log.w(TAG, "store: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        mBytesStored.addAndGet(entry.data.length);
+        if (mDiskBytes.get() >= 0 && mDiskBytes.addAndGet(file.length()) > MAX_DISK_BYTES) {
+            mMaintenance.execute(this::trimIfNeeded);
+        }
+    }
+
+    private static Entry readEntry(File file) {
+        if (!file.isFile()) return null;
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] all = readAll(in);
+            int newline = -1;
+            for (int i = 0; i < Math.min(all.length, 64); i++) {
+                if (all[i] == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            if (newline <= 0) return null;
+            String mime = new String(all, 0, newline, StandardCharsets.US_ASCII);
+            return new Entry(200, mime, Arrays.copyOfRange(all, newline + 1, all.length));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void trimIfNeeded() {
+        if (mDiskBytes.get() <= MAX_DISK_BYTES) return;
+        File[] files = mDir.listFiles();
+        if (files == null) return;
+        long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(modified[a], modified[b]));
+        long total = diskUsage();
+        int removed = 0;
+        for (int i = 0; i < order.length && total > TRIM_TARGET_BYTES; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                removed++;
+            }
+        }
+        mDiskBytes.set(total);
+        Log.d(TAG, "Trimmed " + removed + " images, " + total / 1024 + " KB left");
+    }
+
+    private long diskUsage() {
+        File[] files = mDir.listFiles();
+        long total = 0;
+        if (files != null) {
+            for (File file : files) total += file.length();
+        }
+        return total;
+    }
+
+    private File fileFor(String url, int[] tile) {
+        return new File(mDir, key(url, tile));
+    }
+
+    // FNV-1a 64 of the URL and target size.
+    private static String key(String url, int[] tile) {
+        String source = tile != null ? url + "|" + tile[0] + "x" + tile[1] : url;
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < source.length(); i++) {
+            hash ^= source.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+
+    // Tile sizes are rounded up to 32 px so small layout changes keep their entries.
+    private static int[] tile(int width, int height) {
+        if (width <= 0 || height <= 0) return null;
+        return new int[] { Math.max(MIN_TILE, (width + 31) / 32 * 32), Math.max(MIN_TILE, (height + 31) / 32 * 32) };
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value != null ? Integer.parseInt(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isHttp(String url) {
+        return url != null && (url.startsWith("http://") || url.startsWith("https://"));
+    }
+
+    private static String[] split(String urls) {
+        if (urls == null || urls.isEmpty()) return new String[0];
+        return urls.split("\u001e");
+    }
+
+    private static String mimeOf(String contentType) {
+        if (contentType == null) return null;
+        int semicolon = contentType.indexOf(';');
+        return (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType).trim().toLowerCase();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+        byte[] buffer = new byte[16 * 1024];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+            if (out.size() > MAX_IMAGE_BYTES) throw new IOException("Image larger than " + MAX_IMAGE_BYTES + " bytes");
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,338 @@
+package fr.blanquer.freeiptv;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Streams an M3U playlist from the network and parses it off the main thread
+ * into compact column arrays, so 100k-entry playlists never exist as one big
+ * string in the WebView. JS is notified through window.__m3uNative[id] and
+ * pulls the entries in pages (see settings.js _loadM3UNative).
+ */
+public class M3uParser {
+    private static final String TAG = "M3uParser";
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 60000;
+    private static final int MAX_REDIRECTS = 5;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 500;
+    private static final String DEFAULT_GROUP = "Uncategorized";
+
+    public interface ProgressListener {
+        void onProgress(long bytes, long totalBytes, int count);
+    }
+
+    /** Parsed entries, one column per attribute; groups are interned by index. */
+    public static final class Playlist {
+        final List<String> groups = new ArrayList<>();
+        private final Map<String, Integer> mGroupIndex = new HashMap<>();
+        String[] names = new String[1024];
+        String[] logos = new String[1024];
+        String[] urls = new String[1024];
+        String[] tvgIds = new String[1024];
+        int[] groupOf = new int[1024];
+        int size;
+
+        void add(String name, String logo, String tvgId, String group, String url) {
+            if (size == names.length) {
+                int capacity = size * 2;
+                names = Arrays.copyOf(names, capacity);
+                logos = Arrays.copyOf(logos, capacity);
+                urls = Arrays.copyOf(urls, capacity);
+                tvgIds = Arrays.copyOf(tvgIds, capacity);
+                groupOf = Arrays.copyOf(groupOf, capacity);
+            }
+            Integer index = mGroupIndex.get(group);
+            if (index == null) {
+                index = groups.size();
+                groups.add(group);
+                mGroupIndex.put(group, index);
+            }
+            names[size] = name;
+            logos[size] = logo;
+            urls[size] = url;
+            tvgIds[size] = tvgId;
+            groupOf[size] = index;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, Playlist> mPlaylists = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> mCancelled = new ConcurrentHashMap<>();
+    private Consumer<String> mJsCallback;
+
+    public void setJsCallback(Consumer<String> callback) {
+        mJsCallback = callback;
+    }
+
+    public void load(String id, String url) {
+        mExecutor.execute(() -> {
+            long startMs = SystemClock.elapsedRealtime();
+            HostStats.Transfer transfer = HostStats.begin(url, HostStats.KIND_PLAYLIST);
+            HttpURLConnection conn = null;
+            try {
+                conn = openFollowingRedirects(url, transfer);
+                long total = conn.getContentLength();
+                long[] lastProgress = { 0 };
+                Playlist playlist;
+                try (InputStream in = transfer.wrap(conn.getInputStream())) {
+                    playlist = parse(in, total, (bytes, totalBytes, count) -> {
+                        if (mCancelled.containsKey(id)) throw new CancelledException();
+                        long now = SystemClock.elapsedRealtime();
+                        if (now - lastProgress[0] < PROGRESS_INTERVAL_MS) return;
+                        lastProgress[0] = now;
+                        notifyJs(id, "progress(" + bytes + "," + totalBytes + "," + count + ")");
+                    });
+                }
+                transfer.done();
+                mPlaylists.put(id, playlist);
+                Log.d(TAG, "Parsed " + playlist.size + " entries, " + playlist.groups.size() + " groups in "
+                        + (SystemClock.elapsedRealtime() - startMs) + " ms");
+                notifyJs(id, "done(" + playlist.size + "," + new JSONArray(playlist.groups) + ")");
+            } catch (CancelledException e) {
+                transfer.cancelled();
+                Log.d(TAG, "Cancelled " + id);
+            } catch (Exception e) {
+                Log.e(TAG, "load: " + e.getMessage());
+                String msg = String.valueOf(e.getMessage()).replace("\\", "\\\\").replace("'", "\\'");
+                notifyJs(id, "error('" + msg + "')");
+            } finally {
+                transfer.failed();
+                mCancelled.remove(id);
+                if (conn != null) conn.disconnect();
+            }
+        });
+    }
+
+    /**
+     * Returns entries [offset, offset + limit) as a JSON array of
+     * [name, logo, groupIndex, url, tvgId] tuples.
+     */
+    public String getPage(String id, int offset, int limit) {
+        Playlist playlist = mPlaylists.get(id);
+        if (playlist == null || offset < 0) return "[]";
+        int end = Math.min(playlist.size, offset + Math.max(limit, 0));
+        JSONArray page = new JSONArray();
+        for (int i = offset; i < end; i++) {
+            JSONArray row = new JSONArray();
+            row.put(playlist.names[i]);
+            row.put(playlist.logos[i]);
+            row.put(playlist.groupOf[i]);
+            row.put(playlist.urls[i]);
+            row.put(playlist.tvgIds[i]);
+            page.put(row);
+        }
+        return page.toString();
+    }
+
+    public void cancel(String id) {
+        mCancelled.put(id, Boolean.TRUE);
+        mPlaylists.remove(id);
+    }
+
+    public void release(String id) {
+        mPlaylists.remove(id);
+    }
+
+    public void releaseAll() {
+        mPlaylists.clear();
+    }
+
+    private void notifyJs(String id, String call) {
+        if (mJsCallback == null) return;
+        String target = "window.__m3uNative&&window.__m3uNative['" + id + "']";
+        mJsCallback.accept(target + "&&" + target + "." + call);
+    }
+
+    private static HttpURLConnection openFollowingRedirects(String url, HostStats.Transfer transfer)
+            throws IOException {
+        String current = url;
+        for (int i = 0; i <= MAX_REDIRECTS; i++) {
+            HttpURLConnection conn = (HttpURLConnection) new URL(current).openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setInstanceFollowRedirects(false);
+            transfer.connecting(current);
+            conn.connect();
+            transfer.connected();
+            int code = conn.getResponseCode();
+            transfer.firstByte();
+            if (code >= 300 && code < 400) {
+                String location = conn.getHeaderField("Location");
+                conn.disconnect();
+                if (location == null) throw new IOException("HTTP " + code + " without Location");
+                current = new URL(new URL(current), location).toString();
+                continue;
+            }
+            if (code != 200) {
+                conn.disconnect();
+                throw new IOException("HTTP " + code);
+            }
+            return conn;
+        }
+        throw new IOException("Too many redirects");
+    }
+
+    /**
+     * Parses an M3U stream line by line. Same rules as the JS parser: an
+     * #EXTINF line describes the next non-comment line, the display name is the
+     * text after the last comma (tvg-name as fallback).
+     */
+    public static Playlist parse(InputStream in, long totalBytes, ProgressListener listener) throws IOException {
+        Playlist playlist = new Playlist();
+        CountingInputStream counting = new CountingInputStream(in);
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(counting, StandardCharsets.UTF_8), READ_BUFFER_SIZE);
+        String line;
+        String extinf = null;
+        int lines = 0;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            if (line.startsWith("#EXTINF:")) {
+                extinf = line;
+            } else if (line.charAt(0) != '#' && extinf != null) {
+                String name = "";
+                int comma = extinf.lastIndexOf(',');
+                if (comma != -1) name = extinf.substring(comma + 1).trim();
+                if (name.isEmpty()) name = attribute(extinf, "tvg-name");
+                String group = attribute(extinf, "group-title");
+                playlist.add(name, attribute(extinf, "tvg-logo"), attribute(extinf, "tvg-id"),
+                        group.isEmpty() ? DEFAULT_GROUP : group, line);
+                extinf = null;
+            }
+            if (listener != null && (++lines & 0x3ff) == 0) {
+                listener.onProgress(counting.count, totalBytes, playlist.size);
+            }
+        }
+        if (listener != null) listener.onProgress(counting.count, totalBytes, playlist.size);
+        return playlist;
+    }
+
+    static String attribute(String line, String name) {
+        int from = 0;
+        while (true) {
+            int at = line.indexOf(name, from);
+            if (at < 0) return "";
+            int quote = at + name.length();
+            if (quote + 1 < line.length() && line.charAt(quote) == '=' && line.charAt(quote + 1) == '"'
+                    && (at == 0 || !isAttributeChar(line.charAt(at - 1)))) {
+                int end = line.indexOf('"', quote + 2);
+                return end < 0 ? "" : line.substring(quote + 2, end);
+            }
+            from = at + 1;
+        }
+    }
+
+    private static boolean isAttributeChar(char c) {
+        return c == '-' || Character.isLetterOrDigit(c);
+    }
+
+    /** Parses a generated playlist of the given size, nothing kept; returns timing JSON. */
+    public static String benchmark(int entries) {
+        try {
+            SyntheticPlaylist source = new SyntheticPlaylist(entries);
+            long startNs = System.nanoTime();
+            Playlist playlist = parse(source, -1, null);
+            long parseMs = (System.nanoTime() - startNs) / 1000000;
+            String result = "{\"entries\":" + playlist.size + ",\"groups\":" + playlist.groups.size()
+                    + ",\"bytes\":" + source.produced + ",\"parseMs\":" + parseMs + "}";
+            Log.d(TAG, "benchmark " + result);
+            return result;
+        } catch (IOException e) {
+            return "{\"error\":\"" + e.getMessage() + "\"}";
+        }
+    }
+
+    private static class CancelledException extends RuntimeException {
+    }
+
+    private static class CountingInputStream extends java.io.FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    /** Generates provider-like #EXTINF/URL pairs on the fly. */
+    private static class SyntheticPlaylist extends InputStream {
+        private final int mEntries;
+        private int mNext;
+        private byte[] mChunk = "#EXTM3U\n".getBytes(StandardCharsets.UTF_8);
+        private int mPos;
+        long produced;
+
+        SyntheticPlaylist(int entries) {
+            mEntries = entries;
+        }
+
+        @Override
+        public int read() {
+            if (!fill()) return -1;
+            produced++;
+            return mChunk[mPos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!fill()) return -1;
+            int n = Math.min(len, mChunk.length - mPos);
+            System.arraycopy(mChunk, mPos, b, off, n);
+            mPos += n;
+            produced += n;
+            return n;
+        }
+
+        private boolean fill() {
+            if (mPos < mChunk.length) return true;
+            if (mNext >= mEntries) return false;
+            int i = mNext++;
+            String line = "#EXTINF:-1 tvg-id=\"ch" + i + ".fr\" tvg-name=\"FR| Channel " + i
+                    + " HD\" tvg-logo=\"http://logos.example.com/" + (i % 5000) + ".png\" group-title=\"FR| Group "
+                    + (i % 400) + "\",FR| Channel " + i + " HD\n"
+                    + "http://provider.example.com:8080/live/user/pass/" + i + ".ts\n";
+            mChunk = line.getBytes(StandardCharsets.UTF_8);
+            mPos = 0;
+            return true;
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package fr.blanquer.freeiptv;
 
 import android.app.Activity;
+import android.app.ActivityManager;
 import android.app.PictureInPictureParams;
 import android.app.UiModeManager;
 import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
+import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Color;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
 import android.util.Rational;
 import android.view.KeyEvent;
 import android.view.OrientationEventListener;
@@ -20,7 +24,10 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.WindowManager;
 import android.webkit.JavascriptInterface;
+import android.webkit.RenderProcessGoneDetail;
 import android.webkit.WebChromeClient;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
@@ -28,17 +35,24 @@ import android.widget.FrameLayout;
 
 import androidx.annotation.OptIn;
 import androidx.media3.common.util.UnstableApi;
-import androidx.media3.exoplayer.DefaultLoadControl;
+import androidx.media3.datasource.DefaultDataSource;
 import androidx.media3.exoplayer.ExoPlayer;
-import androidx.media3.exoplayer.LoadControl;
+import androidx.media3.exoplayer.source.DefaultMediaSourceFactory;
 import androidx.media3.exoplayer.upstream.DefaultBandwidthMeter;
 import androidx.media3.ui.AspectRatioFrameLayout;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @OptIn(markerClass = UnstableApi.class)
 public class MainActivity extends Activity {
+    private static final String TAG = "MainActivity";
 
     private WebView mWebView;
     private String mTizenShimJs;
@@ -48,19 +62,76 @@ public class MainActivity extends Activity {
     private AspectRatioFrameLayout mAspectRatioLayout;
     private SurfaceView mSurfaceView;
     private NativePlayer mNativePlayer;
+    private M3uParser mM3uParser;
+    private EpgStore mEpgStore;
+    private CatalogStore mCatalogStore;
+    private DedupIndex mDedupIndex;
+    private SearchIndex mSearchIndex;
+    private CategoryRules mCategoryRules;
+    private XtreamClient mXtreamClient;
+    private ImageCache mImageCache;
+    private TmdbCache mTmdbCache;
+    private UserDataLog mUserDataLog;
+    private NativeChannel mNativeChannel;
+    private final BridgeProfiler mBridgeProfiler = new BridgeProfiler();
+    private final FrameMonitor mFrameMonitor = new FrameMonitor(this);
+    private final PlayerTransferStats mPlayerTransferStats = new PlayerTransferStats();
     private WebUpdater mWebUpdater;
     private boolean mIsAndroidTV;
     private boolean mStopped;
     private OrientationEventListener mOrientationListener;
     private boolean mDeviceLandscape = true;
+    private boolean mStartupUpdateCheckPending;
+    private WebAssetLoader mAssetLoader;
+    private long mCreateTimeMs;
+    private long mPageLoadTraceNs;
+    private boolean mFirstPaintDone;
+    private volatile boolean mPlayerReady;
+    private boolean mDocumentStartScript;
+    private static String sTizenShimJs;
+    private final java.util.LinkedHashMap<String, Long> mStartupMarks = new java.util.LinkedHashMap<>();
+    private static final long STARTUP_UPDATE_CHECK_DELAY_MS = 15000;
+    private static final long BENCHMARK_TIMEOUT_MS = 120000;
+
+    // Memory pressure tiers, from onTrimMemory; each one sheds more than the last.
+    private static final int PRESSURE_NONE = 0;
+    private static final int PRESSURE_MODERATE = 1;
+    private static final int PRESSURE_LOW = 2;
+    private static final int PRESSURE_CRITICAL = 3;
+    private static final String[] PRESSURE_NAMES = {"normal", "moderate", "low", "critical"};
+    private static final int[] PRESSURE_BUFFER_CAP_SEC = {0, 20, 10, 5};
+    private static final long MEMORY_REPORT_DELAY_MS = 5000;
+    private static final long MEMORY_RECHECK_MS = 30000;
+    private PressureLoadControl mLoadControl;
+    private int mMemoryPressure = PRESSURE_NONE;
+    private long mMemoryPressureAt;
+    private long mHeapBeforeShedding;
+    private final Runnable mMemoryReport = this::reportMemoryReclaimed;
+    private final Runnable mMemoryRecheck = this::checkMemoryRecovered;
+
+    // Renderer loss: the WebView is rebuilt around the running player session.
+    private static final String RECOVERY_PREFS = "render_recovery";
+    private static final long RECOVERY_CLAIM_TIMEOUT_MS = 5000;
+    private long mRecoveryStartMs;
+    private long mRecoveryTraceNs;
+    private volatile String mRecoverySnapshot;
+    // Taken once, by the page claiming the session (JavaBridge thread) or by
+    // the claim timeout closing it (main thread): whichever comes first wins.
+    private final AtomicBoolean mRecoveryTaken = new AtomicBoolean(false);
+    private final Runnable mRecoveryUnclaimed = this::onRecoveryUnclaimed;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mCreateTimeMs = SystemClock.uptimeMillis();
+        Tracer.init(this);
+        long traceNs = Tracer.begin();
+        markStartup("onCreate");
+        mAssetLoader = new WebAssetLoader(getAssets());
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         getWindow().setFormat(PixelFormat.TRANSLUCENT);
         getWindow().setBackgroundDrawable(new ColorDrawable(Color.TRANSPARENT));
-        mTizenShimJs = loadAsset("tizen-shim.js");
+        mTizenShimJs = loadTizenShim(this);
         mIsAndroidTV = detectAndroidTV();
         FrameLayout root = new FrameLayout(this);
         root.setBackgroundColor(Color.TRANSPARENT);
@@ -85,76 +156,177 @@ public class MainActivity extends Activity {
                 ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
         mFullscreenContainer.setVisibility(View.GONE);
         setContentView(root);
-        initNativePlayer();
+        // Answers request interception, which can start as soon as loadUrl is called.
+        mImageCache = new ImageCache(this);
+        long setupTraceNs = Tracer.begin();
         setupWebView();
+        Tracer.end("setupWebView", "startup", setupTraceNs);
         applyImmersiveMode();
-        initOrientationListener();
+        markStartup("viewsReady");
+        // Only resolving the web path stands between here and loadUrl: the
+        // updater's file housekeeping waits for first paint (runHousekeeping).
         mWebUpdater = new WebUpdater(this);
         boolean devNoUpdate = new java.io.File(getFilesDir(), "DEV_NO_UPDATE").exists();
         if (devNoUpdate) {
             mWebView.loadUrl("file:///android_asset/index.html");
-            return;
-        }
-        mWebUpdater.rollbackUnhealthyCacheIfNeeded();
-        String localWebPath = mWebUpdater.getLocalWebPath();
-        if (localWebPath != null) {
-            mWebUpdater.markPendingLoad();
-            mWebView.loadUrl(localWebPath);
         } else {
-            mWebView.loadUrl("file:///android_asset/index.html");
+            mWebUpdater.rollbackUnhealthyCacheIfNeeded();
+            String localWebPath = mWebUpdater.getLocalWebPath();
+            if (localWebPath != null) {
+                mWebUpdater.markPendingLoad();
+                mAssetLoader.setWebRoot(webRootOf(localWebPath));
+                mWebView.loadUrl(localWebPath);
+            } else {
+                mWebView.loadUrl("file:///android_asset/index.html");
+            }
+            mStartupUpdateCheckPending = true;
+        }
+        markStartup("loadStarted");
+        // No page script can reach the bridge before onCreate returns: the
+        // navigation itself needs this thread.
+        initNativeComponents();
+        Tracer.end("MainActivity.onCreate", "startup", traceNs);
+    }
+
+    private void initNativeComponents() {
+        // The ExoPlayer itself is only built after first paint (see onFirstPaint).
+        mNativePlayer = new NativePlayer();
+        mNativePlayer.setJsCallback(this::postJs);
+        mM3uParser = new M3uParser();
+        mM3uParser.setJsCallback(this::postJs);
+        mEpgStore = new EpgStore(this);
+        mEpgStore.setJsCallback(this::postJs);
+        mCatalogStore = new CatalogStore(this);
+        mCatalogStore.setJsCallback(this::postJs);
+        mDedupIndex = new DedupIndex(this);
+        mSearchIndex = new SearchIndex(this);
+        mCategoryRules = new CategoryRules();
+        mXtreamClient = new XtreamClient();
+        mXtreamClient.setJsCallback(this::postJs);
+        mTmdbCache = new TmdbCache(this);
+        mTmdbCache.setJsCallback(this::postJs);
+        mUserDataLog = new UserDataLog(this);
+        mNativePlayer.setProgressListener(mUserDataLog::checkpoint);
+    }
+
+    /**
+     * Work that the first frame does not need: building the ExoPlayer (codec
+     * and renderer setup), the orientation sensor listener and the web
+     * updater's slot housekeeping. A playerOpen
+     * arriving earlier builds the player on demand.
+     */
+    private void onFirstPaint() {
+        if (mFirstPaintDone) return;
+        mFirstPaintDone = true;
+        markStartup("firstPaint");
+        mWebView.post(() -> {
+            initNativePlayer();
+            markStartup("playerReady");
+            initOrientationListener();
+            mWebUpdater.runHousekeeping();
+            Log.d(TAG, "Startup marks " + getStartupMarksJson() + " assets " + WebAssetLoader.getStatsJson());
+        });
+    }
+
+    private void markStartup(String name) {
+        synchronized (mStartupMarks) {
+            if (!mStartupMarks.containsKey(name)) {
+                mStartupMarks.put(name, SystemClock.uptimeMillis() - mCreateTimeMs);
+                Tracer.instant(name, "startup");
+            }
+        }
+    }
+
+    private String getStartupMarksJson() {
+        StringBuilder sb = new StringBuilder("{");
+        synchronized (mStartupMarks) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                sb.append("\"processStart\":").append(android.os.Process.getStartUptimeMillis() - mCreateTimeMs);
+            }
+            for (java.util.Map.Entry<String, Long> mark : mStartupMarks.entrySet()) {
+                if (sb.length() > 1) sb.append(',');
+                sb.append('"').append(mark.getKey()).append("\":").append(mark.getValue());
+            }
         }
-        mWebUpdater.checkAndUpdate(() -> {
+        return sb.append('}').toString();
+    }
+
+    /**
+     * The launch update check waits until the UI has painted and the first
+     * provider requests are under way, then runs on a background-priority
+     * thread; JobScheduler covers the periodic checks.
+     */
+    private void runStartupUpdateCheck() {
+        if (!mStartupUpdateCheckPending) return;
+        mStartupUpdateCheckPending = false;
+        mWebView.postDelayed(() -> mWebUpdater.checkAndUpdate(() -> {
             runOnUiThread(() -> mWebView.evaluateJavascript(
                 "if(window.app && window.app.showWebUpdateReady) window.app.showWebUpdateReady();", null));
-        });
+        }, false, hasUpdate -> {
+            if (!mWebUpdater.isBackgroundCheckScheduled()) mWebUpdater.scheduleBackgroundCheck();
+        }), STARTUP_UPDATE_CHECK_DELAY_MS);
     }
 
     public void reloadWebAssets() {
         runOnUiThread(() -> {
             String updatedPath = mWebUpdater.getLocalWebPath();
             if (updatedPath != null) {
-                mWebView.clearCache(true);
+                // The new build lives in its own slot, so its URLs differ from the old
+                // ones: no need to wipe the HTTP cache (and every cached poster with it).
+                mAssetLoader.setWebRoot(webRootOf(updatedPath));
                 mWebView.loadUrl(updatedPath);
             }
         });
     }
 
+    private static java.io.File webRootOf(String indexUrl) {
+        return new java.io.File(android.net.Uri.parse(indexUrl).getPath()).getParentFile();
+    }
+
     private DefaultBandwidthMeter mBandwidthMeter;
 
     private void initNativePlayer() {
+        if (mPlayerReady) return;
+        mPlayerReady = true;
+        long traceNs = Tracer.begin();
         android.content.SharedPreferences prefs = getSharedPreferences("buffer_config", MODE_PRIVATE);
         int playSec = prefs.getInt("play", 2);
         int rebufferSec = prefs.getInt("rebuffer", 5);
         int minSec = prefs.getInt("min", 30);
         int maxSec = prefs.getInt("max", 60);
         ExoPlayer player = buildExoPlayer(playSec, rebufferSec, minSec, maxSec);
-        mNativePlayer = new NativePlayer();
         mNativePlayer.init(player, mSurfaceView, mAspectRatioLayout);
         mNativePlayer.setBandwidthMeter(mBandwidthMeter);
         int screenW = getResources().getDisplayMetrics().widthPixels;
         int screenH = getResources().getDisplayMetrics().heightPixels;
         float screenRatio = Math.max(screenW, screenH) / (float) Math.min(screenW, screenH);
         mNativePlayer.setScreenAspectRatio(screenRatio);
-        mNativePlayer.setJsCallback(js -> runOnUiThread(() -> mWebView.evaluateJavascript(js, null)));
+        Tracer.end("initNativePlayer", "playback", traceNs);
     }
 
     private ExoPlayer buildExoPlayer(int playSec, int rebufferSec, int minSec, int maxSec) {
-        LoadControl loadControl = new DefaultLoadControl.Builder()
-            .setBufferDurationsMs(
+        PressureLoadControl loadControl = new PressureLoadControl(
                 Math.max(minSec, 1) * 1000,
                 Math.max(maxSec, minSec) * 1000,
                 Math.max(playSec, 1) * 1000,
-                Math.max(rebufferSec, 1) * 1000)
-            .build();
+                Math.max(rebufferSec, 1) * 1000);
+        loadControl.setCapMs(PRESSURE_BUFFER_CAP_SEC[mMemoryPressure] * 1000L);
+        mLoadControl = loadControl;
         mBandwidthMeter = new DefaultBandwidthMeter.Builder(this).build();
-        return new ExoPlayer.Builder(this)
+        DefaultDataSource.Factory dataSourceFactory = new DefaultDataSource.Factory(this)
+            .setTransferListener(mPlayerTransferStats);
+        ExoPlayer player = new ExoPlayer.Builder(this)
+            .setMediaSourceFactory(new DefaultMediaSourceFactory(dataSourceFactory))
             .setLoadControl(loadControl)
             .setBandwidthMeter(mBandwidthMeter)
             .build();
+        player.addAnalyticsListener(mPlayerTransferStats);
+        return player;
     }
 
     private void rebuildNativePlayerIfNeeded(int playSec, int rebufferSec, int minSec, int maxSec) {
-        if (mNativePlayer == null) return;
+        // Not built yet: initNativePlayer reads the saved config.
+        if (mNativePlayer == null || !mPlayerReady) return;
         try {
             mNativePlayer.release();
         }
@@ -162,7 +334,7 @@ public class MainActivity extends Activity {
         ExoPlayer player = buildExoPlayer(playSec, rebufferSec, minSec, maxSec);
         mNativePlayer.init(player, mSurfaceView, mAspectRatioLayout);
         mNativePlayer.setBandwidthMeter(mBandwidthMeter);
-        mNativePlayer.setJsCallback(js -> runOnUiThread(() -> mWebView.evaluateJavascript(js, null)));
+        mNativePlayer.setJsCallback(this::postJs);
     }
 
     private boolean detectAndroidTV() {
@@ -187,20 +359,94 @@ public class MainActivity extends Activity {
         updateWebViewScale();
         mWebView.setBackgroundColor(Color.TRANSPARENT);
         mWebView.addJavascriptInterface(new AndroidBridge(), "Android");
+        // Bulk results (whole catalogs) and slow calls (DownloadManager) are
+        // answered asynchronously, as ArrayBuffers on window.AndroidChannel.
+        // A WebView recreated after a renderer loss reuses the channel.
+        if (mNativeChannel == null) {
+            mNativeChannel = new NativeChannel();
+            mNativeChannel.setJsCallback(this::postJs);
+            mNativeChannel.setRequestListener(mFrameMonitor::onChannelCall);
+            mNativeChannel.register("catalogLoad", args -> mCatalogStore.load(args.getString(0)));
+            mNativeChannel.register("catalogLoadMerged", args -> mCatalogStore.loadMerged(args.getString(0)));
+            mNativeChannel.register("benchmarkPayload", args -> NativeChannel.benchmarkPayload(args.getInt(0)));
+            if (BuildConfig.DEBUG) {
+                // Console-only harnesses, e.g. NativeChannel.call('m3uBenchmark', [200000]):
+                // one at a time on the channel pool, never on the bridge thread.
+                mNativeChannel.register("m3uBenchmark", 1, BENCHMARK_TIMEOUT_MS,
+                        args -> M3uParser.benchmark(args.getInt(0)));
+                mNativeChannel.register("dedupBenchmark", 1, BENCHMARK_TIMEOUT_MS,
+                        args -> DedupIndex.benchmark(args.getInt(0)));
+                mNativeChannel.register("searchBenchmark", 1, BENCHMARK_TIMEOUT_MS,
+                        args -> SearchIndex.benchmark(args.getInt(0)));
+                mNativeChannel.register("categoryRulesBenchmark", 1, BENCHMARK_TIMEOUT_MS,
+                        args -> CategoryRules.benchmark(args.getInt(0)));
+                mNativeChannel.register("xtreamBenchmark", 1, BENCHMARK_TIMEOUT_MS,
+                        args -> XtreamClient.benchmark(args.getInt(0)));
+            }
+            mNativeChannel.register("downloadEnqueue", 1, 10000,
+                    args -> String.valueOf(enqueueDownload(args.getString(0), args.getString(1))));
+            mNativeChannel.register("downloadStatus", 1, 10000, args -> {
+                JSONArray idList = args.getJSONArray(0);
+                long[] ids = new long[idList.length()];
+                for (int i = 0; i < ids.length; i++) ids[i] = idList.getLong(i);
+                return queryDownloads(ids);
+            });
+            mNativeChannel.register("downloadCancel", 1, 10000, args -> {
+                cancelDownload(args.getLong(0));
+                return "";
+            });
+        }
+        mNativeChannel.install(mWebView);
+        if (WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+            // Registered once, runs before any page script on every navigation.
+            String script = "window.__isAndroidTV=" + mIsAndroidTV + ";"
+                    + (mTizenShimJs != null ? mTizenShimJs : "");
+            WebViewCompat.addDocumentStartJavaScript(mWebView, script, java.util.Collections.singleton("*"));
+            mDocumentStartScript = true;
+        }
         mWebView.setWebViewClient(new WebViewClient() {
             @Override
             public void onPageStarted(android.webkit.WebView view, String url, android.graphics.Bitmap favicon) {
                 super.onPageStarted(view, url, favicon);
+                markStartup("pageStarted");
+                mPageLoadTraceNs = Tracer.begin();
+                if (mDocumentStartScript) return;
                 view.evaluateJavascript("window.__isAndroidTV=" + mIsAndroidTV + ";", null);
                 if (mTizenShimJs != null) {
                     view.evaluateJavascript(mTizenShimJs, null);
                 }
             }
 
+            @Override
+            public void onPageCommitVisible(WebView view, String url) {
+                super.onPageCommitVisible(view, url);
+                onFirstPaint();
+            }
+
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                WebResourceResponse local = mAssetLoader.intercept(request.getMethod(), request.getUrl().toString());
+                if (local == null) local = mImageCache.intercept(request);
+                return local != null ? local : super.shouldInterceptRequest(view, request);
+            }
+
             @Override
             public void onPageFinished(android.webkit.WebView view, String url) {
                 super.onPageFinished(view, url);
+                markStartup("pageFinished");
+                Tracer.end("WebView.pageLoad", "startup", mPageLoadTraceNs);
+                mPageLoadTraceNs = 0;
+                onFirstPaint();
                 setWebPortraitOverlay(getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT);
+                runStartupUpdateCheck();
+                if (mRecoveryStartMs > 0) onRecoveredPageLoaded();
+            }
+
+            @Override
+            public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+                // A WebView already replaced can still report; the current one is what matters.
+                if (view == mWebView) recoverWebView(detail.didCrash());
+                return true;
             }
         });
         mWebView.setWebChromeClient(new WebChromeClient() {
@@ -284,6 +530,14 @@ public class MainActivity extends Activity {
         }
     }
 
+    // Callbacks of the native components; going through here lets the bridge
+    // profiler and the frame monitor count the native-to-JS traffic.
+    private void postJs(String js) {
+        mBridgeProfiler.recordScript(js);
+        mFrameMonitor.onScript(js);
+        runOnUiThread(() -> mWebView.evaluateJavascript(js, null));
+    }
+
     private void injectKeyEvent(int keyCode) {
         String js = "document.dispatchEvent(new KeyboardEvent('keydown',{keyCode:" + keyCode + ",bubbles:true}));";
         mWebView.evaluateJavascript(js, null);
@@ -457,27 +711,292 @@ public class MainActivity extends Activity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        mFrameMonitor.setEnabled(false);
         if (mOrientationListener != null) {
             mOrientationListener.disable();
         }
+        mWebView.removeCallbacks(mMemoryReport);
+        mWebView.removeCallbacks(mMemoryRecheck);
+        mWebView.removeCallbacks(mRecoveryUnclaimed);
         if (mNativePlayer != null) {
             mNativePlayer.release();
         }
     }
 
-    private String loadAsset(String filename) {
-        StringBuilder sb = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(getAssets().open(filename)))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line).append('\n');
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            shedMemory(PRESSURE_CRITICAL);
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            shedMemory(PRESSURE_LOW);
+        } else if (level == TRIM_MEMORY_RUNNING_MODERATE) {
+            shedMemory(PRESSURE_MODERATE);
+        }
+        // TRIM_MEMORY_UI_HIDDEN alone only means the UI went away, not that memory is short.
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        shedMemory(PRESSURE_CRITICAL);
+    }
+
+    // Main thread. Everything shed here is rebuilt on demand: the player
+    // buffer refills once the cap is lifted, caches and indexes reload from
+    // disk. A repeated signal sheds again, as the caches may have refilled.
+    private void shedMemory(int pressure) {
+        mMemoryPressureAt = SystemClock.elapsedRealtime();
+        if (pressure < mMemoryPressure) return;
+        String name = PRESSURE_NAMES[pressure];
+        long inUse = usedMemoryBytes();
+        if (mMemoryPressure == PRESSURE_NONE) mHeapBeforeShedding = inUse;
+        mMemoryPressure = pressure;
+        Log.w(TAG, "Memory pressure " + name + ", shedding (" + inUse / 1024 + " KB in use)");
+        if (mLoadControl != null) {
+            long bufferedBytes = mLoadControl.getBufferedBytes();
+            mLoadControl.setCapMs(PRESSURE_BUFFER_CAP_SEC[pressure] * 1000L);
+            mLoadControl.trimAllocator();
+            Log.i(TAG, "Shed player buffer: forward capped to " + mLoadControl.getCapMs() + " ms, "
+                    + bufferedBytes / 1024 + " KB buffered drains to it, pooled segments freed");
+        }
+        Log.i(TAG, "Shed web asset heap copies: " + WebAssetLoader.trimHeap() / 1024 + " KB");
+        Log.i(TAG, "Shed SQLite page caches (EPG, catalogs): " + SQLiteDatabase.releaseMemory() / 1024 + " KB");
+        if (mImageCache != null) {
+            Log.i(TAG, "Shed image prefetches and failures: " + mImageCache.releaseAll() + " entries");
+        }
+        if (mTmdbCache != null) {
+            Log.i(TAG, "Shed TMDB prefetch queue: " + mTmdbCache.releaseAll() + " lookups");
+        }
+        if (mCategoryRules != null) {
+            Log.i(TAG, "Shed category classifications: " + mCategoryRules.releaseAll() + " names");
+        }
+        if (mNativePlayer != null) {
+            Log.i(TAG, "Shed track info: " + mNativePlayer.dropTrackInfo() * 2 / 1024 + " KB");
+        }
+        if (pressure >= PRESSURE_LOW && mSearchIndex != null) {
+            // JS searches in its own filter until the section is indexed again.
+            Log.i(TAG, "Shed search indexes: " + mSearchIndex.releaseAll() + " rows");
+        }
+        postJs("window.app&&window.app.onMemoryPressure&&window.app.onMemoryPressure('" + name + "')");
+        mWebView.removeCallbacks(mMemoryReport);
+        mWebView.postDelayed(mMemoryReport, MEMORY_REPORT_DELAY_MS);
+        mWebView.removeCallbacks(mMemoryRecheck);
+        mWebView.postDelayed(mMemoryRecheck, MEMORY_RECHECK_MS);
+    }
+
+    // Java heap plus native heap: most of what shedding frees is on the Java heap,
+    // but bitmaps and SQLite live natively.
+    private static long usedMemoryBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() + android.os.Debug.getNativeHeapAllocatedSize();
+    }
+
+    // Once the collector has had time to run after shedding.
+    private void reportMemoryReclaimed() {
+        long now = usedMemoryBytes();
+        Log.i(TAG, "Memory pressure " + PRESSURE_NAMES[mMemoryPressure] + ": " + mHeapBeforeShedding / 1024
+                + " KB -> " + now / 1024 + " KB in use, " + (mHeapBeforeShedding - now) / 1024 + " KB reclaimed");
+    }
+
+    // No callback says the pressure is over: ask the system every
+    // MEMORY_RECHECK_MS, once no trim signal came for that long.
+    private void checkMemoryRecovered() {
+        if (mMemoryPressure == PRESSURE_NONE) return;
+        ActivityManager manager = (ActivityManager) getSystemService(ACTIVITY_SERVICE);
+        ActivityManager.MemoryInfo info = new ActivityManager.MemoryInfo();
+        if (manager != null) manager.getMemoryInfo(info);
+        boolean quiet = SystemClock.elapsedRealtime() - mMemoryPressureAt >= MEMORY_RECHECK_MS;
+        if (manager == null || !quiet || info.lowMemory || info.availMem < info.threshold * 2) {
+            mWebView.postDelayed(mMemoryRecheck, MEMORY_RECHECK_MS);
+            return;
+        }
+        Log.i(TAG, "Memory pressure eased (" + info.availMem / 1048576 + " MB available), restoring buffers");
+        mMemoryPressure = PRESSURE_NONE;
+        if (mLoadControl != null) mLoadControl.setCapMs(0);
+        postJs("window.app&&window.app.onMemoryPressure&&window.app.onMemoryPressure('normal')");
+    }
+
+    /**
+     * The WebView renderer is gone (crashed, or killed to reclaim memory) and
+     * the WebView with it. A new one takes its place and reloads the page,
+     * while NativePlayer keeps playing on its own surface: the page takes the
+     * session snapshot (renderRecoverySnapshot) and reopens its player screen
+     * on it. Timed from here until the page reports back.
+     */
+    private void recoverWebView(boolean crashed) {
+        mRecoveryStartMs = SystemClock.elapsedRealtime();
+        mRecoveryTraceNs = Tracer.begin();
+        mRecoveryTaken.set(false);
+        mRecoverySnapshot = mNativePlayer.getSessionSnapshot();
+        android.content.SharedPreferences prefs = getSharedPreferences(RECOVERY_PREFS, MODE_PRIVATE);
+        int count = prefs.getInt("count", 0) + 1;
+        prefs.edit()
+                .putInt("count", count)
+                .putInt("crashes", prefs.getInt("crashes", 0) + (crashed ? 1 : 0))
+                .putLong("last_at", System.currentTimeMillis())
+                .apply();
+        Log.w(TAG, "WebView renderer " + (crashed ? "crashed" : "killed") + " (#" + count + "), recreating"
+                + (mRecoverySnapshot != null ? " around the player session" : ""));
+        String url = mWebView.getUrl();
+        int visibility = mWebView.getVisibility();
+        ViewGroup parent = (ViewGroup) mWebView.getParent();
+        int index = parent.indexOfChild(mWebView);
+        parent.removeView(mWebView);
+        mWebView.destroy();
+        mWebView = new WebView(this);
+        mWebView.setVisibility(visibility);
+        parent.addView(mWebView, index, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        setupWebView();
+        // Web assets are still in WebAssetLoader's memory store, so the reload does not touch the disk.
+        mWebView.loadUrl(url != null && !url.isEmpty() ? url : "file:///android_asset/index.html");
+    }
+
+    private void onRecoveredPageLoaded() {
+        Log.i(TAG, "Recovered page loaded in " + (SystemClock.elapsedRealtime() - mRecoveryStartMs) + " ms");
+        if (mRecoverySnapshot == null) {
+            finishRecovery(false);
+        } else if (!mRecoveryTaken.get()) {
+            mWebView.postDelayed(mRecoveryUnclaimed, RECOVERY_CLAIM_TIMEOUT_MS);
+        }
+    }
+
+    // A web build that predates the recovery never asks for the session: do
+    // not leave it playing behind a UI that knows nothing about it.
+    private void onRecoveryUnclaimed() {
+        if (mRecoveryStartMs == 0 || !mRecoveryTaken.compareAndSet(false, true)) return;
+        Log.w(TAG, "Recovered page did not take the player session back, closing it");
+        closeRecoveredSession();
+        finishRecovery(false);
+    }
+
+    // Main thread.
+    private void closeRecoveredSession() {
+        mNativePlayer.close();
+        mAspectRatioLayout.setVisibility(View.GONE);
+        lockLandscapeForPlayer(false);
+    }
+
+    // Main thread. Only a page that took the snapshot reports; if it could not
+    // rebuild its player screen it falls back to home, nothing may keep playing.
+    private void onRecoveryReported(boolean restored) {
+        if (mRecoveryStartMs == 0) return;
+        if (!restored) {
+            Log.w(TAG, "Recovered page could not restore the player screen, closing the session");
+            closeRecoveredSession();
+        }
+        finishRecovery(restored);
+    }
+
+    // Main thread.
+    private void finishRecovery(boolean restored) {
+        if (mRecoveryStartMs == 0) return;
+        long ms = SystemClock.elapsedRealtime() - mRecoveryStartMs;
+        mRecoveryStartMs = 0;
+        mRecoverySnapshot = null;
+        mWebView.removeCallbacks(mRecoveryUnclaimed);
+        Tracer.end("WebView.recover", "recovery", mRecoveryTraceNs);
+        android.content.SharedPreferences prefs = getSharedPreferences(RECOVERY_PREFS, MODE_PRIVATE);
+        prefs.edit()
+                .putLong("last_ms", ms)
+                .putLong("total_ms", prefs.getLong("total_ms", 0) + ms)
+                .putInt("recovered", prefs.getInt("recovered", 0) + 1)
+                .putInt("restored", prefs.getInt("restored", 0) + (restored ? 1 : 0))
+                .apply();
+        Log.i(TAG, "Renderer recovery done in " + ms + " ms" + (restored ? ", player screen restored" : ""));
+    }
+
+    /** {count, crashes, recovered, restored, lastMs, avgMs, lastAt}; counts survive restarts. */
+    private String getRecoveryStatsJson() {
+        android.content.SharedPreferences prefs = getSharedPreferences(RECOVERY_PREFS, MODE_PRIVATE);
+        int recovered = prefs.getInt("recovered", 0);
+        return "{\"count\":" + prefs.getInt("count", 0)
+                + ",\"crashes\":" + prefs.getInt("crashes", 0)
+                + ",\"recovered\":" + recovered
+                + ",\"restored\":" + prefs.getInt("restored", 0)
+                + ",\"lastMs\":" + prefs.getLong("last_ms", -1)
+                + ",\"avgMs\":" + (recovered > 0 ? prefs.getLong("total_ms", 0) / recovered : -1)
+                + ",\"lastAt\":" + prefs.getLong("last_at", 0) + "}";
+    }
+
+    private static synchronized String loadTizenShim(Context context) {
+        if (sTizenShimJs != null) return sTizenShimJs;
+        try (InputStream in = context.getAssets().open("tizen-shim.js")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 8192));
+            byte[] buffer = new byte[16 * 1024];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
             }
+            sTizenShimJs = out.toString("UTF-8");
         }
         catch (Exception ex) {
             return null;
         }
-        return sb.toString();
+        return sTizenShimJs;
+    }
+
+    /** Player calls can arrive before first paint; build the player first then. */
+    private void ensureNativePlayer() {
+        if (!mPlayerReady) runOnUiThread(this::initNativePlayer);
+    }
+
+    // DownloadManager calls are content provider queries. The async bridge
+    // runs them on NativeChannel workers; the synchronous bridge methods stay
+    // for web builds that predate it.
+    private long enqueueDownload(String url, String filename) {
+        try {
+            android.app.DownloadManager dm = (android.app.DownloadManager) getSystemService(DOWNLOAD_SERVICE);
+            if (dm == null) return -1;
+            String safeName = filename == null || filename.isEmpty() ? "download.ts" : filename.replaceAll("[/\\\\]", "_");
+            android.app.DownloadManager.Request req = new android.app.DownloadManager.Request(android.net.Uri.parse(url));
+            req.setTitle(safeName);
+            req.setNotificationVisibility(android.app.DownloadManager.Request.VISIBILITY_VISIBLE_NOTIFY_COMPLETED);
+            req.setDestinationInExternalPublicDir(android.os.Environment.DIRECTORY_MOVIES, safeName);
+            req.setAllowedOverMetered(true);
+            req.setAllowedOverRoaming(true);
+            return dm.enqueue(req);
+        }
+        catch (Exception ex) {
+            runOnUiThread(() -> mWebView.evaluateJavascript(
+                "window.log && window.log('ERROR downloadFile: " + ex.getMessage().replace("'", "\\'") + "');", null));
+            return -1;
+        }
+    }
+
+    /** {id: {status, total, downloaded}} for the given downloads DownloadManager still knows. */
+    private String queryDownloads(long[] ids) {
+        android.app.DownloadManager dm = (android.app.DownloadManager) getSystemService(DOWNLOAD_SERVICE);
+        if (dm == null || ids.length == 0) return "{}";
+        StringBuilder out = new StringBuilder("{");
+        android.app.DownloadManager.Query q = new android.app.DownloadManager.Query().setFilterById(ids);
+        try (android.database.Cursor c = dm.query(q)) {
+            while (c != null && c.moveToNext()) {
+                long id = c.getLong(c.getColumnIndexOrThrow(android.app.DownloadManager.COLUMN_ID));
+                int status = c.getInt(c.getColumnIndexOrThrow(android.app.DownloadManager.COLUMN_STATUS));
+                long total = c.getLong(c.getColumnIndexOrThrow(android.app.DownloadManager.COLUMN_TOTAL_SIZE_BYTES));
+                long downloaded = c.getLong(c.getColumnIndexOrThrow(android.app.DownloadManager.COLUMN_BYTES_DOWNLOADED_SO_FAR));
+                String label;
+                if (status == android.app.DownloadManager.STATUS_SUCCESSFUL) label = "done";
+                else if (status == android.app.DownloadManager.STATUS_FAILED) label = "error";
+                else if (status == android.app.DownloadManager.STATUS_PAUSED) label = "paused";
+                else if (status == android.app.DownloadManager.STATUS_PENDING) label = "queued";
+                else label = "downloading";
+                if (out.length() > 1) out.append(',');
+                out.append('"').append(id).append("\":{\"status\":\"").append(label).append("\",\"total\":").append(total)
+                        .append(",\"downloaded\":").append(downloaded).append('}');
+            }
+        }
+        return out.append('}').toString();
+    }
+
+    private void cancelDownload(long id) {
+        try {
+            android.app.DownloadManager dm = (android.app.DownloadManager) getSystemService(DOWNLOAD_SERVICE);
+            if (dm != null) dm.remove(id);
+        }
+        catch (Exception ex) { /* ignore */ }
     }
 
     private class AndroidBridge {
@@ -498,13 +1017,8 @@ public class MainActivity extends Activity {
 
         @JavascriptInterface
         public String getAppVersion() {
-            try {
-                android.content.pm.PackageInfo pi = getPackageManager().getPackageInfo(getPackageName(), 0);
-                return pi.versionName + " (" + pi.versionCode + ")";
-            }
-            catch (Exception ex) {
-                return "";
-            }
+            // Compile-time constants: no PackageManager binder call on the bridge thread.
+            return BuildConfig.VERSION_NAME + " (" + BuildConfig.VERSION_CODE + ")";
         }
 
         @JavascriptInterface
@@ -515,6 +1029,12 @@ public class MainActivity extends Activity {
             return build.length() > 8 ? build.substring(0, 8) : build;
         }
 
+        @JavascriptInterface
+        public String getUpdateCheckStats() {
+            if (mWebUpdater == null) return "{}";
+            return mWebUpdater.getCheckStatsJson();
+        }
+
         @JavascriptInterface
         public void markWebHealthy() {
             if (mWebUpdater != null) mWebUpdater.clearPendingLoad();
@@ -633,8 +1153,14 @@ public class MainActivity extends Activity {
             catch (Exception ex) { /* ignore */ }
         }
 
+        @JavascriptInterface
+        public String getStartupMarks() {
+            return getStartupMarksJson();
+        }
+
         @JavascriptInterface
         public void playerOpen(String url) {
+            ensureNativePlayer();
             mNativePlayer.open(url);
             lockLandscapeForPlayer(true);
         }
@@ -720,54 +1246,243 @@ public class MainActivity extends Activity {
             mNativePlayer.setSubtitlePosition(offsetMs);
         }
 
+        @JavascriptInterface
+        public void playerSetSessionContext(String json) {
+            mNativePlayer.setSessionContext(json);
+        }
+
+        /**
+         * After a renderer loss, the player session the page should return
+         * to, with its current position; "null" otherwise.
+         */
+        @JavascriptInterface
+        public String renderRecoverySnapshot() {
+            if (mRecoverySnapshot == null || !mRecoveryTaken.compareAndSet(false, true)) return "null";
+            String snapshot = mNativePlayer.getSessionSnapshot();
+            return snapshot != null ? snapshot : "null";
+        }
+
+        @JavascriptInterface
+        public void renderRecoveryDone(boolean restored) {
+            runOnUiThread(() -> onRecoveryReported(restored));
+        }
+
+        @JavascriptInterface
+        public String renderRecoveryStats() {
+            return getRecoveryStatsJson();
+        }
+
         @JavascriptInterface
         public void playerSetVisible(boolean visible) {
             runOnUiThread(() -> mAspectRatioLayout.setVisibility(visible ? View.VISIBLE : View.GONE));
         }
 
+        @JavascriptInterface
+        public void m3uLoad(String id, String url) {
+            mM3uParser.load(id, url);
+        }
+
+        @JavascriptInterface
+        public String m3uGetPage(String id, int offset, int limit) {
+            return mM3uParser.getPage(id, offset, limit);
+        }
+
+        @JavascriptInterface
+        public void m3uCancel(String id) {
+            mM3uParser.cancel(id);
+        }
+
+        @JavascriptInterface
+        public void m3uRelease(String id) {
+            mM3uParser.release(id);
+        }
+
+        @JavascriptInterface
+        public void epgIngest(String url) {
+            mEpgStore.ingest(url);
+        }
+
+        @JavascriptInterface
+        public String epgQuery(String channelIdsJson, long from, long to) {
+            return mEpgStore.query(channelIdsJson, from, to);
+        }
+
+        @JavascriptInterface
+        public String epgStatus() {
+            return mEpgStore.getStatusJson();
+        }
+
+        @JavascriptInterface
+        public String epgSourceKey(String url) {
+            return EpgStore.sourceKey(url);
+        }
+
+        @JavascriptInterface
+        public void epgClear() {
+            mEpgStore.clear();
+        }
+
+        @JavascriptInterface
+        public int catalogBegin(String playlistId, long timestamp, String filtersJson, String extraJson) {
+            return mCatalogStore.begin(playlistId, timestamp, filtersJson, extraJson);
+        }
+
+        @JavascriptInterface
+        public void catalogAppend(int writeId, String section, String kind, String json) {
+            mCatalogStore.append(writeId, section, kind, json);
+        }
+
+        @JavascriptInterface
+        public void catalogCommit(int writeId) {
+            mCatalogStore.commit(writeId);
+        }
+
+        @JavascriptInterface
+        public String catalogLoad(String playlistId) {
+            return mCatalogStore.load(playlistId);
+        }
+
+        @JavascriptInterface
+        public String catalogLoadMerged(String entriesJson) {
+            return mCatalogStore.loadMerged(entriesJson);
+        }
+
+        @JavascriptInterface
+        public String bridgeBenchmarkPayload(int bytes) {
+            return NativeChannel.benchmarkPayload(bytes);
+        }
+
+        @JavascriptInterface
+        public void catalogTouch(String playlistId, long timestamp) {
+            mCatalogStore.touch(playlistId, timestamp);
+        }
+
+        @JavascriptInterface
+        public void catalogClear(String playlistId) {
+            mCatalogStore.clear(playlistId);
+        }
+
+        @JavascriptInterface
+        public void dedupConfigure(String wordsJson) {
+            mDedupIndex.configure(wordsJson);
+        }
+
+        @JavascriptInterface
+        public String dedupIndex(String section, int count, String rows) {
+            return mDedupIndex.index(section, count, rows);
+        }
+
+        @JavascriptInterface
+        public String dedupGroup(String section, String rows) {
+            return mDedupIndex.group(section, rows);
+        }
+
+        @JavascriptInterface
+        public String dedupVersions(String section, String id) {
+            return mDedupIndex.versions(section, id);
+        }
+
+        @JavascriptInterface
+        public void searchIndex(String section, int generation, int count, String rows) {
+            mSearchIndex.index(section, generation, count, rows);
+        }
+
+        @JavascriptInterface
+        public String searchQuery(String section, int generation, String query, int offset, int limit) {
+            return mSearchIndex.query(section, generation, query, offset, limit);
+        }
+
+        @JavascriptInterface
+        public void categoryRulesConfigure(String rulesJson) {
+            mCategoryRules.configure(rulesJson);
+        }
+
+        @JavascriptInterface
+        public String categoryRulesClassify(int count, String rows) {
+            return mCategoryRules.classify(count, rows);
+        }
+
+        @JavascriptInterface
+        public void xtreamFetch(String id, String requestsJson, String dropFieldsJson, int parallelism) {
+            mXtreamClient.fetch(id, requestsJson, dropFieldsJson, parallelism);
+        }
+
+        @JavascriptInterface
+        public String xtreamTake(String id, String action) {
+            return mXtreamClient.take(id, action);
+        }
+
+        @JavascriptInterface
+        public void imageCachePrefetch(int tileWidth, int tileHeight, String urls) {
+            mImageCache.prefetch(tileWidth, tileHeight, urls);
+        }
+
+        @JavascriptInterface
+        public String imageCacheStats() {
+            return mImageCache.getStatsJson();
+        }
+
+        @JavascriptInterface
+        public void tmdbFetch(String id, String url) {
+            mTmdbCache.fetch(id, url);
+        }
+
+        @JavascriptInterface
+        public void tmdbPrefetch(String requestsJson) {
+            mTmdbCache.prefetch(requestsJson);
+        }
+
+        @JavascriptInterface
+        public String tmdbCacheStats() {
+            return mTmdbCache.getStatsJson();
+        }
+
+        @JavascriptInterface
+        public String userDataRead(String collection, int offset, int limit) {
+            return mUserDataLog.read(collection, offset, limit);
+        }
+
+        @JavascriptInterface
+        public String userDataGet(String collection, String key) {
+            return mUserDataLog.get(collection, key);
+        }
+
+        @JavascriptInterface
+        public void userDataPut(String collection, String key, String json, boolean first) {
+            mUserDataLog.put(collection, key, json, first);
+        }
+
+        @JavascriptInterface
+        public void userDataRemove(String collection, String key) {
+            mUserDataLog.remove(collection, key);
+        }
+
+        @JavascriptInterface
+        public void userDataReplace(String collection, String entriesJson) {
+            mUserDataLog.replace(collection, entriesJson);
+        }
+
+        @JavascriptInterface
+        public void userDataClear() {
+            mUserDataLog.clear();
+        }
+
+        @JavascriptInterface
+        public void userDataTrack(String collection, String key, long minPositionMs, int watchedPercent, String timeField) {
+            mUserDataLog.track(collection, key, minPositionMs, watchedPercent, timeField);
+        }
+
         @JavascriptInterface
         public long downloadFile(String url, String filename) {
-            try {
-                android.app.DownloadManager dm = (android.app.DownloadManager) getSystemService(DOWNLOAD_SERVICE);
-                if (dm == null) return -1;
-                String safeName = filename == null || filename.isEmpty() ? "download.ts" : filename.replaceAll("[/\\\\]", "_");
-                android.app.DownloadManager.Request req = new android.app.DownloadManager.Request(android.net.Uri.parse(url));
-                req.setTitle(safeName);
-                req.setNotificationVisibility(android.app.DownloadManager.Request.VISIBILITY_VISIBLE_NOTIFY_COMPLETED);
-                req.setDestinationInExternalPublicDir(android.os.Environment.DIRECTORY_MOVIES, safeName);
-                req.setAllowedOverMetered(true);
-                req.setAllowedOverRoaming(true);
-                return dm.enqueue(req);
-            }
-            catch (Exception ex) {
-                runOnUiThread(() -> mWebView.evaluateJavascript(
-                    "window.log && window.log('ERROR downloadFile: " + ex.getMessage().replace("'", "\\'") + "');", null));
-                return -1;
-            }
+            return enqueueDownload(url, filename);
         }
 
         @JavascriptInterface
         public String getAndroidDownloadStatus(long id) {
             try {
-                android.app.DownloadManager dm = (android.app.DownloadManager) getSystemService(DOWNLOAD_SERVICE);
-                if (dm == null) return "{}";
-                android.app.DownloadManager.Query q = new android.app.DownloadManager.Query().setFilterById(id);
-                android.database.Cursor c = dm.query(q);
-                if (c == null || !c.moveToFirst()) {
-                    if (c != null) c.close();
-                    return "{}";
-                }
-                int status = c.getInt(c.getColumnIndexOrThrow(android.app.DownloadManager.COLUMN_STATUS));
-                long total = c.getLong(c.getColumnIndexOrThrow(android.app.DownloadManager.COLUMN_TOTAL_SIZE_BYTES));
-                long downloaded = c.getLong(c.getColumnIndexOrThrow(android.app.DownloadManager.COLUMN_BYTES_DOWNLOADED_SO_FAR));
-                c.close();
-                String label;
-                if (status == android.app.DownloadManager.STATUS_SUCCESSFUL) label = "done";
-                else if (status == android.app.DownloadManager.STATUS_FAILED) label = "error";
-                else if (status == android.app.DownloadManager.STATUS_PAUSED) label = "paused";
-                else if (status == android.app.DownloadManager.STATUS_PENDING) label = "queued";
-                else label = "downloading";
-                return "{\"status\":\"" + label + "\",\"total\":" + total + ",\"downloaded\":" + downloaded + "}";
+                JSONObject statuses = new JSONObject(queryDownloads(new long[] { id }));
+                JSONObject status = statuses.optJSONObject(String.valueOf(id));
+                return status != null ? status.toString() : "{}";
             }
             catch (Exception ex) {
                 return "{}";
@@ -776,11 +1491,73 @@ public class MainActivity extends Activity {
 
         @JavascriptInterface
         public void cancelAndroidDownload(long id) {
-            try {
-                android.app.DownloadManager dm = (android.app.DownloadManager) getSystemService(DOWNLOAD_SERVICE);
-                if (dm != null) dm.remove(id);
-            }
-            catch (Exception ex) { /* ignore */ }
+            cancelDownload(id);
+        }
+
+        @JavascriptInterface
+        public String hostStats(int windowMinutes) {
+            return HostStats.getJson(windowMinutes);
+        }
+
+        @JavascriptInterface
+        public String hostStatsRank(String urlsJson, int windowMinutes) {
+            return HostStats.rank(urlsJson, windowMinutes);
+        }
+
+        /** A transfer made from JS (fetch); times below 0 are unknown. */
+        @JavascriptInterface
+        public void hostStatsRecord(String url, String kind, long bytes, long ttfbMs, long bodyMs, boolean error) {
+            HostStats.record(url, kind, bytes, -1, ttfbMs, bodyMs, error);
+        }
+
+        @JavascriptInterface
+        public void frameMonitorSetEnabled(boolean enabled) {
+            runOnUiThread(() -> mFrameMonitor.setEnabled(enabled));
+        }
+
+        @JavascriptInterface
+        public String frameMonitorStats() {
+            return mFrameMonitor.getJson();
+        }
+
+        @JavascriptInterface
+        public boolean traceIsRecording() {
+            return Tracer.isRecording();
+        }
+
+        @JavascriptInterface
+        public void traceSetRecording(boolean recording) {
+            Tracer.setRecording(recording);
+        }
+
+        @JavascriptInterface
+        public void traceSetSampleRate(float rate) {
+            Tracer.setSampleRate(MainActivity.this, rate);
+        }
+
+        @JavascriptInterface
+        public void traceSpans(String json) {
+            Tracer.addJsSpans(json);
+        }
+
+        @JavascriptInterface
+        public String traceExport() {
+            return Tracer.export(MainActivity.this);
+        }
+
+        @JavascriptInterface
+        public void bridgeProfilerSetEnabled(boolean enabled) {
+            mBridgeProfiler.setEnabled(enabled);
+        }
+
+        @JavascriptInterface
+        public String bridgeProfilerScripts() {
+            return mBridgeProfiler.getJson();
+        }
+
+        @JavascriptInterface
+        public void channelCall(String requestJson) {
+            mNativeChannel.call(requestJson);
         }
     }
 }
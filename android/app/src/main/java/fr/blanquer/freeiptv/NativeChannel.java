@@ -0,0 +1,264 @@
+package fr.blanquer.freeiptv;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.webkit.JavaScriptReplyProxy;
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous bridge calls. JS posts {id, method, args} on the injected
+ * window.AndroidChannel object (or Android.channelCall on WebViews without
+ * web message listeners); the registered method runs on a bounded worker
+ * pool, at most maxConcurrent at a time per method, and every call is
+ * answered once, on one path: the result, its exception or a timeout.
+ * Answers on the port are one ArrayBuffer, an 8 byte header ("FB", format
+ * version, status, call id as little-endian uint32) followed by the UTF-8
+ * bytes of the result, handed over without a UTF-16 copy. WebViews without
+ * ArrayBuffer messages, and the Android.channelCall fallback, get the same
+ * frame as a string ("id:status:body").
+ */
+public class NativeChannel {
+    private static final String TAG = "NativeChannel";
+    static final String OBJECT_NAME = "AndroidChannel";
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int WORKERS = 4;
+    private static final int MAX_QUEUED = 64;
+    private static final int DEFAULT_CONCURRENCY = 2;
+    private static final long DEFAULT_TIMEOUT_MS = 30000;
+    static final int STATUS_OK = 0;
+    static final int STATUS_ERROR = 1;
+    static final int STATUS_TIMEOUT = 2;
+
+    public interface Method {
+        String call(JSONArray args) throws Exception;
+    }
+
+    private static class Route {
+        final String name;
+        final Method method;
+        final int maxConcurrent;
+        final long timeoutMs;
+        final ArrayDeque<Call> waiting = new ArrayDeque<>();
+        int running;
+
+        Route(String name, Method method, int maxConcurrent, long timeoutMs) {
+            this.name = name;
+            this.method = method;
+            this.maxConcurrent = maxConcurrent;
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    private static class Call {
+        long id;
+        Route route;
+        JSONArray args;
+        JavaScriptReplyProxy replyProxy;
+        Runnable timeout;
+        volatile Future<?> future;
+        volatile boolean started;
+        final AtomicBoolean answered = new AtomicBoolean();
+    }
+
+    private final Map<String, Route> mRoutes = new HashMap<>();
+    private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(WORKERS, WORKERS, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED));
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private Consumer<String> mJsCallback;
+    private Runnable mRequestListener;
+    private boolean mBinary;
+
+    public NativeChannel() {
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Receives the answers of calls made through {@link #call(String)}. */
+    public void setJsCallback(Consumer<String> callback) {
+        mJsCallback = callback;
+    }
+
+    /** Told of every incoming request, before it is parsed. */
+    public void setRequestListener(Runnable listener) {
+        mRequestListener = listener;
+    }
+
+    public void register(String name, Method method) {
+        register(name, DEFAULT_CONCURRENCY, DEFAULT_TIMEOUT_MS, method);
+    }
+
+    public synchronized void register(String name, int maxConcurrent, long timeoutMs, Method method) {
+        mRoutes.put(name, new Route(name, method, Math.max(1, maxConcurrent), timeoutMs));
+    }
+
+    /** Injects window.AndroidChannel; false when the WebView cannot. */
+    public boolean install(WebView webView) {
+        if (!WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_LISTENER)) {
+            Log.d(TAG, "Web message listener not supported, calls go through Android.channelCall");
+            return false;
+        }
+        mBinary = WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_ARRAY_BUFFER);
+        WebViewCompat.addWebMessageListener(webView, OBJECT_NAME, Collections.singleton("*"), this::onMessage);
+        Log.d(TAG, "Installed (" + (mBinary ? "ArrayBuffer" : "string") + " frames)");
+        return true;
+    }
+
+    /** Fallback entry point, answered through the JS callback. */
+    public void call(String requestJson) {
+        submit(requestJson, null);
+    }
+
+    private void onMessage(WebView view, WebMessageCompat message, Uri sourceOrigin, boolean isMainFrame,
+                           JavaScriptReplyProxy replyProxy) {
+        if (!isMainFrame || message.getType() != WebMessageCompat.TYPE_STRING) return;
+        submit(message.getData(), replyProxy);
+    }
+
+    private void submit(String requestJson, JavaScriptReplyProxy replyProxy) {
+        if (mRequestListener != null) mRequestListener.run();
+        Call call = new Call();
+        call.replyProxy = replyProxy;
+        String name;
+        try {
+            JSONObject request = new JSONObject(requestJson);
+            call.id = request.getLong("id");
+            name = request.getString("method");
+            JSONArray args = request.optJSONArray("args");
+            call.args = args != null ? args : new JSONArray();
+        } catch (Exception e) {
+            Log.w(TAG, "Malformed request: " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            call.route = mRoutes.get(name);
+        }
+        if (call.route == null) {
+            answer(call, STATUS_ERROR, "Unknown method " + name);
+            return;
+        }
+        call.timeout = () -> {
+            answer(call, STATUS_TIMEOUT, call.route.name + " timed out after " + call.route.timeoutMs + " ms");
+            // Only a running call is interrupted: a queued one still has to
+            // run (and return at once) to hand its slot to the next call.
+            Future<?> future = call.future;
+            if (future != null && call.started) future.cancel(true);
+        };
+        mMainHandler.postDelayed(call.timeout, call.route.timeoutMs);
+        synchronized (this) {
+            if (call.route.running >= call.route.maxConcurrent) {
+                call.route.waiting.add(call);
+                return;
+            }
+            call.route.running++;
+        }
+        start(call);
+    }
+
+    private void start(Call call) {
+        try {
+            call.future = mExecutor.submit(() -> run(call));
+        } catch (RejectedExecutionException e) {
+            answer(call, STATUS_ERROR, "Bridge busy");
+            release(call.route);
+        }
+    }
+
+    private void run(Call call) {
+        call.started = true;
+        try {
+            if (call.answered.get()) return;
+            String body = call.route.method.call(call.args);
+            answer(call, STATUS_OK, body != null ? body : "");
+        } catch (Exception e) {
+            if (call.answered.get()) return;
+            Log.e(TAG, call.route.name + ": " + e.getMessage());
+            answer(call, STATUS_ERROR, String.valueOf(e.getMessage()));
+        } finally {
+            release(call.route);
+        }
+    }
+
+    private void release(Route route) {
+        Call next;
+        synchronized (this) {
+            next = route.waiting.poll();
+            if (next == null) {
+                route.running--;
+                return;
+            }
+        }
+        start(next);
+    }
+
+    private void answer(Call call, int status, String body) {
+        if (!call.answered.compareAndSet(false, true)) return;
+        if (call.timeout != null) mMainHandler.removeCallbacks(call.timeout);
+        JavaScriptReplyProxy replyProxy = call.replyProxy;
+        if (replyProxy == null) {
+            String frame = JSONObject.quote(call.id + ":" + status + ":" + body);
+            if (mJsCallback != null) mJsCallback.accept("window.__channelNative&&window.__channelNative(" + frame + ")");
+        } else if (mBinary) {
+            byte[] frame = encode(call.id, status, body);
+            mMainHandler.post(() -> replyProxy.postMessage(frame));
+        } else {
+            String frame = call.id + ":" + status + ":" + body;
+            mMainHandler.post(() -> replyProxy.postMessage(frame));
+        }
+    }
+
+    static byte[] encode(long id, int status, String body) {
+        byte[] utf8 = body.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[HEADER_SIZE + utf8.length];
+        frame[0] = 'F';
+        frame[1] = 'B';
+        frame[2] = FORMAT_VERSION;
+        frame[3] = (byte) status;
+        frame[4] = (byte) id;
+        frame[5] = (byte) (id >>> 8);
+        frame[6] = (byte) (id >>> 16);
+        frame[7] = (byte) (id >>> 24);
+        System.arraycopy(utf8, 0, frame, HEADER_SIZE, utf8.length);
+        return frame;
+    }
+
+    /**
+     * A JSON array of catalog-like rows of about the given size, the payload
+     * of NativeChannel.benchmark on both transports.
+     */
+    public static String benchmarkPayload(int bytes) {
+        StringBuilder out = new StringBuilder(bytes + 256);
+        out.append('[');
+        for (int i = 0; out.length() < bytes; i++) {
+            if (i > 0) out.append(',');
+            out.append("{\"stream_id\":").append(100000 + i)
+                    .append(",\"name\":\"FR - Le D\u00eener de cons ").append(i)
+                    .append(" (1998)\",\"stream_icon\":\"http://provider.example/images/").append(i)
+                    .append(".jpg\",\"category_id\":\"").append(i % 40)
+                    .append("\",\"added\":\"").append(1700000000 + i * 60)
+                    .append("\",\"rating\":\"7.").append(i % 10).append("\"}");
+        }
+        return out.append(']').toString();
+    }
+}
@@ -2,6 +2,7 @@ package fr.blanquer.freeiptv;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.view.SurfaceView;
 
 import androidx.annotation.OptIn;
@@ -24,12 +25,14 @@ import androidx.media3.ui.AspectRatioFrameLayout;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 @OptIn(markerClass = UnstableApi.class)
 public class NativePlayer {
 
     private static final int POSITION_UPDATE_INTERVAL_MS = 250;
+    private static final long CHECKPOINT_INTERVAL_MS = 10000;
     private static final String STATE_NONE = "NONE";
     private static final String STATE_IDLE = "IDLE";
     private static final String STATE_READY = "READY";
@@ -41,6 +44,8 @@ public class NativePlayer {
     private SurfaceView mSurfaceView;
     private AspectRatioFrameLayout mAspectRatioLayout;
     private Consumer<String> mJsCallback;
+    private BiConsumer<Long, Long> mProgressListener;
+    private long mLastCheckpointAt;
     private BandwidthMeter mBandwidthMeter;
 
     private volatile String mState = STATE_NONE;
@@ -56,6 +61,13 @@ public class NativePlayer {
     private volatile int mVideoWidth = 0;
     private volatile int mVideoHeight = 0;
     private volatile boolean mSessionActive = false;
+    private volatile String mUrl;
+    // What JS is playing, handed over before open() and bound to it, so a
+    // recreated WebView can put its player screen back on the session.
+    private volatile String mPendingContext;
+    private volatile String mSessionContext;
+    // Tracer start of the current open(), until its first rendered frame.
+    private long mOpenTraceNs;
 
     private final Runnable mPositionUpdater = new Runnable() {
         @Override
@@ -64,6 +76,7 @@ public class NativePlayer {
                 mCurrentPosition = mPlayer.getCurrentPosition();
                 mDuration = mPlayer.getDuration() == C.TIME_UNSET ? 0 : mPlayer.getDuration();
                 evalJs("__avplay_listener.oncurrentplaytime(" + mCurrentPosition + ")");
+                if (SystemClock.elapsedRealtime() - mLastCheckpointAt >= CHECKPOINT_INTERVAL_MS) checkpoint();
             }
             mHandler.postDelayed(this, POSITION_UPDATE_INTERVAL_MS);
         }
@@ -86,9 +99,22 @@ public class NativePlayer {
         mJsCallback = callback;
     }
 
+    /**
+     * Receives (positionMs, durationMs) every CHECKPOINT_INTERVAL_MS of
+     * playback, on pause and at the end, on the main thread.
+     */
+    public void setProgressListener(BiConsumer<Long, Long> listener) {
+        mProgressListener = listener;
+    }
+
     public void open(String url) {
         mSessionActive = true;
+        // A reopen of the same URL (retries) keeps the context it was given.
+        if (mPendingContext != null || !url.equals(mUrl)) mSessionContext = mPendingContext;
+        mPendingContext = null;
+        mUrl = url;
         mHandler.post(() -> {
+            mOpenTraceNs = Tracer.begin();
             mPlayer.setMediaItem(MediaItem.fromUri(url));
             mState = STATE_IDLE;
             mCurrentPosition = 0;
@@ -102,6 +128,7 @@ public class NativePlayer {
 
     public void prepareAsync() {
         mHandler.post(() -> {
+            if (mPlayer == null) return;
             mPreparing = true;
             mPlayer.prepare();
         });
@@ -109,6 +136,7 @@ public class NativePlayer {
 
     public void play() {
         mHandler.post(() -> {
+            if (mPlayer == null) return;
             mPlayer.play();
             mState = STATE_PLAYING;
         });
@@ -116,8 +144,10 @@ public class NativePlayer {
 
     public void pause() {
         mHandler.post(() -> {
+            if (mPlayer == null) return;
             mPlayer.pause();
             mState = STATE_PAUSED;
+            checkpoint();
         });
     }
 
@@ -126,6 +156,7 @@ public class NativePlayer {
             if (mPlayer != null && mPlayer.isPlaying()) {
                 mPlayer.pause();
                 mState = STATE_PAUSED;
+                checkpoint();
             }
         });
     }
@@ -133,6 +164,7 @@ public class NativePlayer {
     public void stop() {
         mSessionActive = false;
         mHandler.post(() -> {
+            if (mPlayer == null) return;
             mPlayer.stop();
             mState = STATE_IDLE;
             mHandler.removeCallbacks(mPositionUpdater);
@@ -142,6 +174,7 @@ public class NativePlayer {
     public void close() {
         mSessionActive = false;
         mHandler.post(() -> {
+            if (mPlayer == null) return;
             mPlayer.stop();
             mPlayer.clearMediaItems();
             mState = STATE_NONE;
@@ -154,11 +187,14 @@ public class NativePlayer {
     }
 
     public void seekTo(long positionMs) {
-        mHandler.post(() -> mPlayer.seekTo(positionMs));
+        mHandler.post(() -> {
+            if (mPlayer != null) mPlayer.seekTo(positionMs);
+        });
     }
 
     public void setSpeed(float speed) {
         mHandler.post(() -> {
+            if (mPlayer == null) return;
             if (speed > 0) {
                 mPlayer.setPlaybackSpeed(speed);
             }
@@ -205,8 +241,43 @@ public class NativePlayer {
         return mStreamInfoJson;
     }
 
+    /** JSON describing what the next open() plays, for {@link #getSessionSnapshot()}. */
+    public void setSessionContext(String json) {
+        mPendingContext = json;
+    }
+
+    /**
+     * {url, positionMs, durationMs, state, tracks, streams, context} of the
+     * live session, null when there is none. Readable from any thread: the
+     * position is the one last published to JS.
+     */
+    public String getSessionSnapshot() {
+        if (!mSessionActive || mUrl == null) return null;
+        String context = mSessionContext;
+        return "{\"url\":" + JSONObject.quote(mUrl)
+                + ",\"positionMs\":" + mCurrentPosition
+                + ",\"durationMs\":" + mDuration
+                + ",\"state\":\"" + mState
+                + "\",\"tracks\":" + mTrackInfoJson
+                + ",\"streams\":" + mStreamInfoJson
+                + ",\"context\":" + (context != null ? context : "null") + "}";
+    }
+
+    /**
+     * Drops the track lists of a closed session; returns the characters
+     * freed. A live session keeps them, as JS reads them in the player.
+     */
+    public int dropTrackInfo() {
+        if (mSessionActive) return 0;
+        int freed = mTrackInfoJson.length() + mStreamInfoJson.length() - 4;
+        mTrackInfoJson = "[]";
+        mStreamInfoJson = "[]";
+        return freed;
+    }
+
     public void setSelectTrack(String type, int index) {
         mHandler.post(() -> {
+            if (mPlayer == null) return;
             Tracks tracks = mPlayer.getCurrentTracks();
             int trackType = trackTypeFromString(type);
             int matchIndex = 0;
@@ -239,6 +310,7 @@ public class NativePlayer {
 
     public void setDisplayMethod(String method) {
         mHandler.post(() -> {
+            if (mAspectRatioLayout == null) return;
             int resizeMode;
             switch (method) {
                 case "PLAYER_DISPLAY_MODE_FULL_SCREEN":
@@ -283,6 +355,13 @@ public class NativePlayer {
         catch (Exception ex) { return 0; }
     }
 
+    private void checkpoint() {
+        if (mProgressListener == null || mPlayer == null) return;
+        mLastCheckpointAt = SystemClock.elapsedRealtime();
+        long duration = mPlayer.getDuration() == C.TIME_UNSET ? 0 : mPlayer.getDuration();
+        mProgressListener.accept(mPlayer.getCurrentPosition(), duration);
+    }
+
     private void evalJs(String js) {
         if (mJsCallback != null) {
             mJsCallback.accept(js);
@@ -383,6 +462,7 @@ public class NativePlayer {
                         mPreparing = false;
                         mState = STATE_READY;
                         mDuration = mPlayer.getDuration() == C.TIME_UNSET ? 0 : mPlayer.getDuration();
+                        Tracer.end("NativePlayer.prepare", "playback", mOpenTraceNs);
                         evalJs("__avplay_prepare_success()");
                     }
                     if (mBuffering) {
@@ -394,6 +474,7 @@ public class NativePlayer {
                     break;
                 case Player.STATE_ENDED:
                     mState = STATE_PAUSED;
+                    checkpoint();
                     evalJs("__avplay_listener.onstreamcompleted()");
                     mHandler.removeCallbacks(mPositionUpdater);
                     break;
@@ -425,6 +506,12 @@ public class NativePlayer {
             updateStreamInfo(videoSize);
         }
 
+        @Override
+        public void onRenderedFirstFrame() {
+            Tracer.end("NativePlayer.firstFrame", "playback", mOpenTraceNs);
+            mOpenTraceNs = 0;
+        }
+
         @Override
         public void onCues(CueGroup cueGroup) {
             if (mSilentSubtitle) {
@@ -0,0 +1,84 @@
+package fr.blanquer.freeiptv;
+
+import android.os.SystemClock;
+
+import androidx.annotation.OptIn;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.TransferListener;
+import androidx.media3.exoplayer.analytics.AnalyticsListener;
+import androidx.media3.exoplayer.source.LoadEventInfo;
+import androidx.media3.exoplayer.source.MediaLoadData;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Feeds the player's network transfers (manifests, segments, progressive
+ * streams) to HostStats. Time to first byte runs from the transfer being
+ * set up to the data source being open, so it includes the connection,
+ * which ExoPlayer does not time on its own. Failed loads are reported by
+ * the analytics side, as an open that fails never starts a transfer.
+ */
+@OptIn(markerClass = UnstableApi.class)
+public class PlayerTransferStats implements TransferListener, AnalyticsListener {
+    private static class Active {
+        String url;
+        long setupAt;
+        long startAt = -1;
+        long bytes;
+    }
+
+    private final Map<DataSource, Active> mActive = new IdentityHashMap<>();
+
+    @Override
+    public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        if (!isNetwork) return;
+        Active active = new Active();
+        active.url = dataSpec.uri.toString();
+        active.setupAt = SystemClock.elapsedRealtime();
+        synchronized (mActive) {
+            mActive.put(source, active);
+        }
+    }
+
+    @Override
+    public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        if (!isNetwork) return;
+        synchronized (mActive) {
+            Active active = mActive.get(source);
+            if (active != null) active.startAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    @Override
+    public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+        if (!isNetwork) return;
+        synchronized (mActive) {
+            Active active = mActive.get(source);
+            if (active != null) active.bytes += bytesTransferred;
+        }
+    }
+
+    @Override
+    public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        if (!isNetwork) return;
+        Active active;
+        synchronized (mActive) {
+            active = mActive.remove(source);
+        }
+        if (active == null || active.startAt < 0) return;
+        HostStats.record(active.url, HostStats.KIND_PLAYER, active.bytes, -1, active.startAt - active.setupAt,
+                SystemClock.elapsedRealtime() - active.startAt, false);
+    }
+
+    @Override
+    public void onLoadError(EventTime eventTime, LoadEventInfo loadEventInfo, MediaLoadData mediaLoadData,
+                            IOException error, boolean wasCanceled) {
+        if (wasCanceled) return;
+        HostStats.record(loadEventInfo.uri.toString(), HostStats.KIND_PLAYER, loadEventInfo.bytesLoaded, -1, -1,
+                -1, true);
+    }
+}
@@ -0,0 +1,69 @@
+package fr.blanquer.freeiptv;
+
+import androidx.annotation.OptIn;
+import androidx.media3.common.C;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.exoplayer.DefaultLoadControl;
+import androidx.media3.exoplayer.upstream.Allocator;
+import androidx.media3.exoplayer.upstream.DefaultAllocator;
+
+/**
+ * The configured buffer durations, with a cap on the forward buffer that
+ * MainActivity lowers while the system is short of memory. Loading stops
+ * at the cap, so what is already buffered beyond it drains as it plays
+ * (no seek, no rebuffer), and the allocator gives back its pooled segments
+ * at once. Clearing the cap returns to the configured durations.
+ */
+@OptIn(markerClass = UnstableApi.class)
+public class PressureLoadControl extends DefaultLoadControl {
+    // Above the start thresholds, or playback could wait for data that is never loaded.
+    private static final long CAP_MARGIN_MS = 2000;
+
+    private final long mFloorMs;
+    private volatile long mCapUs = C.TIME_UNSET;
+
+    public PressureLoadControl(int minBufferMs, int maxBufferMs, int bufferForPlaybackMs,
+                               int bufferForPlaybackAfterRebufferMs) {
+        super(new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+                minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs,
+                DEFAULT_TARGET_BUFFER_BYTES, DEFAULT_PRIORITIZE_TIME_OVER_SIZE_THRESHOLDS,
+                DEFAULT_BACK_BUFFER_DURATION_MS, DEFAULT_RETAIN_BACK_BUFFER_FROM_KEYFRAME);
+        mFloorMs = Math.max(bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs) + CAP_MARGIN_MS;
+    }
+
+    /** Caps the forward buffer to capMs, never below the start thresholds; 0 removes the cap. */
+    public void setCapMs(long capMs) {
+        mCapUs = capMs > 0 ? Math.max(capMs, mFloorMs) * 1000 : C.TIME_UNSET;
+    }
+
+    public long getCapMs() {
+        return mCapUs == C.TIME_UNSET ? 0 : mCapUs / 1000;
+    }
+
+    @Override
+    public boolean shouldContinueLoading(Parameters parameters) {
+        // Always ask the default policy first: it tracks the loading state per player.
+        boolean load = super.shouldContinueLoading(parameters);
+        long capUs = mCapUs;
+        return load && (capUs == C.TIME_UNSET || parameters.bufferedDurationUs < capUs);
+    }
+
+    /** Bytes of media held by the player's buffers. */
+    public long getBufferedBytes() {
+        return getAllocator().getTotalBytesAllocated();
+    }
+
+    /**
+     * Frees the allocator's pooled segments beyond what is in use; the
+     * default target comes back with the next track selection.
+     */
+    public void trimAllocator() {
+        Allocator allocator = getAllocator();
+        if (allocator instanceof DefaultAllocator) {
+            DefaultAllocator pool = (DefaultAllocator) allocator;
+            pool.setTargetBufferSize(pool.getTotalBytesAllocated());
+        } else {
+            allocator.trim();
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package fr.blanquer.freeiptv;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Search-as-you-type over the titles of a section. Titles are folded like
+ * browse.js _searchKey (lower case, accents stripped, punctuation turned into
+ * spaces) and split into terms; the index is a sorted term dictionary with
+ * one posting list per term, plus a trigram table over the terms so a query
+ * word is matched anywhere inside a term, as the JS filter does. A word that
+ * matches no term at all falls back to terms within one or two edits.
+ * Indexes are built on a background thread, persisted per section and
+ * swapped in whole; queries run on the bridge thread against the current one.
+ */
+public class SearchIndex {
+    private static final String TAG = "SearchIndex";
+    private static final char ROW_SEP = '\u001e';
+    private static final int FILE_FORMAT = 1;
+    private static final int ALPHABET = 36;
+    private static final int EXACT = 4;
+    private static final int PREFIX = 3;
+    private static final int SUBSTRING = 2;
+    private static final int FUZZY = 1;
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    /** Immutable index of one section; rows are positions in the array JS indexed. */
+    private static final class Index {
+        final int generation;
+        final long signature;
+        final String[] texts;
+        final String[] folded;
+        final String[] terms;
+        final int[][] postings;
+        final int[][] trigrams;
+
+        Index(int generation, long signature, String[] texts, String[] folded, String[] terms, int[][] postings) {
+            this.generation = generation;
+            this.signature = signature;
+            this.texts = texts;
+            this.folded = folded;
+            this.terms = terms;
+            this.postings = postings;
+            this.trigrams = buildTrigrams(terms);
+        }
+
+        Index withGeneration(int newGeneration) {
+            return new Index(newGeneration, signature, texts, folded, terms, postings, trigrams);
+        }
+
+        private Index(int generation, long signature, String[] texts, String[] folded, String[] terms,
+                      int[][] postings, int[][] trigrams) {
+            this.generation = generation;
+            this.signature = signature;
+            this.texts = texts;
+            this.folded = folded;
+            this.terms = terms;
+            this.postings = postings;
+            this.trigrams = trigrams;
+        }
+    }
+
+    private final File mDir;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, Index> mIndexes = new ConcurrentHashMap<>();
+
+    public SearchIndex(Context context) {
+        this(new File(context.getFilesDir(), "search"));
+    }
+
+    private SearchIndex(File dir) {
+        mDir = dir;
+    }
+
+    /**
+     * Indexes a section in the background. rows holds count titles separated
+     * by ROW_SEP; generation is echoed by query() so JS only trusts hits that
+     * refer to the array it sent. An unchanged catalog (same signature as the
+     * live or persisted index) is adopted without rebuilding, and a changed
+     * one only folds the titles it has not seen before.
+     */
+    public void index(String section, int generation, int count, String rows) {
+        mExecutor.execute(() -> {
+            long startNs = System.nanoTime();
+            String[] texts = split(rows, count);
+            if (texts == null) {
+                Log.e(TAG, "index " + section + ": expected " + count + " rows");
+                return;
+            }
+            long signature = signature(rows);
+            Index previous = mIndexes.get(section);
+            if (previous == null) previous = readIndex(section);
+            if (previous != null && previous.signature == signature && previous.texts.length == count) {
+                mIndexes.put(section, previous.withGeneration(generation));
+                Log.d(TAG, "Reused " + section + " index (" + count + " titles) in "
+                        + (System.nanoTime() - startNs) / 1000000 + " ms");
+                return;
+            }
+            Index index = build(generation, signature, texts, previous);
+            mIndexes.put(section, index);
+            Log.d(TAG, "Built " + section + " index: " + count + " titles, " + index.terms.length + " terms in "
+                    + (System.nanoTime() - startNs) / 1000000 + " ms");
+            writeIndex(section, index);
+        });
+    }
+
+    /**
+     * Returns the rows whose title contains every query word, best first:
+     * whole-word matches before prefixes before substrings before typo
+     * matches, titles starting with the query first, then shorter titles and
+     * row order. JSON {total, rows, fuzzy, ms}, or null when the section's
+     * index is missing or was built for another generation.
+     */
+    public String query(String section, int generation, String query, int offset, int limit) {
+        long startNs = System.nanoTime();
+        Index index = mIndexes.get(section);
+        if (index == null || index.generation != generation) return "null";
+        String folded = fold(query);
+        String[] words = folded.isEmpty() ? new String[0] : folded.split(" ");
+        int docs = index.texts.length;
+        int[] matchedWords = new int[docs];
+        int[] scores = new int[docs];
+        byte[] best = new byte[docs];
+        int[] touched = new int[docs];
+        boolean fuzzy = false;
+        for (int w = 0; w < words.length; w++) {
+            String word = words[w];
+            int[] kinds = new int[index.terms.length];
+            int matched = matchTerms(index, word, kinds);
+            if (matched == 0 && word.length() >= MIN_FUZZY_LENGTH) {
+                matched = matchFuzzy(index, word, kinds);
+                fuzzy |= matched > 0;
+            }
+            if (matched == 0) return result(new int[0], 0, offset, limit, fuzzy, startNs);
+            int touchedCount = 0;
+            for (int t = 0; t < kinds.length; t++) {
+                if (kinds[t] == 0) continue;
+                for (int doc : index.postings[t]) {
+                    if (matchedWords[doc] != w) continue;
+                    if (best[doc] == 0) touched[touchedCount++] = doc;
+                    if (kinds[t] > best[doc]) best[doc] = (byte) kinds[t];
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                matchedWords[doc] = w + 1;
+                scores[doc] += best[doc];
+                best[doc] = 0;
+            }
+        }
+        // Sort keys pack the inverted score, title length and row into one long.
+        int total = 0;
+        long[] keys = new long[docs];
+        for (int doc = 0; doc < docs; doc++) {
+            if (words.length == 0 || matchedWords[doc] != words.length) continue;
+            int score = scores[doc] + (index.folded[doc].startsWith(folded) ? EXACT : 0);
+            int length = Math.min(index.folded[doc].length(), 0xffff);
+            keys[total++] = (long) (0x7fff - score) << 48 | (long) length << 32 | doc;
+        }
+        Arrays.sort(keys, 0, total);
+        int[] hits = new int[total];
+        for (int i = 0; i < total; i++) hits[i] = (int) keys[i];
+        return result(hits, total, offset, limit, fuzzy, startNs);
+    }
+
+    public void release(String section) {
+        mIndexes.remove(section);
+    }
+
+    /**
+     * Drops the in-memory indexes; the next index() reloads them from disk.
+     * Returns how many rows they held.
+     */
+    public int releaseAll() {
+        int rows = 0;
+        for (Index index : mIndexes.values()) rows += index.texts.length;
+        mIndexes.clear();
+        return rows;
+    }
+
+    private static String result(int[] hits, int total, int offset, int limit, boolean fuzzy, long startNs) {
+        int from = Math.max(0, Math.min(offset, total));
+        int to = Math.min(total, from + Math.max(0, limit));
+        StringBuilder out = new StringBuilder(16 + (to - from) * 6);
+        out.append("{\"total\":").append(total).append(",\"rows\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) out.append(',');
+            out.append(hits[i]);
+        }
+        out.append("],\"fuzzy\":").append(fuzzy)
+                .append(",\"ms\":").append((System.nanoTime() - startNs) / 100000 / 10.0).append('}');
+        return out.toString();
+    }
+
+    // Flags in kinds every term containing word; returns how many.
+    private static int matchTerms(Index index, String word, int[] kinds) {
+        int matched = 0;
+        if (word.length() < 3) {
+            for (int t = 0; t < index.terms.length; t++) {
+                int kind = kind(index.terms[t], word);
+                if (kind > 0) {
+                    kinds[t] = kind;
+                    matched++;
+                }
+            }
+            return matched;
+        }
+        // Every trigram of word is in a matching term: walk the rarest list.
+        int[] rarest = null;
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            int[] terms = index.trigrams[trigram(word, i)];
+            if (terms == null) return 0;
+            if (rarest == null || terms.length < rarest.length) rarest = terms;
+        }
+        for (int t : rarest) {
+            int kind = kind(index.terms[t], word);
+            if (kind > 0) {
+                kinds[t] = kind;
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static int kind(String term, String word) {
+        if (!term.contains(word)) return 0;
+        if (term.length() == word.length()) return EXACT;
+        return term.startsWith(word) ? PREFIX : SUBSTRING;
+    }
+
+    // Terms (or term prefixes, the user may still be typing) within one edit,
+    // two for long words, found through shared trigrams.
+    private static int matchFuzzy(Index index, String word, int[] kinds) {
+        int maxEdits = word.length() >= 8 ? 2 : 1;
+        int grams = word.length() - 2;
+        int minShared = Math.max(1, grams - 3 * maxEdits);
+        int[] shared = new int[index.terms.length];
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < grams; i++) {
+            int[] terms = index.trigrams[trigram(word, i)];
+            if (terms == null) continue;
+            for (int t : terms) {
+                if (++shared[t] == minShared) candidates.add(t);
+            }
+        }
+        int matched = 0;
+        for (int t : candidates) {
+            String term = index.terms[t];
+            if (Math.abs(term.length() - word.length()) <= maxEdits && distance(word, term, maxEdits) <= maxEdits
+                    || term.length() > word.length()
+                    && distance(word, term.substring(0, word.length()), maxEdits) <= maxEdits) {
+                kinds[t] = FUZZY;
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    // Optimal string alignment distance, giving up once it exceeds max.
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) return max + 1;
+        int[] prev2 = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, prev2[j - 2] + 1);
+                }
+                cur[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max) return max + 1;
+            int[] recycled = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = recycled;
+        }
+        return prev[m];
+    }
+
+    private static Index build(int generation, long signature, String[] texts, Index previous) {
+        Map<String, String> known = new HashMap<>();
+        if (previous != null) {
+            for (int i = 0; i < previous.texts.length; i++) known.put(previous.texts[i], previous.folded[i]);
+        }
+        String[] folded = new String[texts.length];
+        Map<String, List<Integer>> termDocs = new HashMap<>();
+        for (int doc = 0; doc < texts.length; doc++) {
+            String f = known.get(texts[doc]);
+            if (f == null) {
+                f = fold(texts[doc]);
+                known.put(texts[doc], f);
+            }
+            folded[doc] = f;
+            if (f.isEmpty()) continue;
+            for (String term : f.split(" ")) {
+                List<Integer> docs = termDocs.get(term);
+                if (docs == null) {
+                    docs = new ArrayList<>(2);
+                    termDocs.put(term, docs);
+                }
+                if (docs.isEmpty() || docs.get(docs.size() - 1) != doc) docs.add(doc);
+            }
+        }
+        String[] terms = termDocs.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[][] postings = new int[terms.length][];
+        for (int t = 0; t < terms.length; t++) {
+            List<Integer> docs = termDocs.get(terms[t]);
+            postings[t] = new int[docs.size()];
+            for (int i = 0; i < postings[t].length; i++) postings[t][i] = docs.get(i);
+        }
+        return new Index(generation, signature, texts, folded, terms, postings);
+    }
+
+    private static int[][] buildTrigrams(String[] terms) {
+        int[] counts = new int[ALPHABET * ALPHABET * ALPHABET];
+        for (String term : terms) {
+            forEachTrigram(term, code -> counts[code]++);
+        }
+        int[][] trigrams = new int[counts.length][];
+        int[] fill = new int[counts.length];
+        for (int t = 0; t < terms.length; t++) {
+            final int termId = t;
+            forEachTrigram(terms[t], code -> {
+                if (trigrams[code] == null) trigrams[code] = new int[counts[code]];
+                trigrams[code][fill[code]++] = termId;
+            });
+        }
+        return trigrams;
+    }
+
+    private interface IntConsumer {
+        void accept(int value);
+    }
+
+    // Distinct trigrams of a term, each reported once so posting lists stay sorted and unique.
+    private static void forEachTrigram(String term, IntConsumer consumer) {
+        int grams = term.length() - 2;
+        if (grams <= 0) return;
+        int[] seen = new int[grams];
+        int seenCount = 0;
+        outer:
+        for (int i = 0; i < grams; i++) {
+            int code = trigram(term, i);
+            for (int s = 0; s < seenCount; s++) {
+                if (seen[s] == code) continue outer;
+            }
+            seen[seenCount++] = code;
+            consumer.accept(code);
+        }
+    }
+
+    private static int trigram(String s, int at) {
+        return (symbol(s.charAt(at)) * ALPHABET + symbol(s.charAt(at + 1))) * ALPHABET + symbol(s.charAt(at + 2));
+    }
+
+    private static int symbol(char c) {
+        return c <= '9' ? c - '0' : c - 'a' + 10;
+    }
+
+    /** Same folding as the JS search key: only [a-z0-9] terms separated by single spaces. */
+    static String fold(String text) {
+        String s = text.toLowerCase(java.util.Locale.ROOT);
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                s = Normalizer.normalize(s, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        StringBuilder out = new StringBuilder(s.length());
+        boolean space = true;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '\u0300' && c <= '\u036f') continue;
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                out.append(c);
+                space = false;
+            } else if (!space) {
+                out.append(' ');
+                space = true;
+            }
+        }
+        int end = out.length();
+        if (end > 0 && out.charAt(end - 1) == ' ') out.setLength(end - 1);
+        return out.toString();
+    }
+
+    private static String[] split(String rows, int count) {
+        String[] texts = new String[count];
+        int at = 0;
+        for (int i = 0; i < count; i++) {
+            int end = rows.indexOf(ROW_SEP, at);
+            if (end < 0) end = rows.length();
+            if (at > rows.length()) return null;
+            texts[i] = rows.substring(at, end);
+            at = end + 1;
+        }
+        return at >= rows.length() ? texts : null;
+    }
+
+    private static long signature(String rows) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < rows.length(); i++) {
+            hash ^= rows.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private File indexFile(String section) {
+        return new File(mDir, section.replaceAll("[^A-Za-z0-9_-]", "_") + ".bin");
+    }
+
+    private Index readIndex(String section) {
+        if (mDir == null) return null;
+        File file = indexFile(section);
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_FORMAT) return null;
+            long signature = in.readLong();
+            int count = in.readInt();
+            String[] texts = new String[count];
+            String[] folded = new String[count];
+            for (int i = 0; i < count; i++) {
+                texts[i] = in.readUTF();
+                folded[i] = in.readUTF();
+            }
+            String[] terms = new String[in.readInt()];
+            int[][] postings = new int[terms.length][];
+            for (int t = 0; t < terms.length; t++) {
+                terms[t] = in.readUTF();
+                postings[t] = new int[in.readInt()];
+                for (int i = 0; i < postings[t].length; i++) postings[t][i] = in.readInt();
+            }
+            return new Index(-1, signature, texts, folded, terms, postings);
+        } catch (IOException e) {
+            Log.w(TAG, "readIndex " + section + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeIndex(String section, Index index) {
+        if (mDir == null) return;
+        mDir.mkdirs();
+        File file = indexFile(section);
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FILE_FORMAT);
+            out.writeLong(index.signature);
+            out.writeInt(index.texts.length);
+            for (int i = 0; i < index.texts.length; i++) {
+                out.writeUTF(index.texts[i]);
+                out.writeUTF(index.folded[i]);
+            }
+            out.writeInt(index.terms.length);
+            for (int t = 0; t < index.terms.length; t++) {
+                out.writeUTF(index.terms[t]);
+                out.writeInt(index.postings[t].length);
+                for (int doc : index.postings[t]) out.writeInt(doc);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "writeIndex " + section + ": " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) temp.delete();
+    }
+
+    /** Builds an index over generated titles and times a few queries, nothing kept; returns timing JSON. */
+    public static String benchmark(int titles) {
+        String[] words = { "la", "casa", "de", "papel", "inception", "matrix", "le", "dîner", "cons", "amélie",
+                "star", "wars", "episode", "breaking", "bad", "one", "piece", "naruto", "the", "office" };
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < titles; i++) {
+            if (i > 0) rows.append(ROW_SEP);
+            rows.append(words[i % words.length]).append(' ').append(words[(i * 7 + 3) % words.length])
+                    .append(' ').append(words[(i * 13 + 5) % words.length]).append(" (").append(1980 + i % 45)
+                    .append(") ").append(i);
+        }
+        String[] texts = split(rows.toString(), titles);
+        long startNs = System.nanoTime();
+        SearchIndex search = new SearchIndex((File) null);
+        search.mIndexes.put("benchmark", build(1, signature(rows.toString()), texts, null));
+        long buildMs = (System.nanoTime() - startNs) / 1000000;
+        String[] queries = { "i", "in", "inc", "incep", "casa pap", "diner", "amelie 2001", "incpetion", "brekaing bad" };
+        startNs = System.nanoTime();
+        int runs = 0;
+        for (int r = 0; r < 10; r++) {
+            for (String q : queries) {
+                search.query("benchmark", 1, q, 0, 100);
+                runs++;
+            }
+        }
+        double queryMs = (System.nanoTime() - startNs) / 1000 / runs / 1000.0;
+        String result = "{\"titles\":" + titles + ",\"buildMs\":" + buildMs + ",\"queryMs\":" + queryMs + "}";
+        Log.d(TAG, "benchmark " + result);
+        return result;
+    }
+}
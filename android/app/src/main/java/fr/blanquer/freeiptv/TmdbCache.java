@@ -0,0 +1,462 @@
+package fr.blanquer.freeiptv;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * TMDB GET requests behind a gzip disk cache. Concurrent lookups of one URL
+ * share a single request, outgoing requests are spaced to stay under the
+ * TMDB rate limit with a few in flight, and the most recent lookups go first
+ * so the titles on screen are not stuck behind a category that was left.
+ * prefetch() resolves titles in the background (search, then the details of
+ * the first result) at the lowest priority. JS gets each answer through
+ * window.__tmdbNative[id](status, data, source), see tmdb.js _nativeFetch.
+ */
+public class TmdbCache {
+    private static final String TAG = "TmdbCache";
+    private static final String CACHE_DIR = "tmdb";
+    private static final long MAX_DISK_BYTES = 16 * 1024 * 1024L;
+    private static final long TRIM_TARGET_BYTES = MAX_DISK_BYTES * 3 / 4;
+    private static final long DETAILS_TTL_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final long LIST_TTL_MS = 24L * 60 * 60 * 1000;
+    private static final int MAX_PARALLEL = 4;
+    private static final long MIN_REQUEST_INTERVAL_MS = 40;
+    private static final int MAX_RATE_LIMIT_RETRIES = 2;
+    private static final int MAX_QUEUED_PREFETCH = 300;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 15000;
+    private static final int MAX_BODY_BYTES = 4 * 1024 * 1024;
+
+    private static class Job {
+        final String key;
+        final String url;
+        final String then;
+        final List<String> waiters = new ArrayList<>();
+        boolean started;
+
+        Job(String key, String url, String then) {
+            this.key = key;
+            this.url = url;
+            this.then = then;
+        }
+    }
+
+    private static class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private final File mDir;
+    private final ExecutorService mWorkers = Executors.newFixedThreadPool(MAX_PARALLEL);
+    private final ExecutorService mMaintenance = Executors.newSingleThreadExecutor();
+    private final ArrayDeque<Job> mQueue = new ArrayDeque<>();
+    private final Map<String, Job> mJobs = new HashMap<>();
+    private final AtomicLong mDiskBytes = new AtomicLong(-1);
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mShared = new AtomicLong();
+    private final AtomicLong mRateLimited = new AtomicLong();
+    private final AtomicLong mPrefetched = new AtomicLong();
+    private final AtomicLong mStale = new AtomicLong();
+    private long mNextSlotAt;
+    private volatile Consumer<String> mJsCallback;
+
+    public TmdbCache(Context context) {
+        mDir = new File(context.getCacheDir(), CACHE_DIR);
+        mMaintenance.execute(() -> {
+            if (!mDir.isDirectory() && !mDir.mkdirs()) Log.e(TAG, "Cannot create " + mDir);
+            mDiskBytes.set(diskUsage());
+            trimIfNeeded();
+        });
+    }
+
+    public void setJsCallback(Consumer<String> callback) {
+        mJsCallback = callback;
+    }
+
+    /**
+     * Answers a TMDB GET from the disk cache, or queues it ahead of everything
+     * else, joining a request already queued or running for the same URL.
+     */
+    public void fetch(String id, String url) {
+        String key = key(url);
+        String cached = readFresh(key, url);
+        if (cached != null) {
+            mHits.incrementAndGet();
+            notifyJs(id, 200, cached, "disk");
+            return;
+        }
+        synchronized (mQueue) {
+            Job job = mJobs.get(key);
+            if (job != null) {
+                mShared.incrementAndGet();
+                job.waiters.add(id);
+                if (!job.started && mQueue.remove(job)) mQueue.addFirst(job);
+                return;
+            }
+            job = new Job(key, url, null);
+            job.waiters.add(id);
+            mJobs.put(key, job);
+            mQueue.addFirst(job);
+        }
+        mWorkers.execute(this::runNext);
+    }
+
+    /**
+     * Queues background lookups [{url, then}] behind every foreground
+     * request. When a lookup answers a search, "then" is fetched too with
+     * {id} replaced by the id of the first result.
+     */
+    public void prefetch(String requestsJson) {
+        int queued = 0;
+        try {
+            JSONArray list = new JSONArray(requestsJson);
+            for (int i = 0; i < list.length(); i++) {
+                JSONObject item = list.optJSONObject(i);
+                if (item == null) continue;
+                String then = item.optString("then", "");
+                if (enqueuePrefetch(item.optString("url", ""), then.isEmpty() ? null : then)) queued++;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "prefetch: " + e.getMessage());
+        }
+        Log.d(TAG, "prefetch: " + queued + " lookups queued");
+    }
+
+    public String getStatsJson() {
+        int queued;
+        synchronized (mQueue) {
+            queued = mQueue.size();
+        }
+        return "{\"diskBytes\":" + mDiskBytes.get()
+                + ",\"hits\":" + mHits.get()
+                + ",\"requests\":" + mRequests.get()
+                + ",\"shared\":" + mShared.get()
+                + ",\"rateLimited\":" + mRateLimited.get()
+                + ",\"prefetched\":" + mPrefetched.get()
+                + ",\"stale\":" + mStale.get()
+                + ",\"queued\":" + queued + "}";
+    }
+
+    /**
+     * Drops the background lookups that have not started; the disk cache is
+     * kept. Returns how many were dropped.
+     */
+    public int releaseAll() {
+        int dropped = 0;
+        synchronized (mQueue) {
+            Iterator<Job> it = mQueue.iterator();
+            while (it.hasNext()) {
+                Job job = it.next();
+                if (job.waiters.isEmpty()) {
+                    it.remove();
+                    mJobs.remove(job.key);
+                    dropped++;
+                }
+            }
+        }
+        return dropped;
+    }
+
+    private boolean enqueuePrefetch(String url, String then) {
+        if (!url.startsWith("https://")) return false;
+        String key = key(url);
+        if (readFresh(key, url) != null) {
+            if (then != null) enqueueFollowUp(key, url, then);
+            return false;
+        }
+        synchronized (mQueue) {
+            if (mJobs.containsKey(key) || mQueue.size() >= MAX_QUEUED_PREFETCH) return false;
+            Job job = new Job(key, url, then);
+            mJobs.put(key, job);
+            mQueue.addLast(job);
+        }
+        mWorkers.execute(this::runNext);
+        return true;
+    }
+
+    // A search answered from disk still needs its details resolved.
+    private void enqueueFollowUp(String key, String url, String then) {
+        String body = readFresh(key, url);
+        String next = body != null ? followUpUrl(body, then) : null;
+        if (next != null) enqueuePrefetch(next, null);
+    }
+
+    private void runNext() {
+        Job job;
+        synchronized (mQueue) {
+            job = mQueue.pollFirst();
+            if (job == null) return;
+            job.started = true;
+        }
+        Response response = request(job.url);
+        if (response.status == 200) {
+            store(job.key, response.body);
+        } else {
+            String stale = readEntry(job.key, Long.MAX_VALUE);
+            if (stale != null) {
+                mStale.incrementAndGet();
+                response = new Response(200, stale);
+            }
+        }
+        List<String> waiters;
+        synchronized (mQueue) {
+            mJobs.remove(job.key);
+            waiters = new ArrayList<>(job.waiters);
+        }
+        if (waiters.isEmpty()) mPrefetched.incrementAndGet();
+        for (String id : waiters) notifyJs(id, response.status, response.body, "network");
+        if (job.then != null && response.status == 200) {
+            String next = followUpUrl(response.body, job.then);
+            if (next != null) enqueuePrefetch(next, null);
+        }
+    }
+
+    private Response request(String url) {
+        for (int attempt = 0; ; attempt++) {
+            waitForSlot();
+            mRequests.incrementAndGet();
+            long startMs = SystemClock.elapsedRealtime();
+            HostStats.Transfer transfer = HostStats.begin(url, HostStats.KIND_TMDB);
+            HttpURLConnection conn = null;
+            try {
+                conn = (HttpURLConnection) new URL(url).openConnection();
+                conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                conn.setReadTimeout(READ_TIMEOUT_MS);
+                conn.setRequestProperty("Accept", "application/json");
+                conn.setRequestProperty("Accept-Encoding", "gzip");
+                conn.connect();
+                transfer.connected();
+                int status = conn.getResponseCode();
+                transfer.firstByte();
+                if (status == 429 && attempt < MAX_RATE_LIMIT_RETRIES) {
+                    mRateLimited.incrementAndGet();
+                    backOff(conn.getHeaderField("Retry-After"));
+                    continue;
+                }
+                InputStream in = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+                String body = null;
+                if (in != null) {
+                    in = transfer.wrap(in);
+                    if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) in = new GZIPInputStream(in);
+                    try (InputStream stream = in) {
+                        body = readAll(stream);
+                    }
+                }
+                if (status < 400) transfer.done();
+                Log.d(TAG, status + " " + redact(url) + " in " + (SystemClock.elapsedRealtime() - startMs) + " ms");
+                return new Response(status, isJson(body) ? body : null);
+            } catch (IOException e) {
+                Log.w(TAG, redact(url) + ": " + e.getMessage());
+                return new Response(0, null);
+            } finally {
+                transfer.failed();
+                if (conn != null) conn.disconnect();
+            }
+        }
+    }
+
+    // Requests leave at most one per MIN_REQUEST_INTERVAL_MS, across all workers.
+    private void waitForSlot() {
+        long waitMs;
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            long slot = Math.max(now, mNextSlotAt);
+            mNextSlotAt = slot + MIN_REQUEST_INTERVAL_MS;
+            waitMs = slot - now;
+        }
+        if (waitMs > 0) SystemClock.sleep(waitMs);
+    }
+
+    private void backOff(String retryAfter) {
+        long delayMs = 1000;
+        try {
+            if (retryAfter != null) delayMs = Math.max(1, Long.parseLong(retryAfter.trim())) * 1000;
+        } catch (NumberFormatException ignored) {
+        }
+        synchronized (this) {
+            mNextSlotAt = Math.max(mNextSlotAt, SystemClock.elapsedRealtime() + Math.min(delayMs, 10000));
+        }
+    }
+
+    private static String followUpUrl(String body, String template) {
+        try {
+            JSONArray results = new JSONObject(body).optJSONArray("results");
+            JSONObject first = results != null ? results.optJSONObject(0) : null;
+            if (first == null || !first.has("id")) return null;
+            return template.replace("{id}", String.valueOf(first.optLong("id")));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Entries are gzip of "<storedAt>\n<body>"; the file time is the last use.
+    private void store(String key, String body) {
+        File file = new File(mDir, key);
+        File tmp = new File(mDir, key + ".tmp");
+        try (Writer out = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(tmp)), StandardCharsets.UTF_8)) {
+            out.write(Long.toString(System.currentTimeMillis()));
+            out.write('\n');
+            out.write(body);
+        } catch (IOException e) {
+            Log.w(TAG, "store: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        long previous = file.length();
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        if (mDiskBytes.get() >= 0 && mDiskBytes.addAndGet(file.length() - previous) > MAX_DISK_BYTES) {
+            mMaintenance.execute(this::trimIfNeeded);
+        }
+    }
+
+    private String readFresh(String key, String url) {
+        return readEntry(key, ttlFor(url));
+    }
+
+    private String readEntry(String key, long ttlMs) {
+        File file = new File(mDir, key);
+        if (!file.isFile()) return null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+            String storedAt = in.readLine();
+            if (storedAt == null || System.currentTimeMillis() - Long.parseLong(storedAt) > ttlMs) return null;
+            StringBuilder body = new StringBuilder();
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) body.append(buffer, 0, n);
+            file.setLastModified(System.currentTimeMillis());
+            return body.toString();
+        } catch (IOException | NumberFormatException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    private void trimIfNeeded() {
+        File[] files = mDir.listFiles();
+        if (files == null) return;
+        long expiredBefore = System.currentTimeMillis() - DETAILS_TTL_MS;
+        long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(modified[a], modified[b]));
+        long total = diskUsage();
+        int removed = 0;
+        for (Integer index : order) {
+            if (total <= TRIM_TARGET_BYTES && modified[index] >= expiredBefore) break;
+            long length = files[index].length();
+            if (files[index].delete()) {
+                total -= length;
+                removed++;
+            }
+        }
+        mDiskBytes.set(total);
+        if (removed > 0) Log.d(TAG, "Trimmed " + removed + " entries, " + total / 1024 + " KB left");
+    }
+
+    private long diskUsage() {
+        File[] files = mDir.listFiles();
+        long total = 0;
+        if (files != null) {
+            for (File file : files) total += file.length();
+        }
+        return total;
+    }
+
+    private void notifyJs(String id, int status, String body, String source) {
+        if (mJsCallback == null) return;
+        String target = "window.__tmdbNative&&window.__tmdbNative['" + id + "']";
+        mJsCallback.accept(target + "&&" + target + "(" + status + "," + (body != null ? jsLiteral(body) : "null")
+                + ",'" + source + "')");
+    }
+
+    // JSON is a JS literal except for the two line separators older engines reject.
+    private static String jsLiteral(String json) {
+        if (json.indexOf('\u2028') < 0 && json.indexOf('\u2029') < 0) return json;
+        return json.replace("\u2028", "\\u2028").replace("\u2029", "\\u2029");
+    }
+
+    private static boolean isJson(String body) {
+        if (body == null) return false;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (!Character.isWhitespace(c)) return c == '{' || c == '[';
+        }
+        return false;
+    }
+
+    // Listings move every day; details and searches are kept as long as tmdb.js kept them.
+    private static long ttlFor(String url) {
+        return url.contains("/discover/") || url.contains("/trending/") || url.contains("/recommendations")
+                || url.contains("/similar") ? LIST_TTL_MS : DETAILS_TTL_MS;
+    }
+
+    // FNV-1a 64 of the URL without its api_key, so a key change keeps the cache.
+    private static String key(String url) {
+        String source = url.replaceAll("([?&])api_key=[^&]*&?", "$1");
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < source.length(); i++) {
+            hash ^= source.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static String redact(String url) {
+        return url.replaceAll("api_key=[^&]+", "api_key=***");
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        byte[] buffer = new byte[16 * 1024];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+            if (out.size() > MAX_BODY_BYTES) throw new IOException("Response larger than " + MAX_BODY_BYTES + " bytes");
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
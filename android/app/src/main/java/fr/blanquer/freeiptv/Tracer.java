@@ -0,0 +1,209 @@
+package fr.blanquer.freeiptv;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named spans of startup, update, network and playback work, kept in a
+ * fixed ring buffer and exported on demand as Chrome trace-event JSON (open
+ * it in ui.perfetto.dev or chrome://tracing). Java code brackets work with
+ * begin()/end(), JS spans arrive in batches through the bridge. Whether a
+ * launch records is drawn once against the sample rate, so a share of
+ * production launches can be traced; when it does not, begin() is one
+ * volatile read and end() returns at once. The buffer is static so spans of
+ * WebUpdateJobService and of a recreated activity end up in the same trace.
+ */
+public final class Tracer {
+    private static final String TAG = "Tracer";
+    private static final String PREFS_NAME = "trace";
+    private static final String KEY_SAMPLE_RATE = "sample_rate";
+    private static final float DEFAULT_SAMPLE_RATE = 0.02f;
+    private static final int CAPACITY = 4096;
+    private static final int KEEP_EXPORTS = 3;
+    // JS spans all come from the renderer main thread; it gets its own track.
+    private static final int JS_TID = 0;
+
+    private static final class Event {
+        String name;
+        String category;
+        char phase;
+        long tsUs;
+        long durUs;
+        int tid;
+    }
+
+    private static final Event[] sEvents = new Event[CAPACITY];
+    private static final Map<Integer, String> sThreadNames = new HashMap<>();
+    private static int sNext;
+    private static long sRecorded;
+    private static float sSampleRate = -1;
+    private static volatile boolean sRecording;
+    // Wall clock at elapsedRealtimeNanos() == 0, so Java spans and JS spans
+    // (performance.timeOrigin based) land on the same timeline.
+    private static final long EPOCH_OFFSET_US = System.currentTimeMillis() * 1000
+            - SystemClock.elapsedRealtimeNanos() / 1000;
+
+    private Tracer() {
+    }
+
+    /** Draws whether this process records; later calls are no-ops. */
+    public static synchronized void init(Context context) {
+        if (sSampleRate >= 0) return;
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        sSampleRate = prefs.getFloat(KEY_SAMPLE_RATE, DEFAULT_SAMPLE_RATE);
+        sRecording = sSampleRate >= 1 || Math.random() < sSampleRate;
+        Log.d(TAG, "Sample rate " + sSampleRate + (sRecording ? ", recording" : ", not recording"));
+    }
+
+    /** Applies from the next launch; 1 records every launch, 0 none. */
+    public static synchronized void setSampleRate(Context context, float rate) {
+        float clamped = Math.max(0f, Math.min(1f, rate));
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putFloat(KEY_SAMPLE_RATE, clamped).apply();
+        Log.d(TAG, "Sample rate set to " + clamped);
+    }
+
+    /** Forces recording on or off for the rest of this process. */
+    public static void setRecording(boolean recording) {
+        sRecording = recording;
+    }
+
+    public static boolean isRecording() {
+        return sRecording;
+    }
+
+    /** Start of a span, to hand to end(); 0 when not recording. */
+    public static long begin() {
+        return sRecording ? SystemClock.elapsedRealtimeNanos() : 0;
+    }
+
+    public static void end(String name, String category, long beginNs) {
+        if (beginNs == 0 || !sRecording) return;
+        long durUs = (SystemClock.elapsedRealtimeNanos() - beginNs) / 1000;
+        Thread thread = Thread.currentThread();
+        add(name, category, 'X', EPOCH_OFFSET_US + beginNs / 1000, durUs, Process.myTid(), thread.getName());
+    }
+
+    public static void instant(String name, String category) {
+        if (!sRecording) return;
+        long tsUs = EPOCH_OFFSET_US + SystemClock.elapsedRealtimeNanos() / 1000;
+        add(name, category, 'i', tsUs, 0, Process.myTid(), Thread.currentThread().getName());
+    }
+
+    /**
+     * Spans from JS: [[name, category, startEpochMs, durationMs], ...], a
+     * duration below 0 making it an instant event.
+     */
+    public static void addJsSpans(String json) {
+        if (!sRecording || json == null) return;
+        try {
+            JSONArray spans = new JSONArray(json);
+            for (int i = 0; i < spans.length(); i++) {
+                JSONArray span = spans.optJSONArray(i);
+                if (span == null || span.length() < 4) continue;
+                double durMs = span.optDouble(3, 0);
+                add(span.optString(0), span.optString(1, "js"), durMs < 0 ? 'i' : 'X',
+                        Math.round(span.optDouble(2, 0) * 1000), Math.round(Math.max(durMs, 0) * 1000),
+                        JS_TID, "WebView JS");
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Bad JS spans: " + e.getMessage());
+        }
+    }
+
+    private static void add(String name, String category, char phase, long tsUs, long durUs, int tid,
+                            String threadName) {
+        synchronized (sEvents) {
+            Event event = sEvents[sNext];
+            if (event == null) {
+                event = new Event();
+                sEvents[sNext] = event;
+            }
+            event.name = name;
+            event.category = category;
+            event.phase = phase;
+            event.tsUs = tsUs;
+            event.durUs = durUs;
+            event.tid = tid;
+            sNext = (sNext + 1) % CAPACITY;
+            sRecorded++;
+            if (!sThreadNames.containsKey(tid)) sThreadNames.put(tid, threadName);
+        }
+    }
+
+    /** The buffered spans, oldest first, as a trace-event JSON object. */
+    public static String getTraceJson() {
+        int pid = Process.myPid();
+        StringBuilder out = new StringBuilder(256 * 1024);
+        out.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        out.append("{\"ph\":\"M\",\"name\":\"process_name\",\"pid\":").append(pid)
+                .append(",\"tid\":0,\"args\":{\"name\":\"Free IPTV\"}}");
+        synchronized (sEvents) {
+            for (Map.Entry<Integer, String> thread : sThreadNames.entrySet()) {
+                out.append(",{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":").append(pid)
+                        .append(",\"tid\":").append(thread.getKey())
+                        .append(",\"args\":{\"name\":").append(JSONObject.quote(thread.getValue())).append("}}");
+            }
+            int count = (int) Math.min(sRecorded, CAPACITY);
+            int first = (sNext - count + CAPACITY) % CAPACITY;
+            for (int i = 0; i < count; i++) {
+                Event event = sEvents[(first + i) % CAPACITY];
+                out.append(",{\"ph\":\"").append(event.phase)
+                        .append("\",\"name\":").append(JSONObject.quote(event.name))
+                        .append(",\"cat\":").append(JSONObject.quote(event.category))
+                        .append(",\"pid\":").append(pid).append(",\"tid\":").append(event.tid)
+                        .append(",\"ts\":").append(event.tsUs);
+                if (event.phase == 'X') out.append(",\"dur\":").append(event.durUs);
+                else out.append(",\"s\":\"t\"");
+                out.append('}');
+            }
+            out.append("],\"otherData\":{\"sampleRate\":").append(sSampleRate)
+                    .append(",\"recorded\":").append(sRecorded)
+                    .append(",\"dropped\":").append(sRecorded - count).append("}}");
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the trace to files/traces/trace-<time>.json (app-specific
+     * external storage when mounted, so adb can pull it) and returns its
+     * path, "" on failure. Only the last few exports are kept.
+     */
+    public static String export(Context context) {
+        File base = context.getExternalFilesDir(null);
+        File dir = new File(base != null ? base : context.getFilesDir(), "traces");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(TAG, "Cannot create " + dir);
+            return "";
+        }
+        File file = new File(dir, "trace-" + System.currentTimeMillis() + ".json");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(getTraceJson());
+        } catch (Exception e) {
+            Log.e(TAG, "Export failed: " + e.getMessage());
+            return "";
+        }
+        File[] old = dir.listFiles((d, name) -> name.startsWith("trace-") && name.endsWith(".json"));
+        if (old != null && old.length > KEEP_EXPORTS) {
+            Arrays.sort(old, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (int i = 0; i < old.length - KEEP_EXPORTS; i++) old[i].delete();
+        }
+        Log.d(TAG, "Exported " + file + " (" + file.length() + " B)");
+        return file.getAbsolutePath();
+    }
+}
@@ -0,0 +1,322 @@
+package fr.blanquer.freeiptv;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Watch history, episode/series progress and favourites as ordered key/value
+ * collections, each persisted as an append-only log of one-line records
+ * (["p",key,value] put in place, ["f",key,value] put first, ["d",key],
+ * ["r",[[key,value]...]] replace all). A progress update is one small
+ * append instead of a rewrite of the whole blob; the log is compacted into a
+ * single "r" record once it holds mostly superseded records. The collections
+ * live in memory, reads return the requested slice. While a playback is
+ * tracked, NativePlayer checkpoints its resume position here directly.
+ */
+public class UserDataLog {
+    private static final String TAG = "UserDataLog";
+    private static final String DIR = "userdata";
+    private static final Set<String> COLLECTIONS = new HashSet<>(
+            Arrays.asList("watchHistory", "episodeProgress", "seriesProgress", "favorites"));
+    private static final int MIN_RECORDS_BEFORE_COMPACT = 64;
+
+    private static class Collection {
+        final LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+        int records;
+    }
+
+    private static class Tracked {
+        String collection;
+        String key;
+        long minPositionMs;
+        int watchedPercent;
+        String timeField;
+    }
+
+    private final File mDir;
+    private final ExecutorService mWriter = Executors.newSingleThreadExecutor();
+    private final Map<String, Collection> mCollections = new HashMap<>();
+    private Tracked mTracked;
+
+    public UserDataLog(Context context) {
+        mDir = new File(context.getFilesDir(), DIR);
+    }
+
+    /**
+     * Returns {total, entries:[[key, value]...]} for entries offset to
+     * offset+limit of a collection (limit < 0 for all of them).
+     */
+    public synchronized String read(String collection, int offset, int limit) {
+        Collection c = load(collection);
+        if (c == null) return "{\"total\":0,\"entries\":[]}";
+        StringBuilder sb = new StringBuilder("{\"total\":").append(c.entries.size()).append(",\"entries\":[");
+        int index = 0;
+        int written = 0;
+        for (Map.Entry<String, String> entry : c.entries.entrySet()) {
+            if (index++ < offset) continue;
+            if (limit >= 0 && written >= limit) break;
+            if (written++ > 0) sb.append(',');
+            sb.append('[').append(JSONObject.quote(entry.getKey())).append(',').append(entry.getValue()).append(']');
+        }
+        return sb.append("]}").toString();
+    }
+
+    public synchronized String get(String collection, String key) {
+        Collection c = load(collection);
+        String value = c != null ? c.entries.get(key) : null;
+        return value != null ? value : "null";
+    }
+
+    /** Sets one entry, in place when it exists, first or last otherwise. */
+    public synchronized void put(String collection, String key, String json, boolean first) {
+        Collection c = load(collection);
+        if (c == null || key == null || !isJson(json)) return;
+        if (first) {
+            c.entries.remove(key);
+            LinkedHashMap<String, String> rest = new LinkedHashMap<>(c.entries);
+            c.entries.clear();
+            c.entries.put(key, json);
+            c.entries.putAll(rest);
+        } else {
+            c.entries.put(key, json);
+        }
+        append(collection, c, "[" + (first ? "\"f\"," : "\"p\",") + JSONObject.quote(key) + "," + json + "]");
+    }
+
+    public synchronized void remove(String collection, String key) {
+        Collection c = load(collection);
+        if (c == null || c.entries.remove(key) == null) return;
+        append(collection, c, "[\"d\"," + JSONObject.quote(key) + "]");
+    }
+
+    /** Replaces a whole collection with [[key, value]...], in that order. */
+    public synchronized void replace(String collection, String entriesJson) {
+        Collection c = load(collection);
+        if (c == null) return;
+        try {
+            JSONArray list = new JSONArray(entriesJson);
+            LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+            for (int i = 0; i < list.length(); i++) {
+                JSONArray pair = list.optJSONArray(i);
+                if (pair == null || pair.length() < 2 || pair.isNull(1)) continue;
+                entries.put(pair.optString(0), pair.get(1).toString());
+            }
+            c.entries.clear();
+            c.entries.putAll(entries);
+        } catch (Exception e) {
+            Log.e(TAG, "replace " + collection + ": " + e.getMessage());
+            return;
+        }
+        c.records = 0;
+        rewrite(collection, c);
+    }
+
+    /**
+     * Makes NativePlayer checkpoints update position, duration, percent,
+     * watched and timeField of one entry; an empty key stops tracking.
+     * Positions below minPositionMs are not recorded.
+     */
+    public synchronized void track(String collection, String key, long minPositionMs, int watchedPercent, String timeField) {
+        if (key == null || key.isEmpty() || !COLLECTIONS.contains(collection)) {
+            mTracked = null;
+            return;
+        }
+        Tracked tracked = new Tracked();
+        tracked.collection = collection;
+        tracked.key = key;
+        tracked.minPositionMs = minPositionMs;
+        tracked.watchedPercent = watchedPercent;
+        tracked.timeField = timeField == null || timeField.isEmpty() ? "timestamp" : timeField;
+        mTracked = tracked;
+    }
+
+    /** Called by NativePlayer with the current position of the playback. */
+    public synchronized void checkpoint(long positionMs, long durationMs) {
+        Tracked tracked = mTracked;
+        if (tracked == null || durationMs <= 0 || positionMs < tracked.minPositionMs) return;
+        Collection c = load(tracked.collection);
+        String current = c != null ? c.entries.get(tracked.key) : null;
+        if (current == null) return;
+        try {
+            JSONObject value = new JSONObject(current);
+            int percent = (int) Math.round(positionMs * 100.0 / durationMs);
+            value.put("position", positionMs);
+            value.put("duration", durationMs);
+            value.put("percent", percent);
+            value.put(tracked.timeField, System.currentTimeMillis());
+            if (percent >= tracked.watchedPercent) value.put("watched", true);
+            put(tracked.collection, tracked.key, value.toString(), false);
+        } catch (Exception e) {
+            Log.w(TAG, "checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Empties every collection and deletes the logs (factory reset). The
+     * delete is queued behind the pending appends on the writer, and empty
+     * collections stay in memory so nothing is replayed from disk meanwhile.
+     */
+    public synchronized void clear() {
+        mTracked = null;
+        mCollections.clear();
+        for (String collection : COLLECTIONS) {
+            mCollections.put(collection, new Collection());
+        }
+        mWriter.execute(() -> {
+            File[] files = mDir.listFiles();
+            if (files == null) return;
+            for (File file : files) {
+                if (!file.delete()) Log.e(TAG, "clear: cannot delete " + file.getName());
+            }
+            Log.d(TAG, "Cleared " + files.length + " files");
+        });
+    }
+
+    private Collection load(String collection) {
+        if (!COLLECTIONS.contains(collection)) return null;
+        Collection c = mCollections.get(collection);
+        if (c != null) return c;
+        c = new Collection();
+        File file = fileFor(collection);
+        if (file.isFile()) {
+            int skipped = 0;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    try {
+                        apply(c, new JSONArray(line));
+                        c.records++;
+                    } catch (Exception e) {
+                        // A record cut short by a crash: everything before it is intact
+                        skipped++;
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "load " + collection + ": " + e.getMessage());
+            }
+            Log.d(TAG, collection + ": " + c.entries.size() + " entries from " + c.records + " records"
+                    + (skipped > 0 ? ", " + skipped + " unreadable" : ""));
+        }
+        mCollections.put(collection, c);
+        if (shouldCompact(c)) rewrite(collection, c);
+        return c;
+    }
+
+    private static void apply(Collection c, JSONArray record) throws Exception {
+        String op = record.getString(0);
+        switch (op) {
+            case "p":
+                c.entries.put(record.getString(1), record.get(2).toString());
+                break;
+            case "f": {
+                String key = record.getString(1);
+                LinkedHashMap<String, String> rest = new LinkedHashMap<>(c.entries);
+                rest.remove(key);
+                c.entries.clear();
+                c.entries.put(key, record.get(2).toString());
+                c.entries.putAll(rest);
+                break;
+            }
+            case "d":
+                c.entries.remove(record.getString(1));
+                break;
+            case "r": {
+                JSONArray list = record.getJSONArray(1);
+                c.entries.clear();
+                for (int i = 0; i < list.length(); i++) {
+                    JSONArray pair = list.getJSONArray(i);
+                    c.entries.put(pair.getString(0), pair.get(1).toString());
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown record " + op);
+        }
+    }
+
+    private void append(String collection, Collection c, String record) {
+        c.records++;
+        if (shouldCompact(c)) {
+            rewrite(collection, c);
+            return;
+        }
+        File file = fileFor(collection);
+        mWriter.execute(() -> {
+            if (!mDir.isDirectory() && !mDir.mkdirs()) Log.e(TAG, "Cannot create " + mDir);
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+                out.write(record);
+                out.write('\n');
+            } catch (IOException e) {
+                Log.e(TAG, "append " + collection + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private static boolean shouldCompact(Collection c) {
+        return c.records > Math.max(MIN_RECORDS_BEFORE_COMPACT, c.entries.size() * 2);
+    }
+
+    // The snapshot is taken now, under the lock; records appended later are
+    // queued behind the rewrite on the same writer thread.
+    private void rewrite(String collection, Collection c) {
+        List<String> pairs = new ArrayList<>(c.entries.size());
+        for (Map.Entry<String, String> entry : c.entries.entrySet()) {
+            pairs.add("[" + JSONObject.quote(entry.getKey()) + "," + entry.getValue() + "]");
+        }
+        String record = "[\"r\",[" + String.join(",", pairs) + "]]";
+        c.records = 1;
+        File file = fileFor(collection);
+        mWriter.execute(() -> {
+            if (!mDir.isDirectory() && !mDir.mkdirs()) Log.e(TAG, "Cannot create " + mDir);
+            File tmp = new File(mDir, collection + ".tmp");
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+                out.write(record);
+                out.write('\n');
+            } catch (IOException e) {
+                Log.e(TAG, "compact " + collection + ": " + e.getMessage());
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(file)) {
+                Log.e(TAG, "compact " + collection + ": rename failed");
+                tmp.delete();
+                return;
+            }
+            Log.d(TAG, collection + " compacted to " + pairs.size() + " entries, " + file.length() / 1024 + " KB");
+        });
+    }
+
+    private File fileFor(String collection) {
+        return new File(mDir, collection + ".log");
+    }
+
+    private static boolean isJson(String value) {
+        if (value == null || value.isEmpty()) return false;
+        char first = value.charAt(0);
+        return (first == '{' || first == '[') && value.indexOf('\n') < 0;
+    }
+}
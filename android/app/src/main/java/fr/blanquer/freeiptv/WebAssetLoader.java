@@ -0,0 +1,236 @@
+package fr.blanquer.freeiptv;
+
+import android.content.res.AssetManager;
+import android.util.Log;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Serves the web bundle (bundled assets or the active update slot) to the
+ * WebView from an in-process store instead of letting it re-read every file.
+ * Slot files are memory-mapped, bundled assets (compressed in the APK) are
+ * read once into memory. The store is static so it survives activity
+ * re-creation; switching to another slot only drops that slot's entries.
+ * It starts empty with each process: what it saves is the re-reads of page
+ * reloads (renderer recovery, web update, activity re-creation), not the
+ * cold start. The WebView does not HTTP-cache intercepted file:// answers,
+ * so no cache headers are sent.
+ */
+public class WebAssetLoader {
+    private static final String TAG = "WebAssetLoader";
+    private static final String ASSET_PREFIX = "file:///android_asset/";
+    private static final long MAX_HEAP_BYTES = 8 * 1024 * 1024L;
+    private static final Map<String, String> MIME_TYPES = new HashMap<>();
+
+    static {
+        MIME_TYPES.put("html", "text/html");
+        MIME_TYPES.put("js", "application/javascript");
+        MIME_TYPES.put("css", "text/css");
+        MIME_TYPES.put("json", "application/json");
+        MIME_TYPES.put("xml", "text/xml");
+        MIME_TYPES.put("svg", "image/svg+xml");
+        MIME_TYPES.put("png", "image/png");
+        MIME_TYPES.put("jpg", "image/jpeg");
+        MIME_TYPES.put("jpeg", "image/jpeg");
+        MIME_TYPES.put("webp", "image/webp");
+        MIME_TYPES.put("gif", "image/gif");
+        MIME_TYPES.put("ico", "image/x-icon");
+        MIME_TYPES.put("woff", "font/woff");
+        MIME_TYPES.put("woff2", "font/woff2");
+        MIME_TYPES.put("ttf", "font/ttf");
+        MIME_TYPES.put("m3u", "audio/x-mpegurl");
+    }
+
+    private static final LinkedHashMap<String, ByteBuffer> sStore = new LinkedHashMap<>(64, 0.75f, true);
+    private static long sHeapBytes;
+    private static String sWebRoot;
+    private static long sHits;
+    private static long sMisses;
+    private static long sBytesServed;
+
+    private final AssetManager mAssets;
+
+    public WebAssetLoader(AssetManager assets) {
+        mAssets = assets;
+    }
+
+    /**
+     * Points the loader at the directory of the active update slot, or null
+     * when the bundled assets are in use. Entries of any previous slot are
+     * released.
+     */
+    public void setWebRoot(File root) {
+        String prefix = root != null ? "file://" + root.getAbsolutePath() + "/" : null;
+        synchronized (sStore) {
+            if (sWebRoot != null && !sWebRoot.equals(prefix)) {
+                Iterator<Map.Entry<String, ByteBuffer>> it = sStore.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, ByteBuffer> entry = it.next();
+                    if (entry.getKey().startsWith(sWebRoot)) {
+                        if (!entry.getValue().isDirect()) sHeapBytes -= entry.getValue().capacity();
+                        it.remove();
+                    }
+                }
+            }
+            sWebRoot = prefix;
+        }
+    }
+
+    public WebResourceResponse intercept(String method, String url) {
+        if (url == null || !"GET".equalsIgnoreCase(method)) return null;
+        String path = stripQuery(url);
+        String mime = mimeTypeFor(path);
+        if (mime == null) return null;
+        ByteBuffer data = lookup(path);
+        if (data == null) return null;
+        return new WebResourceResponse(mime, "UTF-8", new ByteBufferInputStream(data.duplicate()));
+    }
+
+    public static String getStatsJson() {
+        synchronized (sStore) {
+            return "{\"entries\":" + sStore.size()
+                    + ",\"heapBytes\":" + sHeapBytes
+                    + ",\"hits\":" + sHits
+                    + ",\"misses\":" + sMisses
+                    + ",\"bytesServed\":" + sBytesServed + "}";
+        }
+    }
+
+    public static long trimHeap() {
+        synchronized (sStore) {
+            long freed = sHeapBytes;
+            Iterator<Map.Entry<String, ByteBuffer>> it = sStore.entrySet().iterator();
+            while (it.hasNext()) {
+                if (!it.next().getValue().isDirect()) it.remove();
+            }
+            sHeapBytes = 0;
+            return freed;
+        }
+    }
+
+    private ByteBuffer lookup(String path) {
+        synchronized (sStore) {
+            ByteBuffer cached = sStore.get(path);
+            if (cached != null) {
+                sHits++;
+                sBytesServed += cached.capacity();
+                return cached;
+            }
+        }
+        ByteBuffer loaded;
+        try {
+            if (path.startsWith(ASSET_PREFIX)) {
+                loaded = readAsset(path.substring(ASSET_PREFIX.length()));
+            } else {
+                String root;
+                synchronized (sStore) {
+                    root = sWebRoot;
+                }
+                if (root == null || !path.startsWith(root)) return null;
+                loaded = mapFile(new File(android.net.Uri.decode(path.substring("file://".length()))));
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        if (loaded == null) return null;
+        synchronized (sStore) {
+            sMisses++;
+            sBytesServed += loaded.capacity();
+            // Another request for the same path may have loaded it meanwhile:
+            // keep that copy so the heap count matches the entries.
+            ByteBuffer raced = sStore.get(path);
+            if (raced != null) return raced;
+            sStore.put(path, loaded);
+            if (!loaded.isDirect()) {
+                sHeapBytes += loaded.capacity();
+                evictHeap();
+            }
+        }
+        return loaded;
+    }
+
+    private void evictHeap() {
+        Iterator<Map.Entry<String, ByteBuffer>> it = sStore.entrySet().iterator();
+        while (sHeapBytes > MAX_HEAP_BYTES && it.hasNext()) {
+            ByteBuffer buffer = it.next().getValue();
+            if (buffer.isDirect()) continue;
+            sHeapBytes -= buffer.capacity();
+            it.remove();
+        }
+    }
+
+    private ByteBuffer readAsset(String name) throws IOException {
+        try (InputStream in = mAssets.open(android.net.Uri.decode(name))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 8192));
+            byte[] buffer = new byte[64 * 1024];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+    }
+
+    private ByteBuffer mapFile(File file) throws IOException {
+        if (!file.isFile()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            Log.w(TAG, "map " + file.getName() + ": " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private static String stripQuery(String url) {
+        int end = url.length();
+        int q = url.indexOf('?');
+        if (q >= 0) end = q;
+        int h = url.indexOf('#');
+        if (h >= 0 && h < end) end = h;
+        return url.substring(0, end);
+    }
+
+    private static String mimeTypeFor(String path) {
+        int dot = path.lastIndexOf('.');
+        if (dot < 0 || dot < path.lastIndexOf('/')) return null;
+        return MIME_TYPES.get(path.substring(dot + 1).toLowerCase(java.util.Locale.ROOT));
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!mBuffer.hasRemaining()) return -1;
+            int count = Math.min(len, mBuffer.remaining());
+            mBuffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package fr.blanquer.freeiptv;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.util.Log;
+
+public class WebUpdateJobService extends JobService {
+    private static final String TAG = "WebUpdateJob";
+
+    private WebUpdater mUpdater;
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        Log.d(TAG, "Background update check");
+        WebUpdater updater = new WebUpdater(getApplicationContext());
+        mUpdater = updater;
+        // JobScheduler already spaces the runs, the launch throttle does not apply.
+        updater.checkAndUpdate(null, true, hasUpdate -> {
+            updater.scheduleBackgroundCheck();
+            jobFinished(params, false);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Constraints revoked: abort the download and have the job retried,
+        // unless it already got to committing the new build.
+        boolean stopped = mUpdater != null && mUpdater.cancel();
+        Log.d(TAG, "Stopped by the system, " + (stopped ? "check cancelled" : "nothing left to cancel"));
+        return stopped;
+    }
+}
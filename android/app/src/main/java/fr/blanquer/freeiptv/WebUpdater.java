@@ -1,7 +1,12 @@
 package fr.blanquer.freeiptv;
 
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import org.json.JSONObject;
@@ -9,16 +14,26 @@ import org.json.JSONObject;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyFactory;
 import java.security.PublicKey;
 import java.security.Signature;
+import java.security.SignatureException;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -32,47 +47,117 @@ public class WebUpdater {
     private static final String KEY_LAST_CHECK = "last_check_time";
     private static final String KEY_PENDING_LOAD = "pending_load";
     private static final String KEY_BLACKLISTED_BUILD = "blacklisted_build";
-    // TODO: restore to 24h after testing phase
-    private static final long CHECK_THROTTLE_MS = 0L;
+    private static final String KEY_HEALTHY_BUILD = "healthy_build";
+    private static final String STAGING_SUFFIX = ".tmp";
+    private static final String KEY_VERSION_ETAG = "version_etag";
+    private static final String KEY_VERSION_BODY = "version_body";
+    private static final String KEY_STAT_CHECKS = "stat_checks";
+    private static final String KEY_STAT_NOT_MODIFIED = "stat_not_modified";
+    private static final String KEY_STAT_BYTES_SAVED = "stat_bytes_saved";
+    private static final int JOB_ID = 0x57EB;
+    private static final long BACKGROUND_CHECK_INTERVAL_MS = 6 * 60 * 60 * 1000L;
+    private static final long BACKGROUND_CHECK_JITTER_MS = 60 * 60 * 1000L;
+    // A launch only checks when nothing did for a whole background interval
+    // (device off, job deferred); first run and APK updates always check.
+    private static final long CHECK_THROTTLE_MS = BACKGROUND_CHECK_INTERVAL_MS;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final int EXTRACT_THREADS = 3;
+    private static final int EXTRACT_QUEUE_SIZE = 16;
+
+    // Installs and garbage collection both touch the slots dir, possibly from
+    // the activity and a background check at the same time.
+    private static final Object SLOT_LOCK = new Object();
+    private static final AtomicBoolean installing = new AtomicBoolean(false);
+    // Slot the WebView of this process was pointed at. It stays on disk until the
+    // next launch whatever the prefs say, since assets are still loaded lazily from it.
+    private static volatile String sServedSlot;
 
     private final Context context;
-    private final File webDir;
+    private final File slotsDir;
+    private final File legacyWebDir;
 
     private static final String KEY_APK_VERSION = "apk_version_code";
 
+    /**
+     * Each downloaded build lives in its own slot under files/web-slots/. The
+     * installed_build pref points at the active slot and healthy_build at the
+     * last slot that reached markWebHealthy, so installing, rolling back and
+     * returning to the last good build are all a pointer flip. Slots that are
+     * neither are removed by a background sweep.
+     *
+     * Construction only settles which build may be served; file moves and
+     * the sweep wait for runHousekeeping().
+     */
     public WebUpdater(Context context) {
         this.context = context;
-        this.webDir = new File(context.getFilesDir(), "web");
+        // Also reached from WebUpdateJobService, without the activity.
+        Tracer.init(context);
+        this.slotsDir = new File(context.getFilesDir(), "web-slots");
+        this.legacyWebDir = new File(context.getFilesDir(), "web");
         clearWebAssetsOnApkUpdate();
     }
 
+    /**
+     * Startup housekeeping kept off the launch path: moves a pre-slot web dir
+     * out of the way and sweeps unused slots, on a background thread.
+     */
+    public void runHousekeeping() {
+        new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            migrateLegacyWebDir();
+            collectGarbage();
+        }, "WebUpdater-housekeeping").start();
+    }
+
+    private void migrateLegacyWebDir() {
+        if (!legacyWebDir.exists()) return;
+        String build = getInstalledBuild();
+        File slot = build != null ? slotDir(build) : null;
+        slotsDir.mkdirs();
+        if (slot != null && !slot.exists() && legacyWebDir.renameTo(slot)) {
+            Log.d(TAG, "Moved legacy web dir into slot " + slot.getName());
+            return;
+        }
+        File trash = new File(slotsDir, "legacy" + STAGING_SUFFIX);
+        legacyWebDir.renameTo(trash);
+    }
+
     private void clearWebAssetsOnApkUpdate() {
         try {
-            int currentApk = context.getPackageManager()
-                    .getPackageInfo(context.getPackageName(), 0).versionCode;
+            // Compile-time constant: no PackageManager round trip on the startup path.
+            int currentApk = BuildConfig.VERSION_CODE;
             int savedApk = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
                     .getInt(KEY_APK_VERSION, 0);
-            if (savedApk != 0 && currentApk != savedApk) {
+            if (savedApk == currentApk) return;
+            SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                    .edit().putInt(KEY_APK_VERSION, currentApk);
+            if (savedApk != 0) {
+                // The slots themselves go with the next sweep.
                 Log.d(TAG, "APK updated " + savedApk + " -> " + currentApk + ", clearing web assets");
-                deleteDir(webDir);
-                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
-                        .edit().remove(KEY_BUILD).apply();
+                editor.remove(KEY_BUILD).remove(KEY_HEALTHY_BUILD).remove(KEY_LAST_CHECK);
             }
-            context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
-                    .edit().putInt(KEY_APK_VERSION, currentApk).apply();
+            editor.apply();
         } catch (Exception e) {
             Log.e(TAG, "clearWebAssetsOnApkUpdate: " + e.getMessage());
         }
     }
 
     public String getLocalWebPath() {
-        File index = new File(webDir, "index.html");
+        String build = getInstalledBuild();
+        if (build == null) return null;
+        File slot = slotDir(build);
+        File index = new File(slot, "index.html");
         if (index.exists()) {
-            return "file://" + webDir.getAbsolutePath() + "/index.html";
+            sServedSlot = slot.getName();
+            return "file://" + slot.getAbsolutePath() + "/index.html";
         }
         return null;
     }
 
+    private File slotDir(String build) {
+        return new File(slotsDir, build.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
     public String getInstalledBuild() {
         return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
                 .getString(KEY_BUILD, null);
@@ -87,9 +172,14 @@ public class WebUpdater {
     }
 
     public void clearPendingLoad() {
-        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
-                .edit().remove(KEY_PENDING_LOAD).apply();
-        Log.d(TAG, "clearPendingLoad");
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = prefs.edit().remove(KEY_PENDING_LOAD);
+        String build = prefs.getString(KEY_BUILD, null);
+        boolean promoted = build != null && !build.equals(prefs.getString(KEY_HEALTHY_BUILD, null));
+        if (promoted) editor.putString(KEY_HEALTHY_BUILD, build);
+        editor.apply();
+        Log.d(TAG, "clearPendingLoad" + (promoted ? ", healthy build is now " + build : ""));
+        if (promoted) collectGarbageAsync();
     }
 
     public boolean rollbackUnhealthyCacheIfNeeded() {
@@ -101,14 +191,22 @@ public class WebUpdater {
             prefs.edit().remove(KEY_PENDING_LOAD).apply();
             return false;
         }
-        Log.w(TAG, "Cached web build " + installed + " never reached healthy state, rolling back to bundled");
-        deleteDir(webDir);
-        prefs.edit()
-                .remove(KEY_BUILD)
+        String healthy = prefs.getString(KEY_HEALTHY_BUILD, null);
+        boolean hasHealthySlot = healthy != null && !healthy.equals(installed)
+                && new File(slotDir(healthy), "index.html").exists();
+        SharedPreferences.Editor editor = prefs.edit()
                 .remove(KEY_PENDING_LOAD)
                 .remove(KEY_LAST_CHECK)
-                .putString(KEY_BLACKLISTED_BUILD, installed)
-                .apply();
+                .putString(KEY_BLACKLISTED_BUILD, installed);
+        if (hasHealthySlot) {
+            Log.w(TAG, "Cached web build " + installed + " never reached healthy state, rolling back to " + healthy);
+            editor.putString(KEY_BUILD, healthy);
+        } else {
+            Log.w(TAG, "Cached web build " + installed + " never reached healthy state, rolling back to bundled");
+            editor.remove(KEY_BUILD).remove(KEY_HEALTHY_BUILD);
+        }
+        // The blacklisted slot is swept by runHousekeeping once the page is up.
+        editor.apply();
         return true;
     }
 
@@ -121,6 +219,13 @@ public class WebUpdater {
 
     private String remoteSignature;
 
+    // Cancellation of the check running on this instance (see cancel()).
+    private final Object checkLock = new Object();
+    private boolean checkRunning;
+    private boolean committing;
+    private volatile boolean cancelled;
+    private volatile HttpURLConnection activeConn;
+
     public interface CheckCompleteListener {
         void onComplete(boolean hasUpdate);
     }
@@ -140,16 +245,20 @@ public class WebUpdater {
                 return;
             }
         }
+        synchronized (checkLock) {
+            checkRunning = true;
+            committing = false;
+            cancelled = false;
+        }
         new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            long traceNs = Tracer.begin();
             boolean hasUpdate = false;
             try {
                 context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
                         .edit().putLong(KEY_LAST_CHECK, System.currentTimeMillis()).apply();
                 JSONObject versionInfo = fetchVersionInfo();
-                if (versionInfo == null) {
-                    if (onComplete != null) onComplete.onComplete(false);
-                    return;
-                }
+                if (versionInfo == null || cancelled) return;
                 String remoteBuild = versionInfo.optString("build", versionInfo.optString("version"));
                 remoteSignature = versionInfo.optString("signature", null);
                 String localBuild = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
@@ -165,139 +274,406 @@ public class WebUpdater {
                 }
                 hasUpdate = true;
                 Log.d(TAG, "Update available: " + localBuild + " -> " + remoteBuild);
-                if (downloadAndExtract()) {
-                    context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
-                            .edit()
-                            .putString(KEY_BUILD, remoteBuild)
-                            .remove(KEY_BLACKLISTED_BUILD)
-                            .apply();
+                long downloadTraceNs = Tracer.begin();
+                boolean installed = downloadAndExtract(remoteBuild);
+                Tracer.end("WebUpdater.download", "update", downloadTraceNs);
+                if (installed) {
                     Log.d(TAG, "Update installed: " + remoteBuild);
                     if (onUpdated != null) onUpdated.run();
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Update check failed: " + e.getMessage());
             } finally {
-                if (onComplete != null) onComplete.onComplete(hasUpdate);
+                Tracer.end("WebUpdater.check", "update", traceNs);
+                boolean stopped;
+                synchronized (checkLock) {
+                    checkRunning = false;
+                    stopped = cancelled;
+                }
+                if (stopped) {
+                    Log.d(TAG, "Update check cancelled");
+                } else if (onComplete != null) {
+                    onComplete.onComplete(hasUpdate);
+                }
             }
-        }).start();
+        }, "WebUpdater-check").start();
+    }
+
+    /**
+     * Schedules the next background check through JobScheduler: network
+     * required, several hours out plus a random jitter so a fleet of boxes
+     * does not hit the server in sync. WebUpdateJobService re-arms it after
+     * each run.
+     */
+    public void scheduleBackgroundCheck() {
+        try {
+            JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+            if (scheduler == null) return;
+            long latency = BACKGROUND_CHECK_INTERVAL_MS + (long) (Math.random() * BACKGROUND_CHECK_JITTER_MS);
+            JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, WebUpdateJobService.class))
+                    .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                    .setMinimumLatency(latency)
+                    .build();
+            scheduler.schedule(job);
+            Log.d(TAG, "Background check scheduled in " + (latency / 60000) + " min");
+        } catch (Exception e) {
+            Log.e(TAG, "scheduleBackgroundCheck: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the running check before it commits anything: the download is
+     * aborted and the staging dir dropped, and the completion listener is not
+     * called. Returns false when there was nothing left to stop, i.e. no check
+     * was running or it had already started committing its slot.
+     */
+    public boolean cancel() {
+        synchronized (checkLock) {
+            if (!checkRunning || committing) return false;
+            cancelled = true;
+        }
+        HttpURLConnection conn = activeConn;
+        if (conn != null) conn.disconnect();
+        return true;
     }
 
+    private boolean enterCommit() {
+        synchronized (checkLock) {
+            if (cancelled) return false;
+            committing = true;
+            return true;
+        }
+    }
+
+    public boolean isBackgroundCheckScheduled() {
+        try {
+            JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+            if (scheduler == null) return false;
+            for (JobInfo job : scheduler.getAllPendingJobs()) {
+                if (job.getId() == JOB_ID) return true;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "isBackgroundCheckScheduled: " + e.getMessage());
+        }
+        return false;
+    }
+
+    public String getCheckStatsJson() {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return "{\"checks\":" + prefs.getLong(KEY_STAT_CHECKS, 0)
+                + ",\"notModified\":" + prefs.getLong(KEY_STAT_NOT_MODIFIED, 0)
+                + ",\"bytesSaved\":" + prefs.getLong(KEY_STAT_BYTES_SAVED, 0) + "}";
+    }
+
+    /**
+     * Fetches version.json with If-None-Match so an unchanged file costs a
+     * 304 with no body; the last body is kept in prefs and reused then.
+     */
     private JSONObject fetchVersionInfo() {
         HttpURLConnection conn = null;
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        HostStats.Transfer transfer = HostStats.begin(VERSION_URL, HostStats.KIND_UPDATE);
         try {
+            String etag = prefs.getString(KEY_VERSION_ETAG, null);
+            String cachedBody = prefs.getString(KEY_VERSION_BODY, null);
             conn = (HttpURLConnection) new URL(VERSION_URL).openConnection();
             conn.setConnectTimeout(5000);
             conn.setReadTimeout(5000);
-            if (conn.getResponseCode() != 200) return null;
-            InputStream is = conn.getInputStream();
-            byte[] buf = new byte[4096];
-            int len = is.read(buf);
-            is.close();
-            return new JSONObject(new String(buf, 0, len));
+            conn.setUseCaches(false);
+            if (etag != null && cachedBody != null) {
+                conn.setRequestProperty("If-None-Match", etag);
+            }
+            conn.connect();
+            transfer.connected();
+            int code = conn.getResponseCode();
+            transfer.firstByte();
+            SharedPreferences.Editor stats = prefs.edit()
+                    .putLong(KEY_STAT_CHECKS, prefs.getLong(KEY_STAT_CHECKS, 0) + 1);
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cachedBody != null) {
+                stats.putLong(KEY_STAT_NOT_MODIFIED, prefs.getLong(KEY_STAT_NOT_MODIFIED, 0) + 1)
+                        .putLong(KEY_STAT_BYTES_SAVED, prefs.getLong(KEY_STAT_BYTES_SAVED, 0)
+                                + cachedBody.getBytes(StandardCharsets.UTF_8).length)
+                        .apply();
+                Log.d(TAG, "version.json not modified (" + etag + ")");
+                transfer.done(0);
+                return new JSONObject(cachedBody);
+            }
+            stats.apply();
+            if (code != 200) return null;
+            String body;
+            try (InputStream is = conn.getInputStream()) {
+                body = new String(readEntry(is, conn.getContentLength()), "UTF-8");
+            }
+            transfer.done(body.length());
+            JSONObject info = new JSONObject(body);
+            String newEtag = conn.getHeaderField("ETag");
+            SharedPreferences.Editor editor = prefs.edit();
+            if (newEtag != null) {
+                editor.putString(KEY_VERSION_ETAG, newEtag).putString(KEY_VERSION_BODY, body);
+            } else {
+                editor.remove(KEY_VERSION_ETAG).remove(KEY_VERSION_BODY);
+            }
+            editor.apply();
+            return info;
         } catch (Exception e) {
             Log.e(TAG, "fetchVersionInfo: " + e.getMessage());
             return null;
         } finally {
+            transfer.failed();
             if (conn != null) conn.disconnect();
         }
     }
 
-    private boolean downloadAndExtract() {
+    private boolean downloadAndExtract(String build) {
+        if (remoteSignature == null || remoteSignature.isEmpty()) {
+            Log.w(TAG, "No signature in version.json");
+            return false;
+        }
+        long startMs = SystemClock.elapsedRealtime();
+        HostStats.Transfer transfer = null;
         HttpURLConnection conn = null;
-        File tempZip = new File(context.getCacheDir(), "web-assets.zip");
+        File slot = slotDir(build);
+        File tempDir = new File(slot.getAbsolutePath() + STAGING_SUFFIX);
+        boolean acquired = false;
+        ThreadPoolExecutor writers = new ThreadPoolExecutor(EXTRACT_THREADS, EXTRACT_THREADS,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(EXTRACT_QUEUE_SIZE),
+                new ThreadPoolExecutor.CallerRunsPolicy());
         try {
+            acquired = installing.compareAndSet(false, true);
+            if (!acquired) {
+                Log.w(TAG, "Another install is in progress, skipping");
+                return false;
+            }
+            Signature sig = Signature.getInstance("SHA256withRSA");
+            sig.initVerify(loadPublicKey());
+            transfer = HostStats.begin(ZIP_URL, HostStats.KIND_UPDATE);
             conn = (HttpURLConnection) new URL(ZIP_URL).openConnection();
+            activeConn = conn;
+            if (cancelled) throw new IOException("Cancelled");
             conn.setConnectTimeout(10000);
             conn.setReadTimeout(30000);
-            if (conn.getResponseCode() != 200) return false;
-            try (InputStream in = new BufferedInputStream(conn.getInputStream());
-                 OutputStream out = new FileOutputStream(tempZip)) {
-                byte[] buffer = new byte[8192];
-                int count;
-                while ((count = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, count);
-                }
-            }
-            if (!verifySignature(tempZip)) {
-                Log.e(TAG, "Signature verification FAILED - rejecting update");
-                tempZip.delete();
-                return false;
-            }
-            Log.d(TAG, "Signature verified OK");
-            File tempDir = new File(webDir.getAbsolutePath() + "_tmp");
+            conn.connect();
+            transfer.connected();
+            int code = conn.getResponseCode();
+            transfer.firstByte();
+            if (code != 200) return false;
             deleteDir(tempDir);
             tempDir.mkdirs();
-            try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new FileInputStream(tempZip)))) {
+            String tempRoot = tempDir.getCanonicalPath() + File.separator;
+            List<Future<?>> pending = new ArrayList<>();
+            int entries = 0;
+            long zipBytes;
+            // Hash, unzip and stage in one pass over the network stream: every byte goes
+            // through the verifier exactly once, nothing is committed until it checks out.
+            try (VerifyingInputStream in = new VerifyingInputStream(
+                    new BufferedInputStream(conn.getInputStream(), IO_BUFFER_SIZE), sig);
+                 ZipInputStream zis = new ZipInputStream(in)) {
                 ZipEntry entry;
-                byte[] buffer = new byte[8192];
                 while ((entry = zis.getNextEntry()) != null) {
+                    if (cancelled) throw new IOException("Cancelled");
+                    File outFile = new File(tempDir, entry.getName());
+                    if (!outFile.getCanonicalPath().startsWith(tempRoot)) {
+                        throw new IOException("Zip entry outside target dir: " + entry.getName());
+                    }
                     if (entry.isDirectory()) {
-                        new File(tempDir, entry.getName()).mkdirs();
+                        outFile.mkdirs();
                         continue;
                     }
-                    File outFile = new File(tempDir, entry.getName());
-                    outFile.getParentFile().mkdirs();
-                    try (OutputStream out = new FileOutputStream(outFile)) {
-                        int count;
-                        while ((count = zis.read(buffer)) != -1) {
-                            out.write(buffer, 0, count);
-                        }
-                    }
+                    byte[] data = readEntry(zis, entry.getSize());
+                    pending.add(writers.submit(() -> {
+                        writeFile(outFile, data);
+                        return null;
+                    }));
+                    entries++;
                 }
+                // The signature covers the whole archive, central directory included.
+                byte[] buffer = new byte[IO_BUFFER_SIZE];
+                while (in.read(buffer) != -1) {
+                    // drain
+                }
+                zipBytes = in.getCount();
+            }
+            transfer.done(zipBytes);
+            for (Future<?> f : pending) {
+                f.get();
             }
-            tempZip.delete();
+            byte[] signatureBytes = android.util.Base64.decode(remoteSignature, android.util.Base64.DEFAULT);
+            if (!sig.verify(signatureBytes)) {
+                Log.e(TAG, "Signature verification FAILED - rejecting update");
+                deleteDir(tempDir);
+                return false;
+            }
+            Log.d(TAG, "Signature verified OK");
             File index = new File(tempDir, "index.html");
             if (!index.exists()) {
                 Log.e(TAG, "Invalid zip: no index.html");
                 deleteDir(tempDir);
                 return false;
             }
-            deleteDir(webDir);
-            tempDir.renameTo(webDir);
-            Log.d(TAG, "Extracted to " + webDir.getAbsolutePath());
+            if (!enterCommit()) throw new IOException("Cancelled");
+            synchronized (SLOT_LOCK) {
+                if (slot.getName().equals(sServedSlot) && new File(slot, "index.html").exists()) {
+                    // Same build as the one on screen: keep its files where the WebView
+                    // reads them and only point the prefs back at it.
+                    Log.d(TAG, "Build " + build + " is the served slot, keeping it in place");
+                    deleteDir(tempDir);
+                } else {
+                    if (slot.exists()) {
+                        File stale = new File(slotsDir, slot.getName() + "-" + System.currentTimeMillis() + STAGING_SUFFIX);
+                        slot.renameTo(stale);
+                    }
+                    if (!tempDir.renameTo(slot)) {
+                        Log.e(TAG, "Could not commit slot " + slot.getName());
+                        deleteDir(tempDir);
+                        return false;
+                    }
+                }
+                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                        .edit()
+                        .putString(KEY_BUILD, build)
+                        .remove(KEY_BLACKLISTED_BUILD)
+                        .commit();
+            }
+            Log.d(TAG, "Extracted to " + slot.getAbsolutePath() + ": " + entries + " files, "
+                    + (zipBytes / 1024) + " KB in " + (SystemClock.elapsedRealtime() - startMs) + " ms");
             return true;
         } catch (Exception e) {
             Log.e(TAG, "downloadAndExtract: " + e.getMessage());
-            tempZip.delete();
+            if (acquired) {
+                // Writers still running would recreate entries in the dir being deleted.
+                stopWriters(writers);
+                deleteDir(tempDir);
+            }
             return false;
         } finally {
+            if (transfer != null) transfer.failed();
+            if (acquired) installing.set(false);
+            writers.shutdownNow();
+            activeConn = null;
             if (conn != null) conn.disconnect();
+            collectGarbageAsync();
         }
     }
 
-    private boolean verifySignature(File zipFile) {
-        if (remoteSignature == null || remoteSignature.isEmpty()) {
-            Log.w(TAG, "No signature in version.json");
+    private void collectGarbageAsync() {
+        new Thread(this::collectGarbage, "WebUpdater-gc").start();
+    }
+
+    /**
+     * Deletes every slot that is neither the active build, the last healthy
+     * one nor the one served to this process, plus leftover staging dirs.
+     */
+    private void collectGarbage() {
+        synchronized (SLOT_LOCK) {
+            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            String current = prefs.getString(KEY_BUILD, null);
+            String healthy = prefs.getString(KEY_HEALTHY_BUILD, null);
+            String keepCurrent = current != null ? slotDir(current).getName() : null;
+            String keepHealthy = healthy != null ? slotDir(healthy).getName() : null;
+            String keepServed = sServedSlot;
+            File[] slots = slotsDir.listFiles();
+            if (slots == null) return;
+            for (File slot : slots) {
+                String name = slot.getName();
+                if (name.equals(keepCurrent) || name.equals(keepHealthy) || name.equals(keepServed)) continue;
+                if (name.endsWith(STAGING_SUFFIX) && installing.get()) continue;
+                Log.d(TAG, "Removing unused web slot " + name);
+                deleteDir(slot);
+            }
+        }
+    }
+
+    private static byte[] readEntry(InputStream in, long size) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 && size < Integer.MAX_VALUE
+                ? (int) size : IO_BUFFER_SIZE);
+        byte[] buffer = new byte[IO_BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeFile(File outFile, byte[] data) throws IOException {
+        File parent = outFile.getParentFile();
+        if (parent != null) parent.mkdirs();
+        try (OutputStream out = new FileOutputStream(outFile)) {
+            out.write(data);
+        }
+    }
+
+    private PublicKey loadPublicKey() throws Exception {
+        InputStream keyStream = context.getAssets().open("signing-key-public.pem");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int len;
+        while ((len = keyStream.read(buf)) != -1) baos.write(buf, 0, len);
+        keyStream.close();
+        String pemKey = baos.toString("UTF-8")
+                .replace("-----BEGIN PUBLIC KEY-----", "")
+                .replace("-----END PUBLIC KEY-----", "")
+                .replaceAll("\\s", "");
+        byte[] keyBytes = android.util.Base64.decode(pemKey, android.util.Base64.DEFAULT);
+        return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(keyBytes));
+    }
+
+    private static class VerifyingInputStream extends FilterInputStream {
+        private final Signature mSignature;
+        private long mCount;
+
+        VerifyingInputStream(InputStream in, Signature signature) {
+            super(in);
+            mSignature = signature;
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) update(new byte[] { (byte) b }, 0, 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) update(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, IO_BUFFER_SIZE)];
+            int count = read(buffer, 0, buffer.length);
+            return Math.max(count, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
             return false;
         }
+
+        private void update(byte[] b, int off, int len) throws IOException {
+            try {
+                mSignature.update(b, off, len);
+                mCount += len;
+            } catch (SignatureException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static void stopWriters(ThreadPoolExecutor writers) {
+        writers.shutdownNow();
         try {
-            InputStream keyStream = context.getAssets().open("signing-key-public.pem");
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            byte[] buf = new byte[1024];
-            int len;
-            while ((len = keyStream.read(buf)) != -1) baos.write(buf, 0, len);
-            keyStream.close();
-            String pemKey = baos.toString("UTF-8")
-                    .replace("-----BEGIN PUBLIC KEY-----", "")
-                    .replace("-----END PUBLIC KEY-----", "")
-                    .replaceAll("\\s", "");
-            byte[] keyBytes = android.util.Base64.decode(pemKey, android.util.Base64.DEFAULT);
-            PublicKey publicKey = KeyFactory.getInstance("RSA")
-                    .generatePublic(new X509EncodedKeySpec(keyBytes));
-            Signature sig = Signature.getInstance("SHA256withRSA");
-            sig.initVerify(publicKey);
-            FileInputStream fis = new FileInputStream(zipFile);
-            byte[] buffer = new byte[8192];
-            int count;
-            while ((count = fis.read(buffer)) != -1) {
-                sig.update(buffer, 0, count);
+            if (!writers.awaitTermination(10, TimeUnit.SECONDS)) {
+                Log.w(TAG, "Extract writers still running after shutdown");
             }
-            fis.close();
-            byte[] signatureBytes = android.util.Base64.decode(remoteSignature, android.util.Base64.DEFAULT);
-            return sig.verify(signatureBytes);
-        } catch (Exception e) {
-            Log.e(TAG, "verifySignature: " + e.getMessage());
-            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -0,0 +1,442 @@
+package fr.blanquer.freeiptv;
+
+import android.os.SystemClock;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+import android.util.MalformedJsonException;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fetches Xtream player_api.php actions off the main thread, several at a
+ * time, and stream-parses each body with a JsonReader into a compact JSON
+ * array (unused provider fields dropped). JS is notified per action through
+ * window.__xtreamNative[id] and takes the arrays it keeps (see provider.js
+ * _preloadCacheNative); every request reports its status, attempts, size and
+ * timings.
+ */
+public class XtreamClient {
+    private static final String TAG = "XtreamClient";
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int MAX_PARALLEL = 4;
+    private static final int MAX_REDIRECTS = 5;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int ERROR_BODY_LIMIT = 4096;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(MAX_PARALLEL);
+    private final ConcurrentHashMap<String, String> mBodies = new ConcurrentHashMap<>();
+    private volatile Consumer<String> mJsCallback;
+
+    private static class Request {
+        String action;
+        String url;
+        int timeoutMs;
+        int retries;
+    }
+
+    private static class Result {
+        int status;
+        int attempts;
+        long bytes;
+        int items = -1;
+        long ttfbMs;
+        long totalMs;
+        String error;
+        String blockReason;
+        String body;
+    }
+
+    private static class HttpStatusException extends IOException {
+        final int status;
+        final String blockReason;
+
+        HttpStatusException(int status, String blockReason) {
+            super("HTTP " + status);
+            this.status = status;
+            this.blockReason = blockReason;
+        }
+    }
+
+    public void setJsCallback(Consumer<String> callback) {
+        mJsCallback = callback;
+    }
+
+    /**
+     * Runs a batch of requests [{action, url, timeoutMs, retries}] with at
+     * most {@code parallelism} in flight. Top-level object fields listed in
+     * dropFieldsJson are skipped while parsing.
+     */
+    public void fetch(String id, String requestsJson, String dropFieldsJson, int parallelism) {
+        List<Request> requests = new ArrayList<>();
+        Set<String> drop = new HashSet<>();
+        try {
+            JSONArray list = new JSONArray(requestsJson);
+            for (int i = 0; i < list.length(); i++) {
+                JSONObject item = list.optJSONObject(i);
+                if (item == null) continue;
+                Request request = new Request();
+                request.action = item.optString("action");
+                request.url = item.optString("url");
+                request.timeoutMs = Math.max(item.optInt("timeoutMs", 30000), 1000);
+                request.retries = Math.max(item.optInt("retries", 1), 1);
+                requests.add(request);
+            }
+            JSONArray fields = dropFieldsJson == null || dropFieldsJson.isEmpty() ? null : new JSONArray(dropFieldsJson);
+            for (int i = 0; fields != null && i < fields.length(); i++) drop.add(fields.optString(i));
+        } catch (Exception e) {
+            Log.e(TAG, "fetch: " + e.getMessage());
+            notifyJs(id, "done([])");
+            return;
+        }
+        if (requests.isEmpty()) {
+            notifyJs(id, "done([])");
+            return;
+        }
+        long startMs = SystemClock.elapsedRealtime();
+        ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>(requests);
+        String[] stats = new String[requests.size()];
+        AtomicInteger remaining = new AtomicInteger(requests.size());
+        int workers = Math.min(Math.min(Math.max(parallelism, 1), MAX_PARALLEL), requests.size());
+        for (int w = 0; w < workers; w++) {
+            mExecutor.execute(() -> {
+                Request request;
+                while ((request = queue.poll()) != null) {
+                    Result result = run(request, drop);
+                    if (result.body != null) mBodies.put(key(id, request.action), result.body);
+                    String json = statsJson(request.action, result);
+                    stats[requests.indexOf(request)] = json;
+                    notifyJs(id, "action(" + JSONObject.quote(request.action) + "," + (result.body != null) + "," + json + ")");
+                    if (remaining.decrementAndGet() == 0) {
+                        Log.d(TAG, requests.size() + " requests in " + (SystemClock.elapsedRealtime() - startMs) + " ms");
+                        notifyJs(id, "done([" + String.join(",", stats) + "])");
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Hands over (and forgets) the compacted array of a finished action, or
+     * "null" when it failed or was already taken.
+     */
+    public String take(String id, String action) {
+        String body = mBodies.remove(key(id, action));
+        return body != null ? body : "null";
+    }
+
+    public void releaseAll() {
+        mBodies.clear();
+    }
+
+    private static String key(String id, String action) {
+        return id + '\u0000' + action;
+    }
+
+    private Result run(Request request, Set<String> drop) {
+        Result result = new Result();
+        long startMs = SystemClock.elapsedRealtime();
+        long traceNs = Tracer.begin();
+        for (int attempt = 1; attempt <= request.retries; attempt++) {
+            result.attempts = attempt;
+            result.error = null;
+            long attemptStartMs = SystemClock.elapsedRealtime();
+            HostStats.Transfer transfer = HostStats.begin(request.url, HostStats.KIND_API);
+            HttpURLConnection conn = null;
+            try {
+                conn = openFollowingRedirects(request.url, request.timeoutMs, transfer);
+                result.status = conn.getResponseCode();
+                result.ttfbMs = SystemClock.elapsedRealtime() - attemptStartMs;
+                if (result.status != 200) {
+                    throw new HttpStatusException(result.status, readBlockReason(conn));
+                }
+                StringBuilder out = new StringBuilder();
+                try (InputStream in = conn.getInputStream()) {
+                    CountingInputStream counting = new CountingInputStream(in);
+                    result.items = compact(new BufferedReader(
+                            new InputStreamReader(counting, StandardCharsets.UTF_8), READ_BUFFER_SIZE), drop, out);
+                    result.bytes = counting.count;
+                }
+                transfer.done(result.bytes);
+                result.body = out.toString();
+                break;
+            } catch (MalformedJsonException | IllegalStateException e) {
+                // Same as response.json() failing in JS: the server answered, retrying won't help
+                result.error = "Invalid JSON: " + e.getMessage();
+                break;
+            } catch (IOException e) {
+                if (e instanceof HttpStatusException) result.blockReason = ((HttpStatusException) e).blockReason;
+                result.error = e instanceof SocketTimeoutException
+                        ? "Timeout after " + (request.timeoutMs / 1000) + "s" : e.getMessage();
+                Log.w(TAG, request.action + " attempt " + attempt + ": " + result.error);
+                if (attempt == request.retries) break;
+                SystemClock.sleep(RETRY_DELAY_MS * attempt);
+            } finally {
+                transfer.failed();
+                if (conn != null) conn.disconnect();
+            }
+        }
+        result.totalMs = SystemClock.elapsedRealtime() - startMs;
+        Tracer.end("xtream." + request.action, "network", traceNs);
+        Log.d(TAG, request.action + " " + result.status + " " + result.items + " items " + result.bytes + " B in "
+                + result.totalMs + " ms (ttfb " + result.ttfbMs + " ms, " + result.attempts + " attempt(s))");
+        return result;
+    }
+
+    private static HttpURLConnection openFollowingRedirects(String url, int timeoutMs, HostStats.Transfer transfer)
+            throws IOException {
+        String current = url;
+        for (int i = 0; i <= MAX_REDIRECTS; i++) {
+            HttpURLConnection conn = (HttpURLConnection) new URL(current).openConnection();
+            conn.setConnectTimeout(Math.min(CONNECT_TIMEOUT_MS, timeoutMs));
+            conn.setReadTimeout(timeoutMs);
+            conn.setInstanceFollowRedirects(false);
+            transfer.connecting(current);
+            conn.connect();
+            transfer.connected();
+            int code = conn.getResponseCode();
+            transfer.firstByte();
+            if (code >= 300 && code < 400) {
+                String location = conn.getHeaderField("Location");
+                conn.disconnect();
+                if (location == null) throw new IOException("HTTP " + code + " without Location");
+                current = new URL(new URL(current), location).toString();
+                continue;
+            }
+            return conn;
+        }
+        throw new IOException("Too many redirects");
+    }
+
+    /**
+     * Xtream firewalls (e.g. account_sharing) give the cause in an
+     * X-Firewall-Reason header and a JSON body {"reason":"..."}; the body
+     * wins, like ProviderAPI.extractBlockReason.
+     */
+    private static String readBlockReason(HttpURLConnection conn) {
+        String reason = conn.getHeaderField("X-Firewall-Reason");
+        try (InputStream err = conn.getErrorStream()) {
+            if (err == null) return reason;
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1024];
+            int n;
+            while (buffer.size() < ERROR_BODY_LIMIT && (n = err.read(chunk)) > 0) buffer.write(chunk, 0, n);
+            String text = new String(buffer.toByteArray(), StandardCharsets.UTF_8).trim();
+            if (text.startsWith("{")) {
+                String bodyReason = new JSONObject(text).optString("reason", "");
+                if (!bodyReason.isEmpty()) reason = bodyReason;
+            }
+        } catch (Exception e) {
+            // body missing or not JSON
+        }
+        return reason == null || reason.isEmpty() ? null : reason;
+    }
+
+    /**
+     * Re-emits a JSON document as compact JSON. A top-level array keeps its
+     * elements, minus the object fields listed in {@code drop}; anything else
+     * (an Xtream error object, an empty body) becomes [] as in the JS getters.
+     * Returns the number of elements.
+     */
+    static int compact(Reader in, Set<String> drop, StringBuilder out) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            out.append("[]");
+            return 0;
+        }
+        int items = 0;
+        reader.beginArray();
+        out.append('[');
+        while (reader.hasNext()) {
+            if (items++ > 0) out.append(',');
+            copyValue(reader, drop, out);
+        }
+        reader.endArray();
+        out.append(']');
+        return items;
+    }
+
+    private static void copyValue(JsonReader reader, Set<String> drop, StringBuilder out) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY: {
+                reader.beginArray();
+                out.append('[');
+                boolean first = true;
+                while (reader.hasNext()) {
+                    if (!first) out.append(',');
+                    first = false;
+                    copyValue(reader, null, out);
+                }
+                reader.endArray();
+                out.append(']');
+                break;
+            }
+            case BEGIN_OBJECT: {
+                reader.beginObject();
+                out.append('{');
+                boolean first = true;
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (drop != null && drop.contains(name)) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    if (!first) out.append(',');
+                    first = false;
+                    appendQuoted(name, out);
+                    out.append(':');
+                    copyValue(reader, null, out);
+                }
+                reader.endObject();
+                out.append('}');
+                break;
+            }
+            case STRING:
+                appendQuoted(reader.nextString(), out);
+                break;
+            case NUMBER:
+                // nextString keeps the literal, so ids and ratings round-trip unchanged
+                out.append(reader.nextString());
+                break;
+            case BOOLEAN:
+                out.append(reader.nextBoolean());
+                break;
+            case NULL:
+                reader.nextNull();
+                out.append("null");
+                break;
+            default:
+                reader.skipValue();
+                out.append("null");
+        }
+    }
+
+    private static void appendQuoted(String s, StringBuilder out) {
+        out.append('"');
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private static String statsJson(String action, Result result) {
+        StringBuilder sb = new StringBuilder("{\"action\":");
+        appendQuoted(action, sb);
+        sb.append(",\"status\":").append(result.status)
+                .append(",\"attempts\":").append(result.attempts)
+                .append(",\"bytes\":").append(result.bytes)
+                .append(",\"items\":").append(result.items)
+                .append(",\"ttfbMs\":").append(result.ttfbMs)
+                .append(",\"totalMs\":").append(result.totalMs);
+        if (result.error != null) {
+            sb.append(",\"error\":");
+            appendQuoted(result.error, sb);
+        }
+        if (result.blockReason != null) {
+            sb.append(",\"blockReason\":");
+            appendQuoted(result.blockReason, sb);
+        }
+        return sb.append('}').toString();
+    }
+
+    private void notifyJs(String id, String call) {
+        if (mJsCallback == null) return;
+        String target = "window.__xtreamNative&&window.__xtreamNative['" + id + "']";
+        mJsCallback.accept(target + "&&" + target + "." + call);
+    }
+
+    /**
+     * Compacts a synthetic get_vod_streams body of the given size and compares
+     * it with a whole-document JSONArray parse.
+     */
+    public static String benchmark(int items) {
+        StringBuilder doc = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) doc.append(',');
+            doc.append("{\"num\":").append(i + 1)
+                    .append(",\"name\":\"FR| Film ").append(i).append(" (2021)\"")
+                    .append(",\"stream_type\":\"movie\",\"stream_id\":").append(100000 + i)
+                    .append(",\"stream_icon\":\"http://img.example/").append(i).append(".jpg\"")
+                    .append(",\"rating\":\"6.5\",\"rating_5based\":3.3,\"added\":\"1700000000\"")
+                    .append(",\"category_id\":\"").append(i % 40).append("\",\"category_ids\":[").append(i % 40)
+                    .append("],\"container_extension\":\"mkv\",\"custom_sid\":\"\",\"direct_source\":\"\"}");
+        }
+        String json = doc.append(']').toString();
+        Set<String> drop = new HashSet<>();
+        drop.add("custom_sid");
+        drop.add("direct_source");
+        drop.add("youtube_trailer");
+        try {
+            long t0 = System.nanoTime();
+            StringBuilder out = new StringBuilder(json.length());
+            int count = compact(new StringReader(json), drop, out);
+            long t1 = System.nanoTime();
+            new JSONArray(json).toString();
+            long t2 = System.nanoTime();
+            return "{\"items\":" + count + ",\"inBytes\":" + json.length() + ",\"outBytes\":" + out.length()
+                    + ",\"streamMs\":" + (t1 - t0) / 1000000.0 + ",\"jsonArrayMs\":" + (t2 - t1) / 1000000.0 + "}";
+        } catch (Exception e) {
+            return "{\"error\":" + JSONObject.quote(String.valueOf(e.getMessage())) + "}";
+        }
+    }
+
+    private static class CountingInputStream extends java.io.FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
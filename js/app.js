@@ -206,7 +206,7 @@ class IPTVApp {
             this.markWebHealthy();
             return;
         }
-        this.startApp();
+        if (!this.restoreNativeSession()) this.startApp();
         this.markWebHealthy();
         document.addEventListener('visibilitychange', function() {
             if (document.hidden) {
@@ -852,13 +852,14 @@ class IPTVApp {
                 var promises = providerPlaylists.map(function(p) {
                     var api = new ProviderAPI(p.serverUrl, p.username, p.password, self.getStreamProxyUrl());
                     api.playlistId = p.id;
-                    return api.authenticate().then(function() {
+                    // A late provider still joins self.apis when it answers
+                    return self._withProviderDeadline(api.authenticate().then(function() {
                         self.apis.push(api);
                         return api;
                     }).catch(function(err) {
                         window.log('ERROR', 'autoConnectMerge: failed ' + p.name + ': ' + (err ? err.message : 'unknown'));
                         return null;
-                    });
+                    }), null, 'auth ' + p.name);
                 });
                 Promise.all(promises).then(function() {
                     window.log('INIT', 'autoConnectMerge: connected to ' + self.apis.length + ' providers');
@@ -395,8 +395,8 @@ IPTVApp.prototype.matchesLanguage = function(categoryName) {
     return true;
 };
 
-// Get regex patterns for custom category
-IPTVApp.prototype.getCustomCategoryPatterns = function(categoryId) {
+// Get keywords for custom category
+IPTVApp.prototype.getCustomCategoryKeywords = function(categoryId) {
     var patterns = this.getCategoryPatterns();
     var keywords = patterns[categoryId] || [];
     // Also check in customCategories if not found in patterns
@@ -409,7 +409,12 @@ IPTVApp.prototype.getCustomCategoryPatterns = function(categoryId) {
             }
         }
     }
-    return keywords.map(function(kw) {
+    return keywords;
+};
+
+// Get regex patterns for custom category
+IPTVApp.prototype.getCustomCategoryPatterns = function(categoryId) {
+    return this.getCustomCategoryKeywords(categoryId).map(function(kw) {
         return Regex.keywordPattern(kw);
     });
 };
@@ -464,6 +469,52 @@ IPTVApp.prototype._getVisibleItemRange = function(items, forceFromStart) {
     return { startIdx: startIdx, endIdx: endIdx, cols: cols, visibleRows: visibleRows };
 };
 
+// Native image cache (Android): grid posters and logos are requested through
+// a virtual host that ImageCache intercepts, serving them from a disk LRU
+// downscaled to the tile. The tile size is part of the URL so the details
+// page, which loads the same poster full size, never gets the small copy.
+IPTVApp.prototype._hasNativeImageCache = function() {
+    return typeof window.Android !== 'undefined' && window.Android &&
+        typeof window.Android.imageCachePrefetch === 'function';
+};
+
+IPTVApp.prototype.gridImageUrl = function(url) {
+    var source = this.proxyImageUrl(url);
+    if (!this._imageTile || !/^https?:\/\//i.test(source || '') || !this._hasNativeImageCache()) return source;
+    return 'https://images.freeiptv.invalid/tile?w=' + this._imageTile.w + '&h=' + this._imageTile.h +
+        '&url=' + encodeURIComponent(source);
+};
+
+// Measures the image tile in device pixels, rounded up to 32 px like the
+// native side so small layout changes keep hitting the same cache entries.
+IPTVApp.prototype._measureImageTile = function(items, startIdx) {
+    var sample = items[startIdx] ? items[startIdx].firstElementChild : null;
+    if (!sample || !sample.offsetWidth || !sample.offsetHeight) return;
+    var ratio = window.devicePixelRatio || 1;
+    var round = function(size) { return Math.max(64, Math.ceil(size * ratio / 32) * 32); };
+    this._imageTile = { w: round(sample.offsetWidth), h: round(sample.offsetHeight) };
+};
+
+// Lets the native cache fetch the rows just below the loaded range while the
+// visible ones are decoding, so scrolling down finds them on disk.
+IPTVApp.prototype._prefetchNativeImages = function(items, endIdx, cols) {
+    if (!this._imageTile || !this._hasNativeImageCache()) return;
+    var urls = [];
+    var stop = Math.min(items.length, endIdx + cols * 2);
+    for (var i = endIdx; i < stop; i++) {
+        var imageUrl = items[i].dataset.imageUrl;
+        if (!imageUrl || !/^https?:\/\//i.test(imageUrl)) continue;
+        urls.push(this.proxyImageUrl(this.optimizeTmdbImageUrl(imageUrl, 'w300')));
+    }
+    if (urls.length === 0) return;
+    try {
+        window.Android.imageCachePrefetch(this._imageTile.w, this._imageTile.h, urls.join('\u001e'));
+    }
+    catch (e) {
+        window.log('ERROR', 'imageCachePrefetch: ' + e.message);
+    }
+};
+
 // Image and genre loading
 IPTVApp.prototype.loadVisibleImages = function(forceFromStart) {
     var self = this;
@@ -499,6 +550,7 @@ IPTVApp.prototype.loadVisibleImages = function(forceFromStart) {
     if (unloaded > 0) {
         window.log('MEM', 'Unloaded ' + unloaded + ' off-screen images (keep range ' + unloadStart + '-' + unloadEnd + ')');
     }
+    this._measureImageTile(items, startIdx);
     var queue = [];
     var noUrl = 0;
     var alreadyLoaded = 0;
@@ -537,6 +589,7 @@ IPTVApp.prototype.loadVisibleImages = function(forceFromStart) {
     this._imageQueueId = (this._imageQueueId || 0) + 1;
     var queueId = this._imageQueueId;
     var loaded = 0;
+    this._prefetchNativeImages(items, endIdx, cols);
     if (queue.length === 0) {
         self.loadVisibleGenres();
     }
@@ -633,7 +686,7 @@ IPTVApp.prototype._loadSingleImage = function(div, url, idx, gridItem, queueId,
                 onDone();
                 return;
             }
-            div.style.backgroundImage = cssUrl(self.proxyImageUrl(optimizedUrl));
+            div.style.backgroundImage = cssUrl(self.gridImageUrl(optimizedUrl));
             div.dataset.loaded = 'ok';
             div.classList.remove('no-image');
             if (duration > 1000) {
@@ -651,7 +704,7 @@ IPTVApp.prototype._loadSingleImage = function(div, url, idx, gridItem, queueId,
             }
             onDone();
         };
-        img.src = self.proxyImageUrl(optimizedUrl);
+        img.src = self.gridImageUrl(optimizedUrl);
     };
     var tryTmdb = function(onResult) {
         if (self._imageQueueId !== queueId) { onResult(false); return; }
@@ -665,7 +718,7 @@ IPTVApp.prototype._loadSingleImage = function(div, url, idx, gridItem, queueId,
             self.fetchTMDBCached(title, type, function(result) {
                 if (self._imageQueueId !== queueId) { onResult(false); return; }
                 if (result && result.poster_path && div.dataset.loaded !== 'ok') {
-                    var tmdbPoster = 'https://image.tmdb.org/t/p/w300' + result.poster_path;
+                    var tmdbPoster = self.gridImageUrl('https://image.tmdb.org/t/p/w300' + result.poster_path);
                     div.style.backgroundImage = 'url("' + tmdbPoster + '")';
                     div.classList.remove('no-image');
                     div.dataset.loaded = 'tmdb';
@@ -901,7 +954,7 @@ IPTVApp.prototype.loadVisibleGenres = function() {
                         // so the item is never retried and stays poster-less.
                         var loadState = imgDiv ? imgDiv.dataset.loaded : null;
                         if (imgDiv && loadState !== 'ok' && loadState !== 'local' && loadState !== 'tmdb') {
-                            var tmdbPoster = 'https://image.tmdb.org/t/p/w300' + result.poster_path;
+                            var tmdbPoster = self.gridImageUrl('https://image.tmdb.org/t/p/w300' + result.poster_path);
                             imgDiv.style.backgroundImage = 'url("' + tmdbPoster + '")';
                             imgDiv.classList.remove('no-image');
                             imgDiv.dataset.loaded = 'tmdb';
@@ -1195,36 +1248,23 @@ IPTVApp.prototype.loadMergedData = function(apiSection, section) {
     var self = this;
     var promises = this.apis.map(function(api) {
         var playlistId = api.playlistId;
+        var loading;
         if (apiSection === 'live') {
-            return Promise.all([
-                api.getLiveCategories(),
-                api.getLiveStreams()
-            ]).then(function(r) {
-                r[0].forEach(function(c) { c._playlistId = playlistId; });
-                r[1].forEach(function(s) { s._playlistId = playlistId; });
-                return r;
-            }).catch(function() { return [[], []]; /* empty on error */ });
+            loading = Promise.all([api.getLiveCategories(), api.getLiveStreams()]);
         }
         else if (apiSection === 'vod') {
-            return Promise.all([
-                api.getVodCategories(),
-                api.getVodStreams()
-            ]).then(function(r) {
-                r[0].forEach(function(c) { c._playlistId = playlistId; });
-                r[1].forEach(function(s) { s._playlistId = playlistId; });
-                return r;
-            }).catch(function() { return [[], []]; /* empty on error */ });
+            loading = Promise.all([api.getVodCategories(), api.getVodStreams()]);
         }
         else {
-            return Promise.all([
-                api.getSeriesCategories(),
-                api.getSeries()
-            ]).then(function(r) {
-                r[0].forEach(function(c) { c._playlistId = playlistId; });
-                r[1].forEach(function(s) { s._playlistId = playlistId; });
-                return r;
-            }).catch(function() { return [[], []]; /* empty on error */ });
+            loading = Promise.all([api.getSeriesCategories(), api.getSeries()]);
         }
+        loading = loading.then(function(r) {
+            r[0].forEach(function(c) { c._playlistId = playlistId; });
+            r[1].forEach(function(s) { s._playlistId = playlistId; });
+            return r;
+        });
+        // empty on error or when the provider is too slow
+        return self._withProviderDeadline(loading, [[], []], apiSection + ' ' + playlistId);
     });
     return Promise.all(promises).then(function(results) {
         var allCategories = [];
@@ -2912,6 +2952,92 @@ IPTVApp.prototype._consolidateDedupGroupsByCleanTitle = function(dedupGroups) {
     }
 };
 
+// Native dedup index (Android): titles are normalised and grouped in Java
+// (DedupIndex) so keys no longer depend on which cache shape was loaded.
+IPTVApp.prototype._hasNativeDedup = function() {
+    return typeof window.Android !== 'undefined' && window.Android &&
+        typeof window.Android.dedupIndex === 'function';
+};
+
+// Sets _dedupKey/_dedupCleanTitle/_dedupYear on every stream from the native
+// index; returns false (fields untouched) when it is unavailable or fails.
+IPTVApp.prototype._indexNativeDedup = function(section, streams) {
+    if (!section || !this._hasNativeDedup()) return false;
+    if (!this._nativeDedupConfigured) {
+        var cleanupMap = (typeof I18nData !== 'undefined' && I18nData.cleanupPatternsMap) || {};
+        window.Android.dedupConfigure(JSON.stringify({
+            langTags: Regex.collectFromMap(cleanupMap, 'langTags'),
+            season: Regex.collectFromMap(cleanupMap, 'season'),
+            part: Regex.collectFromMap(cleanupMap, 'part')
+        }));
+        this._nativeDedupConfigured = true;
+    }
+    var separators = /[\u001e\u001f]/g;
+    var rows = new Array(streams.length);
+    for (var i = 0; i < streams.length; i++) {
+        var s = streams[i];
+        var tmdb = s.tmdb ? String(s.tmdb) : '';
+        rows[i] = String(s.stream_id || s.series_id || '') + '\u001f' +
+            this.getStreamTitle(s).replace(separators, ' ') + '\u001f' + tmdb.replace(separators, ' ');
+    }
+    var result;
+    try {
+        result = JSON.parse(window.Android.dedupIndex(section, streams.length, rows.join('\u001e')));
+    }
+    catch (e) {
+        window.log('DEDUP', 'native index failed: ' + e.message);
+        return false;
+    }
+    if (!result) return false;
+    var keys = result.keys;
+    if (!this._nativeDedupKeys) this._nativeDedupKeys = {};
+    this._nativeDedupKeys[section] = keys;
+    var cleanTitles = result.cleanTitles;
+    var years = result.years;
+    var fields = result.rows;
+    for (var j = 0; j < streams.length; j++) {
+        var stream = streams[j];
+        stream._dedupKey = keys[fields[j * 3]];
+        stream._dedupCleanTitle = cleanTitles[fields[j * 3 + 1]];
+        stream._dedupYear = years[fields[j * 3 + 2]] || null;
+        stream._dedupRow = j;
+    }
+    window.log('DEDUP', 'native index ' + section + ': ' + streams.length + ' streams, ' + keys.length + ' keys, ' + result.normalized + ' titles normalised');
+    return true;
+};
+
+// Groups the filtered streams natively (year consolidation and id order
+// included); returns the _dedupGroups map, or null to use the JS grouping.
+IPTVApp.prototype._groupNativeDedup = function(section, streams) {
+    var keys = this._nativeDedupKeys && this._nativeDedupKeys[section];
+    if (!keys) return null;
+    var rows = new Array(streams.length);
+    for (var i = 0; i < streams.length; i++) rows[i] = streams[i]._dedupRow;
+    var flat;
+    try {
+        flat = JSON.parse(window.Android.dedupGroup(section, rows.join(',')));
+    }
+    catch (e) {
+        window.log('DEDUP', 'native group failed: ' + e.message);
+        return null;
+    }
+    if (!flat) return null;
+    var dedupGroups = {};
+    var p = 0;
+    while (p < flat.length) {
+        var key = keys[flat[p]];
+        var count = flat[p + 1];
+        var group = new Array(count);
+        for (var m = 0; m < count; m++) {
+            group[m] = streams[flat[p + 2 + m]];
+            group[m]._dedupKey = key;
+        }
+        dedupGroups[key] = group;
+        p += 2 + count;
+    }
+    return dedupGroups;
+};
+
 IPTVApp.prototype._sortByDateAdded = function(streams, asc, useLocalDate) {
     var n = streams.length;
     if (n < 2) return;
@@ -2934,6 +3060,100 @@ IPTVApp.prototype._sortByDateAdded = function(streams, asc, useLocalDate) {
     for (var k = 0; k < n; k++) streams[k] = withIdx[k].s;
 };
 
+IPTVApp.prototype._hasNativeSearch = function() {
+    return typeof window.Android !== 'undefined' && window.Android &&
+        typeof window.Android.searchIndex === 'function';
+};
+
+// Hands the titles of a preprocessed section to the native search index. It
+// builds in the background (or reuses the copy persisted for the same titles);
+// until it answers for this generation, _filterByTitle keeps matching in JS.
+IPTVApp.prototype._indexNativeSearch = function(section, streams) {
+    if (!this._hasNativeSearch()) return;
+    if (!this._nativeSearch) this._nativeSearch = {};
+    var generation = (this._nativeSearchGeneration || 0) + 1;
+    this._nativeSearchGeneration = generation;
+    var rows = new Array(streams.length);
+    for (var i = 0; i < streams.length; i++) {
+        var s = streams[i];
+        // Same haystack as the JS filter: _searchKey is built from _displayTitle
+        var title = s._searchKey ? s._displayTitle : this.getStreamTitle(s);
+        rows[i] = (title || '').replace(/\u001e/g, ' ');
+    }
+    try {
+        window.Android.searchIndex(section, generation, streams.length, rows.join('\u001e'));
+    }
+    catch (e) {
+        window.log('SEARCH', 'native index failed: ' + e.message);
+        delete this._nativeSearch[section];
+        return;
+    }
+    this._nativeSearch[section] = { generation: generation, streams: streams };
+};
+
+// Asks the native index of the current section for the streams matching the
+// search words. Streams of that index are stamped with the query and whether
+// they matched; returns the stamp, or 0 when the index cannot answer yet.
+IPTVApp.prototype._queryNativeSearch = function(query) {
+    var index = this._nativeSearch && this._nativeSearch[this.currentSection];
+    if (!index || !this._hasNativeSearch()) return 0;
+    var result;
+    try {
+        result = JSON.parse(window.Android.searchQuery(this.currentSection, index.generation, query, 0, index.streams.length));
+    }
+    catch (e) {
+        window.log('SEARCH', 'native query failed: ' + e.message);
+        return 0;
+    }
+    if (!result) return 0;
+    var stamp = (this._nativeSearchStamp || 0) + 1;
+    this._nativeSearchStamp = stamp;
+    var streams = index.streams;
+    for (var i = 0; i < streams.length; i++) {
+        streams[i]._searchStamp = stamp;
+        streams[i]._searchHit = false;
+    }
+    var rows = result.rows;
+    for (var j = 0; j < rows.length; j++) {
+        streams[rows[j]]._searchHit = true;
+    }
+    window.log('SEARCH', '"' + query + '": ' + result.total + ' native hits in ' + result.ms + 'ms' +
+        (result.fuzzy ? ' (typo tolerant)' : ''));
+    return stamp;
+};
+
+IPTVApp.prototype._filterByTitle = function(streams, titleFilter) {
+    var self = this;
+    var normalizedFilter = titleFilter
+        .normalize('NFD').replace(/[\u0300-\u036f]/g, '')
+        .replace(/[^a-z0-9\s]/g, ' ').replace(/\s+/g, ' ').trim();
+    var searchWords = normalizedFilter.split(' ').filter(function(w) { return w.length > 0; });
+    var titleOverridesSearch = {};
+    try { titleOverridesSearch = JSON.parse(localStorage.getItem('titleOverrides') || '{}'); }
+    catch (ex) {}
+    var normalize = function(s) {
+        return s.toLowerCase()
+            .normalize('NFD').replace(/[\u0300-\u036f]/g, '')
+            .replace(/[^a-z0-9\s]/g, ' ').replace(/\s+/g, ' ');
+    };
+    var matchesAllWords = function(haystack) {
+        for (var w = 0; w < searchWords.length; w++) {
+            if (haystack.indexOf(searchWords[w]) === -1) return false;
+        }
+        return true;
+    };
+    var nativeStamp = this._queryNativeSearch(normalizedFilter);
+    return streams.filter(function(s) {
+        var sid = s.stream_id || s.vod_id || s.series_id;
+        var override = sid ? titleOverridesSearch[sid] : null;
+        if (override && matchesAllWords(normalize(override))) return true;
+        if (nativeStamp && s._searchStamp === nativeStamp) return s._searchHit;
+        if (s._searchKey) return matchesAllWords(s._searchKey);
+        var rawName = self.getStreamTitle(s);
+        return matchesAllWords(normalize(rawName));
+    });
+};
+
 IPTVApp.prototype.applyFilters = function() {
     var self = this;
     this._filterGeneration = (this._filterGeneration || 0) + 1;
@@ -2946,32 +3166,7 @@ IPTVApp.prototype.applyFilters = function() {
     var titleFilter = document.getElementById('search-title').value.toLowerCase().trim();
     this.searchTitle = titleFilter;
     if (titleFilter) {
-        var normalizedFilter = titleFilter
-            .normalize('NFD').replace(/[\u0300-\u036f]/g, '')
-            .replace(/[^a-z0-9\s]/g, ' ').replace(/\s+/g, ' ').trim();
-        var searchWords = normalizedFilter.split(' ').filter(function(w) { return w.length > 0; });
-        var titleOverridesSearch = {};
-        try { titleOverridesSearch = JSON.parse(localStorage.getItem('titleOverrides') || '{}'); }
-        catch (ex) {}
-        var normalize = function(s) {
-            return s.toLowerCase()
-                .normalize('NFD').replace(/[\u0300-\u036f]/g, '')
-                .replace(/[^a-z0-9\s]/g, ' ').replace(/\s+/g, ' ');
-        };
-        var matchesAllWords = function(haystack) {
-            for (var w = 0; w < searchWords.length; w++) {
-                if (haystack.indexOf(searchWords[w]) === -1) return false;
-            }
-            return true;
-        };
-        streams = streams.filter(function(s) {
-            var sid = s.stream_id || s.vod_id || s.series_id;
-            var override = sid ? titleOverridesSearch[sid] : null;
-            if (override && matchesAllWords(normalize(override))) return true;
-            if (s._searchKey) return matchesAllWords(s._searchKey);
-            var rawName = self.getStreamTitle(s);
-            return matchesAllWords(normalize(rawName));
-        });
+        streams = this._filterByTitle(streams, titleFilter);
     }
     var yearFilter = document.getElementById('search-year').value.trim();
     if (yearFilter) {
@@ -3252,73 +3447,138 @@ IPTVApp.prototype._invalidatePreprocessCache = function(onDone) {
     window.log('CACHE', 'Preprocessing cache invalidated + sections reloaded');
 };
 
-IPTVApp.prototype._preprocessSection = function(section, categories, streams, onProgress) {
-    if (this.data[section] && this.data[section]._dedupGroups) return;
+// Keyword rules of the derived sections: 'sport', 'manga', one
+// 'entertainment.<kind>' per entertainment kind and one per custom category
+// id; hidden sections get no keywords. special lists the rules that keep a
+// category out of vod/series, entertainment the kinds in icon priority order.
+IPTVApp.prototype._categoryRules = function() {
     var patterns = this.getCategoryPatterns();
     var hiddenCategories = this.settings.hiddenDefaultCategories || [];
-    var keywordsToPatterns = function(keywords) {
-        return keywords.map(function(kw) {
-            return Regex.keywordPattern(kw);
-        });
+    var ent = hiddenCategories.indexOf('entertainment') === -1 ? (patterns.entertainment || {}) : {};
+    var rules = {
+        sport: hiddenCategories.indexOf('sport') === -1 ? (patterns.sport || []) : [],
+        manga: hiddenCategories.indexOf('manga') === -1 ? (patterns.manga || []) : []
     };
-    var sportPatterns = hiddenCategories.indexOf('sport') === -1 ? keywordsToPatterns(patterns.sport || []) : [];
-    var mangaPatterns = hiddenCategories.indexOf('manga') === -1 ? keywordsToPatterns(patterns.manga || []) : [];
-    var ent = patterns.entertainment || {};
-    var entertainmentPatterns = [];
-    var concertsPatterns, theatrePatterns, spectaclesPatterns, blindtestPatterns, karaokePatterns;
-    if (hiddenCategories.indexOf('entertainment') === -1) {
-        concertsPatterns = keywordsToPatterns(ent.concerts || []);
-        theatrePatterns = keywordsToPatterns(ent.theatre || []);
-        spectaclesPatterns = keywordsToPatterns(ent.spectacles || []);
-        blindtestPatterns = keywordsToPatterns(ent.blindtest || []);
-        karaokePatterns = keywordsToPatterns(ent.karaoke || []);
-        entertainmentPatterns = concertsPatterns.concat(theatrePatterns).concat(spectaclesPatterns).concat(blindtestPatterns).concat(karaokePatterns);
-    }
-    var allSpecialPatterns = sportPatterns.concat(entertainmentPatterns).concat(mangaPatterns);
-    var customCategories = this.settings.customCategories || [];
+    var entertainment = [];
+    ['concerts', 'theatre', 'spectacles', 'blindtest', 'karaoke'].forEach(function(kind) {
+        rules['entertainment.' + kind] = ent[kind] || [];
+        entertainment.push('entertainment.' + kind);
+    });
+    var special = ['sport'].concat(entertainment).concat(['manga']);
     var self = this;
-    customCategories.forEach(function(cat) {
-        var kws = patterns[cat.id] || cat.keywords || [];
-        allSpecialPatterns = allSpecialPatterns.concat(keywordsToPatterns(kws));
+    (this.settings.customCategories || []).forEach(function(cat) {
+        rules[cat.id] = self.getCustomCategoryKeywords(cat.id);
+        // An emptied patterns entry excludes nothing, even if the category still has keywords
+        var excluded = patterns[cat.id] || cat.keywords || [];
+        if (JSON.stringify(excluded) === JSON.stringify(rules[cat.id])) {
+            special.push(cat.id);
+        }
+        else {
+            rules['special.' + cat.id] = excluded;
+            special.push('special.' + cat.id);
+        }
     });
-    if (section === 'vod') {
-        categories = categories.filter(function(cat) {
-            return !allSpecialPatterns.some(function(p) { return p.test(cat.category_name || ''); });
-        });
+    return { rules: rules, special: special, entertainment: entertainment };
+};
+
+IPTVApp.prototype._hasNativeCategoryRules = function() {
+    return typeof window.Android !== 'undefined' && window.Android &&
+        typeof window.Android.categoryRulesClassify === 'function';
+};
+
+// Classifies names natively; returns {name: {ruleId: true}} for the names
+// matching any rule, or null when the bridge is unavailable or fails.
+IPTVApp.prototype._classifyNativeCategories = function(rules, names) {
+    if (!this._hasNativeCategoryRules()) return null;
+    var result;
+    try {
+        var rulesJson = JSON.stringify(rules);
+        if (this._nativeCategoryRulesJson !== rulesJson) {
+            window.Android.categoryRulesConfigure(rulesJson);
+            this._nativeCategoryRulesJson = rulesJson;
+        }
+        var rows = names.map(function(name) { return name.replace(/\u001e/g, ' '); });
+        result = JSON.parse(window.Android.categoryRulesClassify(names.length, rows.join('\u001e')));
+    }
+    catch (e) {
+        window.log('CACHE', 'native category rules failed: ' + e.message);
+        return null;
     }
-    else if (section === 'sport') {
-        categories = categories.filter(function(cat) {
-            return sportPatterns.some(function(p) { return p.test(cat.category_name || ''); });
-        });
+    if (!result) return null;
+    var classified = Object.create(null);
+    for (var ruleId in result) {
+        if (!result.hasOwnProperty(ruleId)) continue;
+        var rowList = result[ruleId];
+        for (var i = 0; i < rowList.length; i++) {
+            var name = names[rowList[i]];
+            (classified[name] || (classified[name] = {}))[ruleId] = true;
+        }
     }
-    else if (section === 'entertainment') {
-        categories = categories.filter(function(cat) {
-            var name = cat.category_name || '';
-            var matches = entertainmentPatterns.some(function(p) { return p.test(name); });
-            if (matches) {
-                if (concertsPatterns.some(function(p) { return p.test(name); })) cat._icon = '🎵';
-                else if (theatrePatterns.some(function(p) { return p.test(name); })) cat._icon = '🎭';
-                else if (spectaclesPatterns.some(function(p) { return p.test(name); })) cat._icon = '🎪';
-                else if (blindtestPatterns.some(function(p) { return p.test(name); })) cat._icon = '🎯';
-                else if (karaokePatterns.some(function(p) { return p.test(name); })) cat._icon = '🎤';
+    return classified;
+};
+
+// Returns matches(ruleIds, name): whether name matches a keyword of any of
+// the rules ({ruleId: [keywords]}, keywords as in Regex.keywordPattern). On
+// Android the names are classified up front in one native pass; otherwise
+// each rule's keyword regexes are compiled on first use.
+IPTVApp.prototype._categoryRuleMatcher = function(rules, names) {
+    var classified = this._classifyNativeCategories(rules, names);
+    if (classified) {
+        return function(ruleIds, name) {
+            var matched = classified[name];
+            if (!matched) return false;
+            for (var i = 0; i < ruleIds.length; i++) {
+                if (matched[ruleIds[i]]) return true;
             }
-            return matches;
-        });
+            return false;
+        };
     }
-    else if (section === 'manga') {
+    var compiled = {};
+    return function(ruleIds, name) {
+        for (var i = 0; i < ruleIds.length; i++) {
+            var ruleId = ruleIds[i];
+            if (!compiled[ruleId]) {
+                compiled[ruleId] = (rules[ruleId] || []).map(function(kw) { return Regex.keywordPattern(kw); });
+            }
+            if (compiled[ruleId].some(function(p) { return p.test(name); })) return true;
+        }
+        return false;
+    };
+};
+
+IPTVApp.prototype._preprocessSection = function(section, categories, streams, onProgress) {
+    if (this.data[section] && this.data[section]._dedupGroups) return;
+    var categoryRules = this._categoryRules();
+    if (section.indexOf('custom_') === 0 && !categoryRules.rules[section]) {
+        categoryRules.rules[section] = this.getCustomCategoryKeywords(section);
+    }
+    var matchesRules = this._categoryRuleMatcher(categoryRules.rules, categories.map(function(cat) {
+        return cat.category_name || '';
+    }));
+    var self = this;
+    if (section === 'vod' || section === 'series') {
         categories = categories.filter(function(cat) {
-            return mangaPatterns.some(function(p) { return p.test(cat.category_name || ''); });
+            return !matchesRules(categoryRules.special, cat.category_name || '');
         });
     }
-    else if (section.indexOf('custom_') === 0) {
-        var customPatterns = this.getCustomCategoryPatterns(section);
+    else if (section === 'entertainment') {
+        var icons = { concerts: '🎵', theatre: '🎭', spectacles: '🎪', blindtest: '🎯', karaoke: '🎤' };
         categories = categories.filter(function(cat) {
-            return customPatterns.some(function(p) { return p.test(cat.category_name || ''); });
+            var name = cat.category_name || '';
+            if (!matchesRules(categoryRules.entertainment, name)) return false;
+            for (var k = 0; k < categoryRules.entertainment.length; k++) {
+                var kindRule = categoryRules.entertainment[k];
+                if (matchesRules([kindRule], name)) {
+                    cat._icon = icons[kindRule.replace('entertainment.', '')];
+                    break;
+                }
+            }
+            return true;
         });
     }
-    else if (section === 'series') {
+    else if (section === 'sport' || section === 'manga' || section.indexOf('custom_') === 0) {
         categories = categories.filter(function(cat) {
-            return !allSpecialPatterns.some(function(p) { return p.test(cat.category_name || ''); });
+            return matchesRules([section], cat.category_name || '');
         });
     }
     var beforeLangFilter = categories.length;
@@ -3376,6 +3636,7 @@ IPTVApp.prototype._preprocessSection = function(section, categories, streams, on
             _genreCategories: {},
             _categoryCounts: categoryCounts
         };
+        this._indexNativeSearch(section, filtered);
         this.logMemory('preprocessed ' + section + ' (' + filtered.length + ' streams)');
         return;
     }
@@ -3388,12 +3649,13 @@ IPTVApp.prototype._preprocessSection = function(section, categories, streams, on
             _genreCategories: result._genreCategories,
             _categoryCounts: result._categoryCounts
         };
+        self._indexNativeSearch(section, result.streams);
         self.logMemory('preprocessed ' + section + ' (' + result.streams.length + ' streams)');
         if (result._wasSlowPath) {
             self._schedulePersistPreprocessedCache();
         }
     };
-    var result = this._preprocessStreams(streams, categories, categoryMap, onProgress);
+    var result = this._preprocessStreams(streams, categories, categoryMap, onProgress, section);
     if (result && result.then) {
         return result.then(storeResult);
     }
@@ -3440,7 +3702,7 @@ IPTVApp.prototype._persistPreprocessedCache = function() {
     this.saveProviderCache(playlistId, data);
 };
 
-IPTVApp.prototype._preprocessStreams = function(streams, categories, categoryMap, onProgress) {
+IPTVApp.prototype._preprocessStreams = function(streams, categories, categoryMap, onProgress, section) {
     var DEDUP_FORMAT_VERSION = 5;
     var self = this;
     var t0 = Date.now();
@@ -3470,6 +3732,7 @@ IPTVApp.prototype._preprocessStreams = function(streams, categories, categoryMap
     var beforeCount = streams.length;
     var BATCH_SIZE = 2000;
     var hasPreprocessedData = streams.length > 0 && streams[0]._dedupKey && streams[0]._dedupFormatVersion === DEDUP_FORMAT_VERSION;
+    var nativeDedup = this._indexNativeDedup(section, streams);
     if (streams.length > 100) {
         var sampleKeyShape = function(idx) {
             var s = streams[idx];
@@ -3484,16 +3747,18 @@ IPTVApp.prototype._preprocessStreams = function(streams, categories, categoryMap
         if (s._dedupKey !== undefined && s._dedupFormatVersion === DEDUP_FORMAT_VERSION) return;
         var title = self.getStreamTitle(s);
         var clean = self.cleanTitle(title);
-        var cleanTitle = self._normalizeDedupTitle(title);
-        var year = self.extractYear(title);
-        s._dedupCleanTitle = cleanTitle;
-        s._dedupYear = year;
-        var tmdbId = s.tmdb && String(s.tmdb).trim();
-        if (tmdbId && tmdbId !== '0') {
-            s._dedupKey = 'tmdb:' + tmdbId;
-        }
-        else {
-            s._dedupKey = 'title:' + cleanTitle + '|' + (year || '');
+        if (!nativeDedup) {
+            var cleanTitle = self._normalizeDedupTitle(title);
+            var year = self.extractYear(title);
+            s._dedupCleanTitle = cleanTitle;
+            s._dedupYear = year;
+            var tmdbId = s.tmdb && String(s.tmdb).trim();
+            if (tmdbId && tmdbId !== '0') {
+                s._dedupKey = 'tmdb:' + tmdbId;
+            }
+            else {
+                s._dedupKey = 'title:' + cleanTitle + '|' + (year || '');
+            }
         }
         var stripped = self.stripCategoryPrefix(title);
         var diff = stripped.replace(clean, '').replace(/\(\d{4}\)/g, '').replace(Regex.removeYearEnd, '').replace(/[\s\-|:()]+/g, ' ').trim();
@@ -3630,9 +3895,15 @@ IPTVApp.prototype._preprocessStreams = function(streams, categories, categoryMap
             });
         }
         var preConsolidateKeys = Object.keys(dedupGroups).length;
-        self._consolidateDedupGroupsByCleanTitle(dedupGroups);
+        var nativeGroups = nativeDedup ? self._groupNativeDedup(section, filtered) : null;
+        if (nativeGroups) {
+            dedupGroups = nativeGroups;
+        }
+        else {
+            self._consolidateDedupGroupsByCleanTitle(dedupGroups);
+        }
         var keys = Object.keys(dedupGroups);
-        for (var k = 0; k < keys.length; k++) {
+        for (var k = 0; k < keys.length && !nativeGroups; k++) {
             dedupGroups[keys[k]].sort(function(a, b) {
                 return parseInt(a.stream_id || a.series_id || 0) - parseInt(b.stream_id || b.series_id || 0);
             });
@@ -3644,7 +3915,7 @@ IPTVApp.prototype._preprocessStreams = function(streams, categories, categoryMap
             var top5Str = topGroups.map(function(g) { return g.n + 'x"' + g.k.substring(0, 60) + '"'; }).join(' | ');
             window.log('DEDUP', 'ANOMALY: ' + filtered.length + ' streams collapsed to ' + keys.length + ' groups (preConsolidate=' + preConsolidateKeys + '), top5: ' + top5Str);
         }
-        window.log('DEDUP', 'Preprocessed ' + filtered.length + ' streams into ' + keys.length + ' groups' + (hasPreprocessedData ? ' (fast path from cache)' : ''));
+        window.log('DEDUP', 'Preprocessed ' + filtered.length + ' streams into ' + keys.length + ' groups' + (hasPreprocessedData ? ' (fast path from cache)' : '') + (nativeGroups ? ' (native)' : ''));
         window.log('PERF', 'preprocessStreams: ' + (Date.now() - t0) + 'ms' + (hasPreprocessedData ? ' (fast)' : ''));
         return {
             categories: categories,
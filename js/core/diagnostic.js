@@ -77,6 +77,23 @@
         }
     }
 
+    // What the Android app saw of this host over the last 15 minutes
+    // (HostStats.java), null elsewhere or without traffic.
+    function getHostHistory(hostname) {
+        try {
+            if (typeof window.Android === 'undefined' || !window.Android ||
+                typeof window.Android.hostStats !== 'function') return null;
+            var hosts = JSON.parse(window.Android.hostStats(15)).hosts || [];
+            for (var i = 0; i < hosts.length; i++) {
+                if (hosts[i].host === hostname || hosts[i].host.indexOf(hostname + ':') === 0) return hosts[i];
+            }
+            return null;
+        }
+        catch (ex) {
+            return null;
+        }
+    }
+
     function checkInternet() {
         return fetchWithTimeout(INTERNET_PROBE_URL, { cache: 'no-store' }, INTERNET_TIMEOUT)
             .then(function(r) { return { ok: true, status: r.status }; })
@@ -203,6 +220,12 @@
             result.details.timing = timing;
         }
 
+        var history = getHostHistory(parsed.hostname);
+        if (history) {
+            step('hostHistory', history);
+            result.details.hostHistory = history;
+        }
+
         return checkInternet().then(function(internet) {
             step('internet', internet);
             result.details.internet = internet;
@@ -393,6 +416,12 @@
         if (d.timing) {
             items.push('⏱ DNS=' + d.timing.dns + 'ms TCP=' + d.timing.tcp + 'ms TTFB=' + d.timing.ttfb + 'ms');
         }
+        if (d.hostHistory) {
+            var h = d.hostHistory;
+            items.push('📊 15 min: ' + (h.transfers - h.errors) + ' ✅ ' + h.errors + ' ❌' +
+                (h.ttfbMs >= 0 ? ' TTFB=' + h.ttfbMs + 'ms' : '') +
+                (h.bps > 0 ? ' ' + Math.round(h.bps / 100000) / 10 + ' Mbps' : ''));
+        }
         for (var i = 0; i < items.length; i++) {
             var line = document.createElement('div');
             line.className = 'diag-step';
@@ -532,3 +561,439 @@
         isLikelyOffline: isLikelyOffline
     };
 })();
+
+/**
+ * Bridge Profiler
+ * Counts the JS-to-Java crossings of window.Android per method while it runs:
+ * calls, latency histogram (measured around the real call, so it includes the
+ * crossing itself), string bytes sent and returned. The native side counts
+ * the evaluateJavascript callbacks going the other way (BridgeProfiler.java).
+ * Stopped, window.Android is the untouched bridge object, so it costs nothing.
+ * Started from Settings > Data > Performance, or from the remote console:
+ * BridgeProfiler.start(60000).
+ */
+(function() {
+    var BUCKETS_MS = [0.1, 0.5, 1, 5, 10, 50, 100];
+    var OWN_METHODS = { bridgeProfilerSetEnabled: true, bridgeProfilerScripts: true };
+
+    var original = null;
+    var stats = {};
+    var startedAt = 0;
+    var stopTimer = null;
+
+    function now() {
+        return typeof performance !== 'undefined' && performance.now ? performance.now() : Date.now();
+    }
+
+    function sizeOf(value) {
+        return typeof value === 'string' ? value.length : 0;
+    }
+
+    function record(method, elapsed, bytesIn, bytesOut) {
+        var entry = stats[method];
+        if (!entry) {
+            entry = { method: method, count: 0, totalMs: 0, maxMs: 0, bytesIn: 0, bytesOut: 0, histogram: [] };
+            for (var i = 0; i <= BUCKETS_MS.length; i++) entry.histogram.push(0);
+            stats[method] = entry;
+        }
+        entry.count++;
+        entry.totalMs += elapsed;
+        if (elapsed > entry.maxMs) entry.maxMs = elapsed;
+        entry.bytesIn += bytesIn;
+        entry.bytesOut += bytesOut;
+        var bucket = 0;
+        while (bucket < BUCKETS_MS.length && elapsed > BUCKETS_MS[bucket]) bucket++;
+        entry.histogram[bucket]++;
+    }
+
+    function wrap(target, method) {
+        return function() {
+            var bytesIn = 0;
+            for (var i = 0; i < arguments.length; i++) bytesIn += sizeOf(arguments[i]);
+            var start = now();
+            try {
+                var result = target[method].apply(target, arguments);
+                record(method, now() - start, bytesIn, sizeOf(result));
+                return result;
+            }
+            catch (e) {
+                record(method, now() - start, bytesIn, 0);
+                throw e;
+            }
+        };
+    }
+
+    function nativeCall(method, arg) {
+        var bridge = original || window.Android;
+        if (!bridge || typeof bridge[method] !== 'function') return null;
+        try {
+            return bridge[method](arg);
+        }
+        catch (e) {
+            return null;
+        }
+    }
+
+    function running() {
+        return !!original;
+    }
+
+    // Replaces window.Android with a copy whose methods are timed; stops by
+    // itself after durationMs when given, logging the report.
+    function start(durationMs) {
+        if (original) return true;
+        var bridge = window.Android;
+        if (!bridge) return false;
+        var proxy = {};
+        for (var name in bridge) {
+            if (typeof bridge[name] !== 'function') proxy[name] = bridge[name];
+            else if (OWN_METHODS[name]) proxy[name] = bridge[name].bind(bridge);
+            else proxy[name] = wrap(bridge, name);
+        }
+        window.Android = proxy;
+        if (window.Android !== proxy) {
+            window.log('BRIDGE_PROFILE', 'window.Android cannot be replaced, profiler not started');
+            return false;
+        }
+        original = bridge;
+        stats = {};
+        startedAt = Date.now();
+        nativeCall('bridgeProfilerSetEnabled', true);
+        if (durationMs > 0) {
+            stopTimer = setTimeout(function() {
+                stopTimer = null;
+                exportJson();
+                stop();
+            }, durationMs);
+        }
+        window.log('BRIDGE_PROFILE', 'started' + (durationMs > 0 ? ' for ' + durationMs + ' ms' : ''));
+        return true;
+    }
+
+    function stop() {
+        if (!original) return;
+        if (stopTimer) {
+            clearTimeout(stopTimer);
+            stopTimer = null;
+        }
+        window.Android = original;
+        original = null;
+        nativeCall('bridgeProfilerSetEnabled', false);
+        window.log('BRIDGE_PROFILE', 'stopped');
+    }
+
+    // {durationMs, buckets, calls: [per method, most frequent first],
+    // scripts: [native-to-JS per target]}
+    function report() {
+        var elapsed = startedAt ? Date.now() - startedAt : 0;
+        var calls = Object.keys(stats).map(function(method) {
+            var entry = stats[method];
+            return {
+                method: method,
+                count: entry.count,
+                perSecond: elapsed > 0 ? Math.round(entry.count * 10000 / elapsed) / 10 : 0,
+                avgMs: Math.round(entry.totalMs / entry.count * 1000) / 1000,
+                maxMs: Math.round(entry.maxMs * 1000) / 1000,
+                bytesIn: entry.bytesIn,
+                bytesOut: entry.bytesOut,
+                histogram: entry.histogram.slice()
+            };
+        }).sort(function(a, b) { return b.count - a.count; });
+        var scripts = [];
+        var json = nativeCall('bridgeProfilerScripts');
+        if (json) {
+            try {
+                var targets = JSON.parse(json).scripts || {};
+                scripts = Object.keys(targets).map(function(target) {
+                    var entry = targets[target];
+                    return { target: target, count: entry.count, chars: entry.chars, maxChars: entry.maxChars };
+                }).sort(function(a, b) { return b.count - a.count; });
+            }
+            catch (e) {
+                window.log('BRIDGE_PROFILE', 'bad native report: ' + e.message);
+            }
+        }
+        return { durationMs: elapsed, buckets: BUCKETS_MS.slice(), calls: calls, scripts: scripts };
+    }
+
+    // Logs the report as one line, which remote debug forwards to log.php.
+    function exportJson() {
+        var json = JSON.stringify(report());
+        window.log('BRIDGE_PROFILE', json);
+        return json;
+    }
+
+    function pad(value, width) {
+        var text = String(value);
+        while (text.length < width) text = ' ' + text;
+        return text;
+    }
+
+    function padRight(value, width) {
+        var text = String(value);
+        while (text.length < width) text += ' ';
+        return text + ' ';
+    }
+
+    function formatText(result) {
+        var lines = ['JS -> Java, ' + Math.round(result.durationMs / 1000) + ' s',
+            padRight('method', 34) + ' calls    /s   avg ms   max ms    in B   out B'];
+        result.calls.forEach(function(call) {
+            lines.push(padRight(call.method, 34) + pad(call.count, 6) +
+                pad(call.perSecond, 6) + pad(call.avgMs.toFixed(2), 9) + pad(call.maxMs.toFixed(2), 9) +
+                pad(call.bytesIn, 8) + pad(call.bytesOut, 8));
+        });
+        lines.push('', 'Java -> JS', padRight('target', 34) + ' calls     chars  max chars');
+        result.scripts.forEach(function(script) {
+            lines.push(padRight(script.target, 34) + pad(script.count, 6) +
+                pad(script.chars, 10) + pad(script.maxChars, 11));
+        });
+        return lines.join('\n');
+    }
+
+    function show(app) {
+        var result = report();
+        var pre = document.createElement('pre');
+        pre.className = 'bridge-profile';
+        pre.textContent = formatText(result);
+        app.showConfirmModal('', function() {
+            var json = exportJson();
+            if (app.copyToClipboard) app.copyToClipboard(json);
+        }, {
+            title: I18n.t('diagnostic.bridgeProfile', 'Bridge profile'),
+            html: pre,
+            yesLabel: I18n.t('player.copyDetails', 'Copy details'),
+            noLabel: I18n.t('diagnostic.close', 'Close')
+        });
+    }
+
+    window.BridgeProfiler = {
+        start: start,
+        stop: stop,
+        running: running,
+        report: report,
+        exportJson: exportJson,
+        formatText: formatText,
+        show: show
+    };
+})();
+
+/**
+ * Frame Monitor
+ * Frame timing of the Android window the WebView draws into (FrameMonitor.java):
+ * percentiles over the last frames, jank / severe / frozen counts and the
+ * worst frames with what was delivered to JS around them. Native side does
+ * not count the JS-to-Java calls; run BridgeProfiler over the same period
+ * to see them next to the frames. Started from Settings > Data > Performance,
+ * or from the remote console: FrameMonitor.start(60000).
+ */
+(function() {
+    var stopTimer = null;
+
+    function bridge() {
+        return typeof window.Android !== 'undefined' && window.Android &&
+            typeof window.Android.frameMonitorStats === 'function' ? window.Android : null;
+    }
+
+    function available() {
+        return !!bridge();
+    }
+
+    // Stops by itself after durationMs when given, logging the stats.
+    function start(durationMs) {
+        var android = bridge();
+        if (!android) return false;
+        android.frameMonitorSetEnabled(true);
+        if (stopTimer) clearTimeout(stopTimer);
+        stopTimer = null;
+        if (durationMs > 0) {
+            stopTimer = setTimeout(function() {
+                stopTimer = null;
+                exportJson();
+                stop();
+            }, durationMs);
+        }
+        window.log('FRAME_STATS', 'started' + (durationMs > 0 ? ' for ' + durationMs + ' ms' : ''));
+        return true;
+    }
+
+    function stop() {
+        if (stopTimer) {
+            clearTimeout(stopTimer);
+            stopTimer = null;
+        }
+        var android = bridge();
+        if (android) android.frameMonitorSetEnabled(false);
+    }
+
+    function stats() {
+        var android = bridge();
+        if (!android) return null;
+        try {
+            return JSON.parse(android.frameMonitorStats());
+        }
+        catch (e) {
+            window.log('FRAME_STATS', 'bad native stats: ' + e.message);
+            return null;
+        }
+    }
+
+    // Logs the stats as one line, which remote debug forwards to log.php.
+    function exportJson() {
+        var json = JSON.stringify(stats());
+        window.log('FRAME_STATS', json);
+        return json;
+    }
+
+    function percent(part, total) {
+        return total > 0 ? Math.round(part * 1000 / total) / 10 + '%' : '0%';
+    }
+
+    function formatText(result) {
+        if (!result) return 'Frame monitor unavailable';
+        var lines = [
+            result.frames + ' frames (' + result.source + ', ' + result.intervalMs + ' ms interval)',
+            'jank ' + result.jank + ' (' + percent(result.jank, result.frames) + ')  severe ' + result.severe +
+                '  frozen ' + result.frozen,
+            'p50 ' + result.p50Ms + '  p90 ' + result.p90Ms + '  p95 ' + result.p95Ms + '  p99 ' + result.p99Ms +
+                '  max ' + result.maxMs + ' ms (last ' + result.window + ' frames)',
+            '',
+            'worst frames            ms  player scripts channel gc  phases'
+        ];
+        (result.worst || []).forEach(function(frame) {
+            var phases = '';
+            if (frame.phases) {
+                phases = Object.keys(frame.phases).filter(function(name) { return frame.phases[name] >= 1; })
+                    .map(function(name) { return name + ' ' + frame.phases[name]; }).join(', ');
+            }
+            var at = new Date(frame.at);
+            var time = ('0' + at.getHours()).slice(-2) + ':' + ('0' + at.getMinutes()).slice(-2) + ':' +
+                ('0' + at.getSeconds()).slice(-2) + '.' + ('00' + at.getMilliseconds()).slice(-3);
+            lines.push(time + '  ' + ('       ' + frame.ms).slice(-9) + ('       ' + frame.playerEvents).slice(-8) +
+                ('       ' + frame.scripts).slice(-8) + ('       ' + frame.channelCalls).slice(-8) +
+                ('   ' + frame.gcs).slice(-4) + '  ' + phases);
+        });
+        if (window.BridgeProfiler && window.BridgeProfiler.running()) {
+            lines.push('', 'JS -> Java meanwhile (BridgeProfiler)');
+            window.BridgeProfiler.report().calls.slice(0, 8).forEach(function(call) {
+                lines.push(call.method + ': ' + call.perSecond + '/s, max ' + call.maxMs + ' ms');
+            });
+        }
+        return lines.join('\n');
+    }
+
+    function show(app) {
+        var pre = document.createElement('pre');
+        pre.className = 'bridge-profile';
+        pre.textContent = formatText(stats());
+        app.showConfirmModal('', function() {
+            var json = exportJson();
+            if (app.copyToClipboard) app.copyToClipboard(json);
+        }, {
+            title: I18n.t('diagnostic.frameStats', 'Frame stats'),
+            html: pre,
+            yesLabel: I18n.t('player.copyDetails', 'Copy details'),
+            noLabel: I18n.t('diagnostic.close', 'Close')
+        });
+    }
+
+    window.FrameMonitor = {
+        available: available,
+        start: start,
+        stop: stop,
+        stats: stats,
+        exportJson: exportJson,
+        formatText: formatText,
+        show: show
+    };
+})();
+
+/**
+ * Host Stats
+ * Per-host transfer stats of the Android app (HostStats.java): transfers,
+ * errors, bytes, throughput, time to first byte and connection setup over
+ * the last 1 to 60 minutes, for the player, provider API, updates and
+ * images. rank() orders mirror URLs best first from the same data.
+ */
+(function() {
+    function bridge() {
+        return typeof window.Android !== 'undefined' && window.Android &&
+            typeof window.Android.hostStats === 'function' ? window.Android : null;
+    }
+
+    function get(windowMinutes) {
+        var android = bridge();
+        if (!android) return null;
+        try {
+            return JSON.parse(android.hostStats(windowMinutes || 15));
+        }
+        catch (e) {
+            window.log('HOST_STATS', 'bad native stats: ' + e.message);
+            return null;
+        }
+    }
+
+    // Best candidate first; the given order where there is no data.
+    function rank(urls, windowMinutes) {
+        var android = bridge();
+        if (!android || typeof android.hostStatsRank !== 'function' || !urls || urls.length < 2) return urls;
+        try {
+            var ranked = JSON.parse(android.hostStatsRank(JSON.stringify(urls), windowMinutes || 15));
+            return ranked.length === urls.length ? ranked : urls;
+        }
+        catch (e) {
+            return urls;
+        }
+    }
+
+    // Logs the stats as one line, which remote debug forwards to log.php.
+    function exportJson(windowMinutes) {
+        var json = JSON.stringify(get(windowMinutes));
+        window.log('HOST_STATS', json);
+        return json;
+    }
+
+    function cell(value, width) {
+        var text = String(value);
+        while (text.length < width) text = ' ' + text;
+        return text;
+    }
+
+    function formatText(result) {
+        if (!result) return 'Host stats unavailable';
+        var lines = ['Last ' + result.windowMinutes + ' min',
+            'host                           transfers errors       KB   Mbps  ttfb ms  connect ms'];
+        result.hosts.forEach(function(host) {
+            var name = host.host.length > 30 ? host.host.substring(0, 29) + '~' : host.host;
+            while (name.length < 30) name += ' ';
+            lines.push(name + cell(host.transfers, 10) + cell(host.errors, 7) + cell(Math.round(host.bytes / 1024), 9) +
+                cell(host.bps > 0 ? (host.bps / 1000000).toFixed(1) : '-', 7) +
+                cell(host.ttfbMs >= 0 ? host.ttfbMs : '-', 9) + cell(host.connectMs >= 0 ? host.connectMs : '-', 12) +
+                '  ' + host.kinds);
+        });
+        return lines.join('\n');
+    }
+
+    function show(app, windowMinutes) {
+        var pre = document.createElement('pre');
+        pre.className = 'bridge-profile';
+        pre.textContent = formatText(get(windowMinutes));
+        app.showConfirmModal('', function() {
+            var json = exportJson(windowMinutes);
+            if (app.copyToClipboard) app.copyToClipboard(json);
+        }, {
+            title: I18n.t('diagnostic.hostStats', 'Host stats'),
+            html: pre,
+            yesLabel: I18n.t('player.copyDetails', 'Copy details'),
+            noLabel: I18n.t('diagnostic.close', 'Close')
+        });
+    }
+
+    window.HostStats = {
+        get: get,
+        rank: rank,
+        exportJson: exportJson,
+        formatText: formatText,
+        show: show
+    };
+})();
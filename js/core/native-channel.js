@@ -0,0 +1,153 @@
+/**
+ * Native Channel
+ * Asynchronous Android calls (NativeChannel.java): call(method, args) returns
+ * a Promise settled by the single answer of the call, its result, error or
+ * timeout. Requests go over window.AndroidChannel, a web message port, and
+ * are answered with an ArrayBuffer: an 8 byte header ("FB", format version,
+ * status, call id as little-endian uint32) followed by the UTF-8 result,
+ * decoded here with TextDecoder. WebViews without ArrayBuffer messages answer
+ * "id:status:body" strings; without the port, calls go through
+ * Android.channelCall and are answered on window.__channelNative.
+ */
+(function() {
+    var HEADER_SIZE = 8;
+    var FORMAT_VERSION = 1;
+    var STATUS_OK = 0;
+    var STATUS_TIMEOUT = 2;
+    var BENCHMARK_SIZES = [1024, 100 * 1024, 10 * 1024 * 1024];
+    var BENCHMARK_RUNS = { 1024: 20, 102400: 10, 10485760: 3 };
+
+    var nextId = 1;
+    var pending = {};
+    var listening = false;
+    var decoder = null;
+
+    function port() {
+        return typeof window.AndroidChannel !== 'undefined' && window.AndroidChannel &&
+            typeof window.AndroidChannel.postMessage === 'function' ? window.AndroidChannel : null;
+    }
+
+    // True when bulk results arrive as ArrayBuffers on the port.
+    function available() {
+        return !!port() && typeof TextDecoder !== 'undefined';
+    }
+
+    // True when call() can reach Android at all.
+    function canCall() {
+        return !!port() || (typeof window.Android !== 'undefined' && !!window.Android &&
+            typeof window.Android.channelCall === 'function');
+    }
+
+    // Returns {id, status, body} for an ArrayBuffer or string frame, null
+    // for anything else.
+    function decode(data) {
+        if (typeof data === 'string') {
+            var first = data.indexOf(':');
+            var second = data.indexOf(':', first + 1);
+            if (first < 0 || second < 0) return null;
+            return { id: parseInt(data.substring(0, first), 10), status: parseInt(data.substring(first + 1, second), 10),
+                body: data.substring(second + 1) };
+        }
+        if (!data || typeof data.byteLength !== 'number' || data.byteLength < HEADER_SIZE) return null;
+        var header = new Uint8Array(data, 0, HEADER_SIZE);
+        if (header[0] !== 0x46 || header[1] !== 0x42 || header[2] !== FORMAT_VERSION) return null;
+        if (!decoder) decoder = new TextDecoder('utf-8');
+        return {
+            id: (header[4] | header[5] << 8 | header[6] << 16) + header[7] * 0x1000000,
+            status: header[3],
+            body: decoder.decode(new Uint8Array(data, HEADER_SIZE))
+        };
+    }
+
+    function onMessage(event) {
+        var frame = decode(event.data);
+        if (!frame || !pending[frame.id]) return;
+        var call = pending[frame.id];
+        delete pending[frame.id];
+        if (frame.status === STATUS_OK) {
+            call.resolve(frame.body);
+            return;
+        }
+        var error = new Error(frame.body || 'NativeChannel ' + call.method + ' failed');
+        error.timeout = frame.status === STATUS_TIMEOUT;
+        call.reject(error);
+    }
+
+    // Runs a method registered in NativeChannel.java; resolves with its
+    // result text, rejects with its error (error.timeout once the method's
+    // time limit is over).
+    function call(method, args) {
+        if (!canCall()) return Promise.reject(new Error('NativeChannel unavailable'));
+        var target = port();
+        if (!listening) {
+            if (target) target.onmessage = onMessage;
+            else window.__channelNative = function(frame) { onMessage({ data: frame }); };
+            listening = true;
+        }
+        var id = nextId++;
+        return new Promise(function(resolve, reject) {
+            pending[id] = { method: method, resolve: resolve, reject: reject };
+            try {
+                var request = JSON.stringify({ id: id, method: method, args: args || [] });
+                if (target) target.postMessage(request);
+                else window.Android.channelCall(request);
+            }
+            catch (e) {
+                delete pending[id];
+                reject(e);
+            }
+        });
+    }
+
+    function now() {
+        return typeof performance !== 'undefined' && performance.now ? performance.now() : Date.now();
+    }
+
+    // Times the same JSON payload, from request to parsed rows, over the
+    // string bridge and over the channel for 1 KB, 100 KB and 10 MB. Run it
+    // from the remote console; resolves with (and logs) the median per size.
+    function benchmark() {
+        if (!available() || !window.Android || typeof window.Android.bridgeBenchmarkPayload !== 'function') {
+            return Promise.reject(new Error('NativeChannel unavailable'));
+        }
+        var results = [];
+        var median = function(values) {
+            values.sort(function(a, b) { return a - b; });
+            return Math.round(values[Math.floor(values.length / 2)] * 10) / 10;
+        };
+        return BENCHMARK_SIZES.reduce(function(chain, size) {
+            return chain.then(function() {
+                var runs = BENCHMARK_RUNS[size];
+                var stringMs = [];
+                for (var i = 0; i < runs; i++) {
+                    var start = now();
+                    JSON.parse(window.Android.bridgeBenchmarkPayload(size));
+                    stringMs.push(now() - start);
+                }
+                var channelMs = [];
+                var next = function(left) {
+                    if (left === 0) return Promise.resolve();
+                    var start = now();
+                    return call('benchmarkPayload', [size]).then(function(body) {
+                        JSON.parse(body);
+                        channelMs.push(now() - start);
+                        return next(left - 1);
+                    });
+                };
+                return next(runs).then(function() {
+                    var result = { bytes: size, runs: runs, stringMs: median(stringMs), channelMs: median(channelMs) };
+                    window.log('BRIDGE', 'benchmark ' + JSON.stringify(result));
+                    results.push(result);
+                });
+            });
+        }, Promise.resolve()).then(function() { return results; });
+    }
+
+    window.NativeChannel = {
+        available: available,
+        canCall: canCall,
+        call: call,
+        decode: decode,
+        benchmark: benchmark
+    };
+})();
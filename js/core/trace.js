@@ -0,0 +1,168 @@
+/**
+ * Trace
+ * JS side of the Android tracer (Tracer.java): named spans are buffered and
+ * handed to Android.traceSpans in batches, on the same wall-clock timeline
+ * as the Java spans, and export() writes the whole trace as Chrome
+ * trace-event JSON on the device. Whether a launch records is decided
+ * natively against the sample rate; when it does not (or on Tizen and older
+ * APKs) begin() returns null and nothing is wrapped. The wrapped entry
+ * points below cover app start, the first provider fetch and playback start.
+ */
+(function() {
+    var FLUSH_DELAY_MS = 2000;
+    var FLUSH_SIZE = 64;
+    var INSTRUMENTED = [
+        { owner: 'IPTVApp', method: 'init', name: 'app.init', category: 'startup' },
+        { owner: 'IPTVApp', method: 'startApp', name: 'app.startApp', category: 'startup' },
+        { owner: 'ProviderAPI', method: 'authenticate', name: 'provider.authenticate', category: 'network' },
+        { owner: 'ProviderAPI', method: 'preloadCache', name: 'provider.preloadCache', category: 'network' },
+        { owner: 'IPTVApp', method: 'playStream', name: 'app.playStream', category: 'playback' }
+    ];
+
+    var recording = false;
+    var buffer = [];
+    var flushTimer = null;
+
+    function bridge() {
+        return typeof window.Android !== 'undefined' && window.Android &&
+            typeof window.Android.traceSpans === 'function' ? window.Android : null;
+    }
+
+    // Wall-clock milliseconds with sub-millisecond precision where available.
+    function now() {
+        if (typeof performance !== 'undefined' && performance.now) {
+            var origin = performance.timeOrigin || (performance.timing && performance.timing.navigationStart);
+            if (origin) return origin + performance.now();
+        }
+        return Date.now();
+    }
+
+    function flush() {
+        if (flushTimer) {
+            clearTimeout(flushTimer);
+            flushTimer = null;
+        }
+        if (!buffer.length) return;
+        var spans = buffer;
+        buffer = [];
+        var android = bridge();
+        if (!android) return;
+        try {
+            android.traceSpans(JSON.stringify(spans));
+        }
+        catch (e) {
+            window.log('TRACE', 'flush failed: ' + e.message);
+        }
+    }
+
+    function push(span) {
+        buffer.push(span);
+        if (buffer.length >= FLUSH_SIZE) flush();
+        else if (!flushTimer) flushTimer = setTimeout(flush, FLUSH_DELAY_MS);
+    }
+
+    // Returns a token for end(), null when not recording.
+    function begin(name, category) {
+        if (!recording) return null;
+        return { name: name, category: category || 'js', start: now() };
+    }
+
+    function end(token) {
+        if (!token) return;
+        push([token.name, token.category, token.start, now() - token.start]);
+    }
+
+    function mark(name, category) {
+        if (!recording) return;
+        push([name, category || 'js', now(), -1]);
+    }
+
+    // Times a method; for one returning a promise the span lasts until it settles.
+    function wrap(proto, method, name, category) {
+        var original = proto[method];
+        if (typeof original !== 'function') return;
+        proto[method] = function() {
+            var token = begin(name, category);
+            var result;
+            try {
+                result = original.apply(this, arguments);
+            }
+            catch (e) {
+                end(token);
+                throw e;
+            }
+            if (result && typeof result.then === 'function') {
+                result.then(function() { end(token); }, function() { end(token); });
+            }
+            else {
+                end(token);
+            }
+            return result;
+        };
+    }
+
+    function ownerOf(name) {
+        if (name === 'IPTVApp' && typeof IPTVApp !== 'undefined') return IPTVApp;
+        if (name === 'ProviderAPI' && typeof ProviderAPI !== 'undefined') return ProviderAPI;
+        return null;
+    }
+
+    function install() {
+        var android = bridge();
+        try {
+            recording = !!android && !!android.traceIsRecording();
+        }
+        catch (e) {
+            recording = false;
+        }
+        if (!recording) return false;
+        INSTRUMENTED.forEach(function(point) {
+            var owner = ownerOf(point.owner);
+            if (owner) wrap(owner.prototype, point.method, point.name, point.category);
+        });
+        var timing = typeof performance !== 'undefined' && performance.timing;
+        if (timing && timing.navigationStart) {
+            document.addEventListener('DOMContentLoaded', function() {
+                var ready = timing.domContentLoadedEventStart || now();
+                push(['page.domContentLoaded', 'startup', timing.navigationStart, ready - timing.navigationStart]);
+            });
+        }
+        return true;
+    }
+
+    // Writes the trace file on the device; resolves with its path ('' when
+    // not recording or unavailable) and logs it.
+    function exportTrace() {
+        flush();
+        var android = bridge();
+        var path = '';
+        if (android && typeof android.traceExport === 'function') {
+            try {
+                path = android.traceExport() || '';
+            }
+            catch (e) {
+                window.log('TRACE', 'export failed: ' + e.message);
+            }
+        }
+        window.log('TRACE', path ? 'exported to ' + path : 'nothing exported');
+        return path;
+    }
+
+    // Records every launch from now on (rate 1), none (0) or a share.
+    function setSampleRate(rate) {
+        var android = bridge();
+        if (android && typeof android.traceSetSampleRate === 'function') android.traceSetSampleRate(rate);
+    }
+
+    install();
+
+    window.Trace = {
+        begin: begin,
+        end: end,
+        mark: mark,
+        flush: flush,
+        isRecording: function() { return recording; },
+        exportTrace: exportTrace,
+        setSampleRate: setSampleRate
+    };
+})();
@@ -2262,6 +2262,37 @@ IPTVApp.prototype.fetchTMDBCached = function(rawTitle, type, callback, forceRefr
     });
 };
 
+// After a background refresh, resolves the TMDB metadata of the movies and
+// series the provider just added (ids from the native catalog delta), so their
+// details open from the native cache. Titles already in tmdbCache are skipped.
+IPTVApp.prototype.prefetchTMDBForNewItems = function(cacheData, delta) {
+    var maxTitles = 40;
+    var addedIds = delta && delta.addedIds;
+    if (!addedIds || !cacheData) return 0;
+    var self = this;
+    var entries = [];
+    ['vod', 'series'].forEach(function(section) {
+        var ids = addedIds[section];
+        var streams = cacheData[section] && cacheData[section].streams;
+        if (!ids || !ids.length || !streams) return;
+        var wanted = {};
+        ids.forEach(function(id) { wanted[id] = true; });
+        for (var i = 0; i < streams.length && entries.length < maxTitles; i++) {
+            var stream = streams[i];
+            if (!wanted[String(stream.stream_id || stream.series_id)]) continue;
+            var year = self.extractYear(stream.name);
+            var title = self.cleanTitle(stream.name);
+            var tmdbId = String(stream.tmdb_id || stream.tmdb || '').trim();
+            if (tmdbId === '0') tmdbId = '';
+            if (!title || self.tmdbCache[tmdbId ? 'id_' + tmdbId : self.getTMDBCacheKey(title, year)]) continue;
+            entries.push({ title: title, year: year, type: section === 'series' ? 'tv' : 'movie', tmdbId: tmdbId || null });
+        }
+    });
+    var queued = TMDB.prefetchTitles(entries);
+    if (queued > 0) window.log('TMDB', 'prefetch ' + queued + ' new titles');
+    return queued;
+};
+
 // TMDB info display
 IPTVApp.prototype.shouldSkipTMDB = function() {
     if (this.currentSection === 'sport') return true;
@@ -2749,15 +2780,18 @@ IPTVApp.prototype.markAsWatched = function() {
         if (historyItem._manuallyMarked) {
             var removeId = historyItem.id;
             var removePlaylistId = historyItem.playlistId;
+            var removed = [];
             this.watchHistory = this.watchHistory.filter(function(item) {
-                if (removePlaylistId) return item.id != removeId || item.playlistId != removePlaylistId;
-                return item.id != removeId;
+                var keep = removePlaylistId ? item.id != removeId || item.playlistId != removePlaylistId : item.id != removeId;
+                if (!keep) removed.push(item);
+                return keep;
             });
+            this._saveWatchHistoryChange(null, removed);
         }
         else {
             historyItem.watched = false;
+            this._saveWatchHistoryItem(historyItem);
         }
-        this.saveWatchHistory();
         this.updateContinueCounter();
         this.updateMarkWatchedButton();
         return;
@@ -2772,7 +2806,7 @@ IPTVApp.prototype.markAsWatched = function() {
     if (historyItem) {
         historyItem.watched = true;
         if (wasNew) historyItem._manuallyMarked = true;
-        this.saveWatchHistory();
+        this._saveWatchHistoryItem(historyItem);
         this.updateContinueCounter();
     }
     this.updateMarkWatchedButton();
@@ -4861,8 +4895,28 @@ IPTVApp.prototype.removeCompletedDownloadsFromGrid = function(downloads) {
     }, 300);
 };
 
+// DownloadManager calls are content provider queries: they go through the
+// async bridge (NativeChannel) when the APK has it, so they neither block
+// this thread nor the other bridge calls.
+IPTVApp.prototype._hasAsyncBridge = function() {
+    return !!(window.NativeChannel && window.NativeChannel.canCall());
+};
+
 IPTVApp.prototype._startAndroidDownload = function(url, filename, streamId, playlistId, poster, seriesId) {
-    var dmId = window.Android.downloadFile(url, filename);
+    var self = this;
+    if (this._hasAsyncBridge()) {
+        window.NativeChannel.call('downloadEnqueue', [url, filename]).then(function(id) {
+            self._onAndroidDownloadEnqueued(parseInt(id, 10), filename, streamId, playlistId, poster, seriesId);
+        }, function(e) {
+            window.log('ERROR', 'downloadEnqueue: ' + e.message);
+            self._onAndroidDownloadEnqueued(-1, filename, streamId, playlistId, poster, seriesId);
+        });
+        return;
+    }
+    this._onAndroidDownloadEnqueued(window.Android.downloadFile(url, filename), filename, streamId, playlistId, poster, seriesId);
+};
+
+IPTVApp.prototype._onAndroidDownloadEnqueued = function(dmId, filename, streamId, playlistId, poster, seriesId) {
     if (!dmId || dmId <= 0) {
         window.log('ERROR', 'Android local download failed to enqueue: ' + filename);
         this.showToast(I18n.t('freebox.downloadError', 'Download error'), 3000, true);
@@ -4904,21 +4958,44 @@ IPTVApp.prototype.ensureAndroidPolling = function() {
 };
 
 IPTVApp.prototype._pollAndroidDownloads = function() {
+    var self = this;
     var map = this._androidDownloadMap || {};
     var ids = Object.keys(map);
     if (ids.length === 0) return;
+    if (this._hasAsyncBridge()) {
+        if (this._androidPollPending) return;
+        this._androidPollPending = true;
+        window.NativeChannel.call('downloadStatus', [ids.map(Number)]).then(function(json) {
+            self._androidPollPending = false;
+            var statuses = JSON.parse(json);
+            self._applyAndroidDownloadStatuses(ids, function(dmId) { return statuses[dmId] || {}; });
+        }).catch(function(e) {
+            self._androidPollPending = false;
+            window.log('ERROR', 'downloadStatus: ' + e.message);
+        });
+        return;
+    }
     if (!window.Android || typeof window.Android.getAndroidDownloadStatus !== 'function') return;
-    var changed = false;
-    for (var i = 0; i < ids.length; i++) {
-        var dmId = ids[i];
-        var raw = window.Android.getAndroidDownloadStatus(parseInt(dmId, 10));
-        var info;
+    this._applyAndroidDownloadStatuses(ids, function(dmId) {
         try {
-            info = JSON.parse(raw || '{}');
+            return JSON.parse(window.Android.getAndroidDownloadStatus(parseInt(dmId, 10)) || '{}');
         }
         catch (ex) {
-            continue;
+            return null;
         }
+    });
+};
+
+// statusOf(dmId) returns {status, total, downloaded}, {} for a download
+// DownloadManager no longer knows, or null when it could not be read.
+IPTVApp.prototype._applyAndroidDownloadStatuses = function(ids, statusOf) {
+    var map = this._androidDownloadMap || {};
+    var changed = false;
+    for (var i = 0; i < ids.length; i++) {
+        var dmId = ids[i];
+        if (!map[dmId]) continue;
+        var info = statusOf(dmId);
+        if (!info) continue;
         if (!info.status) {
             delete map[dmId];
             changed = true;
@@ -4948,7 +5025,14 @@ IPTVApp.prototype._pollAndroidDownloads = function() {
 
 IPTVApp.prototype.cancelAndroidDownload = function(dmId) {
     if (!window.Android || typeof window.Android.cancelAndroidDownload !== 'function') return;
-    window.Android.cancelAndroidDownload(parseInt(dmId, 10));
+    if (this._hasAsyncBridge()) {
+        window.NativeChannel.call('downloadCancel', [parseInt(dmId, 10)]).catch(function(e) {
+            window.log('ERROR', 'downloadCancel: ' + e.message);
+        });
+    }
+    else {
+        window.Android.cancelAndroidDownload(parseInt(dmId, 10));
+    }
     if (this._androidDownloadMap) delete this._androidDownloadMap[String(dmId)];
     this.saveFreeboxMaps();
     this.updateHomeDownloadButton();
@@ -43,23 +43,77 @@ IPTVApp.prototype.renderGuideTimeBar = function() {
     container.innerHTML = html;
 };
 
+// Android keeps the provider's full XMLTV guide in a native store (EpgStore.java);
+// the grid asks it for just the displayed window instead of one get_short_epg
+// call per channel. Channels it doesn't know still use get_short_epg.
+var EPG_NATIVE_MAX_AGE_SEC = 12 * 3600;
+var EPG_NATIVE_PAST_SEC = 3 * 3600;
+var EPG_NATIVE_AHEAD_SEC = 24 * 3600;
+
+IPTVApp.prototype.queryNativeGuideEPG = function(channels) {
+    if (!window.Android || typeof window.Android.epgQuery !== 'function') return null;
+    if (!this.api || typeof this.api.getXmltvUrl !== 'function') return null;
+    var source = this.api.getXmltvUrl();
+    var status;
+    try { status = JSON.parse(window.Android.epgStatus()); }
+    catch (e) { return null; }
+    var now = Math.floor(Date.now() / 1000);
+    // The store only reports a redacted key of the URL, which holds the credentials.
+    var sourceKey = typeof window.Android.epgSourceKey === 'function' ? window.Android.epgSourceKey(source) : source;
+    var sameSource = status.source === sourceKey;
+    if ((!sameSource || now - status.ingestedAt > EPG_NATIVE_MAX_AGE_SEC) && !status.ingesting && !this.epgIngestRequested) {
+        this.epgIngestRequested = true;
+        window.log('EPG', 'native guide ' + (sameSource ? 'stale' : 'missing') + ', ingesting in background');
+        window.Android.epgIngest(source);
+    }
+    if (!sameSource || !status.programmes) return null;
+    var ids = [];
+    for (var i = 0; i < channels.length; i++) {
+        if (channels[i].epg_channel_id) ids.push(channels[i].epg_channel_id);
+    }
+    if (ids.length === 0) return null;
+    var startMs = Date.now();
+    var byChannel;
+    try { byChannel = JSON.parse(window.Android.epgQuery(JSON.stringify(ids), now - EPG_NATIVE_PAST_SEC, now + EPG_NATIVE_AHEAD_SEC)); }
+    catch (e) { return null; }
+    var listings = {};
+    for (var j = 0; j < channels.length; j++) {
+        var rows = byChannel[channels[j].epg_channel_id];
+        if (rows && rows.length) listings[channels[j].stream_id] = rows;
+    }
+    window.log('EPG', 'native window: ' + Object.keys(listings).length + '/' + channels.length + ' channels in ' + (Date.now() - startMs) + 'ms');
+    return listings;
+};
+
 IPTVApp.prototype.loadGuideEPG = function() {
     var self = this;
     if (!this.api || !this.api.getShortEPG) return;
+    var nativeListings = this.queryNativeGuideEPG(this.guideChannels);
+    var pending = this.guideChannels.filter(function(ch) {
+        if (nativeListings && nativeListings[ch.stream_id]) {
+            self.guideEpgData[ch.stream_id] = nativeListings[ch.stream_id];
+            return false;
+        }
+        return true;
+    });
+    if (pending.length === 0) {
+        this.renderGuideGrid();
+        return;
+    }
     this.showLoading(true, I18n.t('loading.epg', 'Loading program guide...'));
     var loaded = 0;
-    this.guideChannels.forEach(function(ch, idx) {
+    pending.forEach(function(ch) {
         self.api.getShortEPG(ch.stream_id, 999).then(function(data) {
             self.guideEpgData[ch.stream_id] = data.epg_listings || [];
             loaded++;
-            if (loaded === self.guideChannels.length) {
+            if (loaded === pending.length) {
                 self.showLoading(false);
                 self.renderGuideGrid();
             }
         }).catch(function(err) {
             self.guideEpgData[ch.stream_id] = [];
             loaded++;
-            if (loaded === self.guideChannels.length) {
+            if (loaded === pending.length) {
                 self.showLoading(false);
                 self.renderGuideGrid();
             }
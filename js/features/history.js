@@ -159,7 +159,7 @@ IPTVApp.prototype.addToWatchHistory = function(stream, type, position) {
         return item.id != itemId || item.playlistId != itemPlaylistId;
     });
     this.watchHistory.unshift(historyItem);
-    this.saveWatchHistory();
+    this._saveWatchHistoryChange(historyItem);
 };
 
 IPTVApp.prototype.updateWatchHistoryTmdbId = function() {
@@ -181,16 +181,18 @@ IPTVApp.prototype.updateWatchHistoryTmdbId = function() {
         }
     }
     if (changed) {
-        this.saveWatchHistory();
+        this._saveWatchHistoryItem(item);
     }
 };
 
 IPTVApp.prototype.removeFromWatchHistory = function(id, playlistId) {
+    var removed = [];
     this.watchHistory = this.watchHistory.filter(function(item) {
-        if (playlistId) return item.id != id || item.playlistId != playlistId;
-        return item.id != id;
+        var keep = playlistId ? item.id != id || item.playlistId != playlistId : item.id != id;
+        if (!keep) removed.push(item);
+        return keep;
     });
-    this.saveWatchHistory();
+    this._saveWatchHistoryChange(null, removed);
     this.showHistoryScreen();
 };
 
@@ -500,11 +502,13 @@ IPTVApp.prototype.deleteCurrentHistoryItem = function() {
         var current = focusables[this.focusIndex];
         var itemId = parseInt(current.dataset.streamId);
         var playlistId = current.dataset.playlistId || null;
+        var removed = [];
         this.watchHistory = this.watchHistory.filter(function(item) {
-            if (playlistId) return item.id !== itemId || item.playlistId !== playlistId;
-            return item.id !== itemId;
+            var keep = playlistId ? item.id !== itemId || item.playlistId !== playlistId : item.id !== itemId;
+            if (!keep) removed.push(item);
+            return keep;
         });
-        this.saveWatchHistory();
+        this._saveWatchHistoryChange(null, removed);
         if (this.currentSection === 'history') {
             this.showHistoryScreen();
         }
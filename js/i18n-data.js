@@ -1158,7 +1158,10 @@ var I18nData = {
                             "stepProvider": "المزود",
                             "stepSwapped": "بروتوكول بديل",
                             "title": "مشكلة في الاتصال",
-                            "unknown": "مشكلة شبكة غير معروفة."
+                            "unknown": "مشكلة شبكة غير معروفة.",
+                            "bridgeProfile": "ملف الجسر",
+                            "frameStats": "إحصاءات الإطارات",
+                            "hostStats": "إحصاءات الخوادم"
                     },
                     "disclaimer": {
                             "accept": "فهمت",
@@ -1596,7 +1599,9 @@ var I18nData = {
                             "themeIcons": "الأيقونات",
                             "themeFilled": "ممتلئة",
                             "themeAurora": "الشفق",
-                            "themePremium": "Premium"
+                            "themePremium": "Premium",
+                            "performance": "الأداء",
+                            "captureStarted": "بدأ التسجيل، اضغط مرة أخرى بعد دقيقة لرؤية النتائج"
                     },
                     "subtitleOptions": {
                             "background": "خلفية",
@@ -1780,7 +1785,10 @@ var I18nData = {
                             "stepProvider": "Anbieter",
                             "stepSwapped": "Alternatives Protokoll",
                             "title": "Verbindungsproblem",
-                            "unknown": "Unbekanntes Netzwerkproblem."
+                            "unknown": "Unbekanntes Netzwerkproblem.",
+                            "bridgeProfile": "Bridge-Profil",
+                            "frameStats": "Bildstatistik",
+                            "hostStats": "Host-Statistik"
                     },
                     "disclaimer": {
                             "accept": "Verstanden",
@@ -2218,7 +2226,9 @@ var I18nData = {
                             "themeIcons": "Symbole",
                             "themeFilled": "Gefüllt",
                             "themeAurora": "Aurora",
-                            "themePremium": "Premium"
+                            "themePremium": "Premium",
+                            "performance": "Leistung",
+                            "captureStarted": "Aufzeichnung gestartet, in einer Minute erneut drücken, um die Ergebnisse zu sehen"
                     },
                     "subtitleOptions": {
                             "background": "Hintergrund",
@@ -2402,7 +2412,10 @@ var I18nData = {
                             "stepProvider": "Provider",
                             "stepSwapped": "Alternate protocol",
                             "title": "Connection problem",
-                            "unknown": "Unknown network issue."
+                            "unknown": "Unknown network issue.",
+                            "bridgeProfile": "Bridge profile",
+                            "frameStats": "Frame stats",
+                            "hostStats": "Host stats"
                     },
                     "disclaimer": {
                             "accept": "I Understand",
@@ -2840,7 +2853,9 @@ var I18nData = {
                             "themeIcons": "Icons",
                             "themeFilled": "Filled",
                             "themeAurora": "Aurora",
-                            "themePremium": "Premium"
+                            "themePremium": "Premium",
+                            "performance": "Performance",
+                            "captureStarted": "Capture started, press again in a minute to see the results"
                     },
                     "subtitleOptions": {
                             "background": "Background",
@@ -3024,7 +3039,10 @@ var I18nData = {
                             "stepProvider": "Proveedor",
                             "stepSwapped": "Protocolo alternativo",
                             "title": "Problema de conexión",
-                            "unknown": "Problema de red desconocido."
+                            "unknown": "Problema de red desconocido.",
+                            "bridgeProfile": "Perfil del puente",
+                            "frameStats": "Estadísticas de fotogramas",
+                            "hostStats": "Estadísticas de hosts"
                     },
                     "disclaimer": {
                             "accept": "Entendido",
@@ -3462,7 +3480,9 @@ var I18nData = {
                             "themeIcons": "Iconos",
                             "themeFilled": "Rellenas",
                             "themeAurora": "Aurora",
-                            "themePremium": "Premium"
+                            "themePremium": "Premium",
+                            "performance": "Rendimiento",
+                            "captureStarted": "Captura iniciada, pulsa de nuevo en un minuto para ver los resultados"
                     },
                     "subtitleOptions": {
                             "background": "Fondo",
@@ -3646,7 +3666,10 @@ var I18nData = {
                             "stepProvider": "Fournisseur",
                             "stepSwapped": "Protocole alternatif",
                             "title": "Problème de connexion",
-                            "unknown": "Problème réseau inconnu."
+                            "unknown": "Problème réseau inconnu.",
+                            "bridgeProfile": "Profil du pont",
+                            "frameStats": "Statistiques d'images",
+                            "hostStats": "Statistiques des hôtes"
                     },
                     "disclaimer": {
                             "accept": "J'ai compris",
@@ -4084,7 +4107,9 @@ var I18nData = {
                             "themeIcons": "Icônes",
                             "themeFilled": "Pleines",
                             "themeAurora": "Aurore",
-                            "themePremium": "Premium"
+                            "themePremium": "Premium",
+                            "performance": "Performances",
+                            "captureStarted": "Capture lancée, appuyez à nouveau dans une minute pour voir les résultats"
                     },
                     "subtitleOptions": {
                             "background": "Fond",
@@ -4268,7 +4293,10 @@ var I18nData = {
                             "stepProvider": "Provider",
                             "stepSwapped": "Protocollo alternativo",
                             "title": "Problema di connessione",
-                            "unknown": "Problema di rete sconosciuto."
+                            "unknown": "Problema di rete sconosciuto.",
+                            "bridgeProfile": "Profilo del bridge",
+                            "frameStats": "Statistiche dei frame",
+                            "hostStats": "Statistiche degli host"
                     },
                     "disclaimer": {
                             "accept": "Ho capito",
@@ -4706,7 +4734,9 @@ var I18nData = {
                             "themeIcons": "Icone",
                             "themeFilled": "Piene",
                             "themeAurora": "Aurora",
-                            "themePremium": "Premium"
+                            "themePremium": "Premium",
+                            "performance": "Prestazioni",
+                            "captureStarted": "Acquisizione avviata, premi di nuovo tra un minuto per vedere i risultati"
                     },
                     "subtitleOptions": {
                             "background": "Sfondo",
@@ -4890,7 +4920,10 @@ var I18nData = {
                             "stepProvider": "Provider",
                             "stepSwapped": "Alternatief protocol",
                             "title": "Verbindingsprobleem",
-                            "unknown": "Onbekend netwerkprobleem."
+                            "unknown": "Onbekend netwerkprobleem.",
+                            "bridgeProfile": "Bridgeprofiel",
+                            "frameStats": "Framestatistieken",
+                            "hostStats": "Hoststatistieken"
                     },
                     "disclaimer": {
                             "accept": "Begrepen",
@@ -5328,7 +5361,9 @@ var I18nData = {
                             "themeIcons": "Pictogrammen",
                             "themeFilled": "Gevuld",
                             "themeAurora": "Aurora",
-                            "themePremium": "Premium"
+                            "themePremium": "Premium",
+                            "performance": "Prestaties",
+                            "captureStarted": "Opname gestart, druk over een minuut opnieuw om de resultaten te zien"
                     },
                     "subtitleOptions": {
                             "background": "Achtergrond",
@@ -5512,7 +5547,10 @@ var I18nData = {
                             "stepProvider": "Dostawca",
                             "stepSwapped": "Alternatywny protokół",
                             "title": "Problem z połączeniem",
-                            "unknown": "Nieznany problem sieciowy."
+                            "unknown": "Nieznany problem sieciowy.",
+                            "bridgeProfile": "Profil mostka",
+                            "frameStats": "Statystyki klatek",
+                            "hostStats": "Statystyki hostów"
                     },
                     "disclaimer": {
                             "accept": "Rozumiem",
@@ -5950,7 +5988,9 @@ var I18nData = {
                             "themeIcons": "Ikony",
                             "themeFilled": "Wypełnione",
                             "themeAurora": "Aurora",
-                            "themePremium": "Premium"
+                            "themePremium": "Premium",
+                            "performance": "Wydajność",
+                            "captureStarted": "Rejestrowanie rozpoczęte, naciśnij ponownie za minutę, aby zobaczyć wyniki"
                     },
                     "subtitleOptions": {
                             "background": "Tło",
@@ -6134,7 +6174,10 @@ var I18nData = {
                             "stepProvider": "Provedor",
                             "stepSwapped": "Protocolo alternativo",
                             "title": "Problema de conexão",
-                            "unknown": "Problema de rede desconhecido."
+                            "unknown": "Problema de rede desconhecido.",
+                            "bridgeProfile": "Perfil da ponte",
+                            "frameStats": "Estatísticas de quadros",
+                            "hostStats": "Estatísticas de hosts"
                     },
                     "disclaimer": {
                             "accept": "Entendi",
@@ -6572,7 +6615,9 @@ var I18nData = {
                             "themeIcons": "Ícones",
                             "themeFilled": "Preenchidas",
                             "themeAurora": "Aurora",
-                            "themePremium": "Premium"
+                            "themePremium": "Premium",
+                            "performance": "Desempenho",
+                            "captureStarted": "Captura iniciada, pressione novamente em um minuto para ver os resultados"
                     },
                     "subtitleOptions": {
                             "background": "Fundo",
@@ -6756,7 +6801,10 @@ var I18nData = {
                             "stepProvider": "Провайдер",
                             "stepSwapped": "Альтернативный протокол",
                             "title": "Проблема соединения",
-                            "unknown": "Неизвестная сетевая проблема."
+                            "unknown": "Неизвестная сетевая проблема.",
+                            "bridgeProfile": "Профиль моста",
+                            "frameStats": "Статистика кадров",
+                            "hostStats": "Статистика хостов"
                     },
                     "disclaimer": {
                             "accept": "Понятно",
@@ -7194,7 +7242,9 @@ var I18nData = {
                             "themeIcons": "Значки",
                             "themeFilled": "Заливка",
                             "themeAurora": "Аврора",
-                            "themePremium": "Premium"
+                            "themePremium": "Premium",
+                            "performance": "Производительность",
+                            "captureStarted": "Запись начата, нажмите ещё раз через минуту, чтобы увидеть результаты"
                     },
                     "subtitleOptions": {
                             "background": "Фон",
@@ -7378,7 +7428,10 @@ var I18nData = {
                             "stepProvider": "Sağlayıcı",
                             "stepSwapped": "Alternatif protokol",
                             "title": "Bağlantı sorunu",
-                            "unknown": "Bilinmeyen ağ sorunu."
+                            "unknown": "Bilinmeyen ağ sorunu.",
+                            "bridgeProfile": "Köprü profili",
+                            "frameStats": "Kare istatistikleri",
+                            "hostStats": "Sunucu istatistikleri"
                     },
                     "disclaimer": {
                             "accept": "Anladım",
@@ -7816,7 +7869,9 @@ var I18nData = {
                             "themeIcons": "Simgeler",
                             "themeFilled": "Dolu",
                             "themeAurora": "Aurora",
-                            "themePremium": "Premium"
+                            "themePremium": "Premium",
+                            "performance": "Performans",
+                            "captureStarted": "Kayıt başladı, sonuçları görmek için bir dakika sonra tekrar basın"
                     },
                     "subtitleOptions": {
                             "background": "Arka plan",
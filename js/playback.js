@@ -436,6 +436,8 @@ IPTVApp.prototype.cancelNetworkRecovery = function() {
 IPTVApp.prototype._doPlayStream = function(streamId, type, stream, startPosition) {
     var self = this;
     var playlistId = stream ? stream._playlistId : null;
+    var restore = this._sessionRestore;
+    this._sessionRestore = null;
     if (this.settings.freeboxEnabled && FreeboxAPI.isConfigured() && FreeboxAPI.hasActiveDownloads()) {
         var hasProviderDownloads = this.hasActiveDownloadsForProvider(playlistId);
         if (hasProviderDownloads && this.getActiveStreamCount(playlistId) >= this.getMaxConnections(playlistId)) {
@@ -456,8 +458,9 @@ IPTVApp.prototype._doPlayStream = function(streamId, type, stream, startPosition
     this.lastExternalSubtitle = null;
     this._subtitleDebugLogged = false;
     this._subtitleShownLogged = false;
-    this._audioAutoSelected = false;
-    this._subtitleAutoSelected = false;
+    // A restored session keeps the tracks chosen before the renderer loss.
+    this._audioAutoSelected = !!restore;
+    this._subtitleAutoSelected = !!restore;
     this._subTooltipTriggered = false;
     this.currentAudioIndex = 0;
     if (this.player) {
@@ -472,7 +475,12 @@ IPTVApp.prototype._doPlayStream = function(streamId, type, stream, startPosition
     }
     var url;
     var apiToUse = this.api;
-    if (stream && stream.url) {
+    if (restore) {
+        // Restored before the playlists reconnect: the URL comes with the session.
+        url = restore.url;
+        self._liveHlsFallbackUrl = restore.fallbackUrl || null;
+    }
+    else if (stream && stream.url) {
         url = stream.url;
     }
     else if (this.api) {
@@ -974,6 +982,7 @@ IPTVApp.prototype._doPlayStream = function(streamId, type, stream, startPosition
             self.player.play(url, true);
         }, 300);
     };
+    this._saveNativeSessionContext(streamId, type, stream, url);
     this.player.play(url, type === 'live', startPosition || 0);
     // Load EPG for live streams
     if (type === 'live') {
@@ -981,6 +990,92 @@ IPTVApp.prototype._doPlayStream = function(streamId, type, stream, startPosition
     }
 };
 
+// Android: tells the native player what it is about to play, so that after
+// a WebView renderer loss the reloaded page can put the player screen back
+// on the running session (restoreNativeSession). Nested objects are left out.
+IPTVApp.prototype._saveNativeSessionContext = function(streamId, type, stream, url) {
+    if (typeof window.Android === 'undefined' || !window.Android ||
+        typeof window.Android.playerSetSessionContext !== 'function') return;
+    var flat = null;
+    if (stream) {
+        flat = {};
+        for (var key in stream) {
+            if (!Object.prototype.hasOwnProperty.call(stream, key)) continue;
+            var value = stream[key];
+            if (value === null || typeof value !== 'object' && typeof value !== 'function') flat[key] = value;
+        }
+    }
+    try {
+        window.Android.playerSetSessionContext(JSON.stringify({
+            streamId: streamId,
+            type: type,
+            stream: flat,
+            url: url,
+            fallbackUrl: this._liveHlsFallbackUrl || null
+        }));
+    }
+    catch (e) {
+        window.log('PLAYER', 'session context not saved: ' + e.message);
+    }
+};
+
+// Called at init: after a WebView renderer loss the native player is still
+// playing. Goes straight back to the player screen on that session, without
+// reopening the stream; the rest of the app starts when playback is left.
+// Returns whether the player screen was restored.
+IPTVApp.prototype.restoreNativeSession = function() {
+    var android = window.Android;
+    if (typeof android === 'undefined' || !android || typeof android.renderRecoverySnapshot !== 'function') return false;
+    var snapshot = null;
+    try {
+        snapshot = JSON.parse(android.renderRecoverySnapshot());
+    }
+    catch (e) {
+        window.log('PLAYER', 'renderer recovery: bad snapshot ' + e.message);
+    }
+    if (!snapshot) return false;
+    var context = snapshot.context;
+    var restored = false;
+    try {
+        if (!context || !context.url) {
+            window.log('PLAYER', 'renderer recovery: nothing to restore the player screen from, closing the session');
+        }
+        else {
+            window.log('PLAYER', 'renderer recovery: back to ' + context.type + ' ' + context.streamId +
+                ' at ' + snapshot.positionMs + 'ms (' + snapshot.state + ')');
+            this._sessionRestore = context;
+            this._deferredStartApp = true;
+            this.player.attachNative(snapshot.url, snapshot.state === 'PAUSED');
+            this._doPlayStream(context.streamId, context.type, context.stream,
+                context.type === 'live' ? 0 : snapshot.positionMs);
+            restored = this.currentScreen === 'player';
+        }
+    }
+    catch (e) {
+        window.log('ERROR', 'renderer recovery: ' + e.message);
+    }
+    finally {
+        android.renderRecoveryDone(restored);
+    }
+    if (typeof android.renderRecoveryStats === 'function') {
+        window.log('PLAYER', 'renderer recoveries: ' + android.renderRecoveryStats());
+    }
+    if (!restored) {
+        // The home screen comes up instead: the session must not keep playing
+        // behind it, nor be attached by the next play of the same URL
+        this._deferredStartApp = false;
+        this._sessionRestore = null;
+        if (this.player) this.player._attach = null;
+        try {
+            webapis.avplay.close();
+        }
+        catch (e) {
+            window.log('PLAYER', 'renderer recovery: close failed ' + e.message);
+        }
+    }
+    return restored;
+};
+
 IPTVApp.prototype.loadEPG = function(streamId) {
     var self = this;
     this.currentEPG = null;
@@ -1029,7 +1124,7 @@ IPTVApp.prototype.updateWatchPosition = function(stream, type, position, force)
             var diff = Math.abs(this.watchHistory[i].position - position);
             if (force || diff > 10000) {
                 this.watchHistory[i].position = position;
-                this.saveWatchHistory();
+                this._saveWatchHistoryItem(this.watchHistory[i]);
             }
             break;
         }
@@ -1108,9 +1203,10 @@ IPTVApp.prototype.stopPlayback = function() {
             this.updateWatchPosition(this.currentPlayingStream, this.currentPlayingType, currentPos, true);
             if (this.currentPlayingType === 'vod' || this.currentPlayingType === 'movie') {
                 var playlistId = this.currentPlayingStream._playlistId || this.settings.activePlaylistId;
-                this.updateWatchHistoryProgress(streamId, currentPos, duration, playlistId);
+                this.updateWatchHistoryProgress(streamId, currentPos, duration, playlistId, true);
             }
         }
+        this._untrackNativeProgress();
         window.log('SUBTITLE', 'stopPlayback: subIdx=' + this.currentSubtitleIndex + ' hasContent=' + !!this.externalSubtitleContent);
         if (this.currentSubtitleIndex === -2 && this.externalSubtitleContent) {
             this._saveSubtitleState(this.currentPlayingStream);
@@ -1125,6 +1221,14 @@ IPTVApp.prototype.stopPlayback = function() {
     this.player.stop();
     this.stopSubtitlePolling();
     this.resumePausedDownloads();
+    if (this._deferredStartApp) {
+        // Playback restored after a renderer loss: the app itself starts now.
+        this._deferredStartApp = false;
+        this.resetScreens();
+        this.focusArea = 'home';
+        this.startApp();
+        return;
+    }
     // Show details for series/VOD (even if launched from history)
     var showDetails = this.selectedStream && (isSeries || this.selectedStream.type === 'vod');
     if (showDetails) {
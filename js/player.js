@@ -444,6 +444,12 @@ class TVPlayer {
                 this.playHtml5(url);
                 return;
             }
+            var attach = this._attach;
+            this._attach = null;
+            if (attach && attach.url === url && webapis.avplay.attach) {
+                this._attachSession(attach);
+                return;
+            }
             try {
                 webapis.avplay.stop();
                 webapis.avplay.close();
@@ -492,6 +498,29 @@ class TVPlayer {
         }
     }
 
+    // Android: the next play() of url takes over the native session still
+    // running from before a WebView renderer loss instead of reopening it.
+    attachNative(url, paused) {
+        this._attach = { url: url, paused: !!paused };
+    }
+
+    _attachSession(attach) {
+        window.log('PLAYER', 'AVPlay.attach to the running session' + (attach.paused ? ' (paused)' : ''));
+        webapis.avplay.attach();
+        webapis.avplay.setListener(this._getListeners());
+        this._prepareAsyncHandled = true;
+        this.isPlaying = true;
+        this.isPaused = false;
+        this.duration = webapis.avplay.getDuration();
+        this._updatePlayerTypeIndicator();
+        this._startFreezeDetection();
+        if (this.onStateChange) this.onStateChange('playing');
+        if (attach.paused) {
+            this.isPaused = true;
+            if (this.onStateChange) this.onStateChange('paused');
+        }
+    }
+
     playNative(url) {
         var self = this;
         this.useHtml5 = false;
@@ -37,6 +37,27 @@ class ProviderAPI {
         return reason;
     }
 
+    /**
+     * Feeds a fetch to the Android per-host stats (HostStats.java): time to
+     * the response headers, Content-Length when given, error when there is
+     * no response or it is not ok. No-op elsewhere.
+     * @param {string} url - URL actually fetched (proxy included)
+     * @param {number} startMs - Date.now() when the fetch started
+     * @param {Response|null} response - the response, null on failure
+     */
+    static reportTransfer(url, startMs, response) {
+        if (typeof window.Android === 'undefined' || !window.Android || typeof window.Android.hostStatsRecord !== 'function') return;
+        var bytes = -1;
+        try {
+            if (response && response.headers && response.headers.get) {
+                var length = parseInt(response.headers.get('Content-Length'), 10);
+                if (length >= 0) bytes = length;
+            }
+            window.Android.hostStatsRecord(url, 'api', bytes, response ? Date.now() - startMs : -1, -1, !response || !response.ok);
+        }
+        catch (ex) { /* stats only */ }
+    }
+
     constructor(server, username, password, proxyUrl) {
         this.server = server.replace(Regex.trailingSlash, '');
         this.username = username;
@@ -82,12 +103,15 @@ class ProviderAPI {
     async fetchWithRetry(url, retries = this.maxRetries, timeout = this.defaultTimeout) {
         var fetchUrl = this.getUrl(url);
         for (let attempt = 1; attempt <= retries; attempt++) {
+            var startMs = Date.now();
+            var response = null;
             try {
                 window.log('HTTP> ' + ProviderAPI.redactUrl(fetchUrl) + ' (timeout=' + (timeout/1000) + 's)');
                 const timeoutPromise = new Promise(function(_, reject) {
                     setTimeout(function() { reject(new Error('Timeout')); }, timeout);
                 });
-                const response = await Promise.race([fetch(fetchUrl), timeoutPromise]);
+                response = await Promise.race([fetch(fetchUrl), timeoutPromise]);
+                ProviderAPI.reportTransfer(fetchUrl, startMs, response);
                 var logMsg = 'HTTP< ' + response.status + ' ' + ProviderAPI.redactUrl(url);
                 if (response.redirected) {
                     logMsg += ' -> ' + ProviderAPI.redactUrl(response.url);
@@ -105,6 +129,7 @@ class ProviderAPI {
                 return response;
             }
             catch (error) {
+                if (!response) ProviderAPI.reportTransfer(fetchUrl, startMs, null);
                 var errorMsg = error.message === 'Timeout' ? 'Timeout after ' + (timeout/1000) + 's' : error.message;
                 window.log('ERROR', 'HTTP ' + errorMsg + ' ' + ProviderAPI.redactUrl(url));
                 if (attempt === retries) {
@@ -325,6 +350,9 @@ class ProviderAPI {
      * @returns {Promise<void>}
      */
     async preloadCache(onProgress) {
+        if (ProviderAPI.hasNativeClient()) {
+            return this._preloadCacheNative(onProgress);
+        }
         window.log('CACHE', 'preload starting...');
         var steps = [
             { name: 'TV', fn: async () => { await this.getLiveCategories(); await this.getLiveStreams(); } },
@@ -365,6 +393,122 @@ class ProviderAPI {
         }
     }
 
+    /**
+     * Whether the Android native Xtream client (XtreamClient) is available
+     * @returns {boolean}
+     */
+    static hasNativeClient() {
+        return typeof window.Android !== 'undefined' && window.Android && typeof window.Android.xtreamFetch === 'function';
+    }
+
+    /**
+     * preloadCache through the native client: the six list actions are fetched
+     * three at a time and stream-parsed on Android, with the same timeouts and
+     * retries as fetchWithRetry. Fields the UI never reads are dropped before
+     * the arrays reach JS. Progress announces the first unfinished step, and
+     * each failed step reports -1 as in the sequential version.
+     * @param {Function} onProgress - Callback for progress updates (step, total, name)
+     * @returns {Promise<void>}
+     */
+    async _preloadCacheNative(onProgress) {
+        var base = `${this.server}/player_api.php?username=${this.username}&password=${this.password}&action=`;
+        var steps = [
+            { name: 'TV', actions: [
+                { action: 'get_live_categories', key: 'liveCategories' },
+                { action: 'get_live_streams', key: 'liveStreams', all: true }
+            ] },
+            { name: 'VOD', actions: [
+                { action: 'get_vod_categories', key: 'vodCategories' },
+                { action: 'get_vod_streams', key: 'vodStreams', all: true, long: true }
+            ] },
+            { name: 'Series', actions: [
+                { action: 'get_series_categories', key: 'seriesCategories' },
+                { action: 'get_series', key: 'series', all: true, long: true }
+            ] }
+        ];
+        var byAction = {};
+        var requests = [];
+        steps.forEach((step) => {
+            step.remaining = 0;
+            step.errors = [];
+            step.actions.forEach((entry) => {
+                entry.step = step;
+                if (entry.all ? this.cache[entry.key]['_all'] : this.cache[entry.key]) return;
+                byAction[entry.action] = entry;
+                step.remaining++;
+                requests.push({
+                    action: entry.action,
+                    url: this.getUrl(base + entry.action),
+                    timeoutMs: entry.long ? this.longTimeout : this.defaultTimeout,
+                    retries: entry.long ? 1 : this.maxRetries
+                });
+            });
+        });
+        window.log('CACHE', 'preload starting (native, ' + requests.length + ' requests)...');
+        var failed = [];
+        var announced = -1;
+        var announce = function() {
+            var next = steps.findIndex(function(step) { return step.remaining > 0; });
+            if (next > announced) {
+                announced = next;
+                if (onProgress) onProgress(next + 1, steps.length, steps[next].name);
+            }
+        };
+        var id = 'xt' + Date.now() + '_' + Math.floor(Math.random() * 1000);
+        var registry = window.__xtreamNative = window.__xtreamNative || {};
+        if (requests.length > 0) {
+            announce();
+            await new Promise((resolve) => {
+                registry[id] = {
+                    action: (action, ok, stats) => {
+                        var entry = byAction[action];
+                        if (!entry) return;
+                        var data = null;
+                        if (ok) {
+                            try { data = JSON.parse(window.Android.xtreamTake(id, action)); }
+                            catch (e) { stats.error = 'Invalid JSON: ' + (e.message || e); }
+                        }
+                        window.log('HTTP< ' + (stats.status || '-') + ' ' + action + ' items=' + stats.items
+                            + ' ' + (stats.bytes / 1048576).toFixed(1) + 'MB in ' + stats.totalMs + 'ms (ttfb '
+                            + stats.ttfbMs + 'ms, attempts=' + stats.attempts + ')');
+                        if (stats.blockReason) {
+                            window.log('BLOCKED', 'HTTP ' + stats.status + ' reason=' + stats.blockReason + ' ' + action);
+                        }
+                        if (data) {
+                            if (entry.all) this.cache[entry.key]['_all'] = Array.isArray(data) ? data : [];
+                            else this.cache[entry.key] = Array.isArray(data) ? data : [];
+                        }
+                        else {
+                            entry.step.errors.push(stats.error || 'failed');
+                        }
+                        if (--entry.step.remaining > 0) return;
+                        if (entry.step.errors.length > 0) {
+                            window.log('ERROR', 'CACHE preload ' + entry.step.name + ': ' + entry.step.errors.join(', '));
+                            failed.push(entry.step.name);
+                            if (onProgress) onProgress(-1, steps.length, entry.step.name);
+                        }
+                        announce();
+                    },
+                    done: (report) => {
+                        delete registry[id];
+                        var totalMs = report.reduce(function(max, s) { return Math.max(max, s.totalMs); }, 0);
+                        window.log('CACHE', 'native fetch ' + report.length + ' requests, slowest ' + totalMs + 'ms');
+                        resolve();
+                    }
+                };
+                window.Android.xtreamFetch(id, JSON.stringify(requests),
+                    JSON.stringify(['direct_source', 'custom_sid', 'youtube_trailer']), 3);
+            });
+        }
+        if (onProgress) onProgress(0, 0, null);
+        if (failed.length > 0) {
+            window.log('CACHE', 'preload complete with errors: ' + failed.join(', '));
+        }
+        else {
+            window.log('CACHE', 'preload complete');
+        }
+    }
+
     /**
      * Filter cache by language to reduce memory usage
      * @param {Function} matchFn - Function(categoryName) returning true if category matches
@@ -458,6 +602,14 @@ class ProviderAPI {
         return response.json();
     }
 
+    /**
+     * Get the full XMLTV guide URL (used by the native EPG store on Android)
+     * @returns {string} XMLTV URL
+     */
+    getXmltvUrl() {
+        return `${this.server}/xmltv.php?username=${this.username}&password=${this.password}`;
+    }
+
     getLiveStreamUrl(streamId, extension = 'ts') {
         return `${this.server}/live/${this.username}/${this.password}/${streamId}.${extension}`;
     }
@@ -117,6 +117,35 @@ IPTVApp.prototype.updateProxyUrlVisibility = function() {
     this.invalidateFocusables();
 };
 
+// The performance tools read native counters: Android only.
+IPTVApp.prototype.updatePerfToolsVisibility = function() {
+    var row = document.getElementById('perf-tools-row');
+    if (!row) return;
+    row.style.display = window.FrameMonitor && window.FrameMonitor.available() ? '' : 'none';
+    this.invalidateFocusables();
+};
+
+// Bridge profile and frame stats capture for PERF_CAPTURE_MS from a first
+// press, a second press shows what was collected; host stats always run.
+var PERF_CAPTURE_MS = 60000;
+
+IPTVApp.prototype.showPerfTool = function(tool) {
+    if (tool === 'hostStats') {
+        window.HostStats.show(this);
+        return;
+    }
+    var monitor = tool === 'bridgeProfile' ? window.BridgeProfiler : window.FrameMonitor;
+    this._perfCaptures = this._perfCaptures || {};
+    if (!this._perfCaptures[tool]) {
+        if (!monitor.start(PERF_CAPTURE_MS)) return;
+        this._perfCaptures[tool] = true;
+        this._showToast(I18n.t('settings.captureStarted', 'Capture started, press again in a minute to see the results'));
+        return;
+    }
+    this._perfCaptures[tool] = false;
+    monitor.show(this);
+};
+
 IPTVApp.prototype.updateDialogueBoostVisibility = function() {
     var dialogueBoostSetting = document.getElementById('dialogue-boost-setting');
     if (dialogueBoostSetting) {
@@ -665,6 +694,7 @@ IPTVApp.prototype.initSettingsUI = function() {
     }
     this.updateProxyUrlVisibility();
     this.updateDialogueBoostVisibility();
+    this.updatePerfToolsVisibility();
     this.initTTSVoiceOptions();
     var numericSettings = ['minProgressMinutes', 'watchedThreshold', 'retentionWeeks', 'historyMaxItems', 'bufferPlay', 'bufferRebuffer', 'bufferMin', 'bufferMax', 'cacheRefreshHours'];
     for (var j = 0; j < numericSettings.length; j++) {
@@ -1277,6 +1307,9 @@ IPTVApp.prototype.handleSettingsSelect = function(clickedElement) {
         else if (actionType === 'privacyPolicy') {
             this.showPrivacyPolicy();
         }
+        else if (actionType === 'bridgeProfile' || actionType === 'frameStats' || actionType === 'hostStats') {
+            this.showPerfTool(actionType);
+        }
         else if (actionType === 'checkUpdates') {
             if (typeof Android !== 'undefined' && Android && Android.forceCheckUpdates) {
                 try { Android.forceCheckUpdates(); }
@@ -2042,12 +2075,119 @@ IPTVApp.prototype._loadM3UXHR = function(url, onProgress) {
     });
 };
 
+// Android: the playlist is downloaded and parsed natively (M3uParser.java), JS
+// only receives the group list, then the entries in pages. Keeps 30+ MB
+// playlists out of the WebView heap and the parse off the UI thread.
+var M3U_NATIVE_PAGE_SIZE = 5000;
+
+IPTVApp.prototype._hasNativeM3U = function(url) {
+    return typeof window.Android !== 'undefined' && window.Android &&
+        typeof window.Android.m3uLoad === 'function' && /^https?:\/\//i.test(url || '');
+};
+
+IPTVApp.prototype._loadM3UNative = function(url, onProgress) {
+    var self = this;
+    var id = 'm3u' + Date.now() + '_' + Math.floor(Math.random() * 1000);
+    var registry = window.__m3uNative = window.__m3uNative || {};
+    return new Promise(function(resolve, reject) {
+        var finished = false;
+        var finish = function(err) {
+            if (finished) return;
+            finished = true;
+            clearTimeout(timeoutId);
+            delete registry[id];
+            try { window.Android.m3uRelease(id); } catch (e) {}
+            if (err) reject(err);
+            else resolve();
+        };
+        var timeoutId = setTimeout(function() {
+            window.log('ERROR', 'loadM3UPlaylist: timeout after ' + (M3U_TIMEOUT_MS / 1000) + 's');
+            try { window.Android.m3uCancel(id); } catch (e) {}
+            finish(new Error('Timeout loading M3U'));
+        }, M3U_TIMEOUT_MS);
+        var lastProgressLog = 0;
+        registry[id] = {
+            progress: function(bytes, total, count) {
+                if (typeof onProgress === 'function') {
+                    onProgress((bytes / 1048576).toFixed(1), total > 0 ? (total / 1048576).toFixed(1) : '?');
+                }
+                var now = Date.now();
+                if (now - lastProgressLog >= 5000) {
+                    lastProgressLog = now;
+                    window.log('loadM3UPlaylist: progress ' + (bytes / 1048576).toFixed(1) + ' MB streams=' + count);
+                }
+            },
+            error: function(message) {
+                window.log('ERROR', 'loadM3UPlaylist: native: ' + message);
+                finish(new Error('Failed to load M3U: ' + message));
+            },
+            done: function(count, groups) {
+                var allowed = [];
+                for (var g = 0; g < groups.length; g++) {
+                    allowed.push(self.matchesLanguage(groups[g]));
+                }
+                var categories = {};
+                var categoryList = [];
+                var streams = [];
+                var streamId = 1;
+                var dropped = 0;
+                var readPage = function(offset) {
+                    if (finished) return;
+                    var page;
+                    try { page = JSON.parse(window.Android.m3uGetPage(id, offset, M3U_NATIVE_PAGE_SIZE)); }
+                    catch (e) { finish(e); return; }
+                    for (var i = 0; i < page.length; i++) {
+                        var row = page[i];
+                        var groupIndex = row[2];
+                        if (!allowed[groupIndex]) {
+                            dropped++;
+                            continue;
+                        }
+                        if (!categories[groupIndex]) {
+                            categories[groupIndex] = {
+                                category_id: categoryList.length + 1,
+                                category_name: groups[groupIndex],
+                                parent_id: 0
+                            };
+                            categoryList.push(categories[groupIndex]);
+                        }
+                        streams.push({
+                            stream_id: streamId++,
+                            name: row[0] || 'Stream ' + streamId,
+                            stream_icon: row[1] || '',
+                            category_id: categories[groupIndex].category_id,
+                            url: row[3],
+                            epg_channel_id: row[4] || '',
+                            _m3u: true
+                        });
+                    }
+                    if (page.length > 0 && offset + page.length < count) {
+                        // Yield between pages so input and rendering stay responsive.
+                        setTimeout(function() { readPage(offset + page.length); }, 0);
+                        return;
+                    }
+                    self.data.live = { categories: categoryList, streams: streams };
+                    self.availableLanguages = [];
+                    window.log('loadM3UPlaylist: parsed (native), categories=' + categoryList.length + ' streams=' + streams.length + ' dropped=' + dropped);
+                    finish();
+                };
+                readPage(0);
+            }
+        };
+        window.Android.m3uLoad(id, url);
+    });
+};
+
 IPTVApp.prototype.loadM3UPlaylist = function(url, onProgress) {
     var self = this;
     var lang = self.getEffectiveProviderLanguage();
     var supportsStreaming = (typeof fetch === 'function') && (typeof TextDecoder === 'function');
     var isFileScheme = window.location.protocol === 'file:';
-    window.log('loadM3UPlaylist: loading ' + url + ' lang=' + lang + ' streaming=' + supportsStreaming + ' fileScheme=' + isFileScheme + ' (timeout=' + (M3U_TIMEOUT_MS / 1000) + 's)');
+    var nativeParser = self._hasNativeM3U(url);
+    window.log('loadM3UPlaylist: loading ' + url + ' lang=' + lang + ' native=' + nativeParser + ' streaming=' + supportsStreaming + ' fileScheme=' + isFileScheme + ' (timeout=' + (M3U_TIMEOUT_MS / 1000) + 's)');
+    if (nativeParser) {
+        return self._loadM3UNative(url, onProgress);
+    }
     if (!supportsStreaming || isFileScheme) {
         return self._loadM3UXHR(url, onProgress);
     }
@@ -2914,23 +3054,22 @@ IPTVApp.prototype.renderPatternPreview = function(categories) {
     previewList.innerHTML = '';
     // Don't filter by language in preview - show all matches
     var matchedCategories = [];
-    var keywordsToPatterns = function(keywords) {
-        return keywords.map(function(kw) {
-            return Regex.keywordPattern(kw);
-        });
-    };
-    var patterns = [];
+    var keywords;
     if (self.patternEditorSection === 'entertainment') {
         // Only show matches for the selected subcategory
         var subcat = self.patternEditorSubcategory || 'concerts';
-        patterns = keywordsToPatterns(self.patternEditorKeywords[subcat] || []);
+        keywords = self.patternEditorKeywords[subcat] || [];
     }
     else {
-        patterns = keywordsToPatterns(self.patternEditorKeywords || []);
-    }
-    categories.forEach(function(cat) {
-        var name = cat.category_name || '';
-        if (patterns.some(function(p) { return p.test(name); })) {
+        keywords = self.patternEditorKeywords || [];
+    }
+    // The saved rules ride along so the native classifier only runs the edited one
+    var rules = this._categoryRules().rules;
+    rules.preview = keywords;
+    var names = categories.map(function(cat) { return cat.category_name || ''; });
+    var matchesRules = this._categoryRuleMatcher(rules, names);
+    names.forEach(function(name) {
+        if (matchesRules(['preview'], name)) {
             matchedCategories.push(self.formatCategoryDisplayName(name));
         }
     });
@@ -3286,6 +3425,16 @@ IPTVApp.prototype.confirmModalAction = function(confirmed) {
                 indexedDB.deleteDatabase('IPTVProviderCache');
                 indexedDB.deleteDatabase('IPTVTMDBCache');
             }
+            // On Android, favourites, history, progress, catalogs and the guide live in native stores.
+            var android = window.Android;
+            if (android) {
+                try {
+                    if (typeof android.userDataClear === 'function') android.userDataClear();
+                    if (typeof android.catalogClear === 'function') android.catalogClear('');
+                    if (typeof android.epgClear === 'function') android.epgClear();
+                }
+                catch (ex) {}
+            }
             window.location.reload();
         }
     }
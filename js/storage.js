@@ -51,6 +51,51 @@ IPTVApp.prototype.handleMemoryPressure = function(percent) {
     }
 };
 
+// System memory pressure, from Android onTrimMemory: 'moderate', 'low' or
+// 'critical', then 'normal' once it eased. Only what is rebuilt on demand
+// is dropped; the section on screen keeps its data.
+IPTVApp.prototype.onMemoryPressure = function(level) {
+    this._memoryPressure = level;
+    if (level === 'normal') {
+        window.log('MEM', 'Memory pressure eased');
+        return;
+    }
+    var dropped = [];
+    if (this._imageLoadQueue && this._imageLoadQueue.length) {
+        dropped.push(this._imageLoadQueue.length + ' queued images');
+        this._imageLoadQueue = [];
+    }
+    if (this._variantsCache) {
+        dropped.push('live variants');
+        this._variantsCache = null;
+        this._variantsCacheKey = null;
+    }
+    if (level !== 'moderate') {
+        var tmdbCount = this.tmdbCache ? Object.keys(this.tmdbCache).length : 0;
+        if (tmdbCount) {
+            // On Android the lookups are answered again from the native TMDB disk cache.
+            dropped.push(tmdbCount + ' TMDB entries');
+            this.tmdbCache = {};
+        }
+        if (this._nativeSearch) {
+            // Native indexes were released too; the JS filter answers until the next index.
+            dropped.push('native search indexes');
+            this._nativeSearch = null;
+        }
+    }
+    if (level === 'critical' && this.data) {
+        var sections = Object.keys(this.data);
+        for (var i = 0; i < sections.length; i++) {
+            var section = sections[i];
+            if (section === this.currentSection || !this.data[section] || !this.data[section]._dedupGroups) continue;
+            delete this.data[section]._dedupGroups;
+            dropped.push(section + ' groups');
+        }
+    }
+    window.log('MEM', 'Memory pressure ' + level + ', dropped ' + (dropped.length ? dropped.join(', ') : 'nothing'));
+    this.logMemory('pressure ' + level);
+};
+
 IPTVApp.prototype.startMemoryMonitor = function() {
     var self = this;
     if (this._memoryMonitorTimer) return;
@@ -108,11 +153,157 @@ IPTVApp.prototype._safeLocalSet = function(key, value) {
     }
 };
 
+// Native user data (Android): watch history, episode/series progress and
+// favourites live in UserDataLog, an append-only store outside the
+// localStorage quota. A progress update, an added or removed favourite or
+// history entry is a single put or remove of that entry; whole-collection
+// saves (reorders, bulk changes) are one replace record.
+IPTVApp.prototype._hasNativeUserData = function() {
+    return typeof window.Android !== 'undefined' && window.Android &&
+        typeof window.Android.userDataPut === 'function';
+};
+
+// Keys of the array collections; progress collections are already keyed.
+IPTVApp.prototype._userDataKey = function(collection, value) {
+    if (collection === 'watchHistory') {
+        return String(value.playlistId) + '_' + String(value.id);
+    }
+    return String(value._playlistId || value.playlistId || '') + '_' + String(value.series_id || value.stream_id || value.id || '');
+};
+
+IPTVApp.prototype._userDataEntries = function(collection, value) {
+    var entries = [];
+    if (Array.isArray(value)) {
+        var seen = {};
+        for (var i = 0; i < value.length; i++) {
+            if (!value[i]) continue;
+            var key = this._userDataKey(collection, value[i]);
+            if (seen[key]) key += '#' + i;
+            seen[key] = true;
+            entries.push([key, value[i]]);
+        }
+    }
+    else {
+        for (var k in value) {
+            if (value.hasOwnProperty(k) && value[k] != null) entries.push([k, value[k]]);
+        }
+    }
+    return entries;
+};
+
+// Entries [[key, value]...] of a native collection, null without the native
+// store. The first time, the localStorage copy is moved into it; it is only
+// removed once the native store reads back every entry. The move is marked
+// as done either way: the native store is the only copy written from then
+// on, and a collection the user emptied must not be imported again.
+IPTVApp.prototype._loadUserData = function(collection) {
+    if (!this._hasNativeUserData()) return null;
+    try {
+        var result = JSON.parse(window.Android.userDataRead(collection, 0, -1));
+        var movedKey = collection + 'MovedNative';
+        if (result.total > 0 || localStorage.getItem(movedKey)) return result.entries;
+        var legacy = localStorage.getItem(collection);
+        if (!legacy) return [];
+        var entries = this._userDataEntries(collection, JSON.parse(legacy));
+        window.Android.userDataReplace(collection, JSON.stringify(entries));
+        localStorage.setItem(movedKey, '1');
+        var stored = JSON.parse(window.Android.userDataRead(collection, 0, 0)).total;
+        if (stored !== entries.length) {
+            window.log('ERROR', 'userData move ' + collection + ': ' + stored + '/' + entries.length + ' stored, keeping localStorage');
+            return entries;
+        }
+        localStorage.removeItem(collection);
+        window.log('STORAGE', 'Moved ' + collection + ' to the native store: ' + entries.length + ' entries');
+        return entries;
+    }
+    catch (e) {
+        window.log('ERROR', 'userData load ' + collection + ': ' + e.message);
+        return null;
+    }
+};
+
+IPTVApp.prototype._saveUserData = function(collection, value, replacer) {
+    if (!this._hasNativeUserData()) return false;
+    try {
+        window.Android.userDataReplace(collection, JSON.stringify(this._userDataEntries(collection, value), replacer));
+        return true;
+    }
+    catch (e) {
+        window.log('ERROR', 'userData save ' + collection + ': ' + e.message);
+        return false;
+    }
+};
+
+// Puts one entry in place, or first when `first` is set (moving it there).
+IPTVApp.prototype._saveUserDataEntry = function(collection, key, value, first, replacer) {
+    if (!this._hasNativeUserData()) return false;
+    try {
+        window.Android.userDataPut(collection, key, JSON.stringify(value, replacer), !!first);
+        return true;
+    }
+    catch (e) {
+        window.log('ERROR', 'userData put ' + collection + ': ' + e.message);
+        return false;
+    }
+};
+
+IPTVApp.prototype._removeUserDataEntry = function(collection, key) {
+    if (!this._hasNativeUserData() || typeof window.Android.userDataRemove !== 'function') return false;
+    try {
+        window.Android.userDataRemove(collection, key);
+        return true;
+    }
+    catch (e) {
+        window.log('ERROR', 'userData remove ' + collection + ': ' + e.message);
+        return false;
+    }
+};
+
+// While ExoPlayer plays the entry, NativePlayer checkpoints its resume
+// position into UserDataLog itself (every 10 s, on pause, at the end), so JS
+// only has to write forced saves. Returns true when the entry is tracked.
+IPTVApp.prototype._trackNativeProgress = function(collection, key, minPositionMs, watchedPercent, timeField, entry) {
+    if (!this._hasNativeUserData() || typeof window.Android.userDataTrack !== 'function' ||
+        !this.player || this.player.useHtml5) {
+        return false;
+    }
+    var trackId = collection + '/' + key;
+    if (this._nativeProgressKey === trackId) return true;
+    try {
+        window.Android.userDataPut(collection, key, JSON.stringify(entry), false);
+        window.Android.userDataTrack(collection, key, minPositionMs, watchedPercent, timeField);
+        this._nativeProgressKey = trackId;
+        return true;
+    }
+    catch (e) {
+        window.log('ERROR', 'userDataTrack: ' + e.message);
+        return false;
+    }
+};
+
+IPTVApp.prototype._userDataObject = function(entries) {
+    var result = {};
+    for (var i = 0; i < entries.length; i++) {
+        if (entries[i][1] != null) result[entries[i][0]] = entries[i][1];
+    }
+    return result;
+};
+
+IPTVApp.prototype._untrackNativeProgress = function() {
+    if (!this._nativeProgressKey) return;
+    this._nativeProgressKey = null;
+    try {
+        window.Android.userDataTrack('', '', 0, 0, '');
+    }
+    catch (e) { /* tracking stops with the next playback anyway */ }
+};
+
 // Watch History
 IPTVApp.prototype.loadWatchHistory = function() {
     try {
-        var data = localStorage.getItem('watchHistory');
-        var list = data ? JSON.parse(data) : [];
+        var entries = this._loadUserData('watchHistory');
+        var data = entries ? null : localStorage.getItem('watchHistory');
+        var list = entries ? entries.map(function(entry) { return entry[1]; }) : (data ? JSON.parse(data) : []);
         var changed = false;
         for (var i = 0; i < list.length; i++) {
             var it = list[i];
@@ -121,7 +312,7 @@ IPTVApp.prototype.loadWatchHistory = function() {
                 changed = true;
             }
         }
-        if (changed) {
+        if (changed && !this._saveUserData('watchHistory', list)) {
             this._safeLocalSet('watchHistory', JSON.stringify(list));
         }
         return list;
@@ -135,11 +326,40 @@ IPTVApp.prototype.saveWatchHistory = function() {
     if (Premium.getState() === Premium.STATE_EXPIRED && this.watchHistory.length > Premium.getHistoryFreeLimit()) {
         this.watchHistory = this.watchHistory.slice(0, Premium.getHistoryFreeLimit());
     }
-    this._safeLocalSet('watchHistory', JSON.stringify(this.watchHistory));
+    if (!this._saveUserData('watchHistory', this.watchHistory)) {
+        this._safeLocalSet('watchHistory', JSON.stringify(this.watchHistory));
+    }
     this._rebuildHistoryIndex();
     if (this._invalidateRecommendations) this._invalidateRecommendations();
 };
 
+// Saves an entry added at the head of the history (moved there when it was
+// already in) and entries removed from it: native puts and removes instead
+// of rewriting the whole list. The free-tier cap still trims with a rewrite.
+IPTVApp.prototype._saveWatchHistoryChange = function(added, removed) {
+    var saved = !(Premium.getState() === Premium.STATE_EXPIRED && this.watchHistory.length > Premium.getHistoryFreeLimit());
+    for (var i = 0; saved && removed && i < removed.length; i++) {
+        saved = this._removeUserDataEntry('watchHistory', this._userDataKey('watchHistory', removed[i]));
+    }
+    if (saved && added) saved = this._saveUserDataEntry('watchHistory', this._userDataKey('watchHistory', added), added, true);
+    if (!saved) {
+        this.saveWatchHistory();
+        return;
+    }
+    this._rebuildHistoryIndex();
+    if (this._invalidateRecommendations) this._invalidateRecommendations();
+};
+
+// Saves one history entry whose progress changed: a single native put
+// instead of rewriting the whole list.
+IPTVApp.prototype._saveWatchHistoryItem = function(item) {
+    if (!this._saveUserDataEntry('watchHistory', this._userDataKey('watchHistory', item), item)) {
+        this.saveWatchHistory();
+        return;
+    }
+    if (this._invalidateRecommendations) this._invalidateRecommendations();
+};
+
 IPTVApp.prototype._rebuildHistoryIndex = function() {
     var idx = {};
     for (var i = 0; i < this.watchHistory.length; i++) {
@@ -193,15 +413,18 @@ IPTVApp.prototype.updateWatchHistoryProgress = function(id, position, duration,
         item.watched = true;
     }
     var now = Date.now();
-    if (forceSync || !this._lastHistorySave || (now - this._lastHistorySave) > 30000) {
+    var tracked = this._trackNativeProgress('watchHistory', this._userDataKey('watchHistory', item), minMs, threshold, 'date', item);
+    if (forceSync || (!tracked && (!this._lastHistorySave || (now - this._lastHistorySave) > 30000))) {
         this._lastHistorySave = now;
-        this.saveWatchHistory();
+        this._saveWatchHistoryItem(item);
     }
 };
 
 // Episode Progress
 IPTVApp.prototype.loadEpisodeProgress = function() {
     try {
+        var entries = this._loadUserData('episodeProgress');
+        if (entries) return this._userDataObject(entries);
         var data = localStorage.getItem('episodeProgress');
         if (!data) return {};
         var parsed = JSON.parse(data);
@@ -220,6 +443,7 @@ IPTVApp.prototype.loadEpisodeProgress = function() {
 };
 
 IPTVApp.prototype.saveEpisodeProgress = function() {
+    if (this._saveUserData('episodeProgress', this.episodeProgress)) return;
     this._safeLocalSet('episodeProgress', JSON.stringify(this.episodeProgress));
 };
 
@@ -228,7 +452,7 @@ IPTVApp.prototype.updateEpisodeProgress = function(episodeId, position, duration
     var pId = playlistId || (this.currentPlayingStream && this.currentPlayingStream._playlistId) || this.settings.activePlaylistId || '';
     var key = pId + '_' + episodeId;
     var percent = Math.round((position / duration) * 100);
-    this.episodeProgress[key] = {
+    var entry = {
         position: position,
         duration: duration,
         percent: percent,
@@ -237,10 +461,12 @@ IPTVApp.prototype.updateEpisodeProgress = function(episodeId, position, duration
         episodeId: episodeId,
         playlistId: pId
     };
+    this.episodeProgress[key] = entry;
     var now = Date.now();
-    if (forceSync || !this._lastEpisodeSave || (now - this._lastEpisodeSave) > 30000) {
+    var tracked = this._trackNativeProgress('episodeProgress', key, 0, 91, 'timestamp', entry);
+    if (forceSync || (!tracked && (!this._lastEpisodeSave || (now - this._lastEpisodeSave) > 30000))) {
         this._lastEpisodeSave = now;
-        this.saveEpisodeProgress();
+        if (!this._saveUserDataEntry('episodeProgress', key, entry)) this.saveEpisodeProgress();
     }
     if (this.currentPlayingStream && this.currentPlayingStream.series_id) {
         var seriesId = this.currentPlayingStream.series_id;
@@ -265,7 +491,7 @@ IPTVApp.prototype.markEpisodeAsCompleted = function(episodeId, playlistId) {
     if (epProgress) {
         epProgress.watched = true;
         epProgress.position = 0;
-        this.saveEpisodeProgress();
+        if (!this._saveUserDataEntry('episodeProgress', key, epProgress)) this.saveEpisodeProgress();
     }
 };
 
@@ -274,7 +500,7 @@ IPTVApp.prototype.markVodAsCompleted = function(streamId, playlistId) {
     if (historyItem) {
         historyItem.watched = true;
         historyItem.position = 0;
-        this.saveWatchHistory();
+        this._saveWatchHistoryItem(historyItem);
     }
 };
 
@@ -286,6 +512,8 @@ IPTVApp.prototype.forceSaveProgress = function() {
 };
 IPTVApp.prototype.loadSeriesProgress = function() {
     try {
+        var entries = this._loadUserData('seriesProgress');
+        if (entries) return this._userDataObject(entries);
         var data = localStorage.getItem('seriesProgress');
         if (!data) return {};
         var parsed = JSON.parse(data);
@@ -304,6 +532,7 @@ IPTVApp.prototype.loadSeriesProgress = function() {
 };
 
 IPTVApp.prototype.saveSeriesProgress = function() {
+    if (this._saveUserData('seriesProgress', this.seriesProgress)) return;
     this._safeLocalSet('seriesProgress', JSON.stringify(this.seriesProgress));
 };
 
@@ -330,7 +559,7 @@ IPTVApp.prototype.updateSeriesProgress = function(seriesId, season, episode, epi
             playlistId: pId,
             timestamp: Date.now()
         };
-        this.saveSeriesProgress();
+        if (!this._saveUserDataEntry('seriesProgress', key, this.seriesProgress[key])) this.saveSeriesProgress();
     }
 };
 
@@ -509,6 +738,9 @@ IPTVApp.prototype.getTMDBCacheKey = function(title, year) {
 // TTL is configurable via settings.cacheRefreshHours (default 12h)
 var PROVIDER_CACHE_TTL_DEFAULT_HOURS = 12;
 var DEFERRED_REFRESH_PLAYBACK_DELAY_MS = 5 * 60 * 1000;
+// Merge mode stops waiting for a provider after this long; the others are shown
+// without it and its late answer, cached by its getters, joins the next load.
+var MERGE_PROVIDER_TIMEOUT_MS = 20000;
 IPTVApp.prototype.getProviderCacheTTL = function() {
     var h = this.settings && this.settings.cacheRefreshHours;
     if (typeof h !== 'number' || !isFinite(h) || h <= 0) {
@@ -563,6 +795,107 @@ IPTVApp.prototype.getProviderCacheKey = function(playlistId) {
     return playlistId || 'default';
 };
 
+// Android: the provider cache lives in a native SQLite store (CatalogStore.java)
+// instead of IndexedDB. Writes are streamed in chunks and published atomically
+// on commit; a load returns the same {timestamp, filters, data} record. Once a
+// playlist is stored, a save is diffed natively and only the changed rows are
+// applied; the delta ({added, removed, changed, categories, addedIds,
+// removedIds}) is kept for the background refresh (see _takeCatalogDelta).
+// IndexedDB stays the fallback, and is still read when the native store has
+// nothing yet (first start after the update).
+var CATALOG_NATIVE_CHUNK_SIZE = 2000;
+
+IPTVApp.prototype._hasNativeCatalog = function() {
+    return typeof window.Android !== 'undefined' && window.Android &&
+        typeof window.Android.catalogBegin === 'function';
+};
+
+// Whole-catalog reads go over NativeChannel when the WebView supports it:
+// the rows arrive as one UTF-8 ArrayBuffer built off the bridge thread
+// instead of a multi-MB String. Resolves with the JSON text.
+IPTVApp.prototype._readNativeCatalog = function(method, args) {
+    if (window.NativeChannel && window.NativeChannel.available()) {
+        return window.NativeChannel.call(method, args);
+    }
+    try {
+        return Promise.resolve(window.Android[method].apply(window.Android, args));
+    }
+    catch (e) {
+        return Promise.reject(e);
+    }
+};
+
+IPTVApp.prototype._loadProviderCacheNative = function(key) {
+    var startMs = Date.now();
+    return this._readNativeCatalog('catalogLoad', [key]).then(function(json) {
+        if (!json) return null;
+        var cache = JSON.parse(json);
+        window.log('CACHE', 'native load ' + key + ': ' + Math.round(json.length / 1024) + 'KB in ' + (Date.now() - startMs) + 'ms');
+        return cache;
+    }).catch(function(e) {
+        window.log('ERROR', 'native catalog load ' + key + ': ' + e.message);
+        return null;
+    });
+};
+
+IPTVApp.prototype._saveProviderCacheNative = function(key, lightData, timestamp, filters) {
+    var self = this;
+    var extra = {};
+    var sections = [];
+    for (var section in lightData) {
+        if (lightData[section] && lightData[section].streams) sections.push(section);
+        else extra[section] = lightData[section];
+    }
+    var registry = window.__catalogNative = window.__catalogNative || {};
+    return new Promise(function(resolve) {
+        try {
+            var writeId = window.Android.catalogBegin(key, timestamp, JSON.stringify(filters), JSON.stringify(extra));
+            registry[writeId] = function(ok, delta) {
+                delete registry[writeId];
+                if (!ok) window.log('ERROR', 'native catalog save failed for ' + key);
+                self._catalogDeltas = self._catalogDeltas || {};
+                self._catalogDeltas[key] = ok && delta ? delta : null;
+                if (delta) {
+                    window.log('CACHE', 'native catalog delta for ' + key + ': +' + JSON.stringify(delta.added) + ' -' + JSON.stringify(delta.removed) + ' ~' + JSON.stringify(delta.changed) + ' categories=' + JSON.stringify(delta.categories));
+                    for (var section in delta.removedIds) {
+                        window.log('CACHE', 'native catalog removed ' + section + ': ' + delta.removedIds[section].slice(0, 20).join(','));
+                    }
+                }
+                resolve(ok);
+            };
+            sections.forEach(function(section) {
+                var streams = lightData[section].streams;
+                window.Android.catalogAppend(writeId, section, 'categories', JSON.stringify(lightData[section].categories || []));
+                for (var i = 0; i < streams.length; i += CATALOG_NATIVE_CHUNK_SIZE) {
+                    window.Android.catalogAppend(writeId, section, 'streams', JSON.stringify(streams.slice(i, i + CATALOG_NATIVE_CHUNK_SIZE)));
+                }
+            });
+            window.Android.catalogCommit(writeId);
+        }
+        catch (e) {
+            window.log('ERROR', 'native catalog save ' + key + ': ' + e.message);
+            resolve(false);
+        }
+    });
+};
+
+// Returns (and forgets) the delta of the last native save of a playlist, null
+// when the save was a full write or went to IndexedDB.
+IPTVApp.prototype._takeCatalogDelta = function(playlistId) {
+    var key = this.getProviderCacheKey(playlistId);
+    var delta = this._catalogDeltas ? this._catalogDeltas[key] : null;
+    if (this._catalogDeltas) delete this._catalogDeltas[key];
+    return delta || null;
+};
+
+IPTVApp.prototype._catalogDeltaSize = function(delta) {
+    var size = Object.keys(delta.categories || {}).length;
+    ['added', 'removed', 'changed'].forEach(function(kind) {
+        for (var section in delta[kind]) size += delta[kind][section];
+    });
+    return size;
+};
+
 IPTVApp.prototype.initBlobStoreDB = function() {
     var self = this;
     if (this._blobStoreDB) {
@@ -668,61 +1001,157 @@ IPTVApp.prototype.loadMergedProviderCache = function() {
     if (playlists.length === 0) {
         return Promise.resolve(null);
     }
-    window.log('loadMergedProviderCache: loading ' + playlists.length + ' individual caches...');
-    var promises = playlists.map(function(playlist) {
-        var id = playlist.id || playlist.name;
-        return self.loadProviderCacheLocal(id).then(function(localData) {
-            return { playlistId: id, cache: localData };
+    var loadEach = function() {
+        window.log('loadMergedProviderCache: loading ' + playlists.length + ' individual caches...');
+        var promises = playlists.map(function(playlist) {
+            var id = playlist.id || playlist.name;
+            return self.loadProviderCacheLocal(id).then(function(localData) {
+                return { playlistId: id, cache: localData };
+            });
         });
+        return Promise.all(promises).then(function(results) {
+            return self._mergeProviderCaches(results, playlists.length, false);
+        });
+    };
+    if (!this._hasNativeMergedCatalog()) return loadEach();
+    return this._loadMergedCatalogNative(playlists).then(function(nativeResults) {
+        if (!nativeResults) return loadEach();
+        return self._mergeProviderCaches(nativeResults, playlists.length, true);
     });
-    return Promise.all(promises).then(function(results) {
-        var merged = {};
-        var foundAny = false;
-        var stats = { live: 0, vod: 0, series: 0 };
-        var needsRefreshIds = [];
-        var oldestTimestamp = null;
-        results.forEach(function(result) {
-            if (!result.cache) return;
-            foundAny = true;
-            if (result.cache._cacheTimestamp) {
-                if (!oldestTimestamp || result.cache._cacheTimestamp < oldestTimestamp) {
-                    oldestTimestamp = result.cache._cacheTimestamp;
-                }
+};
+
+// Concatenates the per-playlist caches in settings order: that order is the
+// source priority, dedup keeps the first of equal versions.
+IPTVApp.prototype._mergeProviderCaches = function(results, playlistCount, stamped) {
+    var merged = {};
+    var foundAny = false;
+    var stats = { live: 0, vod: 0, series: 0 };
+    var needsRefreshIds = [];
+    var oldestTimestamp = null;
+    results.forEach(function(result) {
+        if (!result.cache) return;
+        foundAny = true;
+        if (result.cache._cacheTimestamp) {
+            if (!oldestTimestamp || result.cache._cacheTimestamp < oldestTimestamp) {
+                oldestTimestamp = result.cache._cacheTimestamp;
             }
-            if (result.cache._needsRefresh) {
-                needsRefreshIds.push(result.playlistId);
+        }
+        if (result.cache._needsRefresh) {
+            needsRefreshIds.push(result.playlistId);
+        }
+        ['live', 'vod', 'series'].forEach(function(section) {
+            var sectionData = result.cache[section];
+            if (!sectionData) return;
+            if (!merged[section]) {
+                merged[section] = { categories: [], streams: [] };
             }
-            ['live', 'vod', 'series'].forEach(function(section) {
-                var sectionData = result.cache[section];
-                if (!sectionData) return;
-                if (!merged[section]) {
-                    merged[section] = { categories: [], streams: [] };
-                }
-                var cats = sectionData.categories || [];
-                var streams = sectionData.streams || [];
-                // Add playlistId to each item for tracking source
+            var cats = sectionData.categories || [];
+            var streams = sectionData.streams || [];
+            // Add playlistId to each item for tracking source
+            if (!stamped) {
                 cats.forEach(function(c) { c._playlistId = result.playlistId; });
                 streams.forEach(function(s) { s._playlistId = result.playlistId; });
-                merged[section].categories = merged[section].categories.concat(cats);
-                merged[section].streams = merged[section].streams.concat(streams);
-                stats[section] += streams.length;
-            });
-        });
-        if (foundAny) {
-            var loadedCount = results.filter(function(r) { return r.cache; }).length;
-            window.log('loadMergedProviderCache: merged ' + loadedCount + '/' + playlists.length + ' providers - live:' + stats.live + ' vod:' + stats.vod + ' series:' + stats.series);
-            if (needsRefreshIds.length > 0) {
-                merged._needsRefreshIds = needsRefreshIds;
             }
-            merged._cacheTimestamp = oldestTimestamp;
-            merged._cacheSource = 'cache';
-            return merged;
+            merged[section].categories = merged[section].categories.concat(cats);
+            merged[section].streams = merged[section].streams.concat(streams);
+            stats[section] += streams.length;
+        });
+    });
+    if (foundAny) {
+        var loadedCount = results.filter(function(r) { return r.cache; }).length;
+        window.log('loadMergedProviderCache: merged ' + loadedCount + '/' + playlistCount + ' providers - live:' + stats.live + ' vod:' + stats.vod + ' series:' + stats.series);
+        if (needsRefreshIds.length > 0) {
+            merged._needsRefreshIds = needsRefreshIds;
         }
-        window.log('CACHE', 'loadMergedProviderCache: no caches found');
+        merged._cacheTimestamp = oldestTimestamp;
+        merged._cacheSource = 'cache';
+        return merged;
+    }
+    window.log('CACHE', 'loadMergedProviderCache: no caches found');
+    return null;
+};
+
+// Resolves with fallback when the provider is slower than
+// MERGE_PROVIDER_TIMEOUT_MS, without cancelling its request.
+IPTVApp.prototype._withProviderDeadline = function(promise, fallback, label) {
+    return new Promise(function(resolve) {
+        var timedOut = false;
+        var timer = setTimeout(function() {
+            timedOut = true;
+            window.log('CACHE', 'merge: ' + label + ' still loading after ' + (MERGE_PROVIDER_TIMEOUT_MS / 1000) + 's, continuing without it');
+            resolve(fallback);
+        }, MERGE_PROVIDER_TIMEOUT_MS);
+        promise.then(function(value) {
+            clearTimeout(timer);
+            if (timedOut) window.log('CACHE', 'merge: ' + label + ' answered late, kept for the next load');
+            resolve(value);
+        }, function(err) {
+            clearTimeout(timer);
+            if (!timedOut) resolve(fallback);
+            window.log('ERROR', 'merge: ' + label + ': ' + (err ? err.message || err : 'unknown'));
+        });
+    });
+};
+
+IPTVApp.prototype._hasNativeMergedCatalog = function() {
+    return typeof window.Android !== 'undefined' && window.Android &&
+        typeof window.Android.catalogLoadMerged === 'function';
+};
+
+/**
+ * Reads every playlist catalog with one Android.catalogLoadMerged call. Rows
+ * come back stamped with _playlistId. The parsed sections of each playlist
+ * are kept with their catalog token, so after a single provider refresh only
+ * that playlist is read and parsed again. Resolves with [{playlistId, cache}]
+ * like the per-playlist loads, or null to fall back to them.
+ */
+IPTVApp.prototype._loadMergedCatalogNative = function(playlists) {
+    var self = this;
+    var startMs = Date.now();
+    var parts = this._mergedCatalogParts || {};
+    var entries = playlists.map(function(playlist) {
+        var id = playlist.id || playlist.name;
+        var key = self.getProviderCacheKey(id);
+        return { key: key, id: id, token: parts[key] ? parts[key].token : '' };
+    });
+    return this._readNativeCatalog('catalogLoadMerged', [JSON.stringify(entries)]).then(function(json) {
+        return self._applyMergedCatalog(entries, JSON.parse(json), startMs);
+    }).catch(function(e) {
+        window.log('ERROR', 'native merged catalog: ' + e.message);
         return null;
     });
 };
 
+IPTVApp.prototype._applyMergedCatalog = function(entries, answer, startMs) {
+    var self = this;
+    if (!Array.isArray(answer) || answer.length !== entries.length) return null;
+    var parts = this._mergedCatalogParts || {};
+    var nextParts = {};
+    var reread = [];
+    var results = entries.map(function(entry, i) {
+        var item = answer[i];
+        if (item.data) {
+            nextParts[entry.key] = { token: item.token, data: item.data };
+            reread.push(entry.id);
+        }
+        else if (!item.missing && parts[entry.key] && parts[entry.key].token === item.token) {
+            nextParts[entry.key] = parts[entry.key];
+        }
+        var part = nextParts[entry.key];
+        if (!part) return { playlistId: entry.id, cache: null };
+        // The flags set by _processLoadedProviderCache go on a copy, the kept
+        // sections must not stay marked stale once the playlist is refreshed.
+        var data = {};
+        for (var section in part.data) data[section] = part.data[section];
+        var record = { timestamp: item.timestamp, filters: item.filters, data: data };
+        return { playlistId: entry.id, cache: self._processLoadedProviderCache(entry.id, record) };
+    });
+    this._mergedCatalogParts = nextParts;
+    window.log('CACHE', 'native merged load: ' + entries.length + ' playlists, re-read ' +
+        (reread.length ? reread.join(',') : 'none') + ' in ' + (Date.now() - startMs) + 'ms');
+    return results;
+};
+
 IPTVApp.prototype.getCurrentFilterSettings = function() {
     return {
         hideSD: this.settings.hideSD,
@@ -739,9 +1168,54 @@ IPTVApp.prototype.filtersMatch = function(cachedFilters) {
            cachedFilters.hideSM === current.hideSM &&
            cachedFilters.providerLanguage === current.providerLanguage;
 };
+IPTVApp.prototype._processLoadedProviderCache = function(playlistId, cache) {
+    var self = this;
+    if (!cache) {
+        window.log('Provider cache LOCAL miss for ' + playlistId + ' (not in IndexedDB)');
+        return null;
+    }
+    if (!self.filtersMatch(cache.filters)) {
+        window.log('Provider cache INVALID for ' + playlistId + ' (filters changed)');
+        return null;
+    }
+    var ageMinutes = cache.timestamp ? Math.round((Date.now() - cache.timestamp) / 60000) : 0;
+    var needsRefresh = !cache.timestamp || Date.now() - cache.timestamp > self.getProviderCacheTTL();
+    if (needsRefresh) {
+        window.log('Provider cache stale for ' + playlistId + ' (age: ' + ageMinutes + 'min), will refresh in background');
+        cache.data._needsRefresh = true;
+        cache.data._playlistId = playlistId;
+    }
+    else {
+        window.log('Provider cache hit from LOCAL for ' + playlistId + ' (age: ' + ageMinutes + 'min)');
+    }
+    var vodStreams = cache.data && cache.data.vod && cache.data.vod.streams;
+    if (vodStreams && vodStreams.length > 0) {
+        var s0 = vodStreams[0];
+        var sLast = vodStreams[vodStreams.length - 1];
+        var keyShape = function(s) {
+            if (!s) return 'undef';
+            var k = s._dedupKey;
+            return (typeof k === 'string' ? k.substring(0, 8) : (k === undefined ? 'noKey' : typeof k)) + '/v' + (s._dedupFormatVersion || 'none');
+        };
+        window.log('CACHE', 'LOAD vod streams=' + vodStreams.length + ' ts=' + cache.timestamp + ' first[' + s0.stream_id + ']=' + keyShape(s0) + ' last[' + sLast.stream_id + ']=' + keyShape(sLast));
+    }
+    cache.data._cacheTimestamp = cache.timestamp;
+    cache.data._cacheSource = 'cache';
+    return cache.data;
+};
+
 IPTVApp.prototype.loadProviderCacheLocal = function(playlistId) {
     var self = this;
     var key = this.getProviderCacheKey(playlistId);
+    if (!this._hasNativeCatalog()) return this._loadProviderCacheIndexedDB(playlistId, key);
+    return this._loadProviderCacheNative(key).then(function(nativeCache) {
+        if (nativeCache) return self._processLoadedProviderCache(playlistId, nativeCache);
+        return self._loadProviderCacheIndexedDB(playlistId, key);
+    });
+};
+
+IPTVApp.prototype._loadProviderCacheIndexedDB = function(playlistId, key) {
+    var self = this;
     return this.initProviderCacheDB().then(function(db) {
         if (!db) {
             return null;
@@ -752,41 +1226,7 @@ IPTVApp.prototype.loadProviderCacheLocal = function(playlistId) {
                 var store = transaction.objectStore(PROVIDER_CACHE_STORE_NAME);
                 var request = store.get(key);
                 request.onsuccess = function(event) {
-                    var cache = event.target.result;
-                    if (!cache) {
-                        window.log('Provider cache LOCAL miss for ' + playlistId + ' (not in IndexedDB)');
-                        resolve(null);
-                        return;
-                    }
-                    if (!self.filtersMatch(cache.filters)) {
-                        window.log('Provider cache INVALID for ' + playlistId + ' (filters changed)');
-                        resolve(null);
-                        return;
-                    }
-                    var ageMinutes = cache.timestamp ? Math.round((Date.now() - cache.timestamp) / 60000) : 0;
-                    var needsRefresh = !cache.timestamp || Date.now() - cache.timestamp > self.getProviderCacheTTL();
-                    if (needsRefresh) {
-                        window.log('Provider cache stale for ' + playlistId + ' (age: ' + ageMinutes + 'min), will refresh in background');
-                        cache.data._needsRefresh = true;
-                        cache.data._playlistId = playlistId;
-                    }
-                    else {
-                        window.log('Provider cache hit from LOCAL for ' + playlistId + ' (age: ' + ageMinutes + 'min)');
-                    }
-                    var vodStreams = cache.data && cache.data.vod && cache.data.vod.streams;
-                    if (vodStreams && vodStreams.length > 0) {
-                        var s0 = vodStreams[0];
-                        var sLast = vodStreams[vodStreams.length - 1];
-                        var keyShape = function(s) {
-                            if (!s) return 'undef';
-                            var k = s._dedupKey;
-                            return (typeof k === 'string' ? k.substring(0, 8) : (k === undefined ? 'noKey' : typeof k)) + '/v' + (s._dedupFormatVersion || 'none');
-                        };
-                        window.log('CACHE', 'LOAD vod streams=' + vodStreams.length + ' ts=' + cache.timestamp + ' first[' + s0.stream_id + ']=' + keyShape(s0) + ' last[' + sLast.stream_id + ']=' + keyShape(sLast));
-                    }
-                    cache.data._cacheTimestamp = cache.timestamp;
-                    cache.data._cacheSource = 'cache';
-                    resolve(cache.data);
+                    resolve(self._processLoadedProviderCache(playlistId, event.target.result));
                 };
                 request.onerror = function() {
                     resolve(null);
@@ -830,6 +1270,12 @@ IPTVApp.prototype.saveProviderCache = function(playlistId, data) {
             lightData[section] = data[section];
         }
     }
+    if (this._hasNativeCatalog()) {
+        return this._saveProviderCacheNative(key, lightData, timestamp, filters).then(function(ok) {
+            if (ok) window.log('Provider cache saved for ' + playlistId + ' (native, filters: SD=' + filters.hideSD + ' 3D=' + filters.hide3D + ' SM=' + filters.hideSM + ')');
+            return ok;
+        });
+    }
     return this.initProviderCacheDB().then(function(db) {
         if (!db) {
             window.log('CACHE', 'Provider cache save skipped (no IndexedDB)');
@@ -1005,6 +1451,11 @@ IPTVApp.prototype.clearM3UCache = function(playlistId) {
 
 IPTVApp.prototype.updateProviderCacheTimestamp = function(playlistId, timestamp) {
     var key = this.getProviderCacheKey(playlistId);
+    if (this._hasNativeCatalog()) {
+        window.Android.catalogTouch(key, timestamp);
+        window.log('CACHE', 'Updated timestamp for ' + playlistId);
+        return;
+    }
     this.initProviderCacheDB().then(function(db) {
         if (!db) return;
         var transaction = db.transaction([PROVIDER_CACHE_STORE_NAME], 'readwrite');
@@ -1036,6 +1487,9 @@ IPTVApp.prototype.saveProviderCacheLocal = function(playlistId, data, timestamp,
             lightData[section] = data[section];
         }
     }
+    if (this._hasNativeCatalog()) {
+        return this._saveProviderCacheNative(key, lightData, timestamp || Date.now(), filters || self.getCurrentFilterSettings());
+    }
     return this.initProviderCacheDB().then(function(db) {
         if (!db) return;
         return new Promise(function(resolve) {
@@ -1231,13 +1685,31 @@ IPTVApp.prototype.refreshProviderCacheBackground = function(playlistId, force) {
             cacheData.live = liveFiltered;
             window.log('Background refresh: applied filters - vod:' + cacheData.vod.streams.length + ' series:' + cacheData.series.streams.length + ' live:' + cacheData.live.streams.length);
             return self.saveProviderCache(playlistId, cacheData).then(function() {
+                cacheData._delta = self._takeCatalogDelta(playlistId);
                 return cacheData;
             });
         });
     }).then(function(cacheData) {
         if (cacheData === null) return;
-        window.log('Background refresh complete for ' + playlistId);
+        var delta = cacheData._delta;
         var now = Date.now();
+        if (delta && self._catalogDeltaSize(delta) === 0) {
+            // The native diff found nothing new: keep the in-memory sections
+            // and their preprocessing instead of rebuilding everything.
+            window.log('Background refresh: no stream or category changed for ' + playlistId);
+            self.playlistCacheTimestamps = self.playlistCacheTimestamps || {};
+            self.playlistCacheTimestamps[playlistId] = now;
+            if (self.providerCacheInfo) {
+                self.providerCacheInfo.timestamp = now;
+                self.providerCacheInfo.refreshing = false;
+            }
+            self.updateRefreshProgress(playlistId, 0, 0, null);
+            self.renderPlaylistSelector();
+            delete self._backgroundRefreshInProgress[playlistId];
+            return;
+        }
+        window.log('Background refresh complete for ' + playlistId);
+        if (delta) self.prefetchTMDBForNewItems(cacheData, delta);
         self.providerCacheInfo = {
             source: 'provider',
             timestamp: now,
@@ -1286,11 +1758,17 @@ IPTVApp.prototype.refreshProviderCacheBackground = function(playlistId, force) {
                     if (sectionData && sectionData.categories && sectionData.streams) {
                         self.renderCategories(sectionData.categories, sectionData.streams);
                     }
-                    if (sectionData && sectionData.streams && Object.keys(oldStreamIds).length > 0) {
+                    var deltaSection = delta && (section === 'vod' || section === 'series' || section === 'live');
+                    if (sectionData && sectionData.streams && (deltaSection || Object.keys(oldStreamIds).length > 0)) {
                         var newCount = 0;
-                        for (var ni = 0; ni < sectionData.streams.length; ni++) {
-                            var id = sectionData.streams[ni].stream_id || sectionData.streams[ni].series_id;
-                            if (id && !oldStreamIds[id]) newCount++;
+                        if (deltaSection) {
+                            newCount = (delta.added && delta.added[section]) || 0;
+                        }
+                        else {
+                            for (var ni = 0; ni < sectionData.streams.length; ni++) {
+                                var id = sectionData.streams[ni].stream_id || sectionData.streams[ni].series_id;
+                                if (id && !oldStreamIds[id]) newCount++;
+                            }
                         }
                         if (newCount > 0) {
                             window.log('CACHE', 'Background refresh: ' + newCount + ' new streams in ' + section);
@@ -1462,6 +1940,9 @@ IPTVApp.prototype.loadAllPlaylistCacheTimestamps = function() {
 
 IPTVApp.prototype.clearProviderCache = function(playlistId) {
     var self = this;
+    if (this._hasNativeCatalog()) {
+        window.Android.catalogClear(playlistId ? this.getProviderCacheKey(playlistId) : '');
+    }
     return this.initProviderCacheDB().then(function(db) {
         if (!db) {
             return;
@@ -1825,8 +2306,9 @@ IPTVApp.prototype.getMyTMDBRatingsCount = function(section) {
 // Favorites
 IPTVApp.prototype.loadFavorites = function() {
     try {
-        var data = localStorage.getItem('favorites');
-        var arr = data ? JSON.parse(data) : [];
+        var entries = this._loadUserData('favorites');
+        var data = entries ? null : localStorage.getItem('favorites');
+        var arr = entries ? entries.map(function(entry) { return entry[1]; }) : (data ? JSON.parse(data) : []);
         var missing = false;
         for (var i = 0; i < arr.length; i++) {
             if (!arr[i]._addedAt) { missing = true; break; }
@@ -1836,7 +2318,7 @@ IPTVApp.prototype.loadFavorites = function() {
             for (var j = 0; j < arr.length; j++) {
                 if (!arr[j]._addedAt) arr[j]._addedAt = now - (arr.length - 1 - j) * 1000;
             }
-            this._safeLocalSet('favorites', JSON.stringify(arr));
+            if (!this._saveUserData('favorites', arr)) this._safeLocalSet('favorites', JSON.stringify(arr));
         }
         return arr;
     }
@@ -1845,10 +2327,28 @@ IPTVApp.prototype.loadFavorites = function() {
     }
 };
 
+IPTVApp.prototype._favoriteReplacer = function(key, value) {
+    return key === '_duplicateVersions' ? undefined : value;
+};
+
 IPTVApp.prototype.saveFavorites = function() {
-    this._safeLocalSet('favorites', JSON.stringify(this.favorites, function(key, value) {
-        return key === '_duplicateVersions' ? undefined : value;
-    }));
+    if (!this._saveUserData('favorites', this.favorites, this._favoriteReplacer)) {
+        this._safeLocalSet('favorites', JSON.stringify(this.favorites, this._favoriteReplacer));
+    }
+    this._rebuildFavoritesIndex();
+    if (this._invalidateRecommendations) this._invalidateRecommendations();
+};
+
+// One favourite added (at the end) or removed: a single native put or remove
+// instead of saveFavorites' rewrite, which stays for reorders.
+IPTVApp.prototype._saveFavoriteChange = function(stream, removed) {
+    var key = this._userDataKey('favorites', stream);
+    var saved = removed ? this._removeUserDataEntry('favorites', key)
+        : this._saveUserDataEntry('favorites', key, stream, false, this._favoriteReplacer);
+    if (!saved) {
+        this.saveFavorites();
+        return;
+    }
     this._rebuildFavoritesIndex();
     if (this._invalidateRecommendations) this._invalidateRecommendations();
 };
@@ -1898,8 +2398,9 @@ IPTVApp.prototype.toggleFavorite = function(stream, type) {
             break;
         }
     }
+    var changed = stream;
     if (idx >= 0) {
-        this.favorites.splice(idx, 1);
+        changed = this.favorites.splice(idx, 1)[0];
     }
     else {
         stream._type = type;
@@ -1908,7 +2409,7 @@ IPTVApp.prototype.toggleFavorite = function(stream, type) {
         stream._addedAt = Date.now();
         this.favorites.push(stream);
     }
-    this.saveFavorites();
+    this._saveFavoriteChange(changed, idx >= 0);
     this.updateFavoriteButton();
     this.updateFavoritesCounter();
     this.updateGridFavoriteIcon(id, idx < 0, playlistId);
@@ -1920,7 +2421,7 @@ IPTVApp.prototype.removeFavoriteAtIndex = function(index) {
     var items = grid.querySelectorAll('.grid-item');
     if (index >= items.length) return;
     // Remove from array
-    this.favorites.splice(index, 1);
+    var removed = this.favorites.splice(index, 1)[0];
     // Remove DOM element
     items[index].remove();
     // Adjust focus
@@ -1932,7 +2433,7 @@ IPTVApp.prototype.removeFavoriteAtIndex = function(index) {
     else if (this.focusIndex >= this.favorites.length) {
         this.focusIndex = this.favorites.length - 1;
     }
-    this.saveFavorites();
+    this._saveFavoriteChange(removed, true);
     this.updateFavoritesCounter();
     this.updateFocus();
 };
@@ -1966,8 +2467,7 @@ IPTVApp.prototype.removeFromHistory = function(id, playlistId) {
         }
     }
     if (idx >= 0) {
-        this.watchHistory.splice(idx, 1);
-        this.saveWatchHistory();
+        this._saveWatchHistoryChange(null, this.watchHistory.splice(idx, 1));
         return true;
     }
     return false;
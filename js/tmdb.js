@@ -412,10 +412,46 @@ var TMDB = {
     },
 
     _fetch: function(url, callback) {
+        if (this._hasNativeCache()) {
+            this._nativeFetch(url, callback);
+            return;
+        }
         this._pendingQueue.push({ url: url, callback: callback });
         this._processQueue();
     },
 
+    // Android: plain GETs go through the native TmdbCache (disk cache, shared
+    // in-flight requests, rate limit), which answers on window.__tmdbNative.
+    _hasNativeCache: function() {
+        return typeof window.Android !== 'undefined' && window.Android &&
+            typeof window.Android.tmdbFetch === 'function';
+    },
+
+    _nativeSeq: 0,
+
+    _nativeFetch: function(url, callback) {
+        var self = this;
+        var registry = window.__tmdbNative = window.__tmdbNative || {};
+        var id = 'tmdb' + (++this._nativeSeq);
+        registry[id] = function(status, data, source) {
+            delete registry[id];
+            window.log('HTTP', '< ' + status + ' ' + self._redactUrl(url) + ' [' + source + ']');
+            if (data && data.status_message && !(status >= 200 && status < 300)) {
+                window.log('TMDB', 'API error status=' + status + ' code=' + data.status_code + ' msg="' + data.status_message + '"');
+            }
+            callback(status >= 200 && status < 300 ? data : null, status);
+        };
+        try {
+            window.Android.tmdbFetch(id, url);
+        }
+        catch (e) {
+            delete registry[id];
+            window.log('ERROR', 'tmdbFetch: ' + e.message);
+            this._pendingQueue.push({ url: url, callback: callback });
+            this._processQueue();
+        }
+    },
+
     _redactUrl: function(url) {
         return url.replace(/api_key=[^&]+/g, 'api_key=***');
     },
@@ -541,6 +577,45 @@ TMDB.searchMulti = function(query, callback) {
     });
 };
 
+// Warms the native cache for titles the user has not opened yet (newly added
+// catalog items): the details when the provider gave a tmdb_id, otherwise the
+// same search searchMovie/searchTV would run, then the details of its first
+// result. Entries are {title, year, type ('movie'|'tv'), tmdbId}.
+TMDB.prefetchTitles = function(entries) {
+    if (!this.isEnabled() || !entries || !entries.length || !this._hasNativeCache() ||
+        typeof window.Android.tmdbPrefetch !== 'function') {
+        return 0;
+    }
+    var self = this;
+    var requests = [];
+    entries.forEach(function(entry) {
+        var path = entry.type === 'tv' ? 'tv' : 'movie';
+        var details = self.baseUrl + '/' + path + '/{id}?api_key=' + self.apiKey +
+            '&language=' + self.language + '&append_to_response=credits,external_ids';
+        if (entry.tmdbId) {
+            requests.push({ url: details.replace('{id}', entry.tmdbId) });
+        }
+        else if (entry.title) {
+            var url = self.baseUrl + '/search/' + path + '?api_key=' + self.apiKey +
+                '&language=' + self.language +
+                '&query=' + encodeURIComponent(entry.title);
+            if (entry.year) {
+                url += (path === 'tv' ? '&first_air_date_year=' : '&year=') + entry.year;
+            }
+            requests.push({ url: url, then: details });
+        }
+    });
+    if (requests.length === 0) return 0;
+    try {
+        window.Android.tmdbPrefetch(JSON.stringify(requests));
+    }
+    catch (e) {
+        window.log('ERROR', 'tmdbPrefetch: ' + e.message);
+        return 0;
+    }
+    return requests.length;
+};
+
 TMDB.searchMovieAsync = function(title, year) {
     var self = this;
     return new Promise(function(resolve) {
@@ -0,0 +1,74 @@
+/**
+ * The Android shell now injects tizen-shim.js as a document-start script
+ * (WebViewCompat.addDocumentStartJavaScript) instead of evaluating it from
+ * onPageStarted. At that point the page's own <meta name="viewport"> is not
+ * parsed yet, so the shim must wait for DOMContentLoaded and rewrite the page's
+ * tag rather than append a second, competing one.
+ */
+
+var fs = require('fs');
+var vm = require('vm');
+
+function makeDocument(readyState) {
+    var listeners = {};
+    var metas = [];
+    var doc = {
+        readyState: readyState,
+        head: null,
+        documentElement: { appendChild: function(el) { if (el.tagName === 'meta') metas.push(el); } },
+        body: null,
+        querySelector: function(sel) {
+            if (sel === 'meta[name="viewport"]') return metas[0] || null;
+            return null;
+        },
+        getElementById: function() { return null; },
+        createElement: function(tag) { return { tagName: tag }; },
+        addEventListener: function(type, fn) {
+            (listeners[type] = listeners[type] || []).push(fn);
+        }
+    };
+    return {
+        doc: doc,
+        metas: metas,
+        fire: function(type) { (listeners[type] || []).forEach(function(fn) { fn(); }); }
+    };
+}
+
+function runShim(fakeDoc) {
+    var storage = {};
+    var sandbox = {
+        document: fakeDoc.doc,
+        navigator: { userAgent: 'Mozilla/5.0 (Linux; Android 11; SHIELD) AppleWebKit/537.36' },
+        localStorage: { setItem: function(k, v) { storage[k] = v; } },
+        Android: { getDeviceId: function() { return 'abc'; } }
+    };
+    sandbox.window = sandbox;
+    vm.createContext(sandbox);
+    vm.runInContext(fs.readFileSync('./tizen-shim.js', 'utf8'), sandbox);
+    return sandbox;
+}
+
+describe('tizen-shim viewport when injected at document start', function() {
+    it('does not add its own viewport meta before the page is parsed', function() {
+        var fake = makeDocument('loading');
+        runShim(fake);
+        expect(fake.metas.length).toBe(0);
+    });
+
+    it('rewrites the page viewport meta once the DOM is ready', function() {
+        var fake = makeDocument('loading');
+        runShim(fake);
+        var pageMeta = { name: 'viewport', content: 'width=1920, height=1080' };
+        fake.metas.push(pageMeta);
+        fake.fire('DOMContentLoaded');
+        expect(fake.metas.length).toBe(1);
+        expect(pageMeta.content).toBe('width=1920, initial-scale=1.0, user-scalable=no');
+    });
+
+    it('still applies immediately when evaluated after parsing (onPageStarted fallback)', function() {
+        var fake = makeDocument('complete');
+        runShim(fake);
+        expect(fake.metas.length).toBe(1);
+        expect(fake.metas[0].content).toBe('width=1920, initial-scale=1.0, user-scalable=no');
+    });
+});
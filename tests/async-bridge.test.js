@@ -0,0 +1,99 @@
+/**
+ * Slow Android calls (DownloadManager) go through NativeChannel.call: the
+ * call runs on a native worker pool and its Promise is settled by the one
+ * answer of the call. Without the AndroidChannel port the request goes
+ * through Android.channelCall and is answered on window.__channelNative.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const channelCode = fs.readFileSync('./js/core/native-channel.js', 'utf8');
+const detailsCode = fs.readFileSync('./js/details.js', 'utf8');
+const slice = (src, name) => {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+};
+
+function load(android) {
+    function IPTVApp() {}
+    const ctx = vm.createContext({ IPTVApp: IPTVApp, JSON: JSON, Promise: Promise, Date: Date });
+    ctx.window = { log: jest.fn(), Android: android };
+    vm.runInContext(channelCode, ctx);
+    ['_hasAsyncBridge', '_startAndroidDownload', '_onAndroidDownloadEnqueued', '_pollAndroidDownloads',
+        '_applyAndroidDownloadStatuses', 'cancelAndroidDownload'].forEach(name => vm.runInContext(slice(detailsCode, name), ctx));
+    ctx.I18n = { t: (key, fallback) => fallback };
+    const app = new ctx.IPTVApp();
+    ['saveFreeboxMaps', 'showToast', 'updateHomeDownloadButton', 'updateGlobalDownloadBar', 'ensureAndroidPolling',
+        'refreshDownloadsScreen'].forEach(name => { app[name] = jest.fn(); });
+    return { ctx: ctx, app: app };
+}
+
+// Answers the n-th channelCall with the given status and body.
+function answer(ctx, n, status, body) {
+    const request = JSON.parse(ctx.window.Android.channelCall.mock.calls[n][0]);
+    ctx.window.__channelNative(request.id + ':' + status + ':' + body);
+    return request;
+}
+
+const flush = () => new Promise(resolve => setTimeout(resolve, 0));
+
+describe('async bridge', () => {
+    test('falls back to Android.channelCall and reports timeouts', () => {
+        const { ctx } = load({ channelCall: jest.fn() });
+        expect(ctx.window.NativeChannel.canCall()).toBe(true);
+        expect(ctx.window.NativeChannel.available()).toBe(false);
+        const ok = ctx.window.NativeChannel.call('downloadStatus', [[3]]);
+        const late = ctx.window.NativeChannel.call('downloadStatus', [[4]]);
+        answer(ctx, 1, 2, 'downloadStatus timed out after 10000 ms');
+        answer(ctx, 0, 0, '{"3":{"status":"queued"}}');
+        return Promise.all([
+            ok.then(body => expect(JSON.parse(body)).toEqual({ 3: { status: 'queued' } })),
+            late.then(() => { throw new Error('should reject'); }, e => expect(e.timeout).toBe(true))
+        ]);
+    });
+
+    test('enqueues a download asynchronously', async () => {
+        const android = { channelCall: jest.fn(), downloadFile: jest.fn() };
+        const { ctx, app } = load(android);
+        app._startAndroidDownload('http://h/f.mkv', 'f.mkv', 12, 'p1', '', null);
+        expect(JSON.parse(android.channelCall.mock.calls[0][0]).args).toEqual(['http://h/f.mkv', 'f.mkv']);
+        answer(ctx, 0, 0, '77');
+        await flush();
+        expect(android.downloadFile).not.toHaveBeenCalled();
+        expect(app._androidDownloadMap['77'].filename).toBe('f.mkv');
+        expect(app.ensureAndroidPolling).toHaveBeenCalled();
+    });
+
+    test('polls every download in one call and drops the finished ones', async () => {
+        const android = { channelCall: jest.fn(), getAndroidDownloadStatus: jest.fn() };
+        const { ctx, app } = load(android);
+        app._androidDownloadMap = {
+            '5': { status: 'downloading', totalBytes: 0, downloadedBytes: 0 },
+            '6': { status: 'downloading', totalBytes: 0, downloadedBytes: 0 },
+            '7': { status: 'downloading', totalBytes: 0, downloadedBytes: 0 }
+        };
+        app._pollAndroidDownloads();
+        app._pollAndroidDownloads();
+        expect(android.channelCall).toHaveBeenCalledTimes(1);
+        expect(JSON.parse(android.channelCall.mock.calls[0][0]).args).toEqual([[5, 6, 7]]);
+        answer(ctx, 0, 0, '{"5":{"status":"downloading","total":100,"downloaded":40},"6":{"status":"done","total":9,"downloaded":9}}');
+        await flush();
+        expect(Object.keys(app._androidDownloadMap)).toEqual(['5']);
+        expect(app._androidDownloadMap['5'].downloadedBytes).toBe(40);
+        expect(android.getAndroidDownloadStatus).not.toHaveBeenCalled();
+        app._pollAndroidDownloads();
+        expect(android.channelCall).toHaveBeenCalledTimes(2);
+    });
+
+    test('keeps the synchronous bridge on older APKs', () => {
+        const android = { getAndroidDownloadStatus: jest.fn(() => '{}') };
+        const { app } = load(android);
+        app._androidDownloadMap = { '5': { status: 'downloading' } };
+        app._pollAndroidDownloads();
+        expect(android.getAndroidDownloadStatus).toHaveBeenCalledWith(5);
+        expect(app._androidDownloadMap).toEqual({});
+    });
+});
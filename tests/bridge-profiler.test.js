@@ -0,0 +1,99 @@
+/**
+ * BridgeProfiler (js/core/diagnostic.js) swaps window.Android for a copy
+ * whose methods count calls, latency and string bytes, merges in the
+ * native-to-JS script counts of the APK, and puts the bridge object back
+ * untouched on stop.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const diagnosticCode = fs.readFileSync('./js/core/diagnostic.js', 'utf8');
+
+function load(android) {
+    const ctx = vm.createContext({ JSON: JSON, Date: Date, Math: Math, setTimeout: setTimeout, clearTimeout: clearTimeout });
+    ctx.window = { log: jest.fn(), Android: android };
+    vm.runInContext(diagnosticCode, ctx);
+    return ctx;
+}
+
+function fakeBridge() {
+    return {
+        isPlayerActive: jest.fn(() => true),
+        getProviderCache: jest.fn(() => '{"data":1}'),
+        saveProviderCache: jest.fn(),
+        failing: jest.fn(() => { throw new Error('boom'); }),
+        bridgeProfilerSetEnabled: jest.fn(),
+        bridgeProfilerScripts: jest.fn(() => '{"since":1,"scripts":{"__avplay_listener.oncurrentplaytime":{"count":40,"chars":2400,"maxChars":61},"__channelNative":{"count":2,"chars":90,"maxChars":50}}}')
+    };
+}
+
+describe('bridge profiler', () => {
+    test('counts calls, bytes and latency per method', () => {
+        const bridge = fakeBridge();
+        const ctx = load(bridge);
+        const profiler = ctx.window.BridgeProfiler;
+        expect(profiler.start()).toBe(true);
+        expect(bridge.bridgeProfilerSetEnabled).toHaveBeenCalledWith(true);
+        expect(ctx.window.Android).not.toBe(bridge);
+        ctx.window.Android.isPlayerActive();
+        ctx.window.Android.isPlayerActive();
+        expect(ctx.window.Android.getProviderCache('p1')).toBe('{"data":1}');
+        ctx.window.Android.saveProviderCache('p1', '{"x":true}');
+        expect(() => ctx.window.Android.failing()).toThrow('boom');
+        expect(bridge.getProviderCache).toHaveBeenCalledWith('p1');
+        const calls = profiler.report().calls;
+        expect(calls.map(c => c.method)).toEqual(['isPlayerActive', 'getProviderCache', 'saveProviderCache', 'failing']);
+        expect([calls[1].bytesIn, calls[1].bytesOut]).toEqual([2, 10]);
+        expect([calls[2].bytesIn, calls[2].bytesOut]).toEqual([12, 0]);
+        expect(calls[0].histogram.reduce((a, b) => a + b, 0)).toBe(2);
+        expect(calls[0].histogram.length).toBe(8);
+    });
+
+    test('merges the native script counts', () => {
+        const bridge = fakeBridge();
+        const ctx = load(bridge);
+        const profiler = ctx.window.BridgeProfiler;
+        profiler.start();
+        const result = profiler.report();
+        expect(result.scripts.map(s => [s.target, s.count])).toEqual([['__avplay_listener.oncurrentplaytime', 40], ['__channelNative', 2]]);
+        expect(result.calls.map(c => c.method)).toEqual([]);
+        expect(profiler.formatText(result)).toContain('__avplay_listener.oncurrentplaytime');
+    });
+
+    test('puts the bridge back on stop and records nothing', () => {
+        const bridge = fakeBridge();
+        const ctx = load(bridge);
+        const profiler = ctx.window.BridgeProfiler;
+        profiler.start();
+        ctx.window.Android.isPlayerActive();
+        profiler.stop();
+        expect(ctx.window.Android).toBe(bridge);
+        expect(bridge.bridgeProfilerSetEnabled.mock.calls.map(c => c[0])).toEqual([true, false]);
+        expect(profiler.running()).toBe(false);
+        ctx.window.Android.isPlayerActive();
+        expect(profiler.report().calls[0].count).toBe(1);
+    });
+
+    test('exports the report to the log and stops after the duration', async () => {
+        const bridge = fakeBridge();
+        const ctx = load(bridge);
+        const profiler = ctx.window.BridgeProfiler;
+        profiler.start(5);
+        ctx.window.Android.isPlayerActive();
+        await new Promise(resolve => setTimeout(resolve, 20));
+        expect(ctx.window.Android).toBe(bridge);
+        const logged = ctx.window.log.mock.calls.filter(c => c[0] === 'BRIDGE_PROFILE' && c[1].charAt(0) === '{');
+        expect(logged.length).toBe(1);
+        expect(JSON.parse(logged[0][1]).calls[0].method).toBe('isPlayerActive');
+    });
+
+    test('works without the native profiler (older APKs)', () => {
+        const ctx = load({ isPlayerActive: jest.fn(() => false) });
+        const profiler = ctx.window.BridgeProfiler;
+        expect(profiler.start()).toBe(true);
+        ctx.window.Android.isPlayerActive();
+        expect(profiler.report().scripts).toEqual([]);
+        profiler.stop();
+    });
+});
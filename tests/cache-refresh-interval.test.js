@@ -56,8 +56,11 @@ function makeApp(extraSettings) {
     const filtersMatch = slice(storageCode, 'filtersMatch');
     const curFilters = slice(storageCode, 'getCurrentFilterSettings');
     const initDB = slice(storageCode, 'initProviderCacheDB');
+    const hasNative = slice(storageCode, '_hasNativeCatalog');
+    const processLoaded = slice(storageCode, '_processLoadedProviderCache');
     const loadLocal = slice(storageCode, 'loadProviderCacheLocal');
-    vm.runInContext(ttlConst + dbConsts + helper + loader + provCacheKey + filtersMatch + curFilters + initDB + loadLocal, sandbox);
+    const loadIndexedDB = slice(storageCode, '_loadProviderCacheIndexedDB');
+    vm.runInContext(ttlConst + dbConsts + helper + loader + provCacheKey + filtersMatch + curFilters + initDB + hasNative + processLoaded + loadLocal + loadIndexedDB, sandbox);
     return { sandbox: sandbox, app: new sandbox.IPTVApp() };
 }
 
@@ -0,0 +1,110 @@
+/**
+ * Sport, manga, entertainment and custom sections pick their categories with
+ * keyword rules (_categoryRules). On Android the category names are
+ * classified by the native CategoryRules in one pass: the rules are sent to
+ * Android.categoryRulesConfigure only when they change, and
+ * Android.categoryRulesClassify answers {ruleId: [rows]}. Without the bridge,
+ * or when it fails, the keyword regexes are tested in JS as before.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const browseCode = fs.readFileSync('./js/browse.js', 'utf8');
+const regexCode = fs.readFileSync('./js/regex.js', 'utf8');
+const slice = (src, name) => {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+};
+
+function makeApp(android, settings) {
+    function IPTVApp() {}
+    const ctx = vm.createContext({ IPTVApp: IPTVApp, JSON: JSON, Object: Object });
+    ctx.window = { log: function() {}, Android: android };
+    vm.runInContext(regexCode, ctx);
+    ['getCustomCategoryKeywords', '_categoryRules', '_hasNativeCategoryRules',
+        '_classifyNativeCategories', '_categoryRuleMatcher'].forEach(function(name) {
+        vm.runInContext(slice(browseCode, name), ctx);
+    });
+    const app = new ctx.IPTVApp();
+    app.settings = settings || {};
+    app.getCategoryPatterns = function() {
+        return app.settings.categoryPatterns || {
+            sport: ['football', 'moto gp'],
+            manga: ['anime'],
+            entertainment: { concerts: ['concert'], karaoke: ['karaoké'] }
+        };
+    };
+    return app;
+}
+
+const names = ['FR| FOOTBALL', 'EN| MOTOGP 2024', 'ANIME VOSTFR', 'KARAOKÉ', 'FILMS ACTION'];
+
+describe('category rule matcher', function() {
+    it('matches keywords like Regex.keywordPattern without the bridge', function() {
+        const app = makeApp(undefined);
+        const rules = app._categoryRules();
+        const matches = app._categoryRuleMatcher(rules.rules, names);
+        expect(names.filter(function(n) { return matches(['sport'], n); })).toEqual(['FR| FOOTBALL', 'EN| MOTOGP 2024']);
+        expect(matches(['entertainment.karaoke'], 'karaoké night')).toBe(true);
+        expect(names.filter(function(n) { return !matches(rules.special, n); })).toEqual(['FILMS ACTION']);
+    });
+
+    it('uses the native classification and only reconfigures changed rules', function() {
+        const android = {
+            categoryRulesConfigure: jest.fn(),
+            categoryRulesClassify: jest.fn(function() {
+                return JSON.stringify({ sport: [0, 1], manga: [2] });
+            })
+        };
+        const app = makeApp(android);
+        const rules = app._categoryRules().rules;
+        const matches = app._categoryRuleMatcher(rules, names);
+        expect(JSON.parse(android.categoryRulesConfigure.mock.calls[0][0]).sport).toEqual(['football', 'moto gp']);
+        expect(android.categoryRulesClassify.mock.calls[0][0]).toBe(5);
+        expect(android.categoryRulesClassify.mock.calls[0][1].split('\u001e')).toEqual(names);
+        expect(matches(['sport'], 'EN| MOTOGP 2024')).toBe(true);
+        expect(matches(['sport', 'manga'], 'ANIME VOSTFR')).toBe(true);
+        expect(matches(['sport'], 'FILMS ACTION')).toBe(false);
+
+        app._categoryRuleMatcher(app._categoryRules().rules, names);
+        expect(android.categoryRulesConfigure).toHaveBeenCalledTimes(1);
+        app.settings.categoryPatterns = { sport: ['tennis'] };
+        app._categoryRuleMatcher(app._categoryRules().rules, names);
+        expect(android.categoryRulesConfigure).toHaveBeenCalledTimes(2);
+    });
+
+    it('falls back to JS when the native classifier answers null', function() {
+        const android = {
+            categoryRulesConfigure: jest.fn(),
+            categoryRulesClassify: jest.fn(function() { return 'null'; })
+        };
+        const app = makeApp(android);
+        const matches = app._categoryRuleMatcher(app._categoryRules().rules, names);
+        expect(matches(['manga'], 'ANIME VOSTFR')).toBe(true);
+    });
+
+    it('gives hidden sections no keywords', function() {
+        const app = makeApp(undefined, { hiddenDefaultCategories: ['sport', 'entertainment'] });
+        const rules = app._categoryRules().rules;
+        expect(rules.sport).toEqual([]);
+        expect(rules['entertainment.karaoke']).toEqual([]);
+        expect(rules.manga).toEqual(['anime']);
+    });
+
+    it('keeps an emptied custom patterns entry out of the vod exclusions', function() {
+        const app = makeApp(undefined, {
+            categoryPatterns: { sport: [], custom_1: [] },
+            customCategories: [{ id: 'custom_1', keywords: ['docu'] }]
+        });
+        const rules = app._categoryRules();
+        expect(rules.rules.custom_1).toEqual(['docu']);
+        expect(rules.rules['special.custom_1']).toEqual([]);
+        expect(rules.special).toContain('special.custom_1');
+        const matches = app._categoryRuleMatcher(rules.rules, ['DOCU FR']);
+        expect(matches(['custom_1'], 'DOCU FR')).toBe(true);
+        expect(matches(rules.special, 'DOCU FR')).toBe(false);
+    });
+});
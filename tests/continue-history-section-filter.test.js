@@ -49,6 +49,7 @@ function buildApp(currentSection) {
         this.tmdbInfo = null;
     }
     IPTVApp.prototype.saveWatchHistory = function() {};
+    IPTVApp.prototype._saveWatchHistoryChange = function() {};
     IPTVApp.prototype.getStreamTitle = function(s) { return s && s.name ? s.name : ''; };
     IPTVApp.prototype.getStreamImage = function(s) { return s && s.cover ? s.cover : ''; };
     const ctx = vm.createContext({
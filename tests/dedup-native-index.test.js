@@ -0,0 +1,145 @@
+/**
+ * On Android the dedup keys of VOD/series streams come from the native
+ * DedupIndex (Android.dedupIndex / dedupGroup) instead of computeFields, so
+ * fresh and cached stream arrays get the same keys and groups. The native
+ * index returns string tables plus one [key, cleanTitle, year] triple per
+ * stream; dedupGroup returns the consolidated groups of the filtered streams
+ * as a flat [keyIndex, size, positions...] array. Whenever the bridge is
+ * missing or answers null, _preprocessStreams must keep its JS grouping.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const browseCode = fs.readFileSync('./js/browse.js', 'utf8');
+const utilsCode = fs.readFileSync('./js/core/utils.js', 'utf8');
+const slice = (src, name) => {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+};
+
+function makeApp(android) {
+    function IPTVApp() {}
+    const logs = [];
+    const ctx = vm.createContext({
+        IPTVApp: IPTVApp,
+        JSON: JSON,
+        Regex: {
+            qualityPrefix: /^(4K|3D|SD|HD|FHD|UHD|DVB|DBV)[-|\s]+/i,
+            removeYearEnd: /[-\s]+(?:19|20)\d{2}\s*$/,
+            collectFromMap: function(map, key) { return map.fr && map.fr[key] ? map.fr[key] : []; }
+        },
+        I18nData: { cleanupPatternsMap: { fr: { langTags: ['FRENCH'], season: ['Saison'], part: ['Partie'] } } }
+    });
+    ctx.window = { log: function(tag, msg) { logs.push(tag + ' ' + msg); }, Android: android };
+    vm.runInContext(slice(utilsCode, 'getStreamTitle'), ctx);
+    ['_hasNativeDedup', '_indexNativeDedup', '_groupNativeDedup', '_preprocessStreams',
+        '_consolidateDedupGroupsByCleanTitle'].forEach(function(name) {
+        vm.runInContext(slice(browseCode, name), ctx);
+    });
+    const app = new ctx.IPTVApp();
+    app.cleanTitle = function(t) { return t.replace(/^[A-Z0-9-]+\|\s*/, '').replace(/\s*\(\d{4}\)/, ''); };
+    app.stripCategoryPrefix = function(t) { return t.replace(/^[A-Z0-9-]+\|\s*/, ''); };
+    app.formatDisplayTitle = function(t) { return t; };
+    app.extractYear = function(t) { const m = t.match(/\((\d{4})\)/); return m ? m[1] : null; };
+    app._normalizeDedupTitle = jest.fn(function(t) { return app.cleanTitle(t).toLowerCase(); });
+    app.isSD = function() { return false; };
+    app.is3D = function() { return false; };
+    app._normalizeGenre = function() { return null; };
+    app._mergeGenrePlurals = function(g) { return g; };
+    app._logs = logs;
+    return app;
+}
+
+function streams() {
+    return [
+        { stream_id: '30', name: 'FR| Dune (2021)', category_id: '1' },
+        { stream_id: '10', name: '4K| Dune', category_id: '1' },
+        { stream_id: '20', name: 'FR| Alien (1979)', category_id: '1', tmdb: '348' },
+        { stream_id: '40', name: 'FR| Hidden (2020)', category_id: '9' }
+    ];
+}
+
+// What DedupIndex answers for streams(): "4K| Dune" has no year and is merged
+// into "dune|2021"; stream 40 is filtered out by its category.
+function nativeBridge(overrides) {
+    return Object.assign({
+        dedupConfigure: jest.fn(),
+        dedupIndex: jest.fn(function() {
+            return JSON.stringify({
+                keys: ['title:dune|2021', 'title:dune|', 'tmdb:348', 'title:hidden|2020'],
+                cleanTitles: ['dune', 'alien', 'hidden'],
+                years: ['2021', '', '1979', '2020'],
+                normalized: 4,
+                rows: [0, 0, 0, 1, 0, 1, 2, 1, 2, 3, 2, 3]
+            });
+        }),
+        dedupGroup: jest.fn(function() { return '[0,2,1,0,2,1,2]'; })
+    }, overrides || {});
+}
+
+const categories = [{ category_id: '1', category_name: 'FR| Films' }];
+
+describe('_preprocessStreams with the native dedup index', function() {
+    it('takes keys, clean titles and groups from the native index', function() {
+        const android = nativeBridge();
+        const app = makeApp(android);
+        const input = streams();
+        const result = app._preprocessStreams(input, categories, {}, null, 'vod');
+
+        expect(android.dedupIndex).toHaveBeenCalledTimes(1);
+        const args = android.dedupIndex.mock.calls[0];
+        expect(args[0]).toBe('vod');
+        expect(args[1]).toBe(4);
+        expect(args[2].split('\u001e')[2]).toBe('20\u001fFR| Alien (1979)\u001f348');
+        expect(android.dedupGroup).toHaveBeenCalledWith('vod', '0,1,2');
+        expect(app._normalizeDedupTitle).not.toHaveBeenCalled();
+
+        expect(Object.keys(result._dedupGroups)).toEqual(['title:dune|2021', 'tmdb:348']);
+        const dune = result._dedupGroups['title:dune|2021'];
+        expect(dune.map(function(s) { return s.stream_id; })).toEqual(['10', '30']);
+        expect(input[1]._dedupKey).toBe('title:dune|2021');
+        expect(input[1]._dedupYear).toBe(null);
+        expect(input[2]._dedupCleanTitle).toBe('alien');
+        expect(input[2]._dedupYear).toBe('1979');
+        expect(result._dedupTitleCounts).toEqual({ dune: 2, alien: 1 });
+    });
+
+    it('configures the native normaliser with the locale word lists once', function() {
+        const android = nativeBridge();
+        const app = makeApp(android);
+        app._preprocessStreams(streams(), categories, {}, null, 'vod');
+        app._preprocessStreams(streams(), categories, {}, null, 'series');
+        expect(android.dedupConfigure).toHaveBeenCalledTimes(1);
+        expect(JSON.parse(android.dedupConfigure.mock.calls[0][0])).toEqual({
+            langTags: ['FRENCH'], season: ['Saison'], part: ['Partie']
+        });
+    });
+
+    it('falls back to the JS consolidation when the native grouping fails', function() {
+        const android = nativeBridge({ dedupGroup: jest.fn(function() { return 'null'; }) });
+        const app = makeApp(android);
+        const result = app._preprocessStreams(streams(), categories, {}, null, 'vod');
+        expect(Object.keys(result._dedupGroups).sort()).toEqual(['title:dune|2021', 'tmdb:348']);
+        expect(result._dedupGroups['title:dune|2021'].map(function(s) { return s.stream_id; })).toEqual(['10', '30']);
+    });
+
+    it('computes the keys in JS when the native index is unavailable', function() {
+        const android = nativeBridge({ dedupIndex: jest.fn(function() { return 'null'; }) });
+        const app = makeApp(android);
+        const input = streams();
+        app._preprocessStreams(input, categories, {}, null, 'vod');
+        expect(android.dedupGroup).not.toHaveBeenCalled();
+        expect(app._normalizeDedupTitle).toHaveBeenCalled();
+        expect(input[2]._dedupKey).toBe('tmdb:348');
+    });
+
+    it('leaves callers without a section on the JS path', function() {
+        const android = nativeBridge();
+        const app = makeApp(android);
+        app._preprocessStreams(streams(), categories, {});
+        expect(android.dedupIndex).not.toHaveBeenCalled();
+    });
+});
@@ -29,7 +29,9 @@ function TestApp() {
     this._saved = null;
 }
 TestApp.prototype._safeLocalSet = function(key, value) { this._saved = value; return true; };
+TestApp.prototype._saveUserData = function() { return false; };
 TestApp.prototype._rebuildFavoritesIndex = function() {};
+eval(slice(storageSrc, '_favoriteReplacer'));
 eval(slice(storageSrc, 'saveFavorites'));
 
 function circularVodFavorite() {
@@ -0,0 +1,101 @@
+/**
+ * FrameMonitor (js/core/diagnostic.js) toggles the native frame monitor,
+ * reads its rolling stats and formats the worst frames next to the bridge
+ * calls BridgeProfiler counted over the same period. Settings > Data >
+ * Performance starts a capture on the first press and shows it on the next.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const diagnosticCode = fs.readFileSync('./js/core/diagnostic.js', 'utf8');
+const settingsCode = fs.readFileSync('./js/settings.js', 'utf8');
+
+const STATS = {
+    enabled: true, source: 'frameMetrics', intervalMs: 16.67, since: 1, frames: 600, jank: 30, severe: 4, frozen: 1,
+    window: 600, p50Ms: 9.1, p90Ms: 15.2, p95Ms: 18.4, p99Ms: 52.3, maxMs: 812.5,
+    worst: [{ at: 1700000000000, ms: 812.5, playerEvents: 3, scripts: 12, channelCalls: 1, gcs: 1,
+        phases: { input: 0.2, animation: 0.1, layout: 40.5, draw: 700.1, sync: 2, command: 60, swap: 9.6 } }]
+};
+
+function load(android) {
+    const ctx = vm.createContext({ JSON: JSON, Date: Date, Math: Math, setTimeout: setTimeout, clearTimeout: clearTimeout });
+    ctx.window = { log: jest.fn(), Android: android };
+    vm.runInContext(diagnosticCode, ctx);
+    return ctx;
+}
+
+describe('frame monitor', () => {
+    test('toggles the native monitor and reads its stats', () => {
+        const android = { frameMonitorSetEnabled: jest.fn(), frameMonitorStats: jest.fn(() => JSON.stringify(STATS)) };
+        const ctx = load(android);
+        const monitor = ctx.window.FrameMonitor;
+        expect(monitor.start()).toBe(true);
+        expect(monitor.stats().p99Ms).toBe(52.3);
+        monitor.stop();
+        expect(android.frameMonitorSetEnabled.mock.calls.map(c => c[0])).toEqual([true, false]);
+    });
+
+    test('formats the worst frames with their context', () => {
+        const ctx = load({ frameMonitorSetEnabled: jest.fn(), frameMonitorStats: () => JSON.stringify(STATS) });
+        const text = ctx.window.FrameMonitor.formatText(ctx.window.FrameMonitor.stats());
+        expect(text).toContain('jank 30 (5%)  severe 4  frozen 1');
+        expect(text).toContain('812.5');
+        expect(text).toContain('layout 40.5, draw 700.1, sync 2, command 60, swap 9.6');
+        expect(text).not.toContain('input');
+        expect(text).not.toContain('JS -> Java');
+    });
+
+    test('lists bridge calls when the bridge profiler runs too', () => {
+        const android = { frameMonitorSetEnabled: jest.fn(), frameMonitorStats: () => JSON.stringify(STATS),
+            playerGetCurrentTime: () => 1200 };
+        const ctx = load(android);
+        ctx.window.BridgeProfiler.start();
+        ctx.window.Android.playerGetCurrentTime();
+        const text = ctx.window.FrameMonitor.formatText(ctx.window.FrameMonitor.stats());
+        expect(text).toContain('JS -> Java meanwhile');
+        expect(text).toContain('playerGetCurrentTime');
+        ctx.window.BridgeProfiler.stop();
+    });
+
+    test('logs the stats and stops after the duration', async () => {
+        const android = { frameMonitorSetEnabled: jest.fn(), frameMonitorStats: () => JSON.stringify(STATS) };
+        const ctx = load(android);
+        ctx.window.FrameMonitor.start(5);
+        await new Promise(resolve => setTimeout(resolve, 20));
+        expect(android.frameMonitorSetEnabled.mock.calls.map(c => c[0])).toEqual([true, false]);
+        const logged = ctx.window.log.mock.calls.filter(c => c[0] === 'FRAME_STATS' && c[1].charAt(0) === '{');
+        expect(JSON.parse(logged[0][1]).frozen).toBe(1);
+    });
+
+    test('is unavailable on Tizen and older APKs', () => {
+        const ctx = load({ isPlayerActive: () => false });
+        expect(ctx.window.FrameMonitor.available()).toBe(false);
+        expect(ctx.window.FrameMonitor.start()).toBe(false);
+        expect(ctx.window.FrameMonitor.formatText(ctx.window.FrameMonitor.stats())).toBe('Frame monitor unavailable');
+    });
+});
+
+describe('performance tools in settings', () => {
+    test('first press captures, second press shows the stats', () => {
+        const android = { frameMonitorSetEnabled: jest.fn(), frameMonitorStats: () => JSON.stringify(STATS) };
+        const ctx = load(android);
+        ctx.I18n = { t: function(key, fallback) { return fallback; } };
+        ctx.document = { createElement: function() { return {}; } };
+        function IPTVApp() {}
+        ctx.IPTVApp = IPTVApp;
+        const m = settingsCode.match(/var PERF_CAPTURE_MS[\s\S]*?\nIPTVApp\.prototype\.showPerfTool = function[\s\S]*?\n\};\n/);
+        vm.runInContext(m[0], ctx);
+        const app = new IPTVApp();
+        app._showToast = jest.fn();
+        app.showConfirmModal = jest.fn();
+        app.showPerfTool('frameStats');
+        expect(android.frameMonitorSetEnabled).toHaveBeenCalledWith(true);
+        expect(app._showToast).toHaveBeenCalledTimes(1);
+        expect(app.showConfirmModal).not.toHaveBeenCalled();
+        app.showPerfTool('frameStats');
+        expect(app.showConfirmModal).toHaveBeenCalledTimes(1);
+        expect(app.showConfirmModal.mock.calls[0][2].title).toBe('Frame stats');
+        ctx.window.FrameMonitor.stop();
+    });
+});
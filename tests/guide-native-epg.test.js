@@ -0,0 +1,120 @@
+/**
+ * On Android the TV guide reads the displayed window from the native XMLTV
+ * store (EpgStore) and only falls back to per-channel get_short_epg calls for
+ * channels the store has nothing for. A missing or stale store triggers one
+ * background ingest per session. The store identifies its feed by a redacted
+ * key (epgSourceKey), never by the URL with the credentials.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const guideCode = fs.readFileSync('./js/features/guide.js', 'utf8');
+
+function slice(src, name) {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+}
+
+function buildApp(status, rowsByChannel) {
+    const calls = { ingest: [], query: [], shortEpg: [], rendered: 0 };
+    const sandbox = {
+        JSON: JSON, Date: Date, Math: Math, Object: Object,
+        EPG_NATIVE_MAX_AGE_SEC: 12 * 3600,
+        EPG_NATIVE_PAST_SEC: 3 * 3600,
+        EPG_NATIVE_AHEAD_SEC: 24 * 3600,
+        I18n: { t: function(k, d) { return d; } }
+    };
+    sandbox.window = sandbox;
+    sandbox.window.log = function() {};
+    sandbox.Android = {
+        epgStatus: function() { return JSON.stringify(status); },
+        epgSourceKey: function(url) { return url.split('/')[2] + '#' + url.length.toString(16); },
+        epgIngest: function(url) { calls.ingest.push(url); },
+        epgQuery: function(ids, from, to) {
+            calls.query.push([JSON.parse(ids), to - from]);
+            return JSON.stringify(rowsByChannel);
+        }
+    };
+    vm.createContext(sandbox);
+    vm.runInContext(
+        'function IPTVApp() { this.guideEpgData = {}; }\n' +
+        'IPTVApp.prototype.showLoading = function() {};\n' +
+        slice(guideCode, 'queryNativeGuideEPG') +
+        slice(guideCode, 'loadGuideEPG') +
+        'this.app = new IPTVApp();',
+        sandbox
+    );
+    const app = sandbox.app;
+    app.renderGuideGrid = function() { calls.rendered++; };
+    app.api = {
+        getXmltvUrl: function() { return 'http://p/xmltv.php?username=u&password=p'; },
+        getShortEPG: function(id) {
+            calls.shortEpg.push(id);
+            return Promise.resolve({ epg_listings: [{ title: 'eA==' }] });
+        }
+    };
+    app.guideChannels = [
+        { stream_id: 1, epg_channel_id: 'tf1.fr' },
+        { stream_id: 2, epg_channel_id: 'm6.fr' },
+        { stream_id: 3 }
+    ];
+    return { app: app, calls: calls };
+}
+
+const now = Math.floor(Date.now() / 1000);
+const source = 'http://p/xmltv.php?username=u&password=p';
+const sourceKey = 'p#' + source.length.toString(16);
+const prog = { start_timestamp: now, stop_timestamp: now + 1800, title: 'VEYxIEpU', description: '' };
+
+describe('TV guide native EPG window', function() {
+    it('uses the native window and fetches only uncovered channels', async function() {
+        const built = buildApp({ source: sourceKey, ingestedAt: now - 60, programmes: 10, ingesting: false },
+            { 'tf1.fr': [prog], 'm6.fr': [] });
+        built.app.loadGuideEPG();
+        await new Promise(setImmediate);
+        expect(built.calls.query.length).toBe(1);
+        expect(built.calls.query[0][0]).toEqual(['tf1.fr', 'm6.fr']);
+        expect(built.app.guideEpgData[1]).toEqual([prog]);
+        expect(built.calls.shortEpg).toEqual([2, 3]);
+        expect(built.calls.ingest.length).toBe(0);
+        expect(built.calls.rendered).toBe(1);
+    });
+
+    it('renders without network calls when every channel is covered', function() {
+        const built = buildApp({ source: sourceKey, ingestedAt: now - 60, programmes: 10, ingesting: false },
+            { 'tf1.fr': [prog], 'm6.fr': [prog] });
+        built.app.guideChannels.pop();
+        built.app.loadGuideEPG();
+        expect(built.calls.shortEpg.length).toBe(0);
+        expect(built.calls.rendered).toBe(1);
+    });
+
+    it('ingests once in the background when the store holds another source', async function() {
+        const built = buildApp({ source: 'other#1a', ingestedAt: now, programmes: 10, ingesting: false }, {});
+        built.app.loadGuideEPG();
+        built.app.loadGuideEPG();
+        await new Promise(setImmediate);
+        expect(built.calls.ingest).toEqual([source]);
+        expect(built.calls.query.length).toBe(0);
+        expect(built.calls.shortEpg.length).toBe(6);
+    });
+
+    it('does not take the raw URL for the stored key', function() {
+        const built = buildApp({ source: source, ingestedAt: now - 60, programmes: 10, ingesting: false },
+            { 'tf1.fr': [prog], 'm6.fr': [prog] });
+        built.app.loadGuideEPG();
+        expect(built.calls.query.length).toBe(0);
+        expect(built.calls.ingest).toEqual([source]);
+    });
+
+    it('refreshes a stale guide but keeps serving it meanwhile', function() {
+        const built = buildApp({ source: sourceKey, ingestedAt: now - 13 * 3600, programmes: 10, ingesting: false },
+            { 'tf1.fr': [prog], 'm6.fr': [prog] });
+        built.app.loadGuideEPG();
+        expect(built.calls.ingest.length).toBe(1);
+        expect(built.calls.query.length).toBe(1);
+    });
+});
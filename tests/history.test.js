@@ -48,6 +48,9 @@ IPTVApp.prototype.saveWatchHistory = jest.fn(function() {
     mockLocalStorage.setItem('watchHistory', JSON.stringify(this.watchHistory));
 });
 IPTVApp.prototype.showHistoryScreen = jest.fn();
+// Off Android the single-entry saves fall back to the whole-list save.
+IPTVApp.prototype._saveWatchHistoryChange = function() { this.saveWatchHistory(); };
+IPTVApp.prototype._saveWatchHistoryItem = function() { this.saveWatchHistory(); };
 
 // Load modules (non-CommonJS source files, same approach as tests/storage.test.js)
 eval(utilsCode); // eslint-disable-line no-eval
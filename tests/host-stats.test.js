@@ -0,0 +1,61 @@
+/**
+ * Per-host transfer stats live in HostStats.java; JS feeds it the provider
+ * fetches it makes itself (ProviderAPI.reportTransfer), reads it back for
+ * the network diagnostic and ranks mirror URLs with it (window.HostStats).
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const diagnosticCode = fs.readFileSync('./js/core/diagnostic.js', 'utf8');
+const providerCode = fs.readFileSync('./js/provider.js', 'utf8');
+
+const STATS = { windowMinutes: 15, hosts: [
+    { host: 'line.example.com:8080', kinds: 'api,player', transfers: 40, errors: 2, bytes: 52428800, bps: 24000000,
+        ttfbMs: 180, connectMs: 45, lastSeen: 1 },
+    { host: 'image.tmdb.org', kinds: 'image', transfers: 12, errors: 0, bytes: 204800, bps: -1, ttfbMs: 60,
+        connectMs: -1, lastSeen: 1 }
+] };
+
+function load(android) {
+    const ctx = vm.createContext({ JSON: JSON, Date: Date, Math: Math, setTimeout: setTimeout, clearTimeout: clearTimeout,
+        Promise: Promise, parseInt: parseInt });
+    ctx.window = { log: jest.fn(), Android: android };
+    vm.runInContext(diagnosticCode, ctx);
+    vm.runInContext(providerCode + '\nwindow.ProviderAPI = ProviderAPI;', ctx);
+    return ctx;
+}
+
+describe('host stats', () => {
+    test('reports JS fetches with time to headers and size', () => {
+        const android = { hostStatsRecord: jest.fn() };
+        const ctx = load(android);
+        const ok = { ok: true, status: 200, headers: { get: name => name === 'Content-Length' ? '2048' : null } };
+        ctx.window.ProviderAPI.reportTransfer('http://line.example.com:8080/player_api.php', Date.now() - 50, ok);
+        ctx.window.ProviderAPI.reportTransfer('http://line.example.com:8080/player_api.php', Date.now(), { ok: false, status: 503 });
+        ctx.window.ProviderAPI.reportTransfer('http://line.example.com:8080/player_api.php', Date.now(), null);
+        const calls = android.hostStatsRecord.mock.calls;
+        expect(calls.map(c => [c[1], c[2], c[5]])).toEqual([['api', 2048, false], ['api', -1, true], ['api', -1, true]]);
+        expect(calls[0][3]).toBeGreaterThanOrEqual(50);
+        expect(calls[2][3]).toBe(-1);
+    });
+
+    test('formats the hosts and ranks mirrors through the bridge', () => {
+        const android = { hostStats: jest.fn(() => JSON.stringify(STATS)),
+            hostStatsRank: jest.fn(urls => JSON.stringify(JSON.parse(urls).reverse())) };
+        const ctx = load(android);
+        const text = ctx.window.HostStats.formatText(ctx.window.HostStats.get(15));
+        expect(text).toContain('line.example.com:8080');
+        expect(text).toContain('24.0');
+        expect(text).toContain('api,player');
+        expect(ctx.window.HostStats.rank(['http://a/1', 'http://b/1'])).toEqual(['http://b/1', 'http://a/1']);
+        expect(android.hostStatsRank.mock.calls[0][1]).toBe(15);
+    });
+
+    test('keeps the given order without the bridge', () => {
+        const ctx = load({});
+        expect(ctx.window.HostStats.get()).toBe(null);
+        expect(ctx.window.HostStats.rank(['http://a/1', 'http://b/1'])).toEqual(['http://a/1', 'http://b/1']);
+        ctx.window.ProviderAPI.reportTransfer('http://a/1', Date.now(), null);
+    });
+});
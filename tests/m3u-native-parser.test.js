@@ -0,0 +1,107 @@
+/**
+ * On Android the M3U playlist is downloaded and parsed natively (M3uParser)
+ * and JS pulls the entries in pages. The resulting data.live must match what
+ * the JS parser builds: language-filtered groups, categories numbered in order
+ * of first kept appearance, sequential stream ids, native handle released.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const settingsCode = fs.readFileSync('./js/settings.js', 'utf8');
+
+function slice(src, name) {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+}
+
+function buildApp(rows, groups, failWith) {
+    const calls = { pages: [], released: [], cancelled: [] };
+    const sandbox = {
+        setTimeout: function(fn, ms) { return ms === 0 ? setImmediate(fn) : 1; },
+        clearTimeout: function() {},
+        Promise: Promise,
+        JSON: JSON,
+        Date: Date,
+        Math: Math,
+        M3U_TIMEOUT_MS: 600000,
+        M3U_NATIVE_PAGE_SIZE: 2
+    };
+    sandbox.window = sandbox;
+    sandbox.window.log = function() {};
+    sandbox.Android = {
+        m3uLoad: function(id) {
+            setImmediate(function() {
+                if (failWith) {
+                    sandbox.__m3uNative[id].error(failWith);
+                    return;
+                }
+                sandbox.__m3uNative[id].progress(100, 200, 1);
+                sandbox.__m3uNative[id].done(rows.length, groups);
+            });
+        },
+        m3uGetPage: function(id, offset, limit) {
+            calls.pages.push([offset, limit]);
+            return JSON.stringify(rows.slice(offset, offset + limit));
+        },
+        m3uRelease: function(id) { calls.released.push(id); },
+        m3uCancel: function(id) { calls.cancelled.push(id); }
+    };
+    vm.createContext(sandbox);
+    vm.runInContext(
+        'function IPTVApp() { this.data = {}; this.availableLanguages = ["FR"]; }\n' +
+        'IPTVApp.prototype.matchesLanguage = function(g) { return g.indexOf("EN|") !== 0; };\n' +
+        slice(settingsCode, '_hasNativeM3U') +
+        slice(settingsCode, '_loadM3UNative') +
+        'this.app = new IPTVApp();',
+        sandbox
+    );
+    return { app: sandbox.app, calls: calls };
+}
+
+describe('native M3U parsing (Android)', function() {
+    const groups = ['FR| News', 'EN| Sport', 'FR| Kids'];
+    const rows = [
+        ['TF1', 'http://l/1.png', 0, 'http://p/1.ts', 'tf1.fr'],
+        ['BBC Sport', '', 1, 'http://p/2.ts', ''],
+        ['Gulli', '', 2, 'http://p/3.ts', ''],
+        ['', '', 0, 'http://p/4.ts', '']
+    ];
+
+    it('uses the native parser only for http(s) URLs', function() {
+        const app = buildApp(rows, groups).app;
+        expect(app._hasNativeM3U('http://host/list.m3u')).toBe(true);
+        expect(app._hasNativeM3U('https://host/list.m3u')).toBe(true);
+        expect(app._hasNativeM3U('file:///sdcard/list.m3u')).toBe(false);
+    });
+
+    it('builds filtered categories and streams from the pages', async function() {
+        const built = buildApp(rows, groups);
+        const progress = [];
+        await built.app._loadM3UNative('http://host/list.m3u', function(mb, total) { progress.push([mb, total]); });
+        const live = built.app.data.live;
+        expect(live.categories.map(function(c) { return c.category_name; })).toEqual(['FR| News', 'FR| Kids']);
+        expect(live.categories.map(function(c) { return c.category_id; })).toEqual([1, 2]);
+        expect(live.streams.map(function(s) { return s.stream_id; })).toEqual([1, 2, 3]);
+        expect(live.streams[0].stream_icon).toBe('http://l/1.png');
+        expect(live.streams[1].category_id).toBe(2);
+        expect(live.streams[2].name).toBe('Stream 4');
+        expect(live.streams[2].url).toBe('http://p/4.ts');
+        expect(built.app.availableLanguages).toEqual([]);
+        expect(built.calls.pages).toEqual([[0, 2], [2, 2]]);
+        expect(built.calls.released.length).toBe(1);
+        expect(progress.length).toBe(1);
+    });
+
+    it('rejects and releases on a native error', async function() {
+        const built = buildApp(rows, groups, 'HTTP 404');
+        let error = null;
+        try { await built.app._loadM3UNative('http://host/list.m3u'); } catch (e) { error = e; }
+        expect(error.message).toBe('Failed to load M3U: HTTP 404');
+        expect(built.calls.pages.length).toBe(0);
+        expect(built.calls.released.length).toBe(1);
+        expect(built.app.data.live).toBe(undefined);
+    });
+});
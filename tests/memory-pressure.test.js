@@ -0,0 +1,69 @@
+/**
+ * Android memory pressure (MainActivity.onTrimMemory): each level drops
+ * what JS can rebuild on demand, more at higher levels, and never the data
+ * of the section on screen; 'normal' only clears the state.
+ */
+
+window.log = jest.fn();
+
+const fs = require('fs');
+const storageCode = fs.readFileSync('./js/storage.js', 'utf8');
+
+global.indexedDB = { open: jest.fn(), deleteDatabase: jest.fn() };
+
+function IPTVApp() {
+    this.settings = {};
+}
+eval(storageCode);
+
+function makeApp() {
+    const app = new IPTVApp();
+    app.currentSection = 'vod';
+    app._imageLoadQueue = [{}, {}];
+    app._variantsCache = [{}];
+    app._variantsCacheKey = '1_p';
+    app.tmdbCache = { a: {}, b: {} };
+    app._nativeSearch = { vod: { generation: 1, streams: [] } };
+    app.data = {
+        vod: { categories: [], streams: [], _dedupGroups: {} },
+        series: { categories: [], streams: [], _dedupGroups: {} }
+    };
+    return app;
+}
+
+describe('onMemoryPressure', () => {
+    beforeEach(() => window.log.mockClear());
+
+    test('moderate drops queues and variants, keeps TMDB and search state', () => {
+        const app = makeApp();
+        app.onMemoryPressure('moderate');
+        expect(app._imageLoadQueue).toEqual([]);
+        expect(app._variantsCache).toBeNull();
+        expect(Object.keys(app.tmdbCache).length).toBe(2);
+        expect(app._nativeSearch).not.toBeNull();
+        expect(app.data.series._dedupGroups).toBeDefined();
+    });
+
+    test('low also drops the TMDB copy and native search state', () => {
+        const app = makeApp();
+        app.onMemoryPressure('low');
+        expect(app.tmdbCache).toEqual({});
+        expect(app._nativeSearch).toBeNull();
+        expect(app.data.series._dedupGroups).toBeDefined();
+    });
+
+    test('critical drops the groups of sections not on screen', () => {
+        const app = makeApp();
+        app.onMemoryPressure('critical');
+        expect(app.data.series._dedupGroups).toBeUndefined();
+        expect(app.data.vod._dedupGroups).toBeDefined();
+        expect(app.data.series.streams).toEqual([]);
+    });
+
+    test('normal only records the level', () => {
+        const app = makeApp();
+        app.onMemoryPressure('normal');
+        expect(app._memoryPressure).toBe('normal');
+        expect(app._imageLoadQueue.length).toBe(2);
+    });
+});
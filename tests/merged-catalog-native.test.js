@@ -0,0 +1,139 @@
+/**
+ * Merge mode reads every playlist catalog with one Android.catalogLoadMerged
+ * call: rows arrive stamped with _playlistId, in settings order (the source
+ * priority), and only a playlist whose catalog token changed is re-read.
+ * When the catalogs have to come from the providers, a provider slower than
+ * MERGE_PROVIDER_TIMEOUT_MS no longer holds back the others.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const storageCode = fs.readFileSync('./js/storage.js', 'utf8');
+const browseCode = fs.readFileSync('./js/browse.js', 'utf8');
+const slice = (src, name) => {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+};
+
+function makeApp(android, playlists) {
+    function IPTVApp() {}
+    const ctx = vm.createContext({
+        IPTVApp: IPTVApp, JSON: JSON, Promise: Promise, Date: Date,
+        setTimeout: setTimeout, clearTimeout: clearTimeout, MERGE_PROVIDER_TIMEOUT_MS: 30
+    });
+    ctx.window = { log: function() {}, Android: android };
+    ['loadMergedProviderCache', '_mergeProviderCaches', '_hasNativeMergedCatalog',
+        '_readNativeCatalog', '_loadMergedCatalogNative', '_applyMergedCatalog', '_withProviderDeadline'].forEach(function(name) {
+        vm.runInContext(slice(storageCode, name), ctx);
+    });
+    vm.runInContext(slice(browseCode, 'loadMergedData'), ctx);
+    const app = new ctx.IPTVApp();
+    app.settings = { playlists: playlists || [{ id: 'a' }, { id: 'b' }] };
+    app.getProviderCacheKey = function(id) { return 'provider_' + id; };
+    app._processLoadedProviderCache = function(id, cache) {
+        if (cache.timestamp < 100) cache.data._needsRefresh = true;
+        cache.data._cacheTimestamp = cache.timestamp;
+        return cache.data;
+    };
+    app.loadProviderCacheLocal = jest.fn();
+    return app;
+}
+
+function catalog(id, name) {
+    return { vod: { categories: [{ category_id: '1', _playlistId: id }],
+        streams: [{ stream_id: 1, name: name, _playlistId: id }] } };
+}
+
+describe('native merged catalog', function() {
+    it('merges the stamped catalogs in playlist order with one bridge call', async function() {
+        const android = {
+            catalogLoadMerged: jest.fn(function() {
+                return JSON.stringify([
+                    { key: 'provider_a', token: '1.0', timestamp: 50, filters: null, data: catalog('a', 'Alpha') },
+                    { key: 'provider_b', token: '7.2', timestamp: 500, filters: null, data: catalog('b', 'Beta') }
+                ]);
+            })
+        };
+        const app = makeApp(android);
+        const merged = await app.loadMergedProviderCache();
+        expect(android.catalogLoadMerged).toHaveBeenCalledTimes(1);
+        expect(JSON.parse(android.catalogLoadMerged.mock.calls[0][0])).toEqual([
+            { key: 'provider_a', id: 'a', token: '' }, { key: 'provider_b', id: 'b', token: '' }
+        ]);
+        expect(merged.vod.streams.map(s => s.name + '@' + s._playlistId)).toEqual(['Alpha@a', 'Beta@b']);
+        expect(merged._needsRefreshIds).toEqual(['a']);
+        expect(merged._cacheTimestamp).toBe(50);
+        expect(app.loadProviderCacheLocal).not.toHaveBeenCalled();
+    });
+
+    it('re-reads only the refreshed playlist', async function() {
+        let call = 0;
+        const android = {
+            catalogLoadMerged: jest.fn(function() {
+                call++;
+                if (call === 1) {
+                    return JSON.stringify([
+                        { key: 'provider_a', token: '1.0', timestamp: 50, filters: null, data: catalog('a', 'Alpha') },
+                        { key: 'provider_b', token: '7.2', timestamp: 500, filters: null, data: catalog('b', 'Beta') }
+                    ]);
+                }
+                return JSON.stringify([
+                    { key: 'provider_a', token: '1.1', timestamp: 900, filters: null, data: catalog('a', 'Alpha 2') },
+                    { key: 'provider_b', token: '7.2', timestamp: 500, filters: null }
+                ]);
+            })
+        };
+        const app = makeApp(android);
+        const first = await app.loadMergedProviderCache();
+        const merged = await app.loadMergedProviderCache();
+        expect(JSON.parse(android.catalogLoadMerged.mock.calls[1][0]).map(e => e.token)).toEqual(['1.0', '7.2']);
+        expect(merged.vod.streams.map(s => s.name)).toEqual(['Alpha 2', 'Beta']);
+        expect(merged.vod.streams[1]).toBe(first.vod.streams[1]);
+        expect(merged._needsRefreshIds).toBeUndefined();
+    });
+
+    it('drops a playlist whose catalog disappeared', async function() {
+        const android = {
+            catalogLoadMerged: jest.fn(function() {
+                return JSON.stringify([
+                    { key: 'provider_a', missing: true },
+                    { key: 'provider_b', token: '7.2', timestamp: 500, filters: null, data: catalog('b', 'Beta') }
+                ]);
+            })
+        };
+        const merged = await makeApp(android).loadMergedProviderCache();
+        expect(merged.vod.streams.map(s => s._playlistId)).toEqual(['b']);
+    });
+});
+
+describe('merge provider deadline', function() {
+    function api(playlistId, delayMs) {
+        const answer = function(value) {
+            return new Promise(function(resolve) { setTimeout(function() { resolve(value); }, delayMs); });
+        };
+        return {
+            playlistId: playlistId,
+            getVodCategories: function() { return answer([{ category_id: '1' }]); },
+            getVodStreams: function() { return answer([{ stream_id: playlistId }]); }
+        };
+    }
+
+    it('does not wait for a provider slower than the deadline', async function() {
+        const app = makeApp(undefined);
+        app.apis = [api('fast', 1), api('slow', 200)];
+        const startMs = Date.now();
+        const result = await app.loadMergedData('vod', 'vod');
+        expect(Date.now() - startMs).toBeLessThan(150);
+        expect(result[1].map(s => s._playlistId)).toEqual(['fast']);
+    });
+
+    it('keeps the order of providers that answer in time', async function() {
+        const app = makeApp(undefined);
+        app.apis = [api('first', 15), api('second', 1)];
+        const result = await app.loadMergedData('vod', 'vod');
+        expect(result[1].map(s => s._playlistId)).toEqual(['first', 'second']);
+    });
+});
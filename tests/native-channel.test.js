@@ -0,0 +1,84 @@
+/**
+ * On Android, whole-catalog reads go over window.AndroidChannel (a web
+ * message port) and come back as an ArrayBuffer frame: "FB", format version,
+ * status, little-endian call id, then the UTF-8 result. WebViews without
+ * ArrayBuffer messages answer "id:status:body" strings.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+const { TextDecoder, TextEncoder } = require('util');
+
+const channelCode = fs.readFileSync('./js/core/native-channel.js', 'utf8');
+const storageCode = fs.readFileSync('./js/storage.js', 'utf8');
+const slice = (src, name) => {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+};
+
+function frame(id, status, body) {
+    const utf8 = new TextEncoder().encode(body);
+    const bytes = new Uint8Array(8 + utf8.length);
+    bytes.set([0x46, 0x42, 1, status, id & 0xff, (id >>> 8) & 0xff, (id >>> 16) & 0xff, (id >>> 24) & 0xff]);
+    bytes.set(utf8, 8);
+    return bytes.buffer;
+}
+
+function load(port, android) {
+    function IPTVApp() {}
+    const ctx = vm.createContext({ IPTVApp: IPTVApp, JSON: JSON, Promise: Promise, Date: Date,
+        Uint8Array: Uint8Array, TextDecoder: TextDecoder });
+    ctx.window = { log: jest.fn(), AndroidChannel: port, Android: android };
+    vm.runInContext(channelCode, ctx);
+    ['_readNativeCatalog', '_loadProviderCacheNative'].forEach(name => vm.runInContext(slice(storageCode, name), ctx));
+    return ctx;
+}
+
+function fakePort() {
+    return { postMessage: jest.fn(), onmessage: null };
+}
+
+describe('native channel', () => {
+    test('decodes ArrayBuffer and string frames', () => {
+        const ctx = load(fakePort());
+        const decoded = ctx.window.NativeChannel.decode(frame(0x01020304, 0, '{"name":"Le Dîner"}'));
+        expect(decoded.id).toBe(0x01020304);
+        expect(decoded.status).toBe(0);
+        expect(JSON.parse(decoded.body)).toEqual({ name: 'Le Dîner' });
+        const text = ctx.window.NativeChannel.decode('7:1:boom: failed');
+        expect([text.id, text.status, text.body]).toEqual([7, 1, 'boom: failed']);
+        expect(ctx.window.NativeChannel.decode(new Uint8Array([1, 2, 3]).buffer)).toBe(null);
+    });
+
+    test('resolves a call with its frame and rejects errors', () => {
+        const port = fakePort();
+        const ctx = load(port);
+        const first = ctx.window.NativeChannel.call('catalogLoad', ['p1']);
+        const second = ctx.window.NativeChannel.call('catalogLoad', ['p2']);
+        const requests = port.postMessage.mock.calls.map(c => JSON.parse(c[0]));
+        expect(requests).toEqual([{ id: 1, method: 'catalogLoad', args: ['p1'] }, { id: 2, method: 'catalogLoad', args: ['p2'] }]);
+        port.onmessage({ data: frame(2, 1, 'no such playlist') });
+        port.onmessage({ data: frame(1, 0, '{"timestamp":5}') });
+        return Promise.all([
+            first.then(body => expect(body).toBe('{"timestamp":5}')),
+            second.then(() => { throw new Error('should reject'); }, e => expect(e.message).toBe('no such playlist'))
+        ]);
+    });
+
+    test('loads a catalog over the channel, and over the string bridge without it', () => {
+        const port = fakePort();
+        const android = { catalogLoad: jest.fn(() => '{"timestamp":9,"data":{}}') };
+        const ctx = load(port, android);
+        const app = new ctx.IPTVApp();
+        const viaChannel = app._loadProviderCacheNative('p1');
+        port.onmessage({ data: frame(1, 0, '{"timestamp":8,"data":{}}') });
+        const bridgeOnly = load(undefined, android);
+        const viaBridge = new bridgeOnly.IPTVApp()._loadProviderCacheNative('p1');
+        return Promise.all([viaChannel, viaBridge]).then(results => {
+            expect(results.map(r => r.timestamp)).toEqual([8, 9]);
+            expect(android.catalogLoad).toHaveBeenCalledTimes(1);
+        });
+    });
+});
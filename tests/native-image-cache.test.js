@@ -0,0 +1,74 @@
+/**
+ * On Android, grid posters and logos go through the native ImageCache: their
+ * URL is rewritten to the virtual images.freeiptv.invalid host with the tile
+ * size (device pixels, rounded up to 32) so the cache can downscale them,
+ * and the rows below the loaded range are handed to imageCachePrefetch.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const browseCode = fs.readFileSync('./js/browse.js', 'utf8');
+const utilsCode = fs.readFileSync('./js/core/utils.js', 'utf8');
+const slice = (src, name) => {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+};
+
+function makeApp(android, proxyUrl) {
+    function IPTVApp() {}
+    const ctx = vm.createContext({ IPTVApp: IPTVApp, encodeURIComponent: encodeURIComponent, proxyDuidParam: () => '' });
+    ctx.window = { log: jest.fn(), Android: android, devicePixelRatio: 1.5 };
+    ['proxyImageUrl', 'optimizeTmdbImageUrl'].forEach(name => vm.runInContext(slice(utilsCode, name), ctx));
+    ['_hasNativeImageCache', 'gridImageUrl', '_measureImageTile', '_prefetchNativeImages']
+        .forEach(name => vm.runInContext(slice(browseCode, name), ctx));
+    const app = new ctx.IPTVApp();
+    app.settings = { proxyUrl: proxyUrl || '' };
+    app.getStreamProxyUrl = function() { return this.settings.proxyUrl; };
+    return app;
+}
+
+function gridItems(urls) {
+    return urls.map(url => ({
+        dataset: { imageUrl: url },
+        firstElementChild: { offsetWidth: 180, offsetHeight: 270 }
+    }));
+}
+
+describe('native image cache', () => {
+    test('rewrites grid images to the tile URL once the tile is measured', () => {
+        const app = makeApp({ imageCachePrefetch: jest.fn() });
+        expect(app.gridImageUrl('http://host/a.jpg')).toBe('http://host/a.jpg');
+        app._measureImageTile(gridItems(['http://host/a.jpg']), 0);
+        expect(app._imageTile).toEqual({ w: 288, h: 416 });
+        expect(app.gridImageUrl('http://host/a.jpg?x=1&y=2'))
+            .toBe('https://images.freeiptv.invalid/tile?w=288&h=416&url=http%3A%2F%2Fhost%2Fa.jpg%3Fx%3D1%26y%3D2');
+    });
+
+    test('wraps the proxied URL and leaves data URLs alone', () => {
+        const app = makeApp({ imageCachePrefetch: jest.fn() }, 'http://proxy/');
+        app._imageTile = { w: 192, h: 288 };
+        expect(app.gridImageUrl('http://host/a.jpg')).toBe('https://images.freeiptv.invalid/tile?w=192&h=288&url=' +
+            encodeURIComponent('http://proxy/image?url=' + encodeURIComponent('http://host/a.jpg')));
+        expect(app.gridImageUrl('data:image/png;base64,AAAA')).toBe('data:image/png;base64,AAAA');
+    });
+
+    test('keeps the plain URLs without the native cache', () => {
+        const app = makeApp(undefined);
+        app._measureImageTile(gridItems(['http://host/a.jpg']), 0);
+        expect(app.gridImageUrl('http://host/a.jpg')).toBe('http://host/a.jpg');
+    });
+
+    test('prefetches the two rows after the loaded range', () => {
+        const android = { imageCachePrefetch: jest.fn() };
+        const app = makeApp(android);
+        const items = gridItems(['http://h/0.jpg', 'http://h/1.jpg', 'http://h/2.jpg', '',
+            'https://image.tmdb.org/t/p/original/p.jpg', 'data:image/png;base64,AA', 'http://h/6.jpg']);
+        app._measureImageTile(items, 0);
+        app._prefetchNativeImages(items, 2, 2);
+        expect(android.imageCachePrefetch).toHaveBeenCalledWith(288, 416,
+            'http://h/2.jpg\u001ehttps://image.tmdb.org/t/p/w300/p.jpg');
+    });
+});
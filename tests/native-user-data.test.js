@@ -0,0 +1,170 @@
+/**
+ * On Android, watch history, episode/series progress and favourites live in
+ * the native UserDataLog (Android.userData*) instead of localStorage. The
+ * localStorage copy is moved over once, progress updates and added or
+ * removed favourites and history entries are single-entry puts and removes,
+ * and while ExoPlayer plays an entry NativePlayer checkpoints it itself so
+ * the throttled JS saves are skipped.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const storageCode = fs.readFileSync('./js/storage.js', 'utf8');
+const slice = (src, name) => {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+};
+
+function fakeAndroid() {
+    const store = {};
+    const android = {
+        store: store,
+        userDataRead: jest.fn((c) => {
+            const entries = store[c] || [];
+            return JSON.stringify({ total: entries.length, entries: entries });
+        }),
+        userDataReplace: jest.fn((c, json) => { store[c] = JSON.parse(json); }),
+        userDataPut: jest.fn((c, key, json, first) => {
+            const entries = store[c] || (store[c] = []);
+            const existing = entries.find(e => e[0] === key);
+            if (first) {
+                if (existing) entries.splice(entries.indexOf(existing), 1);
+                entries.unshift([key, JSON.parse(json)]);
+            }
+            else if (existing) existing[1] = JSON.parse(json);
+            else entries.push([key, JSON.parse(json)]);
+        }),
+        userDataRemove: jest.fn((c, key) => {
+            store[c] = (store[c] || []).filter(e => e[0] !== key);
+        }),
+        userDataTrack: jest.fn()
+    };
+    return android;
+}
+
+function makeApp(android, local) {
+    function IPTVApp() {}
+    const localStorage = {
+        data: Object.assign({}, local),
+        getItem(k) { return this.data.hasOwnProperty(k) ? this.data[k] : null; },
+        setItem(k, v) { this.data[k] = v; },
+        removeItem(k) { delete this.data[k]; }
+    };
+    const Premium = { STATE_EXPIRED: 'expired', getState: () => 'active', getHistoryFreeLimit: () => 10 };
+    const ctx = vm.createContext({ IPTVApp: IPTVApp, JSON: JSON, Date: Date, localStorage: localStorage, Premium: Premium });
+    ctx.window = { log: jest.fn(), Android: android };
+    ['_hasNativeUserData', '_userDataKey', '_userDataEntries', '_loadUserData', '_saveUserData',
+        '_saveUserDataEntry', '_removeUserDataEntry', '_saveWatchHistoryChange', '_favoriteReplacer', 'saveFavorites',
+        '_saveFavoriteChange', '_trackNativeProgress', '_userDataObject', '_untrackNativeProgress',
+        '_safeLocalSet', 'getWatchHistoryItem', 'loadWatchHistory', 'saveWatchHistory', '_saveWatchHistoryItem',
+        'updateWatchHistoryProgress', 'loadEpisodeProgress', 'saveEpisodeProgress', 'updateEpisodeProgress']
+        .forEach(name => vm.runInContext(slice(storageCode, name), ctx));
+    const app = new ctx.IPTVApp();
+    app.localStorage = localStorage;
+    app.settings = { activePlaylistId: 'p1', minProgressMinutes: 2, watchedThreshold: 90 };
+    app._rebuildHistoryIndex = jest.fn();
+    app._rebuildFavoritesIndex = jest.fn();
+    app.updateSeriesProgress = jest.fn();
+    app.player = { useHtml5: false };
+    return app;
+}
+
+describe('native user data', () => {
+    test('moves the localStorage history into the native store once', () => {
+        const android = fakeAndroid();
+        const history = [{ id: 5, playlistId: 'p1', position: 1000 }, { id: 6, playlistId: 'p1', position: 0 }];
+        const app = makeApp(android, { watchHistory: JSON.stringify(history) });
+        const list = app.loadWatchHistory();
+        expect(list.map(h => h.id)).toEqual([5, 6]);
+        expect(android.store.watchHistory.map(e => e[0])).toEqual(['p1_5', 'p1_6']);
+        expect(app.localStorage.getItem('watchHistory')).toBe(null);
+        app.loadWatchHistory();
+        expect(android.userDataReplace).toHaveBeenCalledTimes(1);
+    });
+
+    test('keeps the localStorage copy when the native store did not take it', () => {
+        const android = fakeAndroid();
+        android.userDataReplace = jest.fn();
+        const history = [{ id: 5, playlistId: 'p1', position: 1000 }];
+        const app = makeApp(android, { watchHistory: JSON.stringify(history) });
+        expect(app.loadWatchHistory().map(h => h.id)).toEqual([5]);
+        expect(app.localStorage.getItem('watchHistory')).toBe(JSON.stringify(history));
+    });
+
+    test('never imports the localStorage copy again after the move', () => {
+        const android = fakeAndroid();
+        android.userDataReplace = jest.fn();
+        const history = [{ id: 5, playlistId: 'p1', position: 1000 }];
+        const app = makeApp(android, { watchHistory: JSON.stringify(history) });
+        app.loadWatchHistory();
+        expect(app.loadWatchHistory()).toEqual([]);
+        expect(android.userDataReplace).toHaveBeenCalledTimes(1);
+    });
+
+    test('falls back to localStorage without the native store', () => {
+        const app = makeApp(undefined, {});
+        app.episodeProgress = { 'p1_9': { position: 5 } };
+        app.saveEpisodeProgress();
+        expect(JSON.parse(app.localStorage.getItem('episodeProgress'))).toEqual({ 'p1_9': { position: 5 } });
+        expect(app.loadEpisodeProgress()).toEqual({ 'p1_9': { position: 5 } });
+    });
+
+    test('tracks the playing episode natively and skips the throttled saves', () => {
+        const android = fakeAndroid();
+        const app = makeApp(android, {});
+        app.episodeProgress = {};
+        app.updateEpisodeProgress(9, 60000, 1200000);
+        expect(android.userDataTrack).toHaveBeenCalledWith('episodeProgress', 'p1_9', 0, 91, 'timestamp');
+        expect(android.userDataPut).toHaveBeenCalledTimes(1);
+        app.updateEpisodeProgress(9, 120000, 1200000);
+        expect(android.userDataPut).toHaveBeenCalledTimes(1);
+        app.updateEpisodeProgress(9, 180000, 1200000, 'p1', true);
+        expect(android.userDataPut).toHaveBeenCalledTimes(2);
+        expect(android.store.episodeProgress.length).toBe(1);
+        expect(android.store.episodeProgress[0][1].position).toBe(180000);
+        expect(android.store.episodeProgress[0][1].percent).toBe(15);
+        app._untrackNativeProgress();
+        expect(android.userDataTrack.mock.calls[1]).toEqual(['', '', 0, 0, '']);
+    });
+
+    test('saves one history entry per update on the HTML5 fallback', () => {
+        const android = fakeAndroid();
+        const app = makeApp(android, {});
+        app.player.useHtml5 = true;
+        app.watchHistory = [{ id: 5, playlistId: 'p1', position: 0 }, { id: 6, playlistId: 'p1', position: 0 }];
+        app.updateWatchHistoryProgress(6, 300000, 600000, 'p1');
+        expect(android.userDataTrack).not.toHaveBeenCalled();
+        expect(android.userDataReplace).not.toHaveBeenCalled();
+        const call = android.userDataPut.mock.calls[0];
+        expect([call[0], call[1], call[3]]).toEqual(['watchHistory', 'p1_6', false]);
+        expect(JSON.parse(call[2]).percent).toBe(50);
+    });
+
+    test('adds and removes history entries without rewriting the list', () => {
+        const android = fakeAndroid();
+        android.store.watchHistory = [['p1_5', { id: 5, playlistId: 'p1' }], ['p1_6', { id: 6, playlistId: 'p1' }]];
+        const app = makeApp(android, {});
+        app.watchHistory = [{ id: 6, playlistId: 'p1', position: 0 }, { id: 5, playlistId: 'p1' }];
+        app._saveWatchHistoryChange(app.watchHistory[0]);
+        expect(android.store.watchHistory.map(e => e[0])).toEqual(['p1_6', 'p1_5']);
+        app._saveWatchHistoryChange(null, [{ id: 5, playlistId: 'p1' }]);
+        expect(android.store.watchHistory.map(e => e[0])).toEqual(['p1_6']);
+        expect(android.userDataReplace).not.toHaveBeenCalled();
+    });
+
+    test('adds and removes one favourite without rewriting the list', () => {
+        const android = fakeAndroid();
+        const app = makeApp(android, {});
+        const stream = { stream_id: 7, _playlistId: 'p1', name: 'Film' };
+        stream._duplicateVersions = [{ data: stream }];
+        app.favorites = [stream];
+        app._saveFavoriteChange(stream, false);
+        expect(android.store.favorites).toEqual([['p1_7', { stream_id: 7, _playlistId: 'p1', name: 'Film' }]]);
+        app._saveFavoriteChange(stream, true);
+        expect(android.store.favorites).toEqual([]);
+        expect(android.userDataReplace).not.toHaveBeenCalled();
+    });
+});
@@ -0,0 +1,126 @@
+/**
+ * On Android the provider cache is stored by the native CatalogStore instead
+ * of IndexedDB. Streams are written in chunks and only published by the
+ * commit callback; a load goes through the same filter/TTL checks as an
+ * IndexedDB record, and falls back to IndexedDB when the native store is empty.
+ * A save over an existing snapshot is diffed natively; the delta it reports
+ * lets the background refresh skip rebuilding when nothing changed.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const storageCode = fs.readFileSync('./js/storage.js', 'utf8');
+
+function slice(src, name) {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+}
+
+function makeApp(nativeRecord, commitDelta) {
+    const calls = { begin: [], append: [], commit: [], touch: [], clear: [] };
+    const sandbox = {
+        console: console, JSON: JSON, Date: Date, Math: Math, Promise: Promise,
+        setTimeout: setTimeout,
+        CATALOG_NATIVE_CHUNK_SIZE: 2,
+        PROVIDER_CACHE_TTL_DEFAULT_HOURS: 12,
+        PROVIDER_CACHE_STORE_NAME: 'cache'
+    };
+    sandbox.window = sandbox;
+    sandbox.window.log = function() {};
+    sandbox.Android = {
+        catalogBegin: function(key, ts, filters, extra) {
+            calls.begin.push({ key: key, ts: ts, filters: JSON.parse(filters), extra: JSON.parse(extra) });
+            return 7;
+        },
+        catalogAppend: function(id, section, kind, json) { calls.append.push([id, section, kind, JSON.parse(json).length]); },
+        catalogCommit: function(id) {
+            calls.commit.push(id);
+            setImmediate(function() { sandbox.__catalogNative[id](true, commitDelta || null); });
+        },
+        catalogLoad: function() { return nativeRecord ? JSON.stringify(nativeRecord) : ''; },
+        catalogTouch: function(key, ts) { calls.touch.push([key, ts]); }
+    };
+    vm.createContext(sandbox);
+    vm.runInContext(
+        'function IPTVApp() { this.settings = { hideSD: false, hide3D: true, hideHearingImpaired: false, providerLanguage: "FR" }; }\n' +
+        'IPTVApp.prototype.initProviderCacheDB = function() { return Promise.resolve(null); };\n' +
+        ['getProviderCacheTTL', 'getProviderCacheKey', 'getCurrentFilterSettings', 'filtersMatch',
+         '_stripStreamsForCache', '_hasNativeCatalog', '_readNativeCatalog', '_loadProviderCacheNative', '_saveProviderCacheNative',
+         '_processLoadedProviderCache', 'loadProviderCacheLocal', '_loadProviderCacheIndexedDB', 'saveProviderCache',
+         '_takeCatalogDelta', '_catalogDeltaSize',
+         'updateProviderCacheTimestamp'].map(function(n) { return slice(storageCode, n); }).join('') +
+        'this.app = new IPTVApp();',
+        sandbox
+    );
+    return { app: sandbox.app, calls: calls };
+}
+
+describe('native provider cache (Android)', () => {
+    it('streams sections in chunks and resolves on commit', async () => {
+        const built = makeApp(null);
+        const data = {
+            vod: { categories: [{ category_id: '1' }], streams: [{ stream_id: 1, plot: 'x' }, { stream_id: 2 }, { stream_id: 3 }] },
+            live: { categories: [], streams: [] },
+            accountInfo: { user: 'u' }
+        };
+        const ok = await built.app.saveProviderCache('p1', data);
+        expect(ok).toBe(true);
+        expect(built.calls.begin.length).toBe(1);
+        expect(built.calls.begin[0].key).toBe('p1');
+        expect(built.calls.begin[0].extra).toEqual({ accountInfo: { user: 'u' } });
+        expect(built.calls.begin[0].filters.providerLanguage).toBe('FR');
+        expect(built.calls.append).toEqual([
+            [7, 'vod', 'categories', 1], [7, 'vod', 'streams', 2], [7, 'vod', 'streams', 1],
+            [7, 'live', 'categories', 0]
+        ]);
+        expect(built.calls.commit).toEqual([7]);
+    });
+
+    it('loads the native record through the usual TTL and filter checks', async () => {
+        const record = {
+            timestamp: Date.now() - 13 * 3600 * 1000,
+            filters: { hideSD: false, hide3D: true, hideSM: false, providerLanguage: 'FR' },
+            data: { vod: { categories: [], streams: [{ stream_id: 1 }] } }
+        };
+        const built = makeApp(record);
+        const data = await built.app.loadProviderCacheLocal('p1');
+        expect(data.vod.streams.length).toBe(1);
+        expect(data._needsRefresh).toBe(true);
+        expect(data._cacheSource).toBe('cache');
+    });
+
+    it('rejects a native record saved with other filters', async () => {
+        const built = makeApp({ timestamp: Date.now(), filters: { hideSD: true }, data: {} });
+        expect(await built.app.loadProviderCacheLocal('p1')).toBe(null);
+    });
+
+    it('falls back to IndexedDB when the native store is empty', async () => {
+        const built = makeApp(null);
+        expect(await built.app.loadProviderCacheLocal('p1')).toBe(null);
+    });
+
+    it('updates the timestamp natively', () => {
+        const built = makeApp(null);
+        built.app.updateProviderCacheTimestamp('p1', 1234);
+        expect(built.calls.touch).toEqual([['p1', 1234]]);
+    });
+
+    it('keeps the delta of a diffed save for the refresh, once', async () => {
+        const delta = { added: { vod: 2 }, removed: { vod: 1 }, changed: {}, categories: {}, addedIds: { vod: ['7', '8'] }, removedIds: { vod: ['3'] } };
+        const built = makeApp(null, delta);
+        await built.app.saveProviderCache('p1', { vod: { categories: [], streams: [{ stream_id: 7 }] } });
+        const taken = built.app._takeCatalogDelta('p1');
+        expect(taken.addedIds.vod).toEqual(['7', '8']);
+        expect(built.app._catalogDeltaSize(taken)).toBe(3);
+        expect(built.app._takeCatalogDelta('p1')).toBe(null);
+    });
+
+    it('counts category-only changes and reports empty deltas as zero', () => {
+        const built = makeApp(null);
+        expect(built.app._catalogDeltaSize({ added: {}, removed: {}, changed: { live: 0 }, categories: {} })).toBe(0);
+        expect(built.app._catalogDeltaSize({ added: {}, removed: {}, changed: {}, categories: { vod: true } })).toBe(1);
+    });
+});
@@ -0,0 +1,135 @@
+/**
+ * On Android, ProviderAPI.preloadCache hands the six list actions to the
+ * native XtreamClient (Android.xtreamFetch) instead of fetching them one by
+ * one. Each finished action is announced on window.__xtreamNative[id] with
+ * its stats and its compacted array is taken with Android.xtreamTake. The
+ * cache, the progress callbacks and the per-step failures must look exactly
+ * like the sequential JS path.
+ */
+
+const fs = require('fs');
+const path = require('path');
+
+function loadProviderAPI() {
+    global.window = global.window || {};
+    window.log = jest.fn();
+    global.proxyDuidParam = function() { return ''; };
+    const regexCode = fs.readFileSync(path.join(__dirname, '..', 'js', 'regex.js'), 'utf8');
+    eval(regexCode);
+    const providerCode = fs.readFileSync(path.join(__dirname, '..', 'js', 'provider.js'), 'utf8');
+    eval(providerCode);
+    return ProviderAPI;
+}
+
+function stats(action, extra) {
+    return Object.assign({ action: action, status: 200, attempts: 1, bytes: 10, items: 1, ttfbMs: 5, totalMs: 20 }, extra || {});
+}
+
+function nativeBridge(bodies) {
+    return {
+        xtreamFetch: jest.fn(),
+        xtreamTake: jest.fn(function(id, action) {
+            return bodies[action] !== undefined ? JSON.stringify(bodies[action]) : 'null';
+        })
+    };
+}
+
+function answer(android, action, ok, extra) {
+    const id = android.xtreamFetch.mock.calls[0][0];
+    window.__xtreamNative[id].action(action, ok, stats(action, extra));
+}
+
+function finish(android) {
+    const id = android.xtreamFetch.mock.calls[0][0];
+    const requests = JSON.parse(android.xtreamFetch.mock.calls[0][1]);
+    window.__xtreamNative[id].done(requests.map(function(r) { return stats(r.action); }));
+}
+
+const flush = () => new Promise(resolve => setImmediate(resolve));
+
+describe('ProviderAPI native preload', () => {
+    const ProviderAPI = loadProviderAPI();
+
+    afterEach(() => {
+        delete window.Android;
+        delete window.__xtreamNative;
+    });
+
+    test('requests every action at once with the JS timeouts and retries', async () => {
+        window.Android = nativeBridge({});
+        const api = new ProviderAPI('http://host:8080/', 'u', 'p');
+        const done = api.preloadCache();
+        await flush();
+        const call = window.Android.xtreamFetch.mock.calls[0];
+        const requests = JSON.parse(call[1]);
+        expect(requests.map(r => r.action)).toEqual(['get_live_categories', 'get_live_streams',
+            'get_vod_categories', 'get_vod_streams', 'get_series_categories', 'get_series']);
+        expect(requests[0].url).toBe('http://host:8080/player_api.php?username=u&password=p&action=get_live_categories');
+        expect([requests[0].timeoutMs, requests[0].retries]).toEqual([30000, 3]);
+        expect([requests[3].timeoutMs, requests[3].retries]).toEqual([45000, 1]);
+        expect(JSON.parse(call[2])).toEqual(['direct_source', 'custom_sid', 'youtube_trailer']);
+        expect(call[3]).toBe(3);
+        finish(window.Android);
+        await done;
+    });
+
+    test('fills the cache and reports progress in step order', async () => {
+        window.Android = nativeBridge({
+            get_live_categories: [{ category_id: '1' }],
+            get_live_streams: [{ stream_id: 1 }],
+            get_vod_categories: [],
+            get_vod_streams: [{ stream_id: 2 }],
+            get_series_categories: [],
+            get_series: { user_info: {} }
+        });
+        const api = new ProviderAPI('http://host', 'u', 'p');
+        const progress = [];
+        const done = api.preloadCache(function(step, total, name) { progress.push([step, name]); });
+        await flush();
+        answer(window.Android, 'get_vod_categories', true);
+        answer(window.Android, 'get_vod_streams', true);
+        answer(window.Android, 'get_live_categories', true);
+        answer(window.Android, 'get_live_streams', true);
+        answer(window.Android, 'get_series_categories', true);
+        answer(window.Android, 'get_series', true);
+        finish(window.Android);
+        await done;
+        expect(progress).toEqual([[1, 'TV'], [3, 'Series'], [0, null]]);
+        expect(api.cache.liveCategories).toEqual([{ category_id: '1' }]);
+        expect(api.cache.vodStreams['_all']).toEqual([{ stream_id: 2 }]);
+        expect(api.cache.series['_all']).toEqual([]);
+    });
+
+    test('reports a failed step and keeps the actions that succeeded', async () => {
+        window.Android = nativeBridge({ get_vod_categories: [{ category_id: '9' }] });
+        const api = new ProviderAPI('http://host', 'u', 'p');
+        api.cache.liveCategories = [];
+        api.cache.liveStreams['_all'] = [];
+        api.cache.seriesCategories = [];
+        api.cache.series['_all'] = [];
+        const progress = [];
+        const done = api.preloadCache(function(step, total, name) { progress.push([step, name]); });
+        await flush();
+        expect(JSON.parse(window.Android.xtreamFetch.mock.calls[0][1]).map(r => r.action))
+            .toEqual(['get_vod_categories', 'get_vod_streams']);
+        answer(window.Android, 'get_vod_categories', true);
+        answer(window.Android, 'get_vod_streams', false, { status: 0, error: 'Timeout after 45s', items: -1 });
+        finish(window.Android);
+        await done;
+        expect(progress).toEqual([[2, 'VOD'], [-1, 'VOD'], [0, null]]);
+        expect(api.cache.vodCategories).toEqual([{ category_id: '9' }]);
+        expect(api.cache.vodStreams['_all']).toBeUndefined();
+        expect(window.log).toHaveBeenCalledWith('ERROR', 'CACHE preload VOD: Timeout after 45s');
+    });
+
+    test('skips the native client when everything is cached', async () => {
+        window.Android = nativeBridge({});
+        const api = new ProviderAPI('http://host', 'u', 'p');
+        api.cache.liveCategories = api.cache.vodCategories = api.cache.seriesCategories = [];
+        api.cache.liveStreams['_all'] = api.cache.vodStreams['_all'] = api.cache.series['_all'] = [];
+        const progress = [];
+        await api.preloadCache(function(step) { progress.push(step); });
+        expect(window.Android.xtreamFetch).not.toHaveBeenCalled();
+        expect(progress).toEqual([0]);
+    });
+});
@@ -0,0 +1,189 @@
+/**
+ * WebView renderer loss on Android (MainActivity.recoverWebView): the native
+ * player keeps playing while the page reloads, and the page goes back to the
+ * player screen on that session from the native snapshot instead of
+ * reopening the stream. Covers the player's attach path, the restore at
+ * init and the context handed to the native player at playback start.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const playerCode = fs.readFileSync('./js/player.js', 'utf8');
+const playbackCode = fs.readFileSync('./js/playback.js', 'utf8');
+
+function sliceClassMethod(src, name, proto) {
+    const re = new RegExp('^    ' + name + '(\\([^)]*\\)\\s*\\{[\\s\\S]*?\\n    \\})', 'm');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract method ' + name);
+    return proto + '.prototype.' + name + ' = function' + m[1] + ';';
+}
+
+function slice(src, name) {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+}
+
+function makeAvplay() {
+    const calls = [];
+    const avplay = {};
+    ['open', 'close', 'stop', 'attach', 'play', 'setDisplayRect', 'setDisplayMethod',
+        'setTimeoutForBuffering', 'setListener', 'prepareAsync', 'seekTo'].forEach(function(name) {
+        avplay[name] = function() { calls.push(name); };
+    });
+    avplay.getDuration = function() { return 5000; };
+    return { avplay: avplay, calls: calls };
+}
+
+function buildPlayer(avplay) {
+    function P() {}
+    const ctx = vm.createContext({ P: P, webapis: { avplay: avplay }, window: { log: function() {} }, setTimeout: setTimeout });
+    vm.runInContext(sliceClassMethod(playerCode, '_playDirect', 'P'), ctx);
+    vm.runInContext(sliceClassMethod(playerCode, 'attachNative', 'P'), ctx);
+    vm.runInContext(sliceClassMethod(playerCode, '_attachSession', 'P'), ctx);
+    const player = new P();
+    player._getListeners = function() { return {}; };
+    player._applyAvplayBuffering = function() {};
+    player._updatePlayerTypeIndicator = function() {};
+    player._startFreezeDetection = function() {};
+    player.states = [];
+    player.onStateChange = function(state) { player.states.push(state); };
+    return player;
+}
+
+function buildApp(android, avplay) {
+    const logs = [];
+    const window = { Android: android, log: function(tag, msg) { logs.push(tag + ' ' + msg); } };
+    function IPTVApp() {}
+    const ctx = vm.createContext({ IPTVApp: IPTVApp, window: window, webapis: { avplay: avplay }, JSON: JSON, Object: Object });
+    vm.runInContext(slice(playbackCode, 'restoreNativeSession'), ctx);
+    vm.runInContext(slice(playbackCode, '_saveNativeSessionContext'), ctx);
+    const app = new IPTVApp();
+    app.logs = logs;
+    app.attached = null;
+    app.played = null;
+    app.player = { attachNative: function(url, paused) { app.attached = { url: url, paused: paused }; } };
+    app._doPlayStream = function(streamId, type, stream, position) {
+        app.played = { streamId: streamId, type: type, stream: stream, position: position, restore: app._sessionRestore };
+        app.currentScreen = 'player';
+    };
+    return app;
+}
+
+function makeAndroid(snapshot) {
+    const android = {
+        done: [],
+        contexts: [],
+        renderRecoverySnapshot: function() { return JSON.stringify(snapshot); },
+        renderRecoveryDone: function(restored) { android.done.push(restored); },
+        playerSetSessionContext: function(json) { android.contexts.push(JSON.parse(json)); }
+    };
+    return android;
+}
+
+describe('player attach to a running native session', () => {
+    test('play() of the session URL attaches instead of reopening', () => {
+        const av = makeAvplay();
+        const player = buildPlayer(av.avplay);
+        player.attachNative('http://host/movie/1.mkv', false);
+        player._playDirect('http://host/movie/1.mkv');
+        expect(av.calls).toEqual(['attach', 'setListener']);
+        expect(player.isPlaying).toBe(true);
+        expect(player.duration).toBe(5000);
+        expect(player.states).toEqual(['playing']);
+    });
+
+    test('a paused session comes back paused', () => {
+        const av = makeAvplay();
+        const player = buildPlayer(av.avplay);
+        player.attachNative('http://host/movie/1.mkv', true);
+        player._playDirect('http://host/movie/1.mkv');
+        expect(player.isPaused).toBe(true);
+        expect(player.states).toEqual(['playing', 'paused']);
+    });
+
+    test('another URL reopens normally and the attach is consumed', () => {
+        const av = makeAvplay();
+        const player = buildPlayer(av.avplay);
+        player.attachNative('http://host/movie/1.mkv', false);
+        player._playDirect('http://host/movie/2.mkv');
+        expect(av.calls).toContain('open');
+        expect(av.calls).not.toContain('attach');
+        expect(player._attach).toBeNull();
+    });
+});
+
+describe('restoreNativeSession', () => {
+    test('returns to the player screen on the session at its position', () => {
+        const context = { streamId: 7, type: 'vod', stream: { stream_id: 7, name: 'Film' }, url: 'http://host/movie/7.mkv' };
+        const android = makeAndroid({ url: 'http://host/movie/7.mkv', positionMs: 61000, state: 'PLAYING', context: context });
+        const app = buildApp(android, makeAvplay().avplay);
+        expect(app.restoreNativeSession()).toBe(true);
+        expect(app.attached).toEqual({ url: 'http://host/movie/7.mkv', paused: false });
+        expect(app.played.streamId).toBe(7);
+        expect(app.played.position).toBe(61000);
+        expect(app.played.restore.url).toBe('http://host/movie/7.mkv');
+        expect(app._deferredStartApp).toBe(true);
+        expect(android.done).toEqual([true]);
+    });
+
+    test('live restarts at the live edge', () => {
+        const context = { streamId: 3, type: 'live', stream: { stream_id: 3 }, url: 'http://host/live/3.ts' };
+        const android = makeAndroid({ url: 'http://host/live/3.ts', positionMs: 900000, state: 'PLAYING', context: context });
+        const app = buildApp(android, makeAvplay().avplay);
+        app.restoreNativeSession();
+        expect(app.played.position).toBe(0);
+    });
+
+    test('a session without context is closed and the app starts normally', () => {
+        const av = makeAvplay();
+        const android = makeAndroid({ url: 'http://host/x.ts', positionMs: 0, state: 'PLAYING', context: null });
+        const app = buildApp(android, av.avplay);
+        expect(app.restoreNativeSession()).toBe(false);
+        expect(av.calls).toEqual(['close']);
+        expect(app.played).toBeNull();
+        expect(android.done).toEqual([false]);
+    });
+
+    test('a failed restore closes the session and drops the pending attach', () => {
+        const av = makeAvplay();
+        const context = { streamId: 7, type: 'vod', stream: { stream_id: 7 }, url: 'http://host/movie/7.mkv' };
+        const android = makeAndroid({ url: 'http://host/movie/7.mkv', positionMs: 0, state: 'PLAYING', context: context });
+        const app = buildApp(android, av.avplay);
+        app.player._attach = { url: 'http://host/movie/7.mkv', paused: false };
+        app._doPlayStream = function() { throw new Error('no stream list'); };
+        expect(app.restoreNativeSession()).toBe(false);
+        expect(av.calls).toEqual(['close']);
+        expect(app.player._attach).toBeNull();
+        expect(app._sessionRestore).toBeNull();
+        expect(app._deferredStartApp).toBe(false);
+        expect(android.done).toEqual([false]);
+    });
+
+    test('no snapshot, nothing to do', () => {
+        const android = makeAndroid(null);
+        const app = buildApp(android, makeAvplay().avplay);
+        expect(app.restoreNativeSession()).toBe(false);
+        expect(android.done).toEqual([]);
+    });
+});
+
+describe('_saveNativeSessionContext', () => {
+    test('hands the native player a flat copy of the stream', () => {
+        const android = makeAndroid(null);
+        const app = buildApp(android, makeAvplay().avplay);
+        const stream = { stream_id: 9, name: 'Chan', _playlistId: 'p1', tmdb: { id: 1 } };
+        stream.self = stream;
+        app._liveHlsFallbackUrl = 'http://host/live/9.m3u8';
+        app._saveNativeSessionContext(9, 'live', stream, 'http://host/live/9.ts');
+        expect(android.contexts).toEqual([{
+            streamId: 9,
+            type: 'live',
+            stream: { stream_id: 9, name: 'Chan', _playlistId: 'p1' },
+            url: 'http://host/live/9.ts',
+            fallbackUrl: 'http://host/live/9.m3u8'
+        }]);
+    });
+});
@@ -0,0 +1,111 @@
+/**
+ * On Android the search box is answered by the native SearchIndex: every
+ * preprocessed section hands its titles to Android.searchIndex together with
+ * a generation, and _filterByTitle asks Android.searchQuery for the rows of
+ * the current section. The native answer is only trusted for streams of that
+ * index; title overrides, other streams and a missing or stale index keep the
+ * JS substring match.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const browseCode = fs.readFileSync('./js/browse.js', 'utf8');
+const utilsCode = fs.readFileSync('./js/core/utils.js', 'utf8');
+const slice = (src, name) => {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+};
+
+function makeApp(android, overrides) {
+    function IPTVApp() {}
+    const storage = { titleOverrides: JSON.stringify(overrides || {}) };
+    const ctx = vm.createContext({
+        IPTVApp: IPTVApp,
+        JSON: JSON,
+        localStorage: { getItem: function(k) { return storage[k] || null; } }
+    });
+    ctx.window = { log: function() {}, Android: android };
+    vm.runInContext(slice(utilsCode, 'getStreamTitle'), ctx);
+    ['_hasNativeSearch', '_indexNativeSearch', '_queryNativeSearch', '_filterByTitle'].forEach(function(name) {
+        vm.runInContext(slice(browseCode, name), ctx);
+    });
+    const app = new ctx.IPTVApp();
+    app.currentSection = 'vod';
+    return app;
+}
+
+function streams() {
+    return [
+        { stream_id: '1', name: 'FR| Amélie', _displayTitle: 'Amélie', _searchKey: 'amelie' },
+        { stream_id: '2', name: 'FR| Inception', _displayTitle: 'Inception', _searchKey: 'inception' },
+        { stream_id: '3', name: 'FR| Le Dîner de cons', _displayTitle: 'Le Dîner de cons', _searchKey: 'le diner de cons' }
+    ];
+}
+
+function nativeBridge(answer) {
+    return {
+        searchIndex: jest.fn(),
+        searchQuery: jest.fn(function() { return answer; })
+    };
+}
+
+function ids(list) {
+    return list.map(function(s) { return s.stream_id; });
+}
+
+describe('native search index', function() {
+    it('indexes the same titles the JS filter matches against', function() {
+        const android = nativeBridge('null');
+        const app = makeApp(android);
+        const vod = streams();
+        vod.push({ stream_id: '4', name: 'Arte HD' });
+        app._indexNativeSearch('vod', vod);
+        expect(android.searchIndex).toHaveBeenCalledTimes(1);
+        const args = android.searchIndex.mock.calls[0];
+        expect(args[0]).toBe('vod');
+        expect(args[2]).toBe(4);
+        expect(args[3].split('\u001e')).toEqual(['Amélie', 'Inception', 'Le Dîner de cons', 'Arte HD']);
+    });
+
+    it('filters with the native hits, typo matches included', function() {
+        const android = nativeBridge(JSON.stringify({ total: 1, rows: [1], fuzzy: true, ms: 0.4 }));
+        const app = makeApp(android);
+        const vod = streams();
+        app._indexNativeSearch('vod', vod);
+        const result = app._filterByTitle(vod.slice(), 'incpetion');
+        const generation = android.searchIndex.mock.calls[0][1];
+        expect(android.searchQuery).toHaveBeenCalledWith('vod', generation, 'incpetion', 0, 3);
+        expect(ids(result)).toEqual(['2']);
+    });
+
+    it('keeps the JS match while the index is not ready', function() {
+        const android = nativeBridge('null');
+        const app = makeApp(android);
+        const vod = streams();
+        app._indexNativeSearch('vod', vod);
+        expect(ids(app._filterByTitle(vod.slice(), 'dîner'))).toEqual(['3']);
+        expect(ids(app._filterByTitle(vod.slice(), 'incpetion'))).toEqual([]);
+    });
+
+    it('still honours title overrides and streams outside the index', function() {
+        const android = nativeBridge(JSON.stringify({ total: 0, rows: [], fuzzy: false, ms: 0.1 }));
+        const app = makeApp(android, { '1': 'Le fabuleux destin' });
+        const vod = streams();
+        app._indexNativeSearch('vod', vod);
+        const extra = { stream_id: '9', name: 'Destin final' };
+        expect(ids(app._filterByTitle(vod.concat([extra]), 'destin'))).toEqual(['1', '9']);
+    });
+
+    it('does not query another section index', function() {
+        const android = nativeBridge(JSON.stringify({ total: 0, rows: [], fuzzy: false, ms: 0.1 }));
+        const app = makeApp(android);
+        const vod = streams();
+        app._indexNativeSearch('vod', vod);
+        app.currentSection = 'favorites';
+        expect(ids(app._filterByTitle(vod.slice(), 'amelie'))).toEqual(['1']);
+        expect(android.searchQuery).not.toHaveBeenCalled();
+    });
+});
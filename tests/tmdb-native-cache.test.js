@@ -0,0 +1,101 @@
+/**
+ * On Android, TMDB GETs go through the native TmdbCache (Android.tmdbFetch)
+ * instead of the XHR queue and are answered on window.__tmdbNative[id] with
+ * the parsed body. After a background refresh, the movies and series the
+ * catalog delta reports as added are handed to Android.tmdbPrefetch so their
+ * metadata is resolved before the user opens them.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const tmdbCode = fs.readFileSync('./js/tmdb.js', 'utf8');
+const detailsCode = fs.readFileSync('./js/details.js', 'utf8');
+const slice = (src, name) => {
+    const re = new RegExp('IPTVApp\\.prototype\\.' + name + '\\s*=\\s*function[\\s\\S]*?\\n\\};\\n');
+    const m = src.match(re);
+    if (!m) throw new Error('Could not extract ' + name);
+    return m[0];
+};
+
+function loadTMDB(android) {
+    function IPTVApp() {}
+    const ctx = vm.createContext({ IPTVApp: IPTVApp, JSON: JSON, encodeURIComponent: encodeURIComponent,
+        XMLHttpRequest: jest.fn() });
+    ctx.window = { log: jest.fn(), Android: android };
+    vm.runInContext(tmdbCode, ctx);
+    vm.runInContext('this.TMDB = TMDB;', ctx);
+    ctx.TMDB.setApiKey('KEY');
+    return ctx;
+}
+
+function answer(ctx, call, status, data) {
+    const id = ctx.window.Android.tmdbFetch.mock.calls[call][0];
+    ctx.window.__tmdbNative[id](status, data, 'network');
+}
+
+describe('TMDB native cache', () => {
+    test('sends plain GETs to the native cache', () => {
+        const ctx = loadTMDB({ tmdbFetch: jest.fn() });
+        const results = [];
+        ctx.TMDB.getMovieDetails(42, function(result) { results.push(result); });
+        expect(ctx.XMLHttpRequest).not.toHaveBeenCalled();
+        expect(ctx.window.Android.tmdbFetch.mock.calls[0][1])
+            .toBe('https://api.themoviedb.org/3/movie/42?api_key=KEY&language=fr-FR&append_to_response=credits,external_ids');
+        answer(ctx, 0, 200, { id: 42, overview: 'Une histoire' });
+        expect(results).toEqual([{ id: 42, overview: 'Une histoire' }]);
+        expect(Object.keys(ctx.window.__tmdbNative)).toEqual([]);
+    });
+
+    test('reports errors as null like the XHR path', () => {
+        const ctx = loadTMDB({ tmdbFetch: jest.fn() });
+        const results = [];
+        ctx.TMDB.getPersonDetails(7, function(result, status) { results.push([result, status]); });
+        answer(ctx, 0, 404, { status_code: 34, status_message: 'not found' });
+        expect(results).toEqual([[null, 404]]);
+        expect(ctx.window.log).toHaveBeenCalledWith('TMDB', 'API error status=404 code=34 msg="not found"');
+    });
+
+    test('builds the searchMovie URL and the details template for prefetching', () => {
+        const android = { tmdbFetch: jest.fn(), tmdbPrefetch: jest.fn() };
+        const ctx = loadTMDB(android);
+        expect(ctx.TMDB.prefetchTitles([
+            { title: 'Le Film', year: '2021', type: 'movie' },
+            { title: 'La Serie', year: null, type: 'tv', tmdbId: '99' }
+        ])).toBe(2);
+        const requests = JSON.parse(android.tmdbPrefetch.mock.calls[0][0]);
+        expect(requests).toEqual([
+            { url: 'https://api.themoviedb.org/3/search/movie?api_key=KEY&language=fr-FR&query=Le%20Film&year=2021',
+                then: 'https://api.themoviedb.org/3/movie/{id}?api_key=KEY&language=fr-FR&append_to_response=credits,external_ids' },
+            { url: 'https://api.themoviedb.org/3/tv/99?api_key=KEY&language=fr-FR&append_to_response=credits,external_ids' }
+        ]);
+    });
+
+    test('prefetches only the added titles that are not cached yet', () => {
+        const android = { tmdbFetch: jest.fn(), tmdbPrefetch: jest.fn() };
+        const ctx = loadTMDB(android);
+        vm.runInContext(slice(detailsCode, 'prefetchTMDBForNewItems'), ctx);
+        const app = new ctx.IPTVApp();
+        app.extractYear = function(name) { const m = name.match(/\((\d{4})\)/); return m ? m[1] : null; };
+        app.cleanTitle = function(name) { return name.replace(/\s*\(\d{4}\)/, ''); };
+        app.getTMDBCacheKey = function(title, year) { return (title + '_' + (year || '')).toLowerCase(); };
+        app.tmdbCache = { 'known_2020': { id: 1 } };
+        const cacheData = {
+            vod: { streams: [
+                { stream_id: 1, name: 'Old (2019)' },
+                { stream_id: 2, name: 'Known (2020)' },
+                { stream_id: 3, name: 'New (2024)', tmdb: '0' },
+                { stream_id: 4, name: 'Linked', tmdb: 555 }
+            ] },
+            series: { streams: [{ series_id: 8, name: 'Show (2023)' }] }
+        };
+        const delta = { addedIds: { vod: ['2', '3', '4'], series: ['8'] } };
+        expect(app.prefetchTMDBForNewItems(cacheData, delta)).toBe(3);
+        const requests = JSON.parse(android.tmdbPrefetch.mock.calls[0][0]);
+        expect(requests.map(r => r.url.replace(/\?.*query=/, '?q='))).toEqual([
+            'https://api.themoviedb.org/3/search/movie?q=New&year=2024',
+            'https://api.themoviedb.org/3/movie/555?api_key=KEY&language=fr-FR&append_to_response=credits,external_ids',
+            'https://api.themoviedb.org/3/search/tv?q=Show&first_air_date_year=2023'
+        ]);
+    });
+});
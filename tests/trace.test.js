@@ -0,0 +1,82 @@
+/**
+ * js/core/trace.js hands JS spans to Android.traceSpans in batches when the
+ * launch is sampled for tracing (Android.traceIsRecording), wrapping the app
+ * start, provider fetch and playback entry points; otherwise it wraps
+ * nothing and begin() returns null.
+ */
+
+const fs = require('fs');
+const vm = require('vm');
+
+const traceCode = fs.readFileSync('./js/core/trace.js', 'utf8');
+
+function load(android) {
+    class ProviderAPI {
+        authenticate() { return Promise.resolve(true); }
+        preloadCache() { return Promise.reject(new Error('offline')); }
+    }
+    function IPTVApp() {}
+    IPTVApp.prototype.init = function() { return 'ready'; };
+    IPTVApp.prototype.playStream = function() { throw new Error('no url'); };
+    const originals = { init: IPTVApp.prototype.init, authenticate: ProviderAPI.prototype.authenticate };
+    const ctx = vm.createContext({ IPTVApp: IPTVApp, ProviderAPI: ProviderAPI, JSON: JSON, Date: Date,
+        setTimeout: setTimeout, clearTimeout: clearTimeout, Promise: Promise,
+        document: { addEventListener: jest.fn() } });
+    ctx.window = { log: jest.fn(), Android: android };
+    vm.runInContext(traceCode, ctx);
+    return { ctx: ctx, originals: originals };
+}
+
+function sentSpans(android) {
+    return android.traceSpans.mock.calls.reduce((all, call) => all.concat(JSON.parse(call[0])), []);
+}
+
+const flushPromises = () => new Promise(resolve => setTimeout(resolve, 0));
+
+describe('trace', () => {
+    test('wraps nothing when the launch is not sampled', () => {
+        const android = { traceIsRecording: jest.fn(() => false), traceSpans: jest.fn() };
+        const { ctx, originals } = load(android);
+        expect(ctx.IPTVApp.prototype.init).toBe(originals.init);
+        expect(ctx.ProviderAPI.prototype.authenticate).toBe(originals.authenticate);
+        expect(ctx.window.Trace.begin('x')).toBe(null);
+        ctx.window.Trace.mark('y');
+        ctx.window.Trace.flush();
+        expect(android.traceSpans).not.toHaveBeenCalled();
+    });
+
+    test('times sync and async entry points and sends them in one batch', async () => {
+        const android = { traceIsRecording: jest.fn(() => true), traceSpans: jest.fn() };
+        const { ctx } = load(android);
+        const app = new ctx.IPTVApp();
+        expect(app.init()).toBe('ready');
+        expect(() => app.playStream()).toThrow('no url');
+        const provider = new ctx.ProviderAPI();
+        await provider.authenticate();
+        await provider.preloadCache().catch(() => null);
+        await flushPromises();
+        ctx.window.Trace.end(ctx.window.Trace.begin('custom', 'ui'));
+        ctx.window.Trace.mark('marker');
+        expect(android.traceSpans).not.toHaveBeenCalled();
+        ctx.window.Trace.flush();
+        expect(android.traceSpans).toHaveBeenCalledTimes(1);
+        const spans = sentSpans(android);
+        expect(spans.map(s => [s[0], s[1]])).toEqual([
+            ['app.init', 'startup'], ['app.playStream', 'playback'], ['provider.authenticate', 'network'],
+            ['provider.preloadCache', 'network'], ['custom', 'ui'], ['marker', 'js']]);
+        expect(spans[0][2]).toBeGreaterThan(1e12);
+        expect(spans[0][3]).toBeGreaterThanOrEqual(0);
+        expect(spans[5][3]).toBe(-1);
+    });
+
+    test('exports through the bridge and works without it', () => {
+        const android = { traceIsRecording: () => true, traceSpans: jest.fn(), traceExport: jest.fn(() => '/sdcard/trace-1.json') };
+        const { ctx } = load(android);
+        ctx.window.Trace.mark('before-export');
+        expect(ctx.window.Trace.exportTrace()).toBe('/sdcard/trace-1.json');
+        expect(sentSpans(android).map(s => s[0])).toEqual(['before-export']);
+        const tizen = load(undefined).ctx;
+        expect(tizen.window.Trace.isRecording()).toBe(false);
+        expect(tizen.window.Trace.exportTrace()).toBe('');
+    });
+});
@@ -4,13 +4,22 @@
     if (navigator.userAgent.indexOf('Android') === -1) return;
     if (typeof window.Android === 'undefined') return;
 
-    var meta = document.querySelector('meta[name="viewport"]');
-    if (!meta) {
-        meta = document.createElement('meta');
-        meta.name = 'viewport';
-        (document.head || document.documentElement).appendChild(meta);
+    function applyViewport() {
+        var meta = document.querySelector('meta[name="viewport"]');
+        if (!meta) {
+            meta = document.createElement('meta');
+            meta.name = 'viewport';
+            (document.head || document.documentElement).appendChild(meta);
+        }
+        meta.content = 'width=1920, initial-scale=1.0, user-scalable=no';
+    }
+    // Injected as a document-start script the page's own viewport meta is not
+    // parsed yet: wait for it rather than adding a second one.
+    if (document.readyState === 'loading' && !document.querySelector('meta[name="viewport"]')) {
+        document.addEventListener('DOMContentLoaded', applyViewport);
+    } else {
+        applyViewport();
     }
-    meta.content = 'width=1920, initial-scale=1.0, user-scalable=no';
 
     function addTouchClass() {
         if (document.body) {
@@ -59,6 +68,11 @@
                 Android.playerSetVisible(false);
                 document.body.classList.remove('native-player-active');
             },
+            // Takes over the session left running by a page lost with its renderer.
+            attach: function() {
+                Android.playerSetVisible(true);
+                document.body.classList.add('native-player-active');
+            },
             prepareAsync: function(successCb, errorCb) {
                 prepareSuccessCb = successCb || null;
                 prepareErrorCb = errorCb || null;